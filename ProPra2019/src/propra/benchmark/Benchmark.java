@@ -0,0 +1,82 @@
+package propra.benchmark;
+
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>Benchmark</code> measures one operation of the
+ * <code>ImageConverter</code>, e.g. encoding an image with one codec. It is run
+ * by a <code>BenchmarkRunner</code> which calls <code>runOperation()</code>
+ * repeatedly after <code>setUp()</code> was called once.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public abstract class Benchmark {
+
+	private final String name;
+	private final String parameters;
+
+	/**
+	 * The summed up length of all data passed to <code>consume()</code>. It is
+	 * only kept so that the results of an operation are used and cannot be
+	 * optimized away.
+	 */
+	private volatile long consumedBytes;
+
+	/**
+	 * Creates a new <code>Benchmark</code>.
+	 *
+	 * @param name       the name of the benchmark, e.g. <code>rle-encode</code>.
+	 * @param parameters the parameters of this run, e.g. the size and content of
+	 *                   the image.
+	 */
+	protected Benchmark(String name, String parameters) {
+		this.name = name;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Creates the input of the operation. It is not part of the measurement.
+	 *
+	 * @throws ImageHandlingException when the input could not be created.
+	 */
+	protected void setUp() throws ImageHandlingException {
+	}
+
+	/**
+	 * Executes the operation once.
+	 *
+	 * @return the number of bytes the operation processed. The throughput of the
+	 *         benchmark is based on it.
+	 * @throws ImageHandlingException when the operation failed.
+	 */
+	protected abstract long runOperation() throws ImageHandlingException;
+
+	/**
+	 * Removes everything <code>setUp()</code> created outside of the heap, e.g.
+	 * files.
+	 *
+	 * @throws ImageHandlingException when the files could not be removed.
+	 */
+	protected void tearDown() throws ImageHandlingException {
+	}
+
+	/**
+	 * Uses the result of an operation.
+	 *
+	 * @param data the result, may be <code>null</code>.
+	 */
+	protected void consume(byte[] data) {
+		if (data != null) {
+			consumedBytes += data.length;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getParameters() {
+		return parameters;
+	}
+}
@@ -0,0 +1,103 @@
+package propra.benchmark;
+
+import java.util.Locale;
+
+/**
+ * A <code>BenchmarkResult</code> holds the measurements of one
+ * <code>Benchmark</code>: its throughput in MB/s over all measurement
+ * iterations and the bytes allocated on the heap per operation, as well as the
+ * garbage collections during the measurement.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class BenchmarkResult {
+
+	/**
+	 * The column names of <code>toCsvLine()</code>.
+	 */
+	public static final String CSV_HEADER = "benchmark,parameters,operations,mbPerSecond,mbPerSecondError,"
+			+ "allocatedBytesPerOperation,gcCount,gcMillis";
+
+	private static final double MEGABYTE = 1024 * 1024;
+
+	private final String name;
+	private final String parameters;
+	private final long operations;
+	private final double mbPerSecond;
+	private final double mbPerSecondError;
+	private final long allocatedBytesPerOperation;
+	private final long gcCount;
+	private final long gcMillis;
+
+	/**
+	 * Creates a new <code>BenchmarkResult</code>.
+	 *
+	 * @param benchmark       the benchmark.
+	 * @param operations      the number of operations of all measurement
+	 *                        iterations.
+	 * @param iterationScores the throughput of each measurement iteration in
+	 *                        bytes per second.
+	 * @param allocatedBytes  the bytes allocated by all operations.
+	 * @param gcCount         the number of garbage collections.
+	 * @param gcMillis        the time spent in garbage collections.
+	 */
+	BenchmarkResult(Benchmark benchmark, long operations, double[] iterationScores, long allocatedBytes,
+			long gcCount, long gcMillis) {
+		this.name = benchmark.getName();
+		this.parameters = benchmark.getParameters();
+		this.operations = operations;
+		this.allocatedBytesPerOperation = operations == 0 ? 0 : allocatedBytes / operations;
+		this.gcCount = gcCount;
+		this.gcMillis = gcMillis;
+
+		double sum = 0;
+		for (double score : iterationScores) {
+			sum += score;
+		}
+		double mean = sum / iterationScores.length;
+		double squaredDeviations = 0;
+		for (double score : iterationScores) {
+			squaredDeviations += (score - mean) * (score - mean);
+		}
+		mbPerSecond = mean / MEGABYTE;
+		mbPerSecondError = iterationScores.length < 2 ? 0
+				: Math.sqrt(squaredDeviations / (iterationScores.length - 1)) / MEGABYTE;
+	}
+
+	/**
+	 * To get the result as one line of a table, e.g. for the console.
+	 *
+	 * @return the line.
+	 */
+	public String toTableLine() {
+		return String.format(Locale.ROOT, "%-28s %-24s %10.1f +- %6.1f MB/s %14d B/op %5d GCs %6d ms", name,
+				parameters, mbPerSecond, mbPerSecondError, allocatedBytesPerOperation, gcCount, gcMillis);
+	}
+
+	/**
+	 * To get the result as one line of CSV matching <code>CSV_HEADER</code>.
+	 *
+	 * @return the line.
+	 */
+	public String toCsvLine() {
+		return String.format(Locale.ROOT, "%s,%s,%d,%.3f,%.3f,%d,%d,%d", name, parameters, operations, mbPerSecond,
+				mbPerSecondError, allocatedBytesPerOperation, gcCount, gcMillis);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getParameters() {
+		return parameters;
+	}
+
+	public double getMegabytesPerSecond() {
+		return mbPerSecond;
+	}
+
+	public long getAllocatedBytesPerOperation() {
+		return allocatedBytesPerOperation;
+	}
+}
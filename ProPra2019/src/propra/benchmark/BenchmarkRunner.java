@@ -0,0 +1,120 @@
+package propra.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>BenchmarkRunner</code> runs a <code>Benchmark</code> in several
+ * iterations on the calling thread. Each iteration repeats the operation of
+ * the benchmark until the iteration time has passed. The warmup iterations let
+ * the JIT compiler optimize the code and are not measured.
+ * <p>
+ * The bytes allocated per operation are taken from the allocation counter of
+ * the calling thread, so the benchmark must not hand its work to other
+ * threads.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class BenchmarkRunner {
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+	private final com.sun.management.ThreadMXBean threadMXBean;
+
+	/**
+	 * Creates a new <code>BenchmarkRunner</code>.
+	 *
+	 * @param warmupIterations      the number of iterations which are not
+	 *                              measured.
+	 * @param measurementIterations the number of measured iterations.
+	 * @param iterationMillis       the minimum duration of each iteration.
+	 * @throws ImageHandlingException when the allocation of the threads cannot be
+	 *                                measured by this JVM.
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis)
+			throws ImageHandlingException {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = Math.max(1, measurementIterations);
+		this.iterationNanos = iterationMillis * 1_000_000;
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			throw new ImageHandlingException("This JVM cannot measure the allocations of threads.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+		threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param benchmark the benchmark.
+	 * @return the measurements.
+	 * @throws ImageHandlingException when the operation of the benchmark failed.
+	 */
+	public BenchmarkResult run(Benchmark benchmark) throws ImageHandlingException {
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				runIteration(benchmark);
+			}
+
+			long threadId = Thread.currentThread().getId();
+			long gcCountBefore = getGcCount();
+			long gcMillisBefore = getGcMillis();
+			long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+			long operations = 0;
+			double[] iterationScores = new double[measurementIterations];
+			for (int i = 0; i < measurementIterations; i++) {
+				long[] iteration = runIteration(benchmark);
+				operations += iteration[0];
+				iterationScores[i] = iteration[1] / (iteration[2] / 1e9);
+			}
+			long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+
+			return new BenchmarkResult(benchmark, operations, iterationScores, allocatedBytes,
+					getGcCount() - gcCountBefore, getGcMillis() - gcMillisBefore);
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Repeats the operation of the benchmark until the iteration time has passed.
+	 *
+	 * @return the number of operations, the processed bytes and the elapsed
+	 *         nanoseconds.
+	 */
+	private long[] runIteration(Benchmark benchmark) throws ImageHandlingException {
+		long operations = 0;
+		long processedBytes = 0;
+		long start = System.nanoTime();
+		long elapsedNanos;
+		do {
+			processedBytes += benchmark.runOperation();
+			operations++;
+			elapsedNanos = System.nanoTime() - start;
+		} while (elapsedNanos < iterationNanos);
+		return new long[] { operations, processedBytes, elapsedNanos };
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,473 @@
+package propra.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import propra.benchmark.SyntheticImage.Content;
+import propra.imageconverter.codecs.Decoder;
+import propra.imageconverter.codecs.Encoder;
+import propra.imageconverter.codecs.RGBEncoder;
+import propra.imageconverter.codecs.base.BaseDecoder;
+import propra.imageconverter.codecs.base.BaseEncoder;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.huffman.HuffmanEncoder;
+import propra.imageconverter.codecs.huffman.HuffmanTree;
+import propra.imageconverter.codecs.rle.RLEDecoder;
+import propra.imageconverter.codecs.rle.RLEEncoder;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.ChecksumCalculator;
+import propra.imageconverter.util.FileHandler;
+
+/**
+ * <code>CodecBenchmarks</code> measures the throughput and the allocations of
+ * the codecs, the check sum and the file handling of the
+ * <code>ImageConverter</code> with synthetic images of several sizes and
+ * contents. The data is passed in chunks of the size the conversions use.
+ * <p>
+ * The throughput is based on the uncompressed data, i.e. the pixels of the
+ * image for the image codecs and the raw data for the base-n codecs, so that
+ * encoding and decoding can be compared. The base-n codecs, the check sum and
+ * the file handling do not depend on the content and only run with noise.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java propra.benchmark.CodecBenchmarks [--sizes=256x256,1024x1024]
+ *     [--contents=flat,stripes,gradient,palette,photo,noise] [--filter=huffman]
+ *     [--warmup=3] [--iterations=5] [--time=1000] [--csv=results.csv]
+ * </pre>
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class CodecBenchmarks {
+
+	private static final String SIZES = "--sizes=";
+	private static final String CONTENTS = "--contents=";
+	private static final String FILTER = "--filter=";
+	private static final String WARMUP = "--warmup=";
+	private static final String ITERATIONS = "--iterations=";
+	private static final String TIME = "--time=";
+	private static final String CSV = "--csv=";
+
+	private static final int[] BASE_ALPHABET_SIZES = { 2, 4, 8, 16, 32, 64 };
+	private static final String BASE_ALPHABET_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz+/";
+
+	public static void main(String[] args) {
+		try {
+			BufferPool.checkDefaultChunkSize();
+			new CodecBenchmarks(args).run();
+		} catch (ImageHandlingException e) {
+			System.err.println(e);
+			System.exit(123);
+		}
+	}
+
+	private List<int[]> sizes;
+	private List<Content> contents;
+	private String filter;
+	private int warmupIterations;
+	private int measurementIterations;
+	private long iterationMillis;
+	private String csvPath;
+
+	/**
+	 * Creates new <code>CodecBenchmarks</code>.
+	 *
+	 * @param args the command line arguments.
+	 * @throws ImageHandlingException when invalid arguments were given.
+	 */
+	public CodecBenchmarks(String[] args) throws ImageHandlingException {
+		sizes = parseSizes("256x256,1024x1024");
+		contents = Arrays.asList(Content.values());
+		warmupIterations = 3;
+		measurementIterations = 5;
+		iterationMillis = 1000;
+
+		for (String argument : args) {
+			if (argument.startsWith(SIZES)) {
+				sizes = parseSizes(argument.substring(SIZES.length()));
+			} else if (argument.startsWith(CONTENTS)) {
+				contents = parseContents(argument.substring(CONTENTS.length()));
+			} else if (argument.startsWith(FILTER)) {
+				filter = argument.substring(FILTER.length());
+			} else if (argument.startsWith(WARMUP)) {
+				warmupIterations = parseNumber(argument, WARMUP);
+			} else if (argument.startsWith(ITERATIONS)) {
+				measurementIterations = parseNumber(argument, ITERATIONS);
+			} else if (argument.startsWith(TIME)) {
+				iterationMillis = parseNumber(argument, TIME);
+			} else if (argument.startsWith(CSV)) {
+				csvPath = argument.substring(CSV.length());
+			} else {
+				throw new ImageHandlingException("Unknown argument: " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+	}
+
+	/**
+	 * Runs all benchmarks matching the filter and prints their results.
+	 *
+	 * @throws ImageHandlingException when a benchmark failed or the CSV file could
+	 *                                not be written.
+	 */
+	public void run() throws ImageHandlingException {
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations, iterationMillis);
+		List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+		for (Benchmark benchmark : createBenchmarks()) {
+			if (filter != null && !benchmark.getName().contains(filter)) {
+				continue;
+			}
+			BenchmarkResult result = runner.run(benchmark);
+			System.out.println(result.toTableLine());
+			results.add(result);
+		}
+
+		if (csvPath != null) {
+			try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(csvPath)))) {
+				writer.println(BenchmarkResult.CSV_HEADER);
+				for (BenchmarkResult result : results) {
+					writer.println(result.toCsvLine());
+				}
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write the results: " + csvPath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+		}
+	}
+
+	private List<Benchmark> createBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int[] size : sizes) {
+			int width = size[0];
+			int height = size[1];
+			for (Content content : contents) {
+				String parameters = width + "x" + height + "/" + content.name().toLowerCase();
+				byte[] pixels = SyntheticImage.createPixels(content, width, height);
+
+				benchmarks.add(new EncoderBenchmark("rle-encode", parameters, pixels, () -> new RLEEncoder(width)));
+				benchmarks.add(new DecoderBenchmark("rle-decode", parameters, pixels, () -> new RLEEncoder(width),
+						() -> new RLEDecoder(pixels.length)));
+				benchmarks.add(new EncoderBenchmark("huffman-encode", parameters, pixels, () -> new HuffmanEncoder()));
+				benchmarks.add(new PrebuiltTreeHuffmanBenchmark(parameters, pixels));
+				benchmarks.add(new DecoderBenchmark("huffman-decode", parameters, pixels, () -> new HuffmanEncoder(),
+						() -> new HuffmanDecoder(pixels.length)));
+				benchmarks.add(new EncoderBenchmark("rgb-swap", parameters, pixels, () -> new RGBEncoder()));
+			}
+
+			String parameters = width + "x" + height + "/noise";
+			byte[] data = SyntheticImage.createPixels(Content.NOISE, width, height);
+			for (int alphabetSize : BASE_ALPHABET_SIZES) {
+				String alphabet = BASE_ALPHABET_CHARACTERS.substring(0, alphabetSize);
+				benchmarks.add(new EncoderBenchmark("base" + alphabetSize + "-encode", parameters, data,
+						() -> new BaseEncoder(alphabet)));
+				benchmarks.add(new DecoderBenchmark("base" + alphabetSize + "-decode", parameters, data,
+						() -> new BaseEncoder(alphabet), () -> new BaseDecoder(alphabet)));
+			}
+			benchmarks.add(new ChecksumBenchmark(parameters, data));
+			benchmarks.add(new FileWriteBenchmark(parameters, data));
+			benchmarks.add(new FileReadBenchmark(parameters, data));
+		}
+		return benchmarks;
+	}
+
+	static List<int[]> parseSizes(String value) throws ImageHandlingException {
+		List<int[]> sizes = new ArrayList<int[]>();
+		for (String size : value.split(",")) {
+			String[] dimensions = size.trim().split("x");
+			try {
+				if (dimensions.length != 2) {
+					throw new NumberFormatException();
+				}
+				int width = Integer.parseInt(dimensions[0]);
+				int height = Integer.parseInt(dimensions[1]);
+				if (width <= 0 || height <= 0 || (long) width * height * 3 > Integer.MAX_VALUE - 8) {
+					throw new NumberFormatException();
+				}
+				sizes.add(new int[] { width, height });
+			} catch (NumberFormatException e) {
+				throw new ImageHandlingException("Invalid image size: " + size + ". Expected <width>x<height>.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+		return sizes;
+	}
+
+	static List<Content> parseContents(String value) throws ImageHandlingException {
+		List<Content> contents = new ArrayList<Content>();
+		for (String name : value.split(",")) {
+			Content content = Content.fromName(name.trim());
+			if (content == null) {
+				throw new ImageHandlingException("Unknown image content: " + name + ". Allowed: "
+						+ Arrays.toString(Content.values()).toLowerCase(), ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			contents.add(content);
+		}
+		return contents;
+	}
+
+	private static int parseNumber(String argument, String command) throws ImageHandlingException {
+		try {
+			int number = Integer.parseInt(argument.substring(command.length()));
+			if (number < 0) {
+				throw new NumberFormatException();
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new ImageHandlingException("Invalid number: " + argument, ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+	}
+
+	/**
+	 * Splits data into chunks like they are read from a file.
+	 */
+	private static List<byte[]> split(byte[] data) {
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		for (int offset = 0; offset < data.length; offset += BufferPool.DEFAULT_CHUNK_SIZE) {
+			chunks.add(Arrays.copyOfRange(data, offset, Math.min(data.length, offset + BufferPool.DEFAULT_CHUNK_SIZE)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Creates a new codec for each operation.
+	 */
+	private interface CodecFactory<T> {
+		T create() throws ImageHandlingException;
+	}
+
+	/**
+	 * Encodes the data chunk by chunk with a new encoder. The preparation of the
+	 * encoder is part of the measurement, e.g. building the Huffman tree.
+	 */
+	private static class EncoderBenchmark extends Benchmark {
+
+		private final byte[] data;
+		private final CodecFactory<Encoder> encoderFactory;
+		private List<byte[]> chunks;
+
+		EncoderBenchmark(String name, String parameters, byte[] data, CodecFactory<Encoder> encoderFactory) {
+			super(name, parameters);
+			this.data = data;
+			this.encoderFactory = encoderFactory;
+		}
+
+		@Override
+		protected void setUp() throws ImageHandlingException {
+			chunks = split(data);
+		}
+
+		protected Encoder createEncoder() throws ImageHandlingException {
+			return encoderFactory.create();
+		}
+
+		@Override
+		protected long runOperation() throws ImageHandlingException {
+			Encoder encoder = createEncoder();
+			for (byte[] chunk : chunks) {
+				encoder.prepareEncoding(chunk);
+			}
+			for (byte[] chunk : chunks) {
+				consume(encoder.encode(chunk));
+			}
+			consume(encoder.flush());
+			return data.length;
+		}
+	}
+
+	/**
+	 * Encodes the data with a Huffman tree which was built before the
+	 * measurement, like a tree re-used from a similar image.
+	 */
+	private static class PrebuiltTreeHuffmanBenchmark extends EncoderBenchmark {
+
+		private final byte[] data;
+		private HuffmanTree tree;
+
+		PrebuiltTreeHuffmanBenchmark(String parameters, byte[] data) {
+			super("huffman-encode-prebuilt-tree", parameters, data, null);
+			this.data = data;
+		}
+
+		@Override
+		protected void setUp() throws ImageHandlingException {
+			super.setUp();
+			HuffmanEncoder encoder = new HuffmanEncoder();
+			encoder.prepareEncoding(data);
+			encoder.getEncodedLength();
+			tree = encoder.getTree();
+		}
+
+		@Override
+		protected Encoder createEncoder() {
+			return new HuffmanEncoder(tree);
+		}
+	}
+
+	/**
+	 * Decodes data chunk by chunk with a new decoder. The data is encoded once
+	 * before the measurement.
+	 */
+	private static class DecoderBenchmark extends Benchmark {
+
+		private final byte[] data;
+		private final CodecFactory<Encoder> encoderFactory;
+		private final CodecFactory<Decoder> decoderFactory;
+		private List<byte[]> encodedChunks;
+
+		DecoderBenchmark(String name, String parameters, byte[] data, CodecFactory<Encoder> encoderFactory,
+				CodecFactory<Decoder> decoderFactory) {
+			super(name, parameters);
+			this.data = data;
+			this.encoderFactory = encoderFactory;
+			this.decoderFactory = decoderFactory;
+		}
+
+		@Override
+		protected void setUp() throws ImageHandlingException {
+			List<byte[]> chunks = split(data);
+			Encoder encoder = encoderFactory.create();
+			for (byte[] chunk : chunks) {
+				encoder.prepareEncoding(chunk);
+			}
+			ByteArrayOutputStream encodedData = new ByteArrayOutputStream();
+			for (byte[] chunk : chunks) {
+				encodedData.writeBytes(encoder.encode(chunk));
+			}
+			byte[] lastBytes = encoder.flush();
+			if (lastBytes != null) {
+				encodedData.writeBytes(lastBytes);
+			}
+			encodedChunks = split(encodedData.toByteArray());
+		}
+
+		@Override
+		protected long runOperation() throws ImageHandlingException {
+			Decoder decoder = decoderFactory.create();
+			for (byte[] chunk : encodedChunks) {
+				consume(decoder.decode(chunk));
+			}
+			consume(decoder.flush());
+			return data.length;
+		}
+	}
+
+	private static class ChecksumBenchmark extends Benchmark {
+
+		private final byte[] data;
+		private List<byte[]> chunks;
+
+		ChecksumBenchmark(String parameters, byte[] data) {
+			super("checksum", parameters);
+			this.data = data;
+		}
+
+		@Override
+		protected void setUp() {
+			chunks = split(data);
+		}
+
+		@Override
+		protected long runOperation() {
+			ChecksumCalculator checksumCalculator = new ChecksumCalculator();
+			for (byte[] chunk : chunks) {
+				checksumCalculator.update(chunk, 0, chunk.length);
+			}
+			consume(checksumCalculator.getCheckSum());
+			return data.length;
+		}
+	}
+
+	/**
+	 * Writes the data into a temp-file through a <code>FileHandler</code>.
+	 */
+	private static class FileWriteBenchmark extends Benchmark {
+
+		private final byte[] data;
+		private List<byte[]> chunks;
+		private FileHandler fileHandler;
+
+		FileWriteBenchmark(String parameters, byte[] data) {
+			super("file-write", parameters);
+			this.data = data;
+		}
+
+		@Override
+		protected void setUp() throws ImageHandlingException {
+			chunks = split(data);
+			fileHandler = FileHandler.createTempFileHandler("propra-benchmark-");
+			fileHandler.createFile();
+		}
+
+		@Override
+		protected long runOperation() throws ImageHandlingException {
+			fileHandler.openOutputFile();
+			for (byte[] chunk : chunks) {
+				fileHandler.writeData(chunk);
+			}
+			fileHandler.closeFile();
+			return data.length;
+		}
+
+		@Override
+		protected void tearDown() throws ImageHandlingException {
+			fileHandler.removeFile();
+		}
+	}
+
+	/**
+	 * Reads the data from a temp-file through a <code>FileHandler</code> into a
+	 * buffer of the <code>BufferPool</code>.
+	 */
+	private static class FileReadBenchmark extends Benchmark {
+
+		private final byte[] data;
+		private FileHandler fileHandler;
+
+		FileReadBenchmark(String parameters, byte[] data) {
+			super("file-read", parameters);
+			this.data = data;
+		}
+
+		@Override
+		protected void setUp() throws ImageHandlingException {
+			fileHandler = FileHandler.createTempFileHandler("propra-benchmark-");
+			fileHandler.createFile();
+			fileHandler.openOutputFile();
+			fileHandler.writeData(data);
+			fileHandler.closeFile();
+		}
+
+		@Override
+		protected long runOperation() throws ImageHandlingException {
+			BufferPool bufferPool = BufferPool.getDefault();
+			byte[] buffer = bufferPool.lease();
+			long bytesReadInTotal = 0;
+			try {
+				fileHandler.openInputStream();
+				int bytesRead;
+				while ((bytesRead = fileHandler.readData(buffer)) != -1) {
+					bytesReadInTotal += bytesRead;
+				}
+				fileHandler.closeFile();
+			} finally {
+				bufferPool.release(buffer);
+			}
+			return bytesReadInTotal;
+		}
+
+		@Override
+		protected void tearDown() throws ImageHandlingException {
+			fileHandler.removeFile();
+		}
+	}
+}
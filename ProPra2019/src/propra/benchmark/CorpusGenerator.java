@@ -0,0 +1,268 @@
+package propra.benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import propra.benchmark.SyntheticImage.Content;
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.api.InMemoryConverter;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.ImageInfo;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.util.Util;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>CorpusGenerator</code> writes a corpus of synthetic images for
+ * benchmarks and regression checks. Every combination of size and content is
+ * written as *.tga and *.propra image in every compression the format supports.
+ * All images are created from a fixed seed, so the same arguments always
+ * produce the same corpus.
+ * <p>
+ * Next to the images a manifest <code>manifest.jsonl</code> is written which
+ * holds one line of JSON per image with its expected properties: format,
+ * compression, dimensions, file and data segment length, the CRC-32 of the
+ * pixels in the byte order of a *.tga image, the number of distinct colors, the
+ * entropy of the pixel bytes, the number of pixel runs within the lines and
+ * which compression produces the smallest image of the format. This way
+ * benchmarks and tests can pick the best and worst cases of RLE and Huffman
+ * encoding from the manifest.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java propra.benchmark.CorpusGenerator --output=corpus [--sizes=64x64,512x512,1920x1080]
+ *     [--contents=flat,stripes,gradient,palette,photo,noise] [--seed=2019]
+ * </pre>
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class CorpusGenerator {
+
+	/**
+	 * The name of the manifest in the output directory.
+	 */
+	public static final String MANIFEST_FILE = "manifest.jsonl";
+
+	private static final String OUTPUT = "--output=";
+	private static final String SIZES = "--sizes=";
+	private static final String CONTENTS = "--contents=";
+	private static final String SEED = "--seed=";
+
+	private static final CompressionFormat[] TGA_COMPRESSIONS = { CompressionFormat.UNCOMPRESSED,
+			CompressionFormat.RLE };
+	private static final CompressionFormat[] PROPRA_COMPRESSIONS = { CompressionFormat.UNCOMPRESSED,
+			CompressionFormat.RLE, CompressionFormat.HUFFMAN };
+
+	public static void main(String[] args) {
+		try {
+			new CorpusGenerator(args).generate();
+		} catch (ImageHandlingException e) {
+			System.err.println(e);
+			System.exit(123);
+		}
+	}
+
+	private Path outputDirectory;
+	private List<int[]> sizes;
+	private List<Content> contents;
+	private long seed;
+
+	/**
+	 * Creates a new <code>CorpusGenerator</code>.
+	 *
+	 * @param args the command line arguments.
+	 * @throws ImageHandlingException when invalid arguments were given.
+	 */
+	public CorpusGenerator(String[] args) throws ImageHandlingException {
+		sizes = CodecBenchmarks.parseSizes("64x64,512x512,1920x1080");
+		contents = Arrays.asList(Content.values());
+		seed = SyntheticImage.DEFAULT_SEED;
+
+		for (String argument : args) {
+			if (argument.startsWith(OUTPUT)) {
+				outputDirectory = Paths.get(argument.substring(OUTPUT.length()));
+			} else if (argument.startsWith(SIZES)) {
+				sizes = CodecBenchmarks.parseSizes(argument.substring(SIZES.length()));
+			} else if (argument.startsWith(CONTENTS)) {
+				contents = CodecBenchmarks.parseContents(argument.substring(CONTENTS.length()));
+			} else if (argument.startsWith(SEED)) {
+				try {
+					seed = Long.parseLong(argument.substring(SEED.length()));
+				} catch (NumberFormatException e) {
+					throw new ImageHandlingException("Invalid seed: " + argument,
+							ImageConverterErrorCode.INVALID_USER_INPUT);
+				}
+			} else {
+				throw new ImageHandlingException("Unknown argument: " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+		if (outputDirectory == null) {
+			throw new ImageHandlingException("The output directory must be set with " + OUTPUT,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+	}
+
+	/**
+	 * Writes all images and the manifest into the output directory.
+	 *
+	 * @throws ImageHandlingException when an image or the manifest could not be
+	 *                                written.
+	 */
+	public void generate() throws ImageHandlingException {
+		try {
+			Files.createDirectories(outputDirectory);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create the output directory: " + outputDirectory,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+
+		Path manifestFile = outputDirectory.resolve(MANIFEST_FILE);
+		try (PrintWriter manifest = new PrintWriter(Files.newBufferedWriter(manifestFile))) {
+			for (int[] size : sizes) {
+				for (Content content : contents) {
+					for (String line : writeImages(content, size[0], size[1])) {
+						manifest.println(line);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write the manifest: " + manifestFile,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Writes one image in all formats and compressions.
+	 *
+	 * @return the lines of the manifest.
+	 */
+	private List<String> writeImages(Content content, int width, int height) throws ImageHandlingException {
+		byte[] pixels = SyntheticImage.createPixels(content, width, height, seed);
+		String properties = describePixels(content, pixels, width);
+
+		ImageTGA header = new ImageTGA(CompressionFormat.UNCOMPRESSED);
+		header.setDimensions(width, height);
+		ByteBuffer tgaImage = ByteBuffer.allocate(ImageTGA.HEADER_LENGTH + pixels.length);
+		tgaImage.put(header.getHeader()).put(pixels).flip();
+
+		List<String> lines = new ArrayList<String>();
+		for (Format format : Format.values()) {
+			List<ImageInfo> infos = new ArrayList<ImageInfo>();
+			for (CompressionFormat compressionFormat : format == Format.TGA ? TGA_COMPRESSIONS
+					: PROPRA_COMPRESSIONS) {
+				Path file = outputDirectory.resolve(content.name().toLowerCase() + "_" + width + "x" + height + "_"
+						+ compressionFormat.name().toLowerCase() + "." + format.getFileExtension());
+				writeImage(tgaImage.duplicate(), file, format, compressionFormat);
+				ImageInfo info = ImageInfo.probe(file, false);
+				if (info.getError() != null) {
+					throw new ImageHandlingException("Written image is invalid: " + file + ": " + info.getError(),
+							ImageConverterErrorCode.UNEXPECTED_ERROR);
+				}
+				infos.add(info);
+			}
+
+			ImageInfo smallest = infos.get(0);
+			for (ImageInfo info : infos) {
+				if (info.getDataLength() < smallest.getDataLength()) {
+					smallest = info;
+				}
+			}
+			for (ImageInfo info : infos) {
+				lines.add(String.format(Locale.ROOT,
+						"{\"file\":%s,\"format\":\"%s\",\"compression\":\"%s\",\"width\":%d,\"height\":%d,"
+								+ "\"fileLength\":%d,\"dataLength\":%d,\"compressionRatio\":%.4f,%s,"
+								+ "\"smallestCompression\":\"%s\"}",
+						Util.toJsonString(info.getFile().getFileName().toString()), format.getFileExtension(),
+						info.getCompressionFormat().name().toLowerCase(), width, height, info.getFileLength(),
+						info.getDataLength(), info.getDataLength() / (double) pixels.length, properties,
+						smallest.getCompressionFormat().name().toLowerCase()));
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Writes an image given as uncompressed *.tga image in the given format and
+	 * compression.
+	 *
+	 * @param tgaImage          the uncompressed *.tga image.
+	 * @param file              the file to write.
+	 * @param format            the format of the file.
+	 * @param compressionFormat the compression of the file.
+	 * @throws ImageHandlingException when the image could not be written.
+	 */
+	static void writeImage(ByteBuffer tgaImage, Path file, Format format,
+			CompressionFormat compressionFormat) throws ImageHandlingException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (format == Format.TGA && compressionFormat == CompressionFormat.UNCOMPRESSED) {
+				while (tgaImage.hasRemaining()) {
+					channel.write(tgaImage);
+				}
+			} else {
+				InMemoryConverter.convert(tgaImage, channel,
+						ConversionOptions.forImage(Format.TGA, format, compressionFormat));
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write image: " + file, ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Describes the pixels independently of format and compression.
+	 *
+	 * @return the properties as members of a JSON object.
+	 */
+	private String describePixels(Content content, byte[] pixels, int width) {
+		CRC32 crc = new CRC32();
+		crc.update(pixels);
+
+		long[] byteFrequencies = new long[256];
+		for (byte pixelByte : pixels) {
+			byteFrequencies[pixelByte & 0xFF]++;
+		}
+		double entropy = 0;
+		for (long frequency : byteFrequencies) {
+			if (frequency > 0) {
+				double probability = frequency / (double) pixels.length;
+				entropy -= probability * Math.log(probability) / Math.log(2);
+			}
+		}
+
+		Set<Integer> colors = new HashSet<Integer>();
+		long runs = 0;
+		int previousColor = -1;
+		for (int i = 0; i < pixels.length; i += 3) {
+			int color = (pixels[i] & 0xFF) << 16 | (pixels[i + 1] & 0xFF) << 8 | (pixels[i + 2] & 0xFF);
+			colors.add(color);
+			// A run ends with a different color or at the end of a line
+			if (color != previousColor || (i / 3) % width == 0) {
+				runs++;
+			}
+			previousColor = color;
+		}
+
+		return String.format(Locale.ROOT,
+				"\"content\":\"%s\",\"seed\":%d,\"pixelCrc32\":\"%08x\",\"distinctColors\":%d,"
+						+ "\"byteEntropy\":%.4f,\"pixelRuns\":%d",
+				content.name().toLowerCase(), seed, crc.getValue(), colors.size(), entropy, runs);
+	}
+}
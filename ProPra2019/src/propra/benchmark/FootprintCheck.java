@@ -0,0 +1,491 @@
+package propra.benchmark;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import propra.benchmark.SyntheticImage.Content;
+import propra.imageconverter.conversioncontroller.BaseConversionController;
+import propra.imageconverter.conversioncontroller.ConversionController;
+import propra.imageconverter.conversioncontroller.FormatConversionController;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>FootprintCheck</code> measures the resources every conversion path
+ * of the <code>ImageConverter</code> needs and fails when a path exceeds its
+ * declared budget. A path is one combination of input format and compression
+ * and output format and compression of the <code>FormatConversionController</code>,
+ * including 'auto', or one operation mode of the
+ * <code>BaseConversionController</code>.
+ * <p>
+ * Each path is run in isolation on the calling thread and the following is
+ * measured:
+ * <ul>
+ * <li>the bytes allocated by the thread per MB of image data,</li>
+ * <li>the peak of the heap above the heap used before the conversion,</li>
+ * <li>the retained peak, i.e. the peak of all heap pools but the eden space.
+ * It only holds objects which survived a garbage collection and therefore is
+ * the memory the path really needs,</li>
+ * <li>the garbage collection pauses per MB of image data.</li>
+ * </ul>
+ * The budget of a path limits the retained peak to a fixed size plus a multiple
+ * of an image line plus a multiple of the whole image, so that e.g. "RLE
+ * encoding needs O(width) memory" is checked by running images of the same
+ * width but different heights. It also limits the allocated bytes per MB.
+ * <p>
+ * The retained peak is only exact when garbage collections happen often during
+ * a conversion, so the check should run with a small young generation:
+ *
+ * <pre>
+ * java -XX:+UseSerialGC -Xmn4m -Xmx512m propra.benchmark.FootprintCheck
+ *     [--sizes=1024x64,1024x1024,4096x256] [--filter=huffman]
+ * </pre>
+ *
+ * The process exits with 1 when a path exceeded its budget. Pipelined
+ * conversions are not covered since their stages allocate on their own
+ * threads.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class FootprintCheck {
+
+	private static final String SIZES = "--sizes=";
+	private static final String FILTER = "--filter=";
+
+	private static final double MEGABYTE = 1024 * 1024;
+
+	/**
+	 * The size of the image every path converts once before it is measured so
+	 * that the JIT compiler and class loading do not distort the measurement.
+	 */
+	private static final int WARMUP_WIDTH = 64;
+	private static final int WARMUP_HEIGHT = 16;
+
+	/**
+	 * The largest eden space the retained peak is considered exact with.
+	 */
+	private static final long MAX_EXACT_EDEN_BYTES = 16 * 1024 * 1024;
+
+	private static final String BASEN_ALPHABET = "01234567";
+
+	private static final CompressionFormat[] TGA_COMPRESSIONS = { CompressionFormat.UNCOMPRESSED,
+			CompressionFormat.RLE };
+	private static final CompressionFormat[] PROPRA_COMPRESSIONS = { CompressionFormat.UNCOMPRESSED,
+			CompressionFormat.RLE, CompressionFormat.HUFFMAN };
+
+	public static void main(String[] args) {
+		try {
+			boolean withinBudgets = new FootprintCheck(args).run();
+			System.exit(withinBudgets ? 0 : 1);
+		} catch (ImageHandlingException e) {
+			System.err.println(e);
+			System.exit(123);
+		}
+	}
+
+	private List<int[]> sizes;
+	private String filter;
+	private Path workDirectory;
+	private final com.sun.management.ThreadMXBean threadMXBean;
+	private final List<MemoryPoolMXBean> heapPools;
+
+	/**
+	 * Creates a new <code>FootprintCheck</code>.
+	 *
+	 * @param args the command line arguments.
+	 * @throws ImageHandlingException when invalid arguments were given or the
+	 *                                allocations of threads cannot be measured by
+	 *                                this JVM.
+	 */
+	public FootprintCheck(String[] args) throws ImageHandlingException {
+		sizes = CodecBenchmarks.parseSizes("1024x64,1024x1024,4096x256");
+		for (String argument : args) {
+			if (argument.startsWith(SIZES)) {
+				sizes = CodecBenchmarks.parseSizes(argument.substring(SIZES.length()));
+			} else if (argument.startsWith(FILTER)) {
+				filter = argument.substring(FILTER.length());
+			} else {
+				throw new ImageHandlingException("Unknown argument: " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			throw new ImageHandlingException("This JVM cannot measure the allocations of threads.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+		threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		heapPools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool);
+			}
+		}
+	}
+
+	/**
+	 * Measures all paths matching the filter on all image sizes and prints the
+	 * results.
+	 *
+	 * @return <code>true</code> when all paths stayed within their budgets.
+	 * @throws ImageHandlingException when a conversion failed or the images could
+	 *                                not be written.
+	 */
+	public boolean run() throws ImageHandlingException {
+		warnIfRetainedPeakIsInexact();
+		try {
+			workDirectory = Files.createTempDirectory("propra-footprint");
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create a temporary directory.",
+					ImageConverterErrorCode.IO_ERROR);
+		}
+
+		try {
+			for (ConversionPath path : createPaths(WARMUP_WIDTH, WARMUP_HEIGHT)) {
+				path.convert(workDirectory);
+			}
+
+			List<String> failures = new ArrayList<String>();
+			System.out.println(String.format(Locale.ROOT, "%-42s %-10s %12s %10s %10s %10s %9s", "path", "size",
+					"alloc B/MB", "peak", "retained", "budget", "GC ms/MB"));
+			for (int[] size : sizes) {
+				for (ConversionPath path : createPaths(size[0], size[1])) {
+					String failure = measure(path);
+					if (failure != null) {
+						failures.add(failure);
+					}
+				}
+			}
+
+			if (failures.isEmpty()) {
+				System.out.println("All paths stayed within their budgets.");
+				return true;
+			}
+			System.out.println(failures.size() + " budget(s) exceeded:");
+			for (String failure : failures) {
+				System.out.println(" " + failure);
+			}
+			return false;
+		} finally {
+			removeWorkDirectory();
+		}
+	}
+
+	/**
+	 * Runs one path and compares its footprint with its budget.
+	 *
+	 * @return a description of the exceeded budget or <code>null</code> if the
+	 *         path stayed within its budget.
+	 */
+	private String measure(ConversionPath path) throws ImageHandlingException {
+		long threadId = Thread.currentThread().getId();
+		System.gc();
+		for (MemoryPoolMXBean pool : heapPools) {
+			pool.resetPeakUsage();
+		}
+		long heapBefore = 0;
+		long retainedBefore = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			heapBefore += pool.getUsage().getUsed();
+			if (!isEden(pool)) {
+				retainedBefore += pool.getUsage().getUsed();
+			}
+		}
+		long gcMillisBefore = getGcMillis();
+		long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+		path.convert(workDirectory);
+
+		long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+		long gcMillis = getGcMillis() - gcMillisBefore;
+		// The pools record their peaks when a collection starts
+		System.gc();
+		long heapPeak = 0;
+		long retainedPeak = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			heapPeak += pool.getPeakUsage().getUsed();
+			if (!isEden(pool)) {
+				retainedPeak += pool.getPeakUsage().getUsed();
+			}
+		}
+		heapPeak = Math.max(0, heapPeak - heapBefore);
+		retainedPeak = Math.max(0, retainedPeak - retainedBefore);
+
+		double megabytes = path.processedBytes / MEGABYTE;
+		long allocatedBytesPerMegabyte = (long) (allocatedBytes / megabytes);
+		FootprintBudget budget = path.budget;
+		long retainedLimit = budget.getRetainedLimit(path.width, path.height);
+		long allocationLimit = budget.getAllocationLimit(path.processedBytes);
+
+		String failure = null;
+		if (retainedPeak > retainedLimit) {
+			failure = String.format(Locale.ROOT, "%s %dx%d: retained peak %s exceeds %s (%s)", path.name,
+					path.width, path.height, formatBytes(retainedPeak), formatBytes(retainedLimit), budget);
+		} else if (allocatedBytes > allocationLimit) {
+			failure = String.format(Locale.ROOT, "%s %dx%d: allocated %s exceeds %s (%s)", path.name, path.width,
+					path.height, formatBytes(allocatedBytes), formatBytes(allocationLimit), budget);
+		}
+		System.out.println(String.format(Locale.ROOT, "%-42s %-10s %12d %10s %10s %10s %9.2f %s", path.name,
+				path.width + "x" + path.height, allocatedBytesPerMegabyte, formatBytes(heapPeak),
+				formatBytes(retainedPeak), formatBytes(retainedLimit), gcMillis / megabytes,
+				failure == null ? "ok" : "EXCEEDED"));
+		return failure;
+	}
+
+	/**
+	 * Writes the input images of the given size and creates the paths converting
+	 * them.
+	 */
+	private List<ConversionPath> createPaths(int width, int height) throws ImageHandlingException {
+		byte[] pixels = SyntheticImage.createPixels(Content.PHOTO, width, height);
+		ImageTGA header = new ImageTGA(CompressionFormat.UNCOMPRESSED);
+		header.setDimensions(width, height);
+		ByteBuffer tgaImage = ByteBuffer.allocate(ImageTGA.HEADER_LENGTH + pixels.length);
+		tgaImage.put(header.getHeader()).put(pixels).flip();
+
+		List<ConversionPath> paths = new ArrayList<ConversionPath>();
+		for (Format inputFormat : Format.values()) {
+			for (CompressionFormat inputCompression : inputFormat == Format.TGA ? TGA_COMPRESSIONS
+					: PROPRA_COMPRESSIONS) {
+				String inputName = inputFormat.getFileExtension() + "/" + inputCompression.name().toLowerCase();
+				Path inputFile = workDirectory
+						.resolve("input_" + inputCompression.name().toLowerCase() + "." + inputFormat.getFileExtension());
+				CorpusGenerator.writeImage(tgaImage.duplicate(), inputFile, inputFormat, inputCompression);
+
+				for (Format outputFormat : Format.values()) {
+					List<CompressionFormat> outputCompressions = new ArrayList<CompressionFormat>();
+					for (CompressionFormat outputCompression : outputFormat == Format.TGA ? TGA_COMPRESSIONS
+							: PROPRA_COMPRESSIONS) {
+						outputCompressions.add(outputCompression);
+					}
+					outputCompressions.add(CompressionFormat.AUTO);
+					for (CompressionFormat outputCompression : outputCompressions) {
+						String name = inputName + " -> " + outputFormat.getFileExtension() + "/"
+								+ outputCompression.name().toLowerCase();
+						addPath(paths, new ConversionPath(name, width, height, pixels.length, inputFile,
+								"output." + outputFormat.getFileExtension(),
+								budgetFor(inputCompression, outputCompression),
+								(input, output) -> new FormatConversionController(inputFormat, outputFormat,
+										ConverterOperationMode.CONVERT, input, output, outputCompression)));
+					}
+				}
+			}
+		}
+
+		Path dataFile = workDirectory.resolve("input_uncompressed.tga");
+		long dataLength = tgaImage.limit();
+		addBasePaths(paths, width, height, dataFile, dataLength, ConverterOperationMode.CODE_BASE32,
+				ConverterOperationMode.DECODE_BASE32, ".base-32", null);
+		addBasePaths(paths, width, height, dataFile, dataLength, ConverterOperationMode.CODE_BASEN,
+				ConverterOperationMode.DECODE_BASEN, ".base-n", BASEN_ALPHABET);
+		return paths;
+	}
+
+	/**
+	 * Adds the paths for encoding a file and decoding it again. The encoded file
+	 * is written here so that it exists when the decoding path is run.
+	 */
+	private void addBasePaths(List<ConversionPath> paths, int width, int height, Path dataFile, long dataLength,
+			ConverterOperationMode encodingMode, ConverterOperationMode decodingMode, String extension,
+			String alphabet) throws ImageHandlingException {
+		Path encodedFile = workDirectory.resolve("input" + extension);
+		new BaseConversionController(encodingMode, dataFile.toString(), encodedFile.toString(), alphabet).convert();
+		// Base-n coding works on chunks and therefore must not retain even a line
+		FootprintBudget budget = new FootprintBudget(FootprintBudget.WORKING_SET_BYTES, 0, 0, 128);
+
+		addPath(paths, new ConversionPath(encodingMode.name().toLowerCase(), width, height, dataLength, dataFile,
+				"output" + extension, budget,
+				(input, output) -> new BaseConversionController(encodingMode, input, output, alphabet)));
+		addPath(paths, new ConversionPath(decodingMode.name().toLowerCase(), width, height, dataLength,
+				encodedFile, "output.tga", budget,
+				(input, output) -> new BaseConversionController(decodingMode, input, output, null)));
+	}
+
+	private void addPath(List<ConversionPath> paths, ConversionPath path) {
+		if (filter == null || path.name.contains(filter)) {
+			paths.add(path);
+		}
+	}
+
+	/**
+	 * To get the declared budget of a conversion path of the
+	 * <code>FormatConversionController</code>. All paths convert an image line by
+	 * line: Huffman encoding and 'auto' spill the decoded image into a temp-file
+	 * instead of keeping it in memory. No path may therefore retain more than a
+	 * few lines. The allocations mostly depend on the codecs, the Huffman codecs
+	 * allocate a lot since they build the codes bit by bit.
+	 *
+	 * @param inputCompression  the compression of the input image.
+	 * @param outputCompression the compression of the output image.
+	 * @return the budget.
+	 */
+	static FootprintBudget budgetFor(CompressionFormat inputCompression, CompressionFormat outputCompression) {
+		long fixedBytes = FootprintBudget.WORKING_SET_BYTES;
+		if (outputCompression == CompressionFormat.AUTO) {
+			// Encodes the image with every compression
+			return new FootprintBudget(fixedBytes, 2, 0, 384);
+		}
+		if (outputCompression == CompressionFormat.HUFFMAN || inputCompression == CompressionFormat.HUFFMAN) {
+			return new FootprintBudget(fixedBytes, 2, 0, 192);
+		}
+		return new FootprintBudget(fixedBytes, 2, 0, 1);
+	}
+
+	private void warnIfRetainedPeakIsInexact() {
+		for (MemoryPoolMXBean pool : heapPools) {
+			if (isEden(pool) && pool.getUsage().getCommitted() > MAX_EXACT_EDEN_BYTES) {
+				System.out.println("Warning: The eden space is larger than " + formatBytes(MAX_EXACT_EDEN_BYTES)
+						+ ", objects may die before they are counted. Run with -XX:+UseSerialGC -Xmn4m.");
+			}
+		}
+	}
+
+	private void removeWorkDirectory() {
+		try (Stream<Path> files = Files.walk(workDirectory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		} catch (IOException e) {
+			System.err.println("Could not remove the temporary directory " + workDirectory);
+		}
+	}
+
+	private static boolean isEden(MemoryPoolMXBean pool) {
+		return pool.getName().contains("Eden");
+	}
+
+	private static long getGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024 * 1024) {
+			return String.format(Locale.ROOT, "%.1fKB", bytes / 1024.0);
+		}
+		return String.format(Locale.ROOT, "%.1fMB", bytes / MEGABYTE);
+	}
+
+	/**
+	 * Creates the controller of a path for the given input and output file.
+	 */
+	private interface ControllerFactory {
+		ConversionController create(String inputPath, String outputPath) throws ImageHandlingException;
+	}
+
+	/**
+	 * One conversion path applied to one input file.
+	 */
+	private static class ConversionPath {
+
+		private final String name;
+		private final int width;
+		private final int height;
+		private final long processedBytes;
+		private final Path inputFile;
+		private final String outputFileName;
+		private final FootprintBudget budget;
+		private final ControllerFactory controllerFactory;
+
+		ConversionPath(String name, int width, int height, long processedBytes, Path inputFile,
+				String outputFileName, FootprintBudget budget, ControllerFactory controllerFactory) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+			this.processedBytes = processedBytes;
+			this.inputFile = inputFile;
+			this.outputFileName = outputFileName;
+			this.budget = budget;
+			this.controllerFactory = controllerFactory;
+		}
+
+		void convert(Path workDirectory) throws ImageHandlingException {
+			Path outputFile = workDirectory.resolve(outputFileName);
+			ConversionController controller = controllerFactory.create(inputFile.toString(), outputFile.toString());
+			try {
+				controller.convert();
+			} catch (ImageHandlingException e) {
+				controller.abortConversion();
+				throw e;
+			}
+			outputFile.toFile().delete();
+		}
+	}
+
+	/**
+	 * The resources a conversion path may use.
+	 */
+	static final class FootprintBudget {
+
+		/**
+		 * The memory every path may need independent of the image size: chunk
+		 * buffers, codec state and Huffman tables. It is the same as the working set
+		 * the <code>JobScheduler</code> reserves for every conversion.
+		 */
+		static final long WORKING_SET_BYTES = 1024 * 1024;
+
+		private final long fixedBytes;
+		private final int lines;
+		private final double images;
+		private final int allocationRatio;
+
+		/**
+		 * Creates a new <code>FootprintBudget</code>.
+		 *
+		 * @param fixedBytes                the retained and allocated memory
+		 *                                  independent of the image size.
+		 * @param lines                     the number of image lines which may be
+		 *                                  retained on top.
+		 * @param images                    the number of whole images which may be
+		 *                                  retained on top.
+		 * @param allocationRatio           the bytes which may be allocated per
+		 *                                  byte of data on top of the fixed size.
+		 */
+		FootprintBudget(long fixedBytes, int lines, double images, int allocationRatio) {
+			this.fixedBytes = fixedBytes;
+			this.lines = lines;
+			this.images = images;
+			this.allocationRatio = allocationRatio;
+		}
+
+		long getRetainedLimit(int width, int height) {
+			long lineBytes = (long) width * 3;
+			return fixedBytes + lines * lineBytes + (long) (images * lineBytes * height);
+		}
+
+		long getAllocationLimit(long processedBytes) {
+			return fixedBytes + allocationRatio * processedBytes;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder description = new StringBuilder(formatBytes(fixedBytes));
+			if (lines > 0) {
+				description.append(" + " + lines + " lines");
+			}
+			if (images > 0) {
+				description.append(String.format(Locale.ROOT, " + %.1f images", images));
+			}
+			description.append(", " + allocationRatio + " bytes allocated per byte");
+			return description.toString();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package propra.benchmark;
+
+import java.util.Random;
+
+/**
+ * A <code>SyntheticImage</code> creates the pixels of artificial images which
+ * are used as benchmark inputs instead of real images. The content ranges from
+ * low to high entropy so that the best and worst cases of the codecs are
+ * covered. All content is created from a fixed seed and is the same on every
+ * run.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class SyntheticImage {
+
+	/**
+	 * The seed used when no other seed is given.
+	 */
+	public static final long DEFAULT_SEED = 2019;
+
+	/**
+	 * The distance in pixels between the random values of photo-like content.
+	 */
+	private static final int PHOTO_GRID_SPACING = 32;
+
+	/**
+	 * The kinds of content a <code>SyntheticImage</code> can have.
+	 */
+	public enum Content {
+		/**
+		 * One color only. The best case of RLE and Huffman encoding.
+		 */
+		FLAT,
+
+		/**
+		 * Horizontal stripes of 8 lines in 4 colors. Long runs within a line.
+		 */
+		STRIPES,
+
+		/**
+		 * Smooth color gradients in both directions. Many different colors but
+		 * hardly any runs.
+		 */
+		GRADIENT,
+
+		/**
+		 * Randomly placed colors out of a palette of 16 colors. Short runs and few
+		 * different byte values.
+		 */
+		PALETTE,
+
+		/**
+		 * Smooth random shapes with a slight grain like a photograph. Many different
+		 * colors, short runs and an uneven distribution of the byte values.
+		 */
+		PHOTO,
+
+		/**
+		 * Uniformly distributed random bytes. The worst case of RLE and Huffman
+		 * encoding.
+		 */
+		NOISE;
+
+		/**
+		 * To get the content with the given name.
+		 *
+		 * @param name the name of the content, not case sensitive.
+		 * @return the content or <code>null</code> if there is no content with this
+		 *         name.
+		 */
+		public static Content fromName(String name) {
+			for (Content content : values()) {
+				if (content.name().equalsIgnoreCase(name)) {
+					return content;
+				}
+			}
+			return null;
+		}
+	}
+
+	private SyntheticImage() {
+	}
+
+	/**
+	 * Creates the pixels of an image using the default seed.
+	 *
+	 * @param content the content of the image.
+	 * @param width   the width of the image.
+	 * @param height  the height of the image.
+	 * @return the pixels, three bytes each in the byte order of a *.tga image,
+	 *         line by line from the top left.
+	 */
+	public static byte[] createPixels(Content content, int width, int height) {
+		return createPixels(content, width, height, DEFAULT_SEED);
+	}
+
+	/**
+	 * Creates the pixels of an image.
+	 *
+	 * @param content the content of the image.
+	 * @param width   the width of the image.
+	 * @param height  the height of the image.
+	 * @param seed    the seed of the random content.
+	 * @return the pixels, three bytes each in the byte order of a *.tga image,
+	 *         line by line from the top left.
+	 */
+	public static byte[] createPixels(Content content, int width, int height, long seed) {
+		byte[] pixels = new byte[width * height * 3];
+		Random random = new Random(seed);
+		switch (content) {
+		case FLAT:
+			byte[] color = randomColor(random);
+			for (int i = 0; i < pixels.length; i += 3) {
+				System.arraycopy(color, 0, pixels, i, 3);
+			}
+			break;
+		case STRIPES:
+			byte[][] stripeColors = randomColors(random, 4);
+			for (int y = 0; y < height; y++) {
+				byte[] stripeColor = stripeColors[(y / 8) % stripeColors.length];
+				for (int x = 0; x < width; x++) {
+					System.arraycopy(stripeColor, 0, pixels, (y * width + x) * 3, 3);
+				}
+			}
+			break;
+		case GRADIENT:
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					int i = (y * width + x) * 3;
+					pixels[i] = (byte) (x * 255 / Math.max(1, width - 1));
+					pixels[i + 1] = (byte) (y * 255 / Math.max(1, height - 1));
+					pixels[i + 2] = (byte) ((x + y) * 255 / Math.max(1, width + height - 2));
+				}
+			}
+			break;
+		case PALETTE:
+			byte[][] palette = randomColors(random, 16);
+			for (int i = 0; i < pixels.length; i += 3) {
+				System.arraycopy(palette[random.nextInt(palette.length)], 0, pixels, i, 3);
+			}
+			break;
+		case PHOTO:
+			createPhotoPixels(pixels, width, height, random);
+			break;
+		case NOISE:
+			random.nextBytes(pixels);
+			break;
+		}
+		return pixels;
+	}
+
+	/**
+	 * Interpolates random values on a coarse grid for each channel and adds a
+	 * little noise to them.
+	 */
+	private static void createPhotoPixels(byte[] pixels, int width, int height, Random random) {
+		int gridWidth = width / PHOTO_GRID_SPACING + 2;
+		int gridHeight = height / PHOTO_GRID_SPACING + 2;
+		int[][] grid = new int[3][gridWidth * gridHeight];
+		for (int channel = 0; channel < 3; channel++) {
+			for (int i = 0; i < grid[channel].length; i++) {
+				grid[channel][i] = random.nextInt(256);
+			}
+		}
+		for (int y = 0; y < height; y++) {
+			int gridY = y / PHOTO_GRID_SPACING;
+			double fractionY = (y % PHOTO_GRID_SPACING) / (double) PHOTO_GRID_SPACING;
+			for (int x = 0; x < width; x++) {
+				int gridX = x / PHOTO_GRID_SPACING;
+				double fractionX = (x % PHOTO_GRID_SPACING) / (double) PHOTO_GRID_SPACING;
+				int topLeft = gridY * gridWidth + gridX;
+				int bottomLeft = topLeft + gridWidth;
+				for (int channel = 0; channel < 3; channel++) {
+					int[] values = grid[channel];
+					double top = values[topLeft] + (values[topLeft + 1] - values[topLeft]) * fractionX;
+					double bottom = values[bottomLeft] + (values[bottomLeft + 1] - values[bottomLeft]) * fractionX;
+					int value = (int) (top + (bottom - top) * fractionY) + random.nextInt(9) - 4;
+					pixels[(y * width + x) * 3 + channel] = (byte) Math.max(0, Math.min(255, value));
+				}
+			}
+		}
+	}
+
+	private static byte[] randomColor(Random random) {
+		byte[] color = new byte[3];
+		random.nextBytes(color);
+		return color;
+	}
+
+	private static byte[][] randomColors(Random random, int count) {
+		byte[][] colors = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			colors[i] = randomColor(random);
+		}
+		return colors;
+	}
+}
@@ -1,49 +1,220 @@
-package propra.imageconverter;
-
-import propra.imageconverter.conversioncontroller.BaseConversionController;
-import propra.imageconverter.conversioncontroller.ConversionController;
-import propra.imageconverter.conversioncontroller.FormatConversionController;
-import propra.imageconverter.error.ImageHandlingException;
-import propra.imageconverter.util.arguments.ImageConverterArgumentHandler;
-
-/**
- * Converts images or base encodes/base decodes files.
- * Supported image formats: *.tga, *.propra
- * Supported compression algorithms: Uncompressed, run-length-encoding (rle), Huffman compression
- * Supported base-codecs: Base-2, Base-4, Base-8, Base-16, Base-32, Base-64 with a custom selectable encoding alphabet.
- * 
- * @author Oliver Eckstein
- *
- */
-public class ImageConverter {
-
-	public static void main(String[] args) {
-		System.out.println(" +++ ImageConverter started +++");
-		try {
-			ImageConverterArgumentHandler argHandler = new ImageConverterArgumentHandler(args);
-			ConversionController conversionController;
-			if(argHandler.getConverterOperationMode().operationIsBaseCoding()) {
-				conversionController = new BaseConversionController(
-						argHandler.getConverterOperationMode(),
-						argHandler.getInputPath(),
-						argHandler.getOutputPath(),
-						argHandler.getEncodingAlphabet());
-			} else {
-				conversionController = new FormatConversionController(
-						argHandler.getInputFormat(),
-						argHandler.getOutputFormat(),
-						argHandler.getConverterOperationMode(),
-						argHandler.getInputPath(),
-						argHandler.getOutputPath(),
-						argHandler.getOutputCompressionFormat());
-			}			
-			conversionController.convert();
-		} catch (ImageHandlingException e1) {
-			System.err.println(e1);
-			System.exit(123);
-		}
-
-		System.out.println(" +++ Shutting down ImageConverter +++");
-
-	}
+package propra.imageconverter;
+
+import java.nio.file.Paths;
+
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.cache.ConversionCache;
+import propra.imageconverter.codecs.huffman.HuffmanTreeCache;
+import propra.imageconverter.conversioncontroller.BaseConversionController;
+import propra.imageconverter.conversioncontroller.BatchConversionController;
+import propra.imageconverter.conversioncontroller.BenchmarkConversionController;
+import propra.imageconverter.conversioncontroller.CachingConversionController;
+import propra.imageconverter.conversioncontroller.ConversionController;
+import propra.imageconverter.conversioncontroller.FormatConversionController;
+import propra.imageconverter.conversioncontroller.ImageAnalysisController;
+import propra.imageconverter.conversioncontroller.ImageInfoController;
+import propra.imageconverter.conversioncontroller.ImageVerificationController;
+import propra.imageconverter.conversioncontroller.StreamConversionController;
+import propra.imageconverter.daemon.ConversionDaemon;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.ConversionMetrics;
+import propra.imageconverter.monitoring.ConversionReportWriter;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.ImageConverterArgumentHandler;
+
+/**
+ * Converts images or base encodes/base decodes files.
+ * Supported image formats: *.tga, *.propra
+ * Supported compression algorithms: Uncompressed, run-length-encoding (rle), Huffman compression
+ * Supported base-codecs: Base-2, Base-4, Base-8, Base-16, Base-32, Base-64 with a custom selectable encoding alphabet.
+ * Whole directories can be converted at once with '--batch'.
+ * '--info' prints the metadata of images as JSON lines reading only their headers.
+ * '--analyze' prints histograms, entropy, runs and predicted compression ratios of images as JSON lines.
+ * '--verify' checks headers, check sums and data segments of images without converting them.
+ * '--benchmark' measures the conversion of a set of images into several formats and compressions.
+ * '--output=' can be given several times to convert one image into several formats and compressions at once.
+ * With '--round-trip' the output images are decoded while they are written and compared with the input image.
+ * '-' as input or output path reads from the standard input or writes to the standard output.
+ * With '--daemon=' it keeps running and accepts conversion requests on a local socket.
+ * With -Dpropra.cache.directory=... the results of conversions are cached and re-used for identical input files.
+ * With -Dpropra.huffman.treeReuse=true or -Dpropra.huffman.treeFile=... Huffman trees are re-used for similar images.
+ * In batch and daemon mode or with -Dpropra.metrics=true the conversion metrics are published via JMX.
+ * With '--report=' each image conversion gets described by one JSON line appended to the given file.
+ * Conversions, codecs and file accesses emit Java Flight Recorder events above a threshold (category 'ProPra').
+ * 
+ * @author Oliver Eckstein
+ *
+ */
+public class ImageConverter {
+
+	public static void main(String[] args) {
+		if (args != null && ImageConverterArgumentHandler.writesStandardOutput(args)) {
+			// The standard output only carries the output data then, all messages go to
+			// the standard error
+			System.setOut(System.err);
+		}
+		System.out.println(" +++ ImageConverter started +++");
+		try {
+			BufferPool.checkDefaultChunkSize();
+			ImageConverterArgumentHandler argHandler = new ImageConverterArgumentHandler(args);
+			if (argHandler.getConverterOperationMode() == ConverterOperationMode.BATCH_CONVERT
+					|| argHandler.getConverterOperationMode() == ConverterOperationMode.DAEMON
+					|| Boolean.getBoolean("propra.metrics")) {
+				ConversionMetrics.register();
+			}
+			if (argHandler.getReportPath() != null) {
+				ConversionReportWriter.setDefault(new ConversionReportWriter(Paths.get(argHandler.getReportPath())));
+			}
+			if (argHandler.getConverterOperationMode() == ConverterOperationMode.DAEMON) {
+				new ConversionDaemon(argHandler.getDaemonAddress()).run();
+			} else {
+				ConversionController conversionController = createConversionController(argHandler);
+				conversionController.convert();
+			}
+			if (Boolean.getBoolean("propra.bufferPool.statistics")) {
+				System.out.println(" " + BufferPool.getDefault().getStatistics());
+			}
+			// A batch conversion prints the statistics of the caches in its own summary
+			if (argHandler.getConverterOperationMode() != ConverterOperationMode.BATCH_CONVERT) {
+				if (ConversionCache.getDefault() != null) {
+					System.out.println(" " + ConversionCache.getDefault().getStatistics());
+				}
+				if (HuffmanTreeCache.getDefault() != null) {
+					System.out.println(" " + HuffmanTreeCache.getDefault().getStatistics());
+					HuffmanTreeCache.getDefault().save();
+				}
+			}
+		} catch (ImageHandlingException e1) {
+			System.err.println(e1.getMessage() + " Error code: " + e1.getErrorCode());
+			if (e1.getErrorCode() == ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode()) {
+				// Other errors describe the input and not a defect of the ImageConverter
+				e1.printStackTrace();
+			}
+			System.out.println(" +++ ImageConverter was shut down with errors +++");
+			System.exit(123);
+		}
+
+		System.out.println(" +++ Shutting down ImageConverter +++");
+
+	}
+
+	/**
+	 * Creates the <code>ConversionController</code> which performs the operation
+	 * requested by the user. Conversions of one file into another one use the
+	 * <code>ConversionCache</code> if it is configured.
+	 * 
+	 * @param argHandler the decoded user input.
+	 * @return the <code>ConversionController</code>.
+	 * @throws ImageHandlingException when the source file could not be opened or
+	 *                                the destination file could not be created.
+	 */
+	public static ConversionController createConversionController(ImageConverterArgumentHandler argHandler)
+			throws ImageHandlingException {
+		ConverterOperationMode operationMode = argHandler.getConverterOperationMode();
+		if (!argHandler.usesStandardStreams() && (operationMode.operationIsBaseCoding()
+				|| operationMode == ConverterOperationMode.CONVERT && argHandler.getOutputTargets().size() == 1)) {
+			return CachingConversionController.create(
+					argHandler.getInputPath(),
+					argHandler.getOutputPath(),
+					createConversionOptions(argHandler),
+					() -> createUncachedConversionController(argHandler));
+		}
+		return createUncachedConversionController(argHandler);
+	}
+
+	private static ConversionController createUncachedConversionController(ImageConverterArgumentHandler argHandler)
+			throws ImageHandlingException {
+		if (argHandler.getConverterOperationMode() == ConverterOperationMode.BATCH_CONVERT) {
+			BatchConversionController batchConversionController = new BatchConversionController(
+					argHandler.getInputPatterns(),
+					argHandler.getOutputPath(),
+					argHandler.getOutputFormat(),
+					argHandler.getOutputCompressionFormat(),
+					argHandler.getThreadCount());
+			batchConversionController.setPipelined(argHandler.isPipelined());
+			batchConversionController.setRoundTripVerified(argHandler.isRoundTripVerified());
+			return batchConversionController;
+		} else if (argHandler.getConverterOperationMode() == ConverterOperationMode.INFO) {
+			return new ImageInfoController(
+					argHandler.getInputPatterns(),
+					argHandler.verifiesCheckSums(),
+					argHandler.getThreadCount());
+		} else if (argHandler.getConverterOperationMode() == ConverterOperationMode.ANALYZE) {
+			return new ImageAnalysisController(
+					argHandler.getInputPatterns(),
+					argHandler.getThreadCount());
+		} else if (argHandler.getConverterOperationMode() == ConverterOperationMode.VERIFY) {
+			return new ImageVerificationController(
+					argHandler.getInputPatterns(),
+					argHandler.getThreadCount());
+		} else if (argHandler.getConverterOperationMode() == ConverterOperationMode.BENCHMARK) {
+			BenchmarkConversionController benchmarkConversionController = new BenchmarkConversionController(
+					argHandler.getInputPatterns(),
+					argHandler.getOutputTargets(),
+					argHandler.getWarmupRuns(),
+					argHandler.getRepetitions(),
+					argHandler.getResultsPath());
+			benchmarkConversionController.setPipelined(argHandler.isPipelined());
+			return benchmarkConversionController;
+		} else if (argHandler.usesStandardStreams()) {
+			return new StreamConversionController(
+					argHandler.getInputPath(),
+					argHandler.getOutputPath(),
+					createConversionOptions(argHandler));
+		} else if (argHandler.getConverterOperationMode().operationIsBaseCoding()) {
+			return new BaseConversionController(
+					argHandler.getConverterOperationMode(),
+					argHandler.getInputPath(),
+					argHandler.getOutputPath(),
+					argHandler.getEncodingAlphabet());
+		} else if (argHandler.getOutputTargets().size() > 1) {
+			FormatConversionController formatConversionController = new FormatConversionController(
+					argHandler.getInputFormat(),
+					argHandler.getInputPath(),
+					argHandler.getOutputTargets());
+			formatConversionController.setRoundTripVerified(argHandler.isRoundTripVerified());
+			return formatConversionController;
+		} else {
+			FormatConversionController formatConversionController = new FormatConversionController(
+					argHandler.getInputFormat(),
+					argHandler.getOutputFormat(),
+					argHandler.getConverterOperationMode(),
+					argHandler.getInputPath(),
+					argHandler.getOutputPath(),
+					argHandler.getOutputCompressionFormat());
+			formatConversionController.setPipelined(argHandler.isPipelined());
+			formatConversionController.setRoundTripVerified(argHandler.isRoundTripVerified());
+			return formatConversionController;
+		}
+	}
+
+	/**
+	 * Creates the <code>ConversionOptions</code> for a conversion which is not
+	 * working on files or whose result gets cached.
+	 * 
+	 * @param argHandler the decoded user input.
+	 * @return the <code>ConversionOptions</code>.
+	 * @throws ImageHandlingException when the user input is invalid.
+	 */
+	public static ConversionOptions createConversionOptions(ImageConverterArgumentHandler argHandler)
+			throws ImageHandlingException {
+		switch (argHandler.getConverterOperationMode()) {
+		case CODE_BASE32:
+			return ConversionOptions.forBase32Encoding();
+		case DECODE_BASE32:
+			return ConversionOptions.forBase32Decoding();
+		case CODE_BASEN:
+			return ConversionOptions.forBaseNEncoding(argHandler.getEncodingAlphabet());
+		case DECODE_BASEN:
+			return ConversionOptions.forBaseNDecoding();
+		default:
+			ConversionOptions options = ConversionOptions.forImage(
+					argHandler.getInputFormat(),
+					argHandler.getOutputFormat(),
+					argHandler.getOutputCompressionFormat());
+			return argHandler.isRoundTripVerified() ? options.withRoundTripVerification() : options;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,363 @@
+package propra.imageconverter.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.huffman.HuffmanTree;
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.Util;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * An <code>ImageAnalysis</code> describes the pixels of an image to help
+ * deciding how it should be stored: a histogram and the Shannon entropy of each
+ * color channel and of all bytes, the runs of equal pixels per scanline, the
+ * number of distinct colors and the predicted length of the data segment if it
+ * was run-length or Huffman encoded.
+ * <p>
+ * The data segment is streamed through its decoder once and nothing gets
+ * encoded or written. The decoded scanlines are handed over in chunks to
+ * several threads which collect the statistics in parallel while the next
+ * chunk gets decoded. The predicted lengths reuse the codecs: the run-length
+ * encoded length is the one of the packets the <code>RLEEncodingKernel</code>
+ * produces, the Huffman encoded length is calculated from the byte histogram
+ * with the tree the <code>HuffmanEncoder</code> would build.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class ImageAnalysis {
+
+	/**
+	 * The approximate number of decoded bytes handed over to a thread at once.
+	 * Chunks always consist of complete scanlines.
+	 */
+	private static final int CHUNK_LENGTH = 1024 * 1024;
+
+	private final Path file;
+	private Format format;
+	private CompressionFormat compressionFormat;
+	private int width;
+	private int height;
+	private long dataLength;
+	private long nanos;
+	private PixelStatistics statistics;
+
+	/**
+	 * <code>-1</code> if less than two different byte values occur.
+	 */
+	private long huffmanLength;
+
+	/**
+	 * <code>null</code> if the image could be analyzed.
+	 */
+	private String error;
+
+	private ImageAnalysis(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Analyzes an image file. The format is derived from the file extension.
+	 * Errors are not thrown but recorded in the result so that analyzing many
+	 * files does not stop at the first invalid one.
+	 *
+	 * @param file        the image file.
+	 * @param workers     the threads collecting the statistics.
+	 * @param threadCount the number of threads of <code>workers</code>.
+	 * @return the analysis of the image.
+	 */
+	public static ImageAnalysis analyze(Path file, ExecutorService workers, int threadCount) {
+		ImageAnalysis analysis = new ImageAnalysis(file);
+		long startNanos = System.nanoTime();
+		String fileName = file.getFileName().toString();
+		int dotIndex = fileName.lastIndexOf('.');
+		analysis.format = dotIndex <= 0 ? null : Format.fromFileExtension(fileName.substring(dotIndex + 1));
+		if (analysis.format == null) {
+			analysis.error = "Unknown image format.";
+			return analysis;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			analysis.analyze(channel, workers, threadCount);
+		} catch (NoSuchFileException e) {
+			analysis.error = "File not found.";
+		} catch (IOException e) {
+			analysis.error = "Could not read file: " + e.getMessage();
+		} catch (ImageHandlingException e) {
+			analysis.error = e.getMessage();
+		}
+		analysis.nanos = System.nanoTime() - startNanos;
+		return analysis;
+	}
+
+	private void analyze(FileChannel channel, ExecutorService workers, int threadCount)
+			throws IOException, ImageHandlingException {
+		int headerLength = format == Format.TGA ? ImageTGA.HEADER_LENGTH : ImagePropra.HEADER_LENGTH;
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
+		while (header.hasRemaining() && channel.read(header) != -1) {
+			// Read until the header is complete
+		}
+		byte[] headerData = Arrays.copyOf(header.array(), header.position());
+		Image image = format == Format.TGA ? new ImageTGA(headerData) : new ImagePropra(headerData);
+		width = image.getWidth();
+		height = image.getHeight();
+		compressionFormat = image.getCompressionMode();
+
+		long pixelBytes = image.getUncompressedImageDataLength();
+		int scanlineLength = width * 3;
+		int chunkLength = (int) Math.max(1,
+				Math.min(pixelBytes, Math.max(1, CHUNK_LENGTH / scanlineLength) * scanlineLength));
+		int chunkCount = (int) ((pixelBytes + chunkLength - 1) / chunkLength);
+		int statisticsCount = Math.max(1, Math.min(threadCount, chunkCount));
+
+		// Each thread takes one of the statistics while it works on a chunk
+		List<PixelStatistics> allStatistics = new ArrayList<PixelStatistics>();
+		BlockingQueue<PixelStatistics> idleStatistics = new ArrayBlockingQueue<PixelStatistics>(statisticsCount);
+		for (int i = 0; i < statisticsCount; i++) {
+			PixelStatistics pixelStatistics = new PixelStatistics(width, height);
+			allStatistics.add(pixelStatistics);
+			idleStatistics.add(pixelStatistics);
+		}
+		// Limits the decoded chunks waiting for a thread
+		BlockingQueue<byte[]> freeChunks = new ArrayBlockingQueue<byte[]>(statisticsCount * 2);
+		for (int i = 0; i < statisticsCount * 2; i++) {
+			freeChunks.add(new byte[chunkLength]);
+		}
+
+		TranscodingKernel decodingKernel = null;
+		HuffmanDecoder huffmanDecoder = null;
+		if (compressionFormat == CompressionFormat.RLE) {
+			decodingKernel = new RLEDecodingKernel(width, height, false);
+		} else if (compressionFormat == CompressionFormat.HUFFMAN) {
+			huffmanDecoder = new HuffmanDecoder(pixelBytes);
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] buffer = bufferPool.lease();
+		try {
+			byte[] chunk = freeChunks.take();
+			int chunkFill = 0;
+			long decodedBytes = 0;
+			int bytesRead;
+			while (decodedBytes < pixelBytes && (bytesRead = channel.read(ByteBuffer.wrap(buffer))) != -1) {
+				byte[] data = buffer;
+				int length = bytesRead;
+				if (decodingKernel != null) {
+					decodingKernel.transcode(buffer, bytesRead);
+					data = decodingKernel.getOutputBuffer();
+					length = decodingKernel.getOutputLength();
+				} else if (huffmanDecoder != null) {
+					data = huffmanDecoder.decode(Arrays.copyOf(buffer, bytesRead));
+					length = data == null ? 0 : data.length;
+				}
+				length = (int) Math.min(length, pixelBytes - decodedBytes);
+				decodedBytes += length;
+
+				int offset = 0;
+				while (offset < length) {
+					int count = Math.min(length - offset, chunk.length - chunkFill);
+					System.arraycopy(data, offset, chunk, chunkFill, count);
+					offset += count;
+					chunkFill += count;
+					boolean lastChunk = decodedBytes == pixelBytes && offset == length;
+					if (chunkFill == chunk.length || lastChunk) {
+						futures.add(submit(workers, chunk, chunkFill, idleStatistics, freeChunks));
+						chunk = lastChunk ? null : freeChunks.take();
+						chunkFill = 0;
+					}
+				}
+			}
+			// The rest of the file still belongs to the data segment
+			dataLength = channel.size() - headerLength;
+			if (decodedBytes < pixelBytes) {
+				throw new ImageHandlingException(
+						"Image data segment corrupt. Missing number of bytes: " + (pixelBytes - decodedBytes),
+						ImageConverterErrorCode.INVALID_DATASEGMENT);
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Analyzing the image was interrupted.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ImageHandlingException) {
+				throw (ImageHandlingException) e.getCause();
+			}
+			throw new ImageHandlingException("Unexpected error while analyzing the image: " + e.getCause(),
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} finally {
+			bufferPool.release(buffer);
+			for (Future<?> future : futures) {
+				future.cancel(false);
+			}
+		}
+
+		statistics = allStatistics.get(0);
+		for (int i = 1; i < allStatistics.size(); i++) {
+			statistics.merge(allStatistics.get(i));
+		}
+		huffmanLength = getPredictedHuffmanLength();
+	}
+
+	/**
+	 * Lets a thread add a chunk of scanlines to one of the idle statistics. The
+	 * chunk is free again afterwards.
+	 */
+	private static Future<?> submit(ExecutorService workers, byte[] chunk, int length,
+			BlockingQueue<PixelStatistics> idleStatistics, BlockingQueue<byte[]> freeChunks) {
+		return workers.submit(() -> {
+			PixelStatistics pixelStatistics = idleStatistics.take();
+			try {
+				pixelStatistics.addScanlines(chunk, length);
+			} finally {
+				idleStatistics.put(pixelStatistics);
+				freeChunks.put(chunk);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * To calculate the Shannon entropy of a histogram.
+	 *
+	 * @param histogram the frequency of each value.
+	 * @return the entropy in bits per value.
+	 */
+	static double getEntropy(long[] histogram) {
+		long total = 0;
+		for (long frequency : histogram) {
+			total += frequency;
+		}
+		double entropy = 0;
+		for (long frequency : histogram) {
+			if (frequency > 0) {
+				double probability = (double) frequency / total;
+				entropy -= probability * Math.log(probability) / Math.log(2);
+			}
+		}
+		return entropy;
+	}
+
+	/**
+	 * To predict the length of the data segment if the image was Huffman encoded.
+	 *
+	 * @return the number of bytes or <code>-1</code> if less than two different
+	 *         byte values occur.
+	 * @throws ImageHandlingException when the tree could not be built.
+	 */
+	private long getPredictedHuffmanLength() throws ImageHandlingException {
+		long[] byteHistogram = statistics.getByteHistogram();
+		HuffmanTree tree = HuffmanTree.fromFrequencies(byteHistogram);
+		return tree == null ? -1 : (tree.getEncodedBitCount(byteHistogram) + 7) / 8;
+	}
+
+	/**
+	 * To get the analysis as one line of JSON. Invalid images only contain the
+	 * file and the error. The predicted ratios are the predicted length of the
+	 * data segment divided by its uncompressed length.
+	 *
+	 * @return the JSON object.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"file\":").append(Util.toJsonString(file.toString()));
+		if (error != null) {
+			return json.append(",\"error\":").append(Util.toJsonString(error)).append('}').toString();
+		}
+		long pixelBytes = (long) width * height * 3;
+		json.append(",\"format\":\"").append(format.getFileExtension()).append('"');
+		json.append(",\"compression\":\"").append(compressionFormat.name().toLowerCase()).append('"');
+		json.append(",\"width\":").append(width);
+		json.append(",\"height\":").append(height);
+		json.append(",\"dataLength\":").append(dataLength);
+		json.append(",\"millis\":").append(format("%.3f", nanos / 1e6));
+
+		// The channels are stored as blue, green, red in *.tga images and as green,
+		// blue, red in *.propra images
+		int[] positions = format == Format.TGA ? new int[] { 2, 1, 0 } : new int[] { 2, 0, 1 };
+		String[] channelNames = { "red", "green", "blue" };
+		json.append(",\"channels\":{");
+		for (int i = 0; i < 3; i++) {
+			long[] histogram = statistics.getChannelHistogram(positions[i]);
+			json.append(i == 0 ? "\"" : ",\"").append(channelNames[i]).append("\":");
+			appendHistogram(json, histogram);
+		}
+		json.append('}');
+		json.append(",\"bytes\":");
+		appendHistogram(json, statistics.getByteHistogram());
+		json.append(",\"distinctColors\":").append(statistics.getDistinctColors());
+
+		long scanlines = statistics.getScanlines();
+		long runs = statistics.getRuns();
+		json.append(",\"runs\":{\"total\":").append(runs);
+		json.append(",\"meanLength\":").append(format("%.3f", runs == 0 ? 0.0 : (double) width * scanlines / runs));
+		json.append(",\"longest\":").append(statistics.getLongestRun());
+		json.append(",\"repeatedPixels\":").append(statistics.getRepeatedPixels());
+		json.append(",\"minPerScanline\":").append(statistics.getMinRunsPerScanline());
+		json.append(",\"maxPerScanline\":").append(statistics.getMaxRunsPerScanline());
+		json.append(",\"meanPerScanline\":").append(format("%.3f", scanlines == 0 ? 0.0 : (double) runs / scanlines));
+		json.append('}');
+
+		long rleLength = statistics.getRleLength();
+		json.append(",\"predicted\":{\"uncompressed\":").append(pixelBytes);
+		json.append(",\"rle\":").append(rleLength);
+		json.append(",\"rleRatio\":").append(format("%.4f", pixelBytes == 0 ? 0.0 : (double) rleLength / pixelBytes));
+		if (huffmanLength != -1) {
+			json.append(",\"huffman\":").append(huffmanLength);
+			json.append(",\"huffmanRatio\":")
+					.append(format("%.4f", pixelBytes == 0 ? 0.0 : (double) huffmanLength / pixelBytes));
+		}
+		return json.append("}}").toString();
+	}
+
+	private static void appendHistogram(StringBuilder json, long[] histogram) {
+		json.append("{\"entropy\":").append(format("%.4f", getEntropy(histogram)));
+		json.append(",\"histogram\":[");
+		for (int value = 0; value < histogram.length; value++) {
+			json.append(value == 0 ? "" : ",").append(histogram[value]);
+		}
+		json.append("]}");
+	}
+
+	private static String format(String pattern, double value) {
+		return String.format(Locale.ROOT, pattern, value);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * To get the reason why the image could not be analyzed.
+	 *
+	 * @return the error or <code>null</code> if the image was analyzed.
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,212 @@
+package propra.imageconverter.analysis;
+
+import propra.imageconverter.codecs.rle.RLEEncodingKernel;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>PixelStatistics</code> collects statistics about the decoded pixels
+ * of an image: a histogram for each of the three bytes of a pixel, the runs of
+ * equal pixels in each scanline, the distinct colors and the length of the
+ * data segment if it was run-length encoded.
+ * <p>
+ * It is not thread-safe. Several threads each collect the statistics of
+ * different scanlines in their own <code>PixelStatistics</code> which are
+ * merged afterwards.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class PixelStatistics {
+
+	/**
+	 * The number of different colors of 24 bit pixels.
+	 */
+	private static final int COLOR_COUNT = 1 << 24;
+
+	private final int width;
+
+	/**
+	 * The frequency of each byte value for each byte position of a pixel.
+	 */
+	private final long[][] channelHistograms = new long[3][256];
+
+	/**
+	 * One bit for each color which occurred.
+	 */
+	private final long[] colors = new long[COLOR_COUNT / 64];
+
+	private long scanlines;
+	private long runs;
+	private long longestRun;
+	private long minRunsPerScanline = Long.MAX_VALUE;
+	private long maxRunsPerScanline;
+
+	/**
+	 * The number of pixels which are part of a run of at least two equal pixels.
+	 */
+	private long repeatedPixels;
+
+	/**
+	 * Produces the same packets as the run-length encoding of the image would. Only
+	 * their length is used.
+	 */
+	private final RLEEncodingKernel rleEncodingKernel;
+	private long rleLength;
+
+	/**
+	 * Creates a new <code>PixelStatistics</code>.
+	 *
+	 * @param width  the width of the image.
+	 * @param height the height of the image.
+	 */
+	PixelStatistics(int width, int height) {
+		this.width = width;
+		rleEncodingKernel = new RLEEncodingKernel(width, height, false);
+	}
+
+	/**
+	 * Adds complete scanlines to the statistics.
+	 *
+	 * @param pixels the buffer containing the scanlines.
+	 * @param length the number of bytes of the scanlines. It must be a multiple of
+	 *               the length of one scanline.
+	 * @throws ImageHandlingException when the scanlines could not be run-length
+	 *                                encoded.
+	 */
+	void addScanlines(byte[] pixels, int length) throws ImageHandlingException {
+		long[] histogram0 = channelHistograms[0];
+		long[] histogram1 = channelHistograms[1];
+		long[] histogram2 = channelHistograms[2];
+		int scanlineLength = width * 3;
+		for (int scanlineStart = 0; scanlineStart < length; scanlineStart += scanlineLength) {
+			long runsInScanline = 0;
+			long currentRun = 0;
+			int previousColor = -1;
+			for (int i = scanlineStart; i < scanlineStart + scanlineLength; i += 3) {
+				int byte0 = pixels[i] & 0xFF;
+				int byte1 = pixels[i + 1] & 0xFF;
+				int byte2 = pixels[i + 2] & 0xFF;
+				histogram0[byte0]++;
+				histogram1[byte1]++;
+				histogram2[byte2]++;
+				int color = byte0 << 16 | byte1 << 8 | byte2;
+				colors[color >>> 6] |= 1L << color;
+
+				if (color == previousColor) {
+					currentRun++;
+				} else {
+					endRun(currentRun);
+					runsInScanline++;
+					currentRun = 1;
+					previousColor = color;
+				}
+			}
+			endRun(currentRun);
+			scanlines++;
+			runs += runsInScanline;
+			minRunsPerScanline = Math.min(minRunsPerScanline, runsInScanline);
+			maxRunsPerScanline = Math.max(maxRunsPerScanline, runsInScanline);
+		}
+
+		rleEncodingKernel.transcode(pixels, length);
+		rleLength += rleEncodingKernel.getOutputLength();
+	}
+
+	private void endRun(long runLength) {
+		longestRun = Math.max(longestRun, runLength);
+		if (runLength > 1) {
+			repeatedPixels += runLength;
+		}
+	}
+
+	/**
+	 * Adds the statistics of other scanlines of the same image.
+	 *
+	 * @param other the statistics of the other scanlines.
+	 */
+	void merge(PixelStatistics other) {
+		for (int channel = 0; channel < 3; channel++) {
+			for (int value = 0; value < 256; value++) {
+				channelHistograms[channel][value] += other.channelHistograms[channel][value];
+			}
+		}
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] |= other.colors[i];
+		}
+		scanlines += other.scanlines;
+		runs += other.runs;
+		longestRun = Math.max(longestRun, other.longestRun);
+		minRunsPerScanline = Math.min(minRunsPerScanline, other.minRunsPerScanline);
+		maxRunsPerScanline = Math.max(maxRunsPerScanline, other.maxRunsPerScanline);
+		repeatedPixels += other.repeatedPixels;
+		rleLength += other.rleLength;
+	}
+
+	/**
+	 * To get the histogram of one byte position of the pixels.
+	 *
+	 * @param position the position of the byte within a pixel.
+	 * @return the frequency of each byte value.
+	 */
+	long[] getChannelHistogram(int position) {
+		return channelHistograms[position];
+	}
+
+	/**
+	 * To get the histogram of all bytes of the pixels regardless of their position.
+	 * These are the frequencies Huffman encoding builds its tree of.
+	 *
+	 * @return the frequency of each byte value.
+	 */
+	long[] getByteHistogram() {
+		long[] byteHistogram = new long[256];
+		for (long[] channelHistogram : channelHistograms) {
+			for (int value = 0; value < 256; value++) {
+				byteHistogram[value] += channelHistogram[value];
+			}
+		}
+		return byteHistogram;
+	}
+
+	long getDistinctColors() {
+		long distinctColors = 0;
+		for (long colorBits : colors) {
+			distinctColors += Long.bitCount(colorBits);
+		}
+		return distinctColors;
+	}
+
+	long getScanlines() {
+		return scanlines;
+	}
+
+	long getRuns() {
+		return runs;
+	}
+
+	long getLongestRun() {
+		return longestRun;
+	}
+
+	long getMinRunsPerScanline() {
+		return scanlines == 0 ? 0 : minRunsPerScanline;
+	}
+
+	long getMaxRunsPerScanline() {
+		return maxRunsPerScanline;
+	}
+
+	long getRepeatedPixels() {
+		return repeatedPixels;
+	}
+
+	/**
+	 * To get the length of the data segment if the scanlines were run-length
+	 * encoded.
+	 *
+	 * @return the number of bytes.
+	 */
+	long getRleLength() {
+		return rleLength;
+	}
+}
@@ -0,0 +1,75 @@
+package propra.imageconverter.api;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import propra.imageconverter.codecs.Decoder;
+import propra.imageconverter.codecs.Encoder;
+import propra.imageconverter.codecs.base.BaseDecoder;
+import propra.imageconverter.codecs.base.BaseEncoder;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+
+/**
+ * A <code>BaseStreamConversion</code> encodes or decodes data which is read
+ * from a channel using base-n coding. It does the same as the
+ * <code>BaseConversionController</code> but without using any files.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class BaseStreamConversion {
+
+	private ChannelInput input;
+	private DataSegmentWriter writer;
+	private ConverterOperationMode operationMode;
+	private String encodingAlphabet;
+
+	BaseStreamConversion(ReadableByteChannel inputChannel, WritableByteChannel outputChannel,
+			ConversionOptions options) {
+		input = new ChannelInput(inputChannel);
+		writer = DataSegmentWriter.withoutHeader(outputChannel);
+		operationMode = options.getOperationMode();
+		encodingAlphabet = options.getEncodingAlphabet();
+	}
+
+	/**
+	 * Executes the encoding/decoding.
+	 *
+	 * @throws ImageHandlingException when the input data is invalid or the output
+	 *                                data could not be written.
+	 */
+	void convert() throws ImageHandlingException {
+		Encoder baseEncoder = null;
+		Decoder baseDecoder = null;
+
+		if (operationMode == ConverterOperationMode.CODE_BASE32) {
+			baseEncoder = new BaseEncoder();
+		} else if (operationMode == ConverterOperationMode.CODE_BASEN) {
+			baseEncoder = new BaseEncoder(encodingAlphabet);
+			byte[] firstLine = (encodingAlphabet + "\n").getBytes(StandardCharsets.UTF_8);
+			writer.write(firstLine, 0, firstLine.length);
+		} else if (operationMode == ConverterOperationMode.DECODE_BASE32) {
+			baseDecoder = new BaseDecoder();
+		} else {
+			baseDecoder = new BaseDecoder(input.readLine());
+		}
+
+		byte[] chunk = new byte[ChannelInput.CHUNK_SIZE];
+		byte[] outputData;
+		int bytesRead;
+		while ((bytesRead = input.read(chunk, 0, chunk.length)) != -1) {
+			byte[] inputData = bytesRead == chunk.length ? chunk : Arrays.copyOf(chunk, bytesRead);
+			if (baseEncoder != null) {
+				outputData = baseEncoder.encode(inputData);
+			} else {
+				outputData = baseDecoder.decode(inputData);
+			}
+			writer.write(outputData, 0, outputData.length);
+		}
+		outputData = baseEncoder != null ? baseEncoder.flush() : baseDecoder.flush();
+		writer.write(outputData, 0, outputData.length);
+	}
+}
@@ -0,0 +1,112 @@
+package propra.imageconverter.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>ChannelInput</code> reads the data to be converted from a
+ * <code>ReadableByteChannel</code> in chunks.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class ChannelInput {
+
+	/**
+	 * The size of the chunks. It is the same as the one used when reading files so
+	 * that the decoders get the data in the same portions.
+	 */
+	static final int CHUNK_SIZE = 8 * 1024;
+
+	private ReadableByteChannel channel;
+
+	/**
+	 * A byte which was read too much while searching for the end of a line.
+	 */
+	private int pushedBackByte = -1;
+
+	ChannelInput(ReadableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Reads data until the given number of bytes was read or the end of the
+	 * channel was reached.
+	 *
+	 * @param buffer the buffer to read the data into.
+	 * @param offset the position in the buffer the data gets written to.
+	 * @param length the number of bytes to be read.
+	 * @return the number of bytes read or <code>-1</code> when the end of the
+	 *         channel was reached before reading any byte.
+	 * @throws ImageHandlingException when the channel could not be read.
+	 */
+	int read(byte[] buffer, int offset, int length) throws ImageHandlingException {
+		int bytesRead = 0;
+		if (pushedBackByte != -1 && length > 0) {
+			buffer[offset] = (byte) pushedBackByte;
+			pushedBackByte = -1;
+			bytesRead++;
+		}
+		ByteBuffer target = ByteBuffer.wrap(buffer, offset + bytesRead, length - bytesRead);
+		try {
+			while (target.hasRemaining()) {
+				int count = channel.read(target);
+				if (count == -1) {
+					break;
+				}
+				bytesRead += count;
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read input data: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		return bytesRead == 0 && length > 0 ? -1 : bytesRead;
+	}
+
+	/**
+	 * Reads exactly the given number of bytes.
+	 *
+	 * @param length the number of bytes.
+	 * @return the bytes read.
+	 * @throws ImageHandlingException when the channel ended before.
+	 */
+	byte[] readExactly(int length) throws ImageHandlingException {
+		byte[] data = new byte[length];
+		if (read(data, 0, length) != length) {
+			throw new ImageHandlingException("Source image corrupt. Header incomplete.",
+					ImageConverterErrorCode.INVALID_HEADERDATA);
+		}
+		return data;
+	}
+
+	/**
+	 * Reads the first line. The line break may be '\n' or '\r\n'.
+	 *
+	 * @return the line without the line break.
+	 * @throws ImageHandlingException when the channel could not be read.
+	 */
+	String readLine() throws ImageHandlingException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		byte[] nextByte = new byte[1];
+		while (read(nextByte, 0, 1) == 1) {
+			if (nextByte[0] == '\n') {
+				break;
+			}
+			if (nextByte[0] == '\r') {
+				// '\r' alone also ends the line
+				if (read(nextByte, 0, 1) == 1 && nextByte[0] != '\n') {
+					pushedBackByte = Byte.toUnsignedInt(nextByte[0]);
+				}
+				break;
+			}
+			line.write(nextByte[0]);
+		}
+		return line.toString(StandardCharsets.UTF_8);
+	}
+}
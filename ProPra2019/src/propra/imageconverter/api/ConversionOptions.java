@@ -0,0 +1,194 @@
+package propra.imageconverter.api;
+
+import propra.imageconverter.codecs.base.BaseEncoder;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * <code>ConversionOptions</code> describe what an
+ * <code>InMemoryConverter</code> should do with the given data: converting an
+ * image or base encoding/decoding arbitrary data. They are immutable and can be
+ * shared between threads.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class ConversionOptions {
+
+	private final ConverterOperationMode operationMode;
+	private final Format inputFormat;
+	private final Format outputFormat;
+	private final CompressionFormat outputCompressionFormat;
+	private final String encodingAlphabet;
+
+	/**
+	 * How many bytes of a *.propra data segment may be staged in memory when the
+	 * output channel is not seekable.
+	 */
+	private final int stagingMemoryLimit;
+
+	/**
+	 * Whether a staged data segment exceeding <code>stagingMemoryLimit</code> may
+	 * be moved into a temp-file.
+	 */
+	private final boolean spillingAllowed;
+
+	/**
+	 * Whether the output image gets decoded while it is being written and compared
+	 * with the input image.
+	 */
+	private final boolean roundTripVerified;
+
+	private ConversionOptions(ConverterOperationMode operationMode, Format inputFormat, Format outputFormat,
+			CompressionFormat outputCompressionFormat, String encodingAlphabet) {
+		this(operationMode, inputFormat, outputFormat, outputCompressionFormat, encodingAlphabet,
+				Integer.MAX_VALUE - 8, false, false);
+	}
+
+	private ConversionOptions(ConverterOperationMode operationMode, Format inputFormat, Format outputFormat,
+			CompressionFormat outputCompressionFormat, String encodingAlphabet, int stagingMemoryLimit,
+			boolean spillingAllowed, boolean roundTripVerified) {
+		this.operationMode = operationMode;
+		this.inputFormat = inputFormat;
+		this.outputFormat = outputFormat;
+		this.outputCompressionFormat = outputCompressionFormat;
+		this.encodingAlphabet = encodingAlphabet;
+		this.stagingMemoryLimit = stagingMemoryLimit;
+		this.spillingAllowed = spillingAllowed;
+		this.roundTripVerified = roundTripVerified;
+	}
+
+	/**
+	 * Creates options for converting an image.
+	 *
+	 * @param inputFormat             the format of the input image.
+	 * @param outputFormat            the format of the output image.
+	 * @param outputCompressionFormat the compression of the output image.
+	 *                                <code>AUTO</code> selects the compression
+	 *                                which produces the smallest image.
+	 * @return the options.
+	 * @throws ImageHandlingException when a format is missing or the compression
+	 *                                is not supported by the output format.
+	 */
+	public static ConversionOptions forImage(Format inputFormat, Format outputFormat,
+			CompressionFormat outputCompressionFormat) throws ImageHandlingException {
+		if (inputFormat == null || outputFormat == null || outputCompressionFormat == null) {
+			throw new ImageHandlingException("Input format, output format and compression must be set.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (outputCompressionFormat == CompressionFormat.HUFFMAN && outputFormat != Format.PROPRA) {
+			throw new ImageHandlingException(
+					"Huffman encoding currently only supported if target file is a *.propra file.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		return new ConversionOptions(ConverterOperationMode.CONVERT, inputFormat, outputFormat,
+				outputCompressionFormat, null);
+	}
+
+	/**
+	 * Creates options for base-32 encoding.
+	 *
+	 * @return the options.
+	 */
+	public static ConversionOptions forBase32Encoding() {
+		return new ConversionOptions(ConverterOperationMode.CODE_BASE32, null, null, null, null);
+	}
+
+	/**
+	 * Creates options for base-32 decoding.
+	 *
+	 * @return the options.
+	 */
+	public static ConversionOptions forBase32Decoding() {
+		return new ConversionOptions(ConverterOperationMode.DECODE_BASE32, null, null, null, null);
+	}
+
+	/**
+	 * Creates options for base-n encoding. The alphabet gets written into the
+	 * first line of the output like it is done for *.base-n files.
+	 *
+	 * @param encodingAlphabet the encoding alphabet.
+	 * @return the options.
+	 * @throws ImageHandlingException when the alphabet is invalid.
+	 */
+	public static ConversionOptions forBaseNEncoding(String encodingAlphabet) throws ImageHandlingException {
+		if (encodingAlphabet == null) {
+			throw new ImageHandlingException("Encoding alphabet necessary in order to perform base-n encoding.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		BaseEncoder.checkAlphabet(encodingAlphabet);
+		return new ConversionOptions(ConverterOperationMode.CODE_BASEN, null, null, null, encodingAlphabet);
+	}
+
+	/**
+	 * Creates options for base-n decoding. The alphabet is read from the first
+	 * line of the input.
+	 *
+	 * @return the options.
+	 */
+	public static ConversionOptions forBaseNDecoding() {
+		return new ConversionOptions(ConverterOperationMode.DECODE_BASEN, null, null, null, null);
+	}
+
+	/**
+	 * Creates a copy of these options which allows to move the staged data segment
+	 * of a *.propra output image into a temp-file once it gets larger than the
+	 * given limit. Without calling this method the data segment is always kept in
+	 * memory and the filesystem is never used.
+	 *
+	 * @param stagingMemoryLimit the number of bytes which may be kept in memory.
+	 * @return the new options.
+	 */
+	public ConversionOptions withSpilling(int stagingMemoryLimit) {
+		return new ConversionOptions(operationMode, inputFormat, outputFormat, outputCompressionFormat,
+				encodingAlphabet, stagingMemoryLimit, true, roundTripVerified);
+	}
+
+	/**
+	 * Creates a copy of these options which decodes the output image while it is
+	 * being written and compares its pixels with those of the input image. The
+	 * conversion fails if they differ. A data segment which is copied as it is
+	 * does not get verified.
+	 *
+	 * @return the new options.
+	 */
+	public ConversionOptions withRoundTripVerification() {
+		return new ConversionOptions(operationMode, inputFormat, outputFormat, outputCompressionFormat,
+				encodingAlphabet, stagingMemoryLimit, spillingAllowed, true);
+	}
+
+	public ConverterOperationMode getOperationMode() {
+		return operationMode;
+	}
+
+	public Format getInputFormat() {
+		return inputFormat;
+	}
+
+	public Format getOutputFormat() {
+		return outputFormat;
+	}
+
+	public CompressionFormat getOutputCompressionFormat() {
+		return outputCompressionFormat;
+	}
+
+	public String getEncodingAlphabet() {
+		return encodingAlphabet;
+	}
+
+	public int getStagingMemoryLimit() {
+		return stagingMemoryLimit;
+	}
+
+	public boolean isSpillingAllowed() {
+		return spillingAllowed;
+	}
+
+	public boolean isRoundTripVerified() {
+		return roundTripVerified;
+	}
+}
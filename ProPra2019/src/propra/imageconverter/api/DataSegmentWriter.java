@@ -0,0 +1,359 @@
+package propra.imageconverter.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.monitoring.ConversionStage;
+import propra.imageconverter.monitoring.StageTimes;
+import propra.imageconverter.util.ChecksumCalculator;
+import propra.imageconverter.util.DataListener;
+
+/**
+ * A <code>DataSegmentWriter</code> writes the header and the data segment of an
+ * output image into a <code>WritableByteChannel</code>.
+ * <p>
+ * The header of a *.propra image contains the length and the check sum of the
+ * data segment which are only known after the data segment was written. If the
+ * channel is seekable, a preliminary header gets written first and is replaced
+ * after the data segment was written. Otherwise the data segment gets staged
+ * and is written after the complete header. It is staged in memory up to a
+ * limit and, if allowed, in a temp-file beyond that limit.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class DataSegmentWriter {
+
+	private WritableByteChannel channel;
+	private Image outputImage;
+
+	/**
+	 * The check sum of the data segment. Only used for *.propra images.
+	 */
+	private ChecksumCalculator checksumCalculator;
+
+	/**
+	 * The buffered data segment in case the header can only be written after it.
+	 */
+	private byte[] bufferedData;
+	private int bufferedLength;
+
+	/**
+	 * How many bytes may be buffered in memory.
+	 */
+	private int stagingMemoryLimit;
+	private boolean spillingAllowed;
+
+	/**
+	 * The temp-file the buffered data segment was moved into after it exceeded
+	 * <code>stagingMemoryLimit</code>. It gets deleted when it is closed.
+	 */
+	private FileChannel spillChannel;
+	private long spilledBytes;
+
+	/**
+	 * The position of the header in a seekable channel.
+	 */
+	private long headerPosition;
+
+	private long dataSegmentLength;
+
+	/**
+	 * Where the time spent writing is recorded. May be <code>null</code>.
+	 */
+	private StageTimes stageTimes;
+
+	/**
+	 * Gets notified about each part of the data segment. May be
+	 * <code>null</code>.
+	 */
+	private DataListener dataListener;
+
+	/**
+	 * Creates a new <code>DataSegmentWriter</code>.
+	 *
+	 * @param channel     the channel to write the output image into.
+	 * @param outputImage the output image. Its dimensions must already be set.
+	 * @param options     the options defining how the data segment may be
+	 *                    staged.
+	 * @throws ImageHandlingException when the header could not be written.
+	 */
+	DataSegmentWriter(WritableByteChannel channel, Image outputImage, ConversionOptions options)
+			throws ImageHandlingException {
+		this.channel = channel;
+		this.outputImage = outputImage;
+		stagingMemoryLimit = options.getStagingMemoryLimit();
+		spillingAllowed = options.isSpillingAllowed();
+		if (outputImage instanceof ImagePropra) {
+			checksumCalculator = new ChecksumCalculator();
+			if (isSeekable(channel)) {
+				writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+			} else {
+				bufferedData = new byte[Math.min(ChannelInput.CHUNK_SIZE, stagingMemoryLimit)];
+			}
+		} else {
+			writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+		}
+	}
+
+	/**
+	 * Finds out whether the header can be replaced later on. A
+	 * <code>FileChannel</code> of a pipe is a <code>SeekableByteChannel</code> as
+	 * well but fails when asked for its position.
+	 *
+	 * @param channel the channel to write the output image into.
+	 * @return <code>true</code> if the channel can seek back to the header.
+	 */
+	private boolean isSeekable(WritableByteChannel channel) {
+		if (!(channel instanceof SeekableByteChannel)) {
+			return false;
+		}
+		try {
+			headerPosition = ((SeekableByteChannel) channel).position();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the header of a *.propra image whose data segment is already known.
+	 * The data segment can be written directly then.
+	 *
+	 * @param channel     the channel to write the output image into.
+	 * @param outputImage the output image whose header is complete.
+	 * @return the new <code>DataSegmentWriter</code>.
+	 * @throws ImageHandlingException when the header could not be written.
+	 */
+	static DataSegmentWriter withCompleteHeader(WritableByteChannel channel, ImagePropra outputImage)
+			throws ImageHandlingException {
+		DataSegmentWriter writer = new DataSegmentWriter(channel);
+		writer.outputImage = outputImage;
+		writer.writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+		return writer;
+	}
+
+	/**
+	 * Creates a <code>DataSegmentWriter</code> which writes data without any
+	 * header, i.e. for base encoding/decoding.
+	 *
+	 * @param channel the channel to write the data into.
+	 * @return the new <code>DataSegmentWriter</code>.
+	 */
+	static DataSegmentWriter withoutHeader(WritableByteChannel channel) {
+		return new DataSegmentWriter(channel);
+	}
+
+	private DataSegmentWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * To set where the time spent writing, staging in a temp-file and calculating
+	 * the check sum gets recorded.
+	 *
+	 * @param stageTimes the stage times.
+	 */
+	void setStageTimes(StageTimes stageTimes) {
+		this.stageTimes = stageTimes;
+	}
+
+	/**
+	 * To set the listener which gets passed each part of the data segment.
+	 *
+	 * @param dataListener the listener or <code>null</code> to remove it.
+	 */
+	void setDataListener(DataListener dataListener) {
+		this.dataListener = dataListener;
+	}
+
+	/**
+	 * To get the number of bytes of the output image written so far including its
+	 * header.
+	 *
+	 * @return the number of bytes.
+	 */
+	long getOutputLength() {
+		return (outputImage == null ? 0 : outputImage.getHeaderLength()) + dataSegmentLength;
+	}
+
+	/**
+	 * To get the number of bytes of the data segment written into a temp-file. They
+	 * are read again when the output image gets completed.
+	 *
+	 * @return the number of bytes.
+	 */
+	long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * Writes the next part of the data segment.
+	 *
+	 * @param data   the buffer containing the data.
+	 * @param offset the position of the first byte to be written.
+	 * @param length the number of bytes to be written.
+	 * @throws ImageHandlingException when the data could not be written.
+	 */
+	void write(byte[] data, int offset, int length) throws ImageHandlingException {
+		if (data == null || length == 0) {
+			return;
+		}
+		dataSegmentLength += length;
+		long time = System.nanoTime();
+		if (checksumCalculator != null) {
+			checksumCalculator.update(data, offset, length);
+			time = lap(ConversionStage.CHECKSUM, time);
+		}
+		if (dataListener != null) {
+			dataListener.dataWritten(data, offset, length);
+		}
+		if (spillChannel != null) {
+			writeFully(spillChannel, data, offset, length);
+			spilledBytes += length;
+			lap(ConversionStage.TEMP_SPILL, time);
+		} else if (bufferedData != null) {
+			if (bufferedData.length - bufferedLength < length) {
+				long capacity = Math.max((long) bufferedData.length * 2, (long) bufferedLength + length);
+				if ((long) bufferedLength + length > stagingMemoryLimit) {
+					if (!spillingAllowed) {
+						throw new ImageHandlingException(
+								"Output image too large to be buffered. Use a seekable output channel.",
+								ImageConverterErrorCode.IO_ERROR);
+					}
+					spill();
+					writeFully(spillChannel, data, offset, length);
+					spilledBytes += length;
+					lap(ConversionStage.TEMP_SPILL, time);
+					return;
+				}
+				byte[] newBufferedData = new byte[(int) Math.min(capacity, stagingMemoryLimit)];
+				System.arraycopy(bufferedData, 0, newBufferedData, 0, bufferedLength);
+				bufferedData = newBufferedData;
+			}
+			System.arraycopy(data, offset, bufferedData, bufferedLength, length);
+			bufferedLength += length;
+			lap(ConversionStage.TEMP_SPILL, time);
+		} else {
+			writeToChannel(data, offset, length);
+			lap(ConversionStage.WRITE, time);
+		}
+	}
+
+	private long lap(ConversionStage stage, long startNanos) {
+		return stageTimes == null ? startNanos : stageTimes.lap(stage, startNanos);
+	}
+
+	/**
+	 * Moves the data buffered in memory into a temp-file.
+	 *
+	 * @throws ImageHandlingException when the temp-file could not be written.
+	 */
+	private void spill() throws ImageHandlingException {
+		try {
+			spillChannel = FileChannel.open(Files.createTempFile("propra-", ".stage"), StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create temp-file: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		writeFully(spillChannel, bufferedData, 0, bufferedLength);
+		spilledBytes += bufferedLength;
+		bufferedData = null;
+		bufferedLength = 0;
+	}
+
+	/**
+	 * Completes the output image. For *.propra images the length and the check sum
+	 * of the data segment get written into the header.
+	 *
+	 * @throws ImageHandlingException when the data could not be written.
+	 */
+	void finish() throws ImageHandlingException {
+		if (checksumCalculator == null) {
+			return;
+		}
+		((ImagePropra) outputImage).setDataSegmentDescription(dataSegmentLength, checksumCalculator.getCheckSum());
+		long time = System.nanoTime();
+		try {
+			writeHeaderAndStagedData();
+		} finally {
+			lap(ConversionStage.WRITE, time);
+		}
+	}
+
+	private void writeHeaderAndStagedData() throws ImageHandlingException {
+		if (spillChannel != null) {
+			writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+			try {
+				long position = 0;
+				long size = spillChannel.size();
+				while (position < size) {
+					position += spillChannel.transferTo(position, size - position, channel);
+				}
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write output data: " + e.getMessage(),
+						ImageConverterErrorCode.IO_ERROR);
+			}
+			close();
+			return;
+		}
+		if (bufferedData != null) {
+			writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+			writeToChannel(bufferedData, 0, bufferedLength);
+			return;
+		}
+
+		SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+		try {
+			long endPosition = seekableChannel.position();
+			seekableChannel.position(headerPosition);
+			writeToChannel(outputImage.getHeader(), 0, outputImage.getHeaderLength());
+			seekableChannel.position(endPosition);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write output data: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Releases the temp-file of a staged data segment. Must be called if the
+	 * conversion failed before <code>finish()</code>.
+	 */
+	void close() {
+		if (spillChannel != null) {
+			try {
+				spillChannel.close();
+			} catch (IOException e) {
+				// The temp-file gets removed by the system eventually
+			}
+			spillChannel = null;
+		}
+	}
+
+	private void writeToChannel(byte[] data, int offset, int length) throws ImageHandlingException {
+		writeFully(channel, data, offset, length);
+	}
+
+	private static void writeFully(WritableByteChannel target, byte[] data, int offset, int length)
+			throws ImageHandlingException {
+		ByteBuffer source = ByteBuffer.wrap(data, offset, length);
+		try {
+			while (source.hasRemaining()) {
+				target.write(source);
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write output data: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+}
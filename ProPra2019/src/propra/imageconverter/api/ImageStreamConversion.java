@@ -0,0 +1,696 @@
+package propra.imageconverter.api;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import propra.imageconverter.codecs.PixelSwapKernel;
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.huffman.HuffmanEncoder;
+import propra.imageconverter.codecs.huffman.HuffmanTree;
+import propra.imageconverter.codecs.huffman.HuffmanTreeCache;
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.codecs.rle.RLEEncodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.monitoring.ConversionEvent;
+import propra.imageconverter.monitoring.ConversionMetrics;
+import propra.imageconverter.monitoring.ConversionReport;
+import propra.imageconverter.monitoring.ConversionStage;
+import propra.imageconverter.monitoring.StageTimes;
+import propra.imageconverter.util.ChecksumCalculator;
+import propra.imageconverter.util.DataListener;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+import propra.imageconverter.verification.RoundTripVerification;
+
+/**
+ * An <code>ImageStreamConversion</code> converts one image which is read from
+ * a channel and written into another channel without using any files. It
+ * follows the same steps as the <code>FormatConversionController</code>:
+ * <ul>
+ * <li>Data segments which are already in the desired form are copied.</li>
+ * <li>Conversions without Huffman encoding run in one pass using a
+ * <code>TranscodingKernel</code>.</li>
+ * <li>For Huffman encoding and 'auto' compression the pixels are decoded into
+ * memory once instead of into a temp-file and are then encoded.</li>
+ * </ul>
+ * The check sum and the length of a *.propra input image can only be checked
+ * after its data segment was read. In case of an error the output must be
+ * discarded.
+ * <p>
+ * Each conversion is recorded in the default <code>ConversionMetrics</code>
+ * and in a <code>ConversionReport</code> if one was given.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class ImageStreamConversion {
+
+	private ChannelInput input;
+	private WritableByteChannel outputChannel;
+	private Format inputFormat;
+	private Format outputFormat;
+	private CompressionFormat outputCompressionFormat;
+	private CompressionFormat requestedCompressionFormat;
+	private ConversionOptions options;
+
+	/**
+	 * Where the conversion gets described. May be <code>null</code>.
+	 */
+	private ConversionReport report;
+
+	/**
+	 * The lengths of the data segment 'auto' compared.
+	 */
+	private Map<CompressionFormat, Long> autoCandidateLengths;
+
+	/**
+	 * The writer of the output image. It is created once the header of the input
+	 * image was read.
+	 */
+	private DataSegmentWriter writer;
+
+	private Image inputImage;
+	private CompressionFormat inputCompressionFormat;
+	private int width;
+	private int height;
+
+	/**
+	 * The check sum of the data segment of a *.propra input image.
+	 */
+	private ChecksumCalculator inputChecksumCalculator;
+	private long inputDataSegmentLength;
+
+	private byte[] chunk;
+
+	/**
+	 * Decodes the input and the output image once more if the round trip should be
+	 * verified, <code>null</code> otherwise.
+	 */
+	private RoundTripVerification roundTripVerification;
+	private DataListener inputVerification;
+
+	private final StageTimes stageTimes = new StageTimes();
+
+	ImageStreamConversion(ReadableByteChannel inputChannel, WritableByteChannel outputChannel,
+			ConversionOptions options, ConversionReport report) {
+		input = new ChannelInput(inputChannel);
+		this.outputChannel = outputChannel;
+		inputFormat = options.getInputFormat();
+		outputFormat = options.getOutputFormat();
+		outputCompressionFormat = options.getOutputCompressionFormat();
+		requestedCompressionFormat = outputCompressionFormat;
+		this.options = options;
+		this.report = report;
+		chunk = new byte[ChannelInput.CHUNK_SIZE];
+	}
+
+	/**
+	 * Executes the conversion.
+	 *
+	 * @throws ImageHandlingException when the input image is invalid or the output
+	 *                                image could not be written.
+	 */
+	void convert() throws ImageHandlingException {
+		ConversionMetrics metrics = ConversionMetrics.getDefault();
+		metrics.conversionStarted();
+		int concurrentConversions = metrics.getInFlightConversions();
+		ConversionEvent event = new ConversionEvent();
+		event.begin();
+		long startNanos = System.nanoTime();
+		try {
+			readInputImage();
+			boolean pixelsNeeded = outputCompressionFormat == CompressionFormat.AUTO
+					|| outputCompressionFormat == CompressionFormat.HUFFMAN;
+			if (options.isRoundTripVerified() && (pixelsNeeded || !dataSegmentCanBeCopied())) {
+				// A copied data segment does not need to be verified
+				roundTripVerification = new RoundTripVerification(width, height, inputFormat);
+				inputVerification = roundTripVerification.verifyInput(inputCompressionFormat);
+			}
+
+			if (pixelsNeeded) {
+				byte[] pixels = decodePixels();
+				if (outputCompressionFormat == CompressionFormat.AUTO) {
+					long time = System.nanoTime();
+					outputCompressionFormat = findBestCompressionMode(pixels);
+					stageTimes.lap(ConversionStage.ENCODE, time);
+					metrics.autoCompressionSelected(outputCompressionFormat);
+				}
+				writer = createWriter(new DataSegmentWriter(outputChannel, createOutputImage(), options));
+				long time = System.nanoTime();
+				long ioNanos = getIoNanos();
+				encodePixels(pixels, writer);
+				recordProcessing(ConversionStage.ENCODE, time, ioNanos);
+				finishRoundTripVerification();
+				writer.finish();
+			} else if (dataSegmentCanBeCopied()) {
+				copyDataSegment();
+			} else {
+				writer = createWriter(new DataSegmentWriter(outputChannel, createOutputImage(), options));
+				long time = System.nanoTime();
+				long ioNanos = getIoNanos();
+				transcodeDataSegment(writer);
+				recordProcessing(getKernelStage(), time, ioNanos);
+				finishRoundTripVerification();
+				writer.finish();
+			}
+		} catch (ImageHandlingException e) {
+			abortRoundTripVerification();
+			metrics.conversionFailed(e.getErrorCode());
+			commitEvent(event, e.getErrorCode());
+			fillReport(System.nanoTime() - startNanos, concurrentConversions);
+			if (report != null) {
+				report.setError(e.getErrorCode(), e.getMessage());
+			}
+			throw e;
+		} catch (RuntimeException e) {
+			abortRoundTripVerification();
+			metrics.conversionFailed(ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode());
+			commitEvent(event, ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode());
+			fillReport(System.nanoTime() - startNanos, concurrentConversions);
+			if (report != null) {
+				report.setError(ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode(), e.toString());
+			}
+			throw e;
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+
+		long durationNanos = System.nanoTime() - startNanos;
+		metrics.conversionCompleted(ConversionMetrics.describe(inputFormat, inputCompressionFormat),
+				inputImage.getHeaderLength() + inputDataSegmentLength, durationNanos, stageTimes);
+		metrics.outputWritten(ConversionMetrics.describe(outputFormat, outputCompressionFormat),
+				writer.getOutputLength());
+		commitEvent(event, 0);
+		fillReport(durationNanos, concurrentConversions);
+	}
+
+	/**
+	 * Describes the conversion in the report if one was given. Data written into
+	 * a temp-file by the <code>DataSegmentWriter</code> is read once more.
+	 *
+	 * @param durationNanos         the duration of the conversion.
+	 * @param concurrentConversions the number of conversions running when this
+	 *                              one started.
+	 */
+	private void fillReport(long durationNanos, int concurrentConversions) {
+		if (report == null) {
+			return;
+		}
+		long inputBytes = (inputImage == null ? 0 : inputImage.getHeaderLength()) + inputDataSegmentLength;
+		report.setInput(inputFormat, inputCompressionFormat, inputBytes, width, height);
+		long outputBytes = writer == null ? 0 : writer.getOutputLength();
+		long spilledBytes = writer == null ? 0 : writer.getSpilledBytes();
+		report.addOutput(report.getOutput(), outputFormat, requestedCompressionFormat,
+				outputCompressionFormat == CompressionFormat.AUTO ? null : outputCompressionFormat, outputBytes,
+				autoCandidateLengths);
+		report.setTimes(durationNanos, stageTimes);
+		report.setBytes(inputBytes + spilledBytes, outputBytes + spilledBytes, spilledBytes);
+		report.setThreads(1, concurrentConversions);
+	}
+
+	/**
+	 * Commits the Java Flight Recorder event of this conversion if it took longer
+	 * than its threshold.
+	 *
+	 * @param event     the event.
+	 * @param errorCode the error code if the conversion failed or <code>0</code>.
+	 */
+	private void commitEvent(ConversionEvent event, int errorCode) {
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		if (inputImage == null) {
+			event.setInput(null, inputFormat, null, 0, 0, inputDataSegmentLength);
+		} else {
+			event.setInput(null, inputFormat, inputCompressionFormat, width, height,
+					inputImage.getHeaderLength() + inputDataSegmentLength);
+		}
+		event.setOutput(null, outputFormat, outputCompressionFormat, writer == null ? 0 : writer.getOutputLength());
+		event.setStageTimes(stageTimes);
+		if (errorCode != 0) {
+			event.setErrorCode(errorCode);
+		}
+		event.commit();
+	}
+
+	/**
+	 * To get the time the conversion spent in each stage.
+	 *
+	 * @return the stage times.
+	 */
+	StageTimes getStageTimes() {
+		return stageTimes;
+	}
+
+	private DataSegmentWriter createWriter(DataSegmentWriter writer) {
+		writer.setStageTimes(stageTimes);
+		if (roundTripVerification != null) {
+			writer.setDataListener(
+					roundTripVerification.verifyOutput("output", outputFormat, outputCompressionFormat));
+		}
+		return writer;
+	}
+
+	/**
+	 * To get the time spent reading, writing and calculating check sums so far.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	private long getIoNanos() {
+		return stageTimes.getNanos(ConversionStage.READ) + stageTimes.getNanos(ConversionStage.CHECKSUM)
+				+ stageTimes.getNanos(ConversionStage.WRITE) + stageTimes.getNanos(ConversionStage.TEMP_SPILL);
+	}
+
+	/**
+	 * Records the time spent processing pixels since <code>startNanos</code>. Input
+	 * and output are interleaved with the processing and were already recorded
+	 * separately, so their time is not counted again.
+	 *
+	 * @param stage        the processing stage.
+	 * @param startNanos   when the processing started.
+	 * @param startIoNanos the result of <code>getIoNanos()</code> when the
+	 *                     processing started.
+	 */
+	private void recordProcessing(ConversionStage stage, long startNanos, long startIoNanos) {
+		stageTimes.add(stage, System.nanoTime() - startNanos - (getIoNanos() - startIoNanos));
+	}
+
+	/**
+	 * To get the stage the time of transcoding the data segment in one pass is
+	 * recorded in. It is the stage doing the most work.
+	 *
+	 * @return the stage.
+	 */
+	private ConversionStage getKernelStage() {
+		if (outputCompressionFormat != CompressionFormat.UNCOMPRESSED) {
+			return ConversionStage.ENCODE;
+		} else if (inputCompressionFormat != CompressionFormat.UNCOMPRESSED) {
+			return ConversionStage.DECODE;
+		}
+		return ConversionStage.SWIZZLE;
+	}
+
+	/**
+	 * Waits until the output image was decoded completely and compares it with the
+	 * input image. This happens before a staged data segment gets written.
+	 *
+	 * @throws ImageHandlingException when the output image does not decode back to
+	 *                                the pixels of the input image.
+	 */
+	private void finishRoundTripVerification() throws ImageHandlingException {
+		if (roundTripVerification != null) {
+			roundTripVerification.finish();
+		}
+	}
+
+	private void abortRoundTripVerification() {
+		if (roundTripVerification != null) {
+			roundTripVerification.abort();
+		}
+	}
+
+	private void readInputImage() throws ImageHandlingException {
+		long time = System.nanoTime();
+		try {
+			createInputImage();
+		} finally {
+			stageTimes.lap(ConversionStage.HEADER_PARSE, time);
+		}
+	}
+
+	private void createInputImage() throws ImageHandlingException {
+		if (inputFormat == Format.TGA) {
+			inputImage = new ImageTGA(input.readExactly(ImageTGA.HEADER_LENGTH));
+		} else {
+			inputImage = new ImagePropra(input.readExactly(ImagePropra.HEADER_LENGTH));
+			inputChecksumCalculator = new ChecksumCalculator();
+		}
+		inputCompressionFormat = inputImage.getCompressionMode();
+		width = inputImage.getWidth();
+		height = inputImage.getHeight();
+	}
+
+	private Image createOutputImage() throws ImageHandlingException {
+		Image outputImage;
+		if (outputFormat == Format.TGA) {
+			outputImage = new ImageTGA(outputCompressionFormat);
+		} else {
+			outputImage = new ImagePropra(outputCompressionFormat);
+		}
+		outputImage.setDimensions(width, height);
+		return outputImage;
+	}
+
+	/**
+	 * Reads the next chunk of the input image's data segment.
+	 *
+	 * @return the number of bytes read or <code>-1</code> at the end of the data
+	 *         segment.
+	 * @throws ImageHandlingException when the input could not be read.
+	 */
+	private int readChunk() throws ImageHandlingException {
+		long time = System.nanoTime();
+		int bytesRead = input.read(chunk, 0, chunk.length);
+		time = stageTimes.lap(ConversionStage.READ, time);
+		if (bytesRead > 0) {
+			if (inputVerification != null) {
+				inputVerification.dataWritten(chunk, 0, bytesRead);
+			}
+			inputDataSegmentLength += bytesRead;
+			if (inputChecksumCalculator != null) {
+				inputChecksumCalculator.update(chunk, 0, bytesRead);
+				stageTimes.lap(ConversionStage.CHECKSUM, time);
+			}
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Checks the length and the check sum of a *.propra input image after its data
+	 * segment was read completely.
+	 *
+	 * @throws ImageHandlingException when the data segment does not fit to the
+	 *                                header.
+	 */
+	private void checkInputDataSegment() throws ImageHandlingException {
+		// Data which was not read yet still belongs to the data segment
+		while (readChunk() != -1) {
+			// Nothing to do with the data
+		}
+		if (inputCompressionFormat == CompressionFormat.UNCOMPRESSED
+				&& inputDataSegmentLength < inputImage.getUncompressedImageDataLength()) {
+			throw new ImageHandlingException(
+					"Source file corrupt. Image data length does not fit to header information.",
+					ImageConverterErrorCode.INVALID_HEADERDATA);
+		}
+		if (inputChecksumCalculator == null) {
+			return;
+		}
+		ImagePropra inputPropra = (ImagePropra) inputImage;
+		if (inputDataSegmentLength != inputPropra.getDataSegmentLengthFromHeader()) {
+			throw new ImageHandlingException("Source file corrupt. Invalid image data length information in header.",
+					ImageConverterErrorCode.INVALID_HEADERDATA);
+		}
+		if (!Arrays.equals(inputChecksumCalculator.getCheckSum(), inputPropra.getCheckSum())) {
+			throw new ImageHandlingException("Source file corrupt. Invalid check sum.",
+					ImageConverterErrorCode.INVALID_CHECKSUM);
+		}
+	}
+
+	/**
+	 * Checks whether the data segment of the input image can be copied as it is.
+	 * Like in the <code>FormatConversionController</code> this is only the case
+	 * for uncompressed data segments and those protected by the check sum of a
+	 * *.propra image. Compressed *.tga data segments are transcoded so that
+	 * broken packets are detected.
+	 *
+	 * @return <code>true</code> when the data segment can be copied.
+	 */
+	private boolean dataSegmentCanBeCopied() {
+		return inputFormat == outputFormat && inputCompressionFormat == outputCompressionFormat
+				&& (inputCompressionFormat == CompressionFormat.UNCOMPRESSED || inputFormat == Format.PROPRA);
+	}
+
+	/**
+	 * Copies the data segment which is already in the desired form. The header of
+	 * a *.propra output image is the same as the one of the input image then.
+	 *
+	 * @throws ImageHandlingException when the input image is invalid.
+	 */
+	private void copyDataSegment() throws ImageHandlingException {
+		if (inputFormat == Format.PROPRA) {
+			ImagePropra outputImage = (ImagePropra) createOutputImage();
+			outputImage.setDataSegmentDescription(((ImagePropra) inputImage).getDataSegmentLengthFromHeader(),
+					((ImagePropra) inputImage).getCheckSum());
+			writer = createWriter(DataSegmentWriter.withCompleteHeader(outputChannel, outputImage));
+		} else {
+			writer = createWriter(new DataSegmentWriter(outputChannel, createOutputImage(), options));
+		}
+
+		// An uncompressed data segment only consists of the pixels of the image
+		long remainingBytes = inputCompressionFormat == CompressionFormat.UNCOMPRESSED
+				? inputImage.getUncompressedImageDataLength()
+				: Long.MAX_VALUE;
+		int bytesRead;
+		while (remainingBytes > 0 && (bytesRead = readChunk()) != -1) {
+			int count = (int) Math.min(bytesRead, remainingBytes);
+			writer.write(chunk, 0, count);
+			remainingBytes -= count;
+		}
+		checkInputDataSegment();
+		writer.finish();
+	}
+
+	/**
+	 * Converts the data segment in one pass without Huffman encoding.
+	 *
+	 * @param writer the writer of the output image.
+	 * @throws ImageHandlingException when the input image is invalid.
+	 */
+	private void transcodeDataSegment(DataSegmentWriter writer) throws ImageHandlingException {
+		TranscodingKernel kernel = TranscodingKernel.select(inputFormat, inputCompressionFormat, outputFormat,
+				outputCompressionFormat, width, height);
+		if (kernel != null) {
+			int bytesRead;
+			while ((bytesRead = readChunk()) != -1) {
+				kernel.transcode(chunk, bytesRead);
+				writer.write(kernel.getOutputBuffer(), 0, kernel.getOutputLength());
+			}
+			kernel.flush();
+		} else {
+			// Huffman encoded input image: The pixels are decoded and encoded again
+			TranscodingKernel encodingKernel = null;
+			if (outputCompressionFormat == CompressionFormat.RLE) {
+				encodingKernel = new RLEEncodingKernel(width, height, inputFormat != outputFormat);
+			} else if (inputFormat != outputFormat) {
+				encodingKernel = new PixelSwapKernel(width, height);
+			}
+			long pixelBytes = inputImage.getUncompressedImageDataLength();
+			HuffmanDecoder huffmanDecoder = new HuffmanDecoder(pixelBytes);
+			long decodedBytes = 0;
+			int bytesRead;
+			while ((bytesRead = readChunk()) != -1) {
+				byte[] pixels = huffmanDecoder.decode(Arrays.copyOf(chunk, bytesRead));
+				if (pixels == null) {
+					continue;
+				}
+				decodedBytes += pixels.length;
+				if (encodingKernel != null) {
+					encodingKernel.transcode(pixels, pixels.length);
+					writer.write(encodingKernel.getOutputBuffer(), 0, encodingKernel.getOutputLength());
+				} else {
+					writer.write(pixels, 0, pixels.length);
+				}
+			}
+			if (decodedBytes < pixelBytes) {
+				throw new ImageHandlingException(
+						"Image data segment corrupt. Missing number of bytes: " + (pixelBytes - decodedBytes),
+						ImageConverterErrorCode.INVALID_DATASEGMENT);
+			}
+			if (encodingKernel != null) {
+				encodingKernel.flush();
+			}
+		}
+		checkInputDataSegment();
+	}
+
+	/**
+	 * Decodes the complete data segment into memory. The pixels are already in the
+	 * byte order of the output format.
+	 *
+	 * @return the pixels.
+	 * @throws ImageHandlingException when the input image is invalid or too large
+	 *                                to be held in memory.
+	 */
+	private byte[] decodePixels() throws ImageHandlingException {
+		long pixelBytes = inputImage.getUncompressedImageDataLength();
+		if (pixelBytes > Integer.MAX_VALUE - 8) {
+			// Files larger than this are Huffman encoded by the FormatConversionController
+			// via a temp-file instead
+			throw new ImageHandlingException(
+					"Image too large to be Huffman encoded in memory. Convert it from a file instead.",
+					ImageConverterErrorCode.INVALID_HEADERDATA);
+		}
+		long time = System.nanoTime();
+		long ioNanos = getIoNanos();
+		byte[] pixels = new byte[(int) pixelBytes];
+		int pixelCount = 0;
+		boolean swapPixelBytes = inputFormat != outputFormat;
+
+		TranscodingKernel kernel = null;
+		HuffmanDecoder huffmanDecoder = null;
+		if (inputCompressionFormat == CompressionFormat.RLE) {
+			kernel = new RLEDecodingKernel(width, height, swapPixelBytes);
+		} else {
+			if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+				huffmanDecoder = new HuffmanDecoder(pixelBytes);
+			}
+			if (swapPixelBytes) {
+				kernel = new PixelSwapKernel(width, height);
+			}
+		}
+
+		int bytesRead;
+		while (pixelCount < pixels.length && (bytesRead = readChunk()) != -1) {
+			byte[] data = chunk;
+			int length = bytesRead;
+			if (huffmanDecoder != null) {
+				data = huffmanDecoder.decode(Arrays.copyOf(chunk, bytesRead));
+				if (data == null) {
+					continue;
+				}
+				length = data.length;
+			}
+			if (kernel != null) {
+				kernel.transcode(data, length);
+				data = kernel.getOutputBuffer();
+				length = kernel.getOutputLength();
+			}
+			length = Math.min(length, pixels.length - pixelCount);
+			System.arraycopy(data, 0, pixels, pixelCount, length);
+			pixelCount += length;
+		}
+		checkInputDataSegment();
+		if (pixelCount < pixels.length) {
+			throw new ImageHandlingException(
+					"Image data segment corrupt. Missing number of bytes: " + (pixels.length - pixelCount),
+					ImageConverterErrorCode.INVALID_DATASEGMENT);
+		}
+		recordProcessing(ConversionStage.DECODE, time, ioNanos);
+		return pixels;
+	}
+
+	/**
+	 * Finds the compression which produces the smallest output image. The same
+	 * rules as in the <code>FormatConversionController</code> apply.
+	 *
+	 * @param pixels the pixels of the image.
+	 * @return the best compression.
+	 * @throws ImageHandlingException when an error occurred during encoding.
+	 */
+	private CompressionFormat findBestCompressionMode(byte[] pixels) throws ImageHandlingException {
+		long uncompressedLength = pixels.length;
+
+		long rleCompressedLength = 0;
+		RLEEncodingKernel rleEncodingKernel = new RLEEncodingKernel(width, height, false);
+		for (int offset = 0; offset < pixels.length; offset += ChannelInput.CHUNK_SIZE) {
+			int length = Math.min(ChannelInput.CHUNK_SIZE, pixels.length - offset);
+			rleEncodingKernel.transcode(Arrays.copyOfRange(pixels, offset, offset + length), length);
+			rleCompressedLength += rleEncodingKernel.getOutputLength();
+		}
+
+		long huffmanCompressedLength = Long.MAX_VALUE;
+		if (outputFormat == Format.PROPRA) {
+			huffmanCompressedLength = new HuffmanLengthCounter().count(pixels);
+		}
+
+		autoCandidateLengths = new LinkedHashMap<CompressionFormat, Long>();
+		autoCandidateLengths.put(CompressionFormat.UNCOMPRESSED, uncompressedLength);
+		autoCandidateLengths.put(CompressionFormat.RLE, rleCompressedLength);
+		if (huffmanCompressedLength != Long.MAX_VALUE) {
+			autoCandidateLengths.put(CompressionFormat.HUFFMAN, huffmanCompressedLength);
+		}
+
+		if ((uncompressedLength < rleCompressedLength) & (uncompressedLength < huffmanCompressedLength)) {
+			return CompressionFormat.UNCOMPRESSED;
+		} else if ((rleCompressedLength < uncompressedLength) & (rleCompressedLength < huffmanCompressedLength)) {
+			return CompressionFormat.RLE;
+		} else if ((huffmanCompressedLength < uncompressedLength)
+				& (huffmanCompressedLength < rleCompressedLength)) {
+			return CompressionFormat.HUFFMAN;
+		}
+		return CompressionFormat.UNCOMPRESSED;
+	}
+
+	/**
+	 * Encodes the decoded pixels using the output compression.
+	 *
+	 * @param pixels the pixels.
+	 * @param writer the writer of the output image.
+	 * @throws ImageHandlingException when an error occurred during encoding.
+	 */
+	private void encodePixels(byte[] pixels, DataSegmentWriter writer) throws ImageHandlingException {
+		if (outputCompressionFormat == CompressionFormat.UNCOMPRESSED) {
+			writer.write(pixels, 0, pixels.length);
+		} else if (outputCompressionFormat == CompressionFormat.RLE) {
+			RLEEncodingKernel rleEncodingKernel = new RLEEncodingKernel(width, height, false);
+			rleEncodingKernel.transcode(pixels, pixels.length);
+			writer.write(rleEncodingKernel.getOutputBuffer(), 0, rleEncodingKernel.getOutputLength());
+			rleEncodingKernel.flush();
+		} else {
+			HuffmanEncoder huffmanEncoder = createReusedTreeEncoder(pixels);
+			if (huffmanEncoder == null) {
+				huffmanEncoder = new HuffmanEncoder();
+				for (int offset = 0; offset < pixels.length; offset += ChannelInput.CHUNK_SIZE) {
+					huffmanEncoder.prepareEncoding(Arrays.copyOfRange(pixels, offset,
+							Math.min(pixels.length, offset + ChannelInput.CHUNK_SIZE)));
+				}
+				if (HuffmanTreeCache.getDefault() != null) {
+					HuffmanTreeCache.getDefault().learn(huffmanEncoder);
+				}
+			}
+			for (int offset = 0; offset < pixels.length; offset += ChannelInput.CHUNK_SIZE) {
+				byte[] encodedData = huffmanEncoder.encode(Arrays.copyOfRange(pixels, offset,
+						Math.min(pixels.length, offset + ChannelInput.CHUNK_SIZE)));
+				writer.write(encodedData, 0, encodedData.length);
+			}
+			byte[] encodedData = huffmanEncoder.flush();
+			if (encodedData != null) {
+				writer.write(encodedData, 0, encodedData.length);
+			}
+		}
+	}
+
+	/**
+	 * Creates a <code>HuffmanEncoder</code> which uses a tree of the
+	 * <code>HuffmanTreeCache</code> if it is suitable for the given pixels. The
+	 * pixels then do not need to be passed to the encoder twice.
+	 *
+	 * @param pixels the pixels to be encoded.
+	 * @return the encoder or <code>null</code> when there is no suitable tree.
+	 * @throws ImageHandlingException when the cache could not be created.
+	 */
+	private static HuffmanEncoder createReusedTreeEncoder(byte[] pixels) throws ImageHandlingException {
+		HuffmanTreeCache treeCache = HuffmanTreeCache.getDefault();
+		HuffmanTree tree = treeCache == null ? null : treeCache.getTree();
+		if (tree == null) {
+			return null;
+		}
+		long[] byteFrequencies = new long[256];
+		for (byte currentByte : pixels) {
+			byteFrequencies[currentByte & 0xFF]++;
+		}
+		return treeCache.accepts(tree, byteFrequencies) ? new HuffmanEncoder(tree) : null;
+	}
+
+	/**
+	 * Counts the length of the Huffman encoded pixels without keeping them.
+	 */
+	private static class HuffmanLengthCounter {
+		long count(byte[] pixels) throws ImageHandlingException {
+			HuffmanEncoder huffmanEncoder = new HuffmanEncoder();
+			for (int offset = 0; offset < pixels.length; offset += ChannelInput.CHUNK_SIZE) {
+				huffmanEncoder.prepareEncoding(Arrays.copyOfRange(pixels, offset,
+						Math.min(pixels.length, offset + ChannelInput.CHUNK_SIZE)));
+			}
+			long length = 0;
+			for (int offset = 0; offset < pixels.length; offset += ChannelInput.CHUNK_SIZE) {
+				length += huffmanEncoder.encode(Arrays.copyOfRange(pixels, offset,
+						Math.min(pixels.length, offset + ChannelInput.CHUNK_SIZE))).length;
+			}
+			byte[] lastBytes = huffmanEncoder.flush();
+			return length + (lastBytes == null ? 0 : lastBytes.length);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package propra.imageconverter.api;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.ConversionReport;
+
+/**
+ * The <code>InMemoryConverter</code> makes the image conversion and the base-n
+ * coding usable from other programs. It reads its input from a channel or a
+ * buffer and writes its output into a channel without creating any files
+ * unless spilling was allowed by the <code>ConversionOptions</code>.
+ * <p>
+ * All state of a conversion is kept by the call itself, so the
+ * <code>InMemoryConverter</code> can be used by several threads at the same
+ * time. If a conversion fails, the data already written into the output
+ * channel is incomplete and must be discarded by the caller.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class InMemoryConverter {
+
+	private InMemoryConverter() {
+	}
+
+	/**
+	 * To convert the data read from a channel.
+	 *
+	 * @param input   the channel to read the input data from. It gets read until
+	 *                its end.
+	 * @param output  the channel to write the output data into. A *.propra output
+	 *                image is written with one seek back to its header if the
+	 *                channel is a <code>SeekableByteChannel</code>. Otherwise its
+	 *                data segment gets staged in memory, or in a temp-file if
+	 *                the options allow spilling, until its header is complete.
+	 * @param options what should be done with the input data.
+	 * @throws ImageHandlingException when the input data is invalid or the output
+	 *                                data could not be written.
+	 */
+	public static void convert(ReadableByteChannel input, WritableByteChannel output, ConversionOptions options)
+			throws ImageHandlingException {
+		convert(input, output, options, null);
+	}
+
+	/**
+	 * To convert the data read from a channel and describe the conversion in a
+	 * <code>ConversionReport</code>. The report gets filled even if the
+	 * conversion fails. Base-n coding is not described.
+	 *
+	 * @param input   the channel to read the input data from.
+	 * @param output  the channel to write the output data into.
+	 * @param options what should be done with the input data.
+	 * @param report  the report to be filled or <code>null</code>.
+	 * @throws ImageHandlingException when the input data is invalid or the output
+	 *                                data could not be written.
+	 */
+	public static void convert(ReadableByteChannel input, WritableByteChannel output, ConversionOptions options,
+			ConversionReport report) throws ImageHandlingException {
+		if (options.getOperationMode().operationIsBaseCoding()) {
+			new BaseStreamConversion(input, output, options).convert();
+		} else {
+			new ImageStreamConversion(input, output, options, report).convert();
+		}
+	}
+
+	/**
+	 * To convert the remaining data of a buffer. The position of the buffer gets
+	 * moved to its limit.
+	 *
+	 * @param input   the buffer containing the input data.
+	 * @param output  the channel to write the output data into.
+	 * @param options what should be done with the input data.
+	 * @throws ImageHandlingException when the input data is invalid or the output
+	 *                                data could not be written.
+	 */
+	public static void convert(ByteBuffer input, WritableByteChannel output, ConversionOptions options)
+			throws ImageHandlingException {
+		convert(new ByteBufferChannel(input), output, options);
+	}
+
+	/**
+	 * To convert the data of an array.
+	 *
+	 * @param input   the input data.
+	 * @param options what should be done with the input data.
+	 * @return the output data.
+	 * @throws ImageHandlingException when the input data is invalid.
+	 */
+	public static byte[] convert(byte[] input, ConversionOptions options) throws ImageHandlingException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(input.length);
+		convert(ByteBuffer.wrap(input), Channels.newChannel(output), options);
+		return output.toByteArray();
+	}
+
+	/**
+	 * A <code>ReadableByteChannel</code> reading the remaining bytes of a
+	 * <code>ByteBuffer</code>.
+	 */
+	private static class ByteBufferChannel implements ReadableByteChannel {
+
+		private ByteBuffer source;
+		private boolean open = true;
+
+		ByteBufferChannel(ByteBuffer source) {
+			this.source = source;
+		}
+
+		@Override
+		public int read(ByteBuffer target) {
+			if (!source.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(source.remaining(), target.remaining());
+			ByteBuffer slice = source.slice();
+			slice.limit(count);
+			target.put(slice);
+			source.position(source.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
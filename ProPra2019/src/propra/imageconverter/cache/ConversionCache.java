@@ -0,0 +1,358 @@
+package propra.imageconverter.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>ConversionCache</code> keeps the results of conversions in a
+ * directory so that converting a byte-identical input file with the same
+ * options again only needs to copy the cached result.
+ * <p>
+ * The results are addressed by the SHA-256 hash of the options and the content
+ * of the input file. Since hashing reads the whole input file, every entry is
+ * additionally filed under a cheap pre-key which is derived from the options,
+ * the file size and the first bytes of the file. For *.propra images these are
+ * the header including the checksum of the data segment. Only if an entry with
+ * the same pre-key exists the input file gets hashed before the conversion.
+ * <p>
+ * The size of the cache is bounded. The least recently used entries are
+ * removed first. New entries are written into a temp-file and then moved into
+ * place atomically so that concurrent conversions never see an incomplete
+ * entry.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionCache {
+
+	/**
+	 * The default maximum size of the cache in bytes.
+	 */
+	public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+	/**
+	 * The number of bytes at the beginning of an input file which go into the
+	 * pre-key of files other than *.propra images.
+	 */
+	private static final int PRE_KEY_BYTES = 4096;
+
+	private static final String ENTRY_EXTENSION = ".entry";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	/**
+	 * Temp-files older than this are left over by interrupted conversions.
+	 */
+	private static final long ABANDONED_TEMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private static ConversionCache defaultCache;
+	private static boolean defaultCacheCreated;
+
+	private final Path directory;
+	private final long maxSize;
+
+	/**
+	 * The sizes of all entries in the order they were used, the least recently
+	 * used one first.
+	 */
+	private final LinkedHashMap<String, Long> entries;
+
+	/**
+	 * The number of entries filed under each pre-key.
+	 */
+	private final Map<String, Integer> preKeyCounts;
+	private long usedBytes;
+
+	/*
+	 * Statistics
+	 */
+	private long hits;
+	private long misses;
+	private long bytesSaved;
+	private long evictions;
+
+	/**
+	 * Creates a new <code>ConversionCache</code> using the given directory. Entries
+	 * already contained in the directory are taken over.
+	 *
+	 * @param directory the directory holding the entries.
+	 * @param maxSize   the number of bytes all entries may use together.
+	 * @throws ImageHandlingException when the directory could not be created or
+	 *                                read.
+	 */
+	public ConversionCache(Path directory, long maxSize) throws ImageHandlingException {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		preKeyCounts = new HashMap<String, Integer>();
+
+		List<Path> entryFiles = new ArrayList<Path>();
+		Map<Path, Long> lastUsed = new HashMap<Path, Long>();
+		try {
+			Files.createDirectories(directory);
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					long lastModified = Files.getLastModifiedTime(file).toMillis();
+					String fileName = file.getFileName().toString();
+					if (fileName.endsWith(ENTRY_EXTENSION)) {
+						entryFiles.add(file);
+						lastUsed.put(file, lastModified);
+					} else if (fileName.endsWith(TEMP_EXTENSION)
+							&& System.currentTimeMillis() - lastModified > ABANDONED_TEMP_FILE_MILLIS) {
+						Files.deleteIfExists(file);
+					}
+				}
+			}
+			// The modification time of an entry is updated whenever it is used
+			entryFiles.sort(Comparator.comparing(lastUsed::get));
+			for (Path entryFile : entryFiles) {
+				addEntry(entryFile.getFileName().toString(), Files.size(entryFile));
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read the cache directory: " + directory,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		evictEntries();
+	}
+
+	/**
+	 * To get the cache configured with <code>-Dpropra.cache.directory=</code>. Its
+	 * size can be set with <code>-Dpropra.cache.maxSize=&lt;bytes&gt;</code>.
+	 *
+	 * @return the cache or <code>null</code> when no cache was configured.
+	 * @throws ImageHandlingException when the cache directory could not be
+	 *                                created or read.
+	 */
+	public static synchronized ConversionCache getDefault() throws ImageHandlingException {
+		if (!defaultCacheCreated) {
+			String directory = System.getProperty("propra.cache.directory");
+			if (directory != null) {
+				defaultCache = new ConversionCache(Paths.get(directory),
+						Long.getLong("propra.cache.maxSize", DEFAULT_MAX_SIZE));
+			}
+			defaultCacheCreated = true;
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Creates the key of a conversion. Only the pre-key gets computed here.
+	 *
+	 * @param inputFile the input file of the conversion.
+	 * @param options   the options of the conversion.
+	 * @return the key or <code>null</code> when the input file could not be read.
+	 *         The conversion will report the error then.
+	 */
+	public Key createKey(Path inputFile, ConversionOptions options) {
+		String description = describe(options);
+		int preKeyBytes = options.getOperationMode() == ConverterOperationMode.CONVERT
+				&& options.getInputFormat() == Format.PROPRA ? ImagePropra.HEADER_LENGTH : PRE_KEY_BYTES;
+		try (InputStream input = Files.newInputStream(inputFile)) {
+			CRC32C preKeyChecksum = new CRC32C();
+			preKeyChecksum.update(description.getBytes(StandardCharsets.UTF_8));
+			preKeyChecksum.update(Long.toString(Files.size(inputFile)).getBytes(StandardCharsets.UTF_8));
+			preKeyChecksum.update(input.readNBytes(preKeyBytes));
+			return new Key(inputFile, description, String.format("%08x", preKeyChecksum.getValue()));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Copies the cached result of a conversion into the output file.
+	 *
+	 * @param key        the key of the conversion.
+	 * @param outputFile the output file.
+	 * @return <code>true</code> when the result was cached, <code>false</code> if
+	 *         the conversion must be performed.
+	 */
+	public boolean restore(Key key, Path outputFile) {
+		synchronized (this) {
+			if (!preKeyCounts.containsKey(key.preKey)) {
+				misses++;
+				return false;
+			}
+		}
+
+		Long size;
+		String entryName;
+		try {
+			entryName = key.getEntryName();
+			synchronized (this) {
+				size = entries.get(entryName);
+			}
+			if (size != null) {
+				Path entryFile = directory.resolve(entryName);
+				Files.copy(entryFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+				Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+			}
+		} catch (IOException e) {
+			// The entry was removed by another process in the meantime
+			size = null;
+		}
+
+		synchronized (this) {
+			if (size == null) {
+				misses++;
+				return false;
+			}
+			hits++;
+			bytesSaved += size;
+			return true;
+		}
+	}
+
+	/**
+	 * Stores the result of a conversion. Errors are ignored since the conversion
+	 * itself succeeded.
+	 *
+	 * @param key        the key of the conversion.
+	 * @param outputFile the output file holding the result.
+	 */
+	public void store(Key key, Path outputFile) {
+		try {
+			long size = Files.size(outputFile);
+			if (size > maxSize) {
+				return;
+			}
+			String entryName = key.getEntryName();
+			Path tempFile = Files.createTempFile(directory, "insert-", TEMP_EXTENSION);
+			try {
+				Files.copy(outputFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tempFile, directory.resolve(entryName), StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+			synchronized (this) {
+				addEntry(entryName, size);
+				evictEntries();
+			}
+		} catch (IOException e) {
+			// The result just does not get cached
+		}
+	}
+
+	private void addEntry(String entryName, long size) {
+		Long previousSize = entries.put(entryName, size);
+		if (previousSize == null) {
+			preKeyCounts.merge(getPreKey(entryName), 1, Integer::sum);
+		} else {
+			usedBytes -= previousSize;
+		}
+		usedBytes += size;
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache does not exceed its
+	 * maximum size anymore.
+	 */
+	private synchronized void evictEntries() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (usedBytes > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			try {
+				Files.deleteIfExists(directory.resolve(entry.getKey()));
+			} catch (IOException e) {
+				// The entry is not used anymore anyway
+			}
+			iterator.remove();
+			usedBytes -= entry.getValue();
+			preKeyCounts.computeIfPresent(getPreKey(entry.getKey()), (preKey, count) -> count == 1 ? null : count - 1);
+			evictions++;
+		}
+	}
+
+	private static String getPreKey(String entryName) {
+		int separator = entryName.indexOf('-');
+		return separator == -1 ? entryName : entryName.substring(0, separator);
+	}
+
+	/**
+	 * Describes everything of the options which has an influence on the result of
+	 * a conversion.
+	 */
+	private static String describe(ConversionOptions options) {
+		return options.getOperationMode() + "/" + options.getInputFormat() + "/" + options.getOutputFormat() + "/"
+				+ options.getOutputCompressionFormat() + "/" + options.getEncodingAlphabet();
+	}
+
+	/**
+	 * To get a short summary of the statistics of this cache.
+	 *
+	 * @return the summary.
+	 */
+	public synchronized String getStatistics() {
+		return String.format(Locale.ROOT,
+				"Cache: %d hits, %d misses, %.1f MB saved, %d entries using %.1f of %.1f MB, %d evicted", hits,
+				misses, bytesSaved / (1024.0 * 1024), entries.size(), usedBytes / (1024.0 * 1024),
+				maxSize / (1024.0 * 1024), evictions);
+	}
+
+	/**
+	 * The key of a conversion. The hash of the input file is only computed when
+	 * it is needed.
+	 */
+	public static final class Key {
+		private final Path inputFile;
+		private final String description;
+		private final String preKey;
+		private String entryName;
+
+		private Key(Path inputFile, String description, String preKey) {
+			this.inputFile = inputFile;
+			this.description = description;
+			this.preKey = preKey;
+		}
+
+		private synchronized String getEntryName() throws IOException {
+			if (entryName == null) {
+				MessageDigest digest;
+				try {
+					digest = MessageDigest.getInstance("SHA-256");
+				} catch (NoSuchAlgorithmException e) {
+					// Every Java platform has to support SHA-256
+					throw new IllegalStateException(e);
+				}
+				digest.update(description.getBytes(StandardCharsets.UTF_8));
+				byte[] buffer = new byte[64 * 1024];
+				try (InputStream input = Files.newInputStream(inputFile)) {
+					int bytesRead;
+					while ((bytesRead = input.read(buffer)) != -1) {
+						digest.update(buffer, 0, bytesRead);
+					}
+				}
+				StringBuilder name = new StringBuilder(preKey).append('-');
+				for (byte hashByte : digest.digest()) {
+					name.append(String.format("%02x", hashByte));
+				}
+				entryName = name.append(ENTRY_EXTENSION).toString();
+			}
+			return entryName;
+		}
+	}
+}
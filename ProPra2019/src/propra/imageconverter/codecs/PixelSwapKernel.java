@@ -0,0 +1,114 @@
+package propra.imageconverter.codecs;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.CodecEvent;
+import propra.imageconverter.monitoring.ConversionStage;
+
+/**
+ * A <code>PixelSwapKernel</code> transcodes an uncompressed data segment of a
+ * *.tga image into an uncompressed data segment of a *.propra image or vice
+ * versa by swapping the first and the second byte of each pixel. Contrary to
+ * the <code>RGBEncoder</code> it works directly on the given buffers.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class PixelSwapKernel extends TranscodingKernel {
+
+	/**
+	 * The number of bytes of the uncompressed data segment.
+	 */
+	private long bytesInImage;
+
+	/**
+	 * The number of bytes which were already transcoded.
+	 */
+	private long processedBytes;
+
+	/**
+	 * In case a pixel was split between two transcode()-calls its first bytes are
+	 * kept here until the pixel is complete.
+	 */
+	private byte[] remainingPixelBytes;
+
+	/**
+	 * The number of valid bytes in <code>remainingPixelBytes</code>.
+	 */
+	private int remainingPixelByteCount;
+
+	/**
+	 * Creates a new <code>PixelSwapKernel</code>.
+	 *
+	 * @param width  the width of the image which gets transcoded.
+	 * @param height the height of the image which gets transcoded.
+	 */
+	public PixelSwapKernel(int width, int height) {
+		super();
+		bytesInImage = (long) width * height * 3;
+		remainingPixelBytes = new byte[3];
+		reset();
+	}
+
+	/**
+	 * To transcode the next part of an uncompressed data segment. Data following
+	 * after the last pixel of the image is ignored.
+	 */
+	@Override
+	public void transcode(byte[] inputData, int length) throws ImageHandlingException {
+		CodecEvent event = new CodecEvent();
+		event.begin();
+		transcodeChunk(inputData, length);
+		event.complete(ConversionStage.SWIZZLE, this, length, getOutputLength());
+	}
+
+	private void transcodeChunk(byte[] inputData, int length) throws ImageHandlingException {
+		if (length > bytesInImage - processedBytes) {
+			length = (int) (bytesInImage - processedBytes);
+		}
+		processedBytes += length;
+		ensureOutputCapacity(remainingPixelByteCount + length);
+		byte[] output = outputBuffer;
+		int outputIndex = 0;
+		int inputIndex = 0;
+
+		// A pixel which was split between the last and this call gets completed first
+		while (remainingPixelByteCount > 0 && inputIndex < length) {
+			remainingPixelBytes[remainingPixelByteCount++] = inputData[inputIndex++];
+			if (remainingPixelByteCount == 3) {
+				output[outputIndex++] = remainingPixelBytes[1];
+				output[outputIndex++] = remainingPixelBytes[0];
+				output[outputIndex++] = remainingPixelBytes[2];
+				remainingPixelByteCount = 0;
+			}
+		}
+
+		while (length - inputIndex >= 3) {
+			output[outputIndex++] = inputData[inputIndex + 1];
+			output[outputIndex++] = inputData[inputIndex];
+			output[outputIndex++] = inputData[inputIndex + 2];
+			inputIndex += 3;
+		}
+
+		while (inputIndex < length) {
+			remainingPixelBytes[remainingPixelByteCount++] = inputData[inputIndex++];
+		}
+		outputLength = outputIndex;
+	}
+
+	@Override
+	public byte[] flush() throws ImageHandlingException {
+		if (processedBytes != bytesInImage) {
+			throw new ImageHandlingException("Image data segment corrupt. Missing number of bytes: "
+					+ (bytesInImage - processedBytes), ImageConverterErrorCode.INVALID_DATASEGMENT);
+		}
+		return null;
+	}
+
+	@Override
+	public void reset() {
+		outputLength = 0;
+		processedBytes = 0;
+		remainingPixelByteCount = 0;
+	}
+}
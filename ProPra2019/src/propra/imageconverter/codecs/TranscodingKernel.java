@@ -0,0 +1,145 @@
+package propra.imageconverter.codecs;
+
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.codecs.rle.RLEEncodingKernel;
+import propra.imageconverter.codecs.rle.RLETranscoder;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>TranscodingKernel</code> converts the data segment of an input image
+ * directly into the data segment of an output image. Decoding, changing the
+ * byte order of the pixels and encoding are executed in one pass over the data
+ * instead of chaining several <code>Decoder</code>s and <code>Encoder</code>s.
+ * <br>
+ * The transcoded data is written into an output buffer which is owned by this
+ * <code>TranscodingKernel</code> and which gets re-used by every
+ * <code>transcode(byte[] inputData, int length)</code>-call.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public abstract class TranscodingKernel extends Encoder {
+
+	/**
+	 * The buffer holding the transcoded data of the last transcoding pass.
+	 */
+	protected byte[] outputBuffer;
+
+	/**
+	 * The number of valid bytes in <code>outputBuffer</code>.
+	 */
+	protected int outputLength;
+
+	/**
+	 * Creates a new <code>TranscodingKernel</code>.
+	 */
+	public TranscodingKernel() {
+		super();
+		outputBuffer = new byte[0];
+		outputLength = 0;
+	}
+
+	/**
+	 * Selects a <code>TranscodingKernel</code> which converts the data segment of
+	 * an input image into the data segment of an output image in one pass. The
+	 * kernel is selected based on the input and output format and the input and
+	 * output compression.
+	 * 
+	 * @param inputFormat       the format of the input image.
+	 * @param inputCompression  the compression of the input image.
+	 * @param outputFormat      the format of the output image.
+	 * @param outputCompression the compression of the output image.
+	 * @param width             the width of the image.
+	 * @param height            the height of the image.
+	 * @return the kernel or <code>null</code> when there is no kernel for this
+	 *         conversion. This is the case when Huffman encoding is involved or
+	 *         when uncompressed pixels can be copied without any changes.
+	 */
+	public static TranscodingKernel select(Format inputFormat, CompressionFormat inputCompression,
+			Format outputFormat, CompressionFormat outputCompression, int width, int height) {
+		if (inputCompression == CompressionFormat.HUFFMAN || outputCompression == CompressionFormat.HUFFMAN
+				|| outputCompression == CompressionFormat.AUTO) {
+			return null;
+		}
+
+		boolean swapPixelBytes = inputFormat != outputFormat;
+		if (inputCompression == CompressionFormat.UNCOMPRESSED) {
+			if (outputCompression == CompressionFormat.RLE) {
+				return new RLEEncodingKernel(width, height, swapPixelBytes);
+			} else if (swapPixelBytes) {
+				return new PixelSwapKernel(width, height);
+			}
+		} else if (inputCompression == CompressionFormat.RLE) {
+			if (outputCompression == CompressionFormat.UNCOMPRESSED) {
+				return new RLEDecodingKernel(width, height, swapPixelBytes);
+			} else {
+				// Without swapping the packets are only checked
+				return new RLETranscoder(width, height, swapPixelBytes);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * To transcode the next part of the input image's data segment. The result can
+	 * be retrieved via <code>getOutputBuffer()</code> and
+	 * <code>getOutputLength()</code> until this method gets called the next time.
+	 *
+	 * @param inputData the data to be transcoded.
+	 * @param length    the number of valid bytes in <code>inputData</code>.
+	 * @throws ImageHandlingException when an error occurred during transcoding.
+	 */
+	public abstract void transcode(byte[] inputData, int length) throws ImageHandlingException;
+
+	/**
+	 * To get the buffer which holds the data of the last transcoding pass.
+	 *
+	 * @return the output buffer. Only the first <code>getOutputLength()</code>
+	 *         bytes are valid.
+	 */
+	public byte[] getOutputBuffer() {
+		return outputBuffer;
+	}
+
+	/**
+	 * To get the number of bytes the last transcoding pass produced.
+	 *
+	 * @return the number of valid bytes in the output buffer.
+	 */
+	public int getOutputLength() {
+		return outputLength;
+	}
+
+	@Override
+	public byte[] encode(byte[] inputData) throws ImageHandlingException {
+		transcode(inputData, inputData.length);
+		byte[] outputData = new byte[outputLength];
+		System.arraycopy(outputBuffer, 0, outputData, 0, outputLength);
+		return outputData;
+	}
+
+	/**
+	 * A <code>TranscodingKernel</code> does not need any preparation. The method
+	 * <code>transcode(byte[] inputData, int length)</code> can directly be called.
+	 */
+	@Override
+	public void prepareEncoding(byte[] inputData) throws ImageHandlingException {
+		// Nothing to do here
+	}
+
+	/**
+	 * Makes sure the output buffer can hold at least the given number of bytes. The
+	 * data already contained in the output buffer is kept.
+	 *
+	 * @param capacity the number of bytes the output buffer must be able to hold.
+	 */
+	protected void ensureOutputCapacity(int capacity) {
+		if (outputBuffer.length < capacity) {
+			byte[] newOutputBuffer = new byte[Math.max(capacity, outputBuffer.length * 2)];
+			System.arraycopy(outputBuffer, 0, newOutputBuffer, 0, outputLength);
+			outputBuffer = newOutputBuffer;
+		}
+	}
+}
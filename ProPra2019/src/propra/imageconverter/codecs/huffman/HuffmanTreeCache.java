@@ -0,0 +1,248 @@
+package propra.imageconverter.codecs.huffman;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.Util;
+
+/**
+ * A <code>HuffmanTreeCache</code> provides Huffman trees which can be re-used
+ * for encoding similar images, i.e. scans from the same source. An image which
+ * is encoded with a re-used tree only needs one pass over its data and no
+ * temp-file since the tree does not need to be built first.
+ * <p>
+ * A tree can only be re-used when it contains every byte value of the image and
+ * the encoded image is at most <code>-Dpropra.huffman.maxLoss=</code> percent
+ * (2 by default) larger than with the image's own tree. Otherwise the image
+ * gets encoded with its own tree as usual.
+ * <p>
+ * With <code>-Dpropra.huffman.treeReuse=true</code> the tree of the previously
+ * encoded image gets re-used. With
+ * <code>-Dpropra.huffman.treeFile=&lt;path&gt;</code> a trained tree is loaded
+ * from the given file and used for all images. If the file does not exist yet,
+ * a tree gets trained from all images encoded during this run and saved into
+ * the file at the end.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class HuffmanTreeCache {
+
+	/**
+	 * The default of how many percent larger an image encoded with a re-used tree
+	 * may be compared to its own tree.
+	 */
+	public static final double DEFAULT_MAX_LOSS_PERCENT = 2;
+
+	private static HuffmanTreeCache defaultCache;
+	private static boolean defaultCacheCreated;
+
+	private final double maxLoss;
+	private final boolean reusePreviousTree;
+	private final Path treeFile;
+
+	/**
+	 * The tree loaded from the tree file, <code>null</code> if there is none.
+	 */
+	private final HuffmanTree trainedTree;
+
+	/**
+	 * The tree of the previously encoded image.
+	 */
+	private HuffmanTree previousTree;
+
+	/**
+	 * The summed up byte frequencies of all images encoded with their own tree. The
+	 * tree saved into the tree file is built from them.
+	 */
+	private final long[] trainingFrequencies;
+
+	/*
+	 * Statistics
+	 */
+	private long reusedTrees;
+	private long rejectedTrees;
+	private long builtTrees;
+	private long bitsLost;
+
+	/**
+	 * Creates a new <code>HuffmanTreeCache</code>.
+	 *
+	 * @param maxLossPercent    how many percent larger an image encoded with a
+	 *                          re-used tree may be.
+	 * @param reusePreviousTree <code>true</code> when the tree of the previously
+	 *                          encoded image should be re-used.
+	 * @param treeFile          the file holding a trained tree or
+	 *                          <code>null</code>. If it does not exist, the tree
+	 *                          gets trained and can be saved with
+	 *                          <code>save()</code>.
+	 * @throws ImageHandlingException when the tree file could not be read or does
+	 *                                not contain a valid tree.
+	 */
+	public HuffmanTreeCache(double maxLossPercent, boolean reusePreviousTree, Path treeFile)
+			throws ImageHandlingException {
+		this.maxLoss = maxLossPercent / 100;
+		this.reusePreviousTree = reusePreviousTree;
+		this.treeFile = treeFile;
+		trainingFrequencies = new long[256];
+
+		if (treeFile != null && Files.exists(treeFile)) {
+			try {
+				trainedTree = HuffmanTree
+						.fromPreOrderTreeCode(Util.byteArrayToCharArray(Files.readAllBytes(treeFile)));
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not read the Huffman tree file: " + treeFile,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+		} else {
+			trainedTree = null;
+		}
+	}
+
+	/**
+	 * To get the <code>HuffmanTreeCache</code> configured with
+	 * <code>-Dpropra.huffman.treeReuse=true</code> or
+	 * <code>-Dpropra.huffman.treeFile=</code>.
+	 *
+	 * @return the cache or <code>null</code> when re-using trees is not enabled.
+	 * @throws ImageHandlingException when the tree file could not be read.
+	 */
+	public static synchronized HuffmanTreeCache getDefault() throws ImageHandlingException {
+		if (!defaultCacheCreated) {
+			boolean reusePreviousTree = Boolean.getBoolean("propra.huffman.treeReuse");
+			String treeFile = System.getProperty("propra.huffman.treeFile");
+			if (reusePreviousTree || treeFile != null) {
+				double maxLossPercent;
+				try {
+					maxLossPercent = Double.parseDouble(
+							System.getProperty("propra.huffman.maxLoss", Double.toString(DEFAULT_MAX_LOSS_PERCENT)));
+				} catch (NumberFormatException e) {
+					throw new ImageHandlingException("Invalid value for propra.huffman.maxLoss.",
+							ImageConverterErrorCode.INVALID_USER_INPUT);
+				}
+				defaultCache = new HuffmanTreeCache(maxLossPercent, reusePreviousTree,
+						treeFile == null ? null : Paths.get(treeFile));
+			}
+			defaultCacheCreated = true;
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * To get the tree which should be tried for the next image.
+	 *
+	 * @return the tree or <code>null</code> when there is no tree yet.
+	 */
+	public synchronized HuffmanTree getTree() {
+		if (trainedTree != null) {
+			return trainedTree;
+		}
+		return reusePreviousTree ? previousTree : null;
+	}
+
+	/**
+	 * Checks whether data with the given byte frequencies may be encoded with the
+	 * given tree. This is the case when the tree contains every byte value and the
+	 * encoded data is not much larger than with a tree built for the data itself.
+	 *
+	 * @param tree            the tree returned by <code>getTree()</code>.
+	 * @param byteFrequencies the frequency of each byte value of the data,
+	 *                        indexed by the unsigned byte value.
+	 * @return <code>true</code> when the tree may be used, <code>false</code> if
+	 *         the data must be encoded with its own tree.
+	 * @throws ImageHandlingException when the tree for the data itself could not
+	 *                                be built.
+	 */
+	public boolean accepts(HuffmanTree tree, long[] byteFrequencies) throws ImageHandlingException {
+		long bitCount = tree.getEncodedBitCount(byteFrequencies);
+		long optimalBitCount = bitCount;
+		if (bitCount != -1) {
+			HuffmanTree ownTree = HuffmanTree.fromFrequencies(byteFrequencies);
+			if (ownTree != null) {
+				optimalBitCount = ownTree.getEncodedBitCount(byteFrequencies);
+			}
+		}
+
+		synchronized (this) {
+			if (bitCount == -1 || bitCount > optimalBitCount * (1 + maxLoss)) {
+				rejectedTrees++;
+				return false;
+			}
+			reusedTrees++;
+			bitsLost += bitCount - optimalBitCount;
+			return true;
+		}
+	}
+
+	/**
+	 * Takes over the tree an image was encoded with after the encoder had to build
+	 * it.
+	 *
+	 * @param encoder the encoder holding the complete tree.
+	 */
+	public synchronized void learn(HuffmanEncoder encoder) {
+		builtTrees++;
+		if (reusePreviousTree) {
+			previousTree = encoder.getTree();
+		}
+		if (treeFile != null && trainedTree == null) {
+			long[] byteFrequencies = encoder.getByteFrequencies();
+			for (int i = 0; i < trainingFrequencies.length; i++) {
+				trainingFrequencies[i] += byteFrequencies[i];
+			}
+		}
+	}
+
+	/**
+	 * Saves the tree trained from all images encoded so far into the tree file.
+	 * Nothing is saved when a trained tree was loaded from the file or no image
+	 * was encoded.
+	 *
+	 * @throws ImageHandlingException when the tree file could not be written.
+	 */
+	public synchronized void save() throws ImageHandlingException {
+		if (treeFile == null || trainedTree != null) {
+			return;
+		}
+		HuffmanTree tree = HuffmanTree.fromFrequencies(trainingFrequencies);
+		if (tree == null) {
+			return;
+		}
+
+		// The tree is stored like at the beginning of a Huffman encoded data segment
+		List<Character> treeCode = tree.getPreOrderTreeCode();
+		byte[] treeData = new byte[(treeCode.size() + 7) / 8];
+		List<Character> currentByteAsChar = new ArrayList<Character>();
+		for (int i = 0; i < treeData.length; i++) {
+			currentByteAsChar.clear();
+			for (int j = i * 8; j < i * 8 + 8; j++) {
+				currentByteAsChar.add(j < treeCode.size() ? treeCode.get(j) : '0');
+			}
+			treeData[i] = Util.charListToByte(currentByteAsChar);
+		}
+		try {
+			Files.write(treeFile, treeData);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write the Huffman tree file: " + treeFile,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * To get a short summary of the statistics of this cache.
+	 *
+	 * @return the summary.
+	 */
+	public synchronized String getStatistics() {
+		return String.format(Locale.ROOT,
+				"Huffman trees: %d re-used (%.1f KB larger than with own trees), %d rejected, %d built",
+				reusedTrees, bitsLost / 8 / 1024.0, rejectedTrees, builtTrees);
+	}
+}
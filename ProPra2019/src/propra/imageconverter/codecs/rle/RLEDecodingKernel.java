@@ -0,0 +1,139 @@
+package propra.imageconverter.codecs.rle;
+
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.CodecEvent;
+import propra.imageconverter.monitoring.ConversionStage;
+
+/**
+ * An <code>RLEDecodingKernel</code> transcodes a run-length encoded data
+ * segment into an uncompressed data segment. If desired it changes the byte
+ * order of the pixels while decoding them so that a run-length encoded *.tga
+ * image can directly be transcoded into an uncompressed *.propra image and vice
+ * versa.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class RLEDecodingKernel extends TranscodingKernel {
+
+	/**
+	 * The number of bytes of the uncompressed data segment.
+	 */
+	private long bytesInImage;
+
+	/**
+	 * The number of bytes which were already decoded.
+	 */
+	private long alreadyDecodedBytes;
+
+	/**
+	 * The number of pixels which still belong to the current packet.
+	 */
+	private int remainingPixels;
+
+	/**
+	 * Indicates whether equal or unequal pixels follow after the last header byte.
+	 */
+	private boolean equalPixels;
+
+	/**
+	 * The bytes of the current pixel. They are collected until the pixel is
+	 * complete.
+	 */
+	private byte[] currentPixel;
+
+	/**
+	 * The number of valid bytes in <code>currentPixel</code>.
+	 */
+	private int currentPixelLength;
+
+	/**
+	 * Indicates whether the first and the second byte of each pixel get swapped.
+	 */
+	private boolean swapPixelBytes;
+
+	/**
+	 * Creates a new <code>RLEDecodingKernel</code>.
+	 *
+	 * @param width          the width of the image which gets transcoded.
+	 * @param height         the height of the image which gets transcoded.
+	 * @param swapPixelBytes <code>true</code> when the byte order of the pixels
+	 *                       should be changed, <code>false</code> otherwise.
+	 */
+	public RLEDecodingKernel(int width, int height, boolean swapPixelBytes) {
+		super();
+		this.swapPixelBytes = swapPixelBytes;
+		bytesInImage = (long) width * height * 3;
+		currentPixel = new byte[3];
+		reset();
+	}
+
+	/**
+	 * To transcode the next part of a run-length encoded data segment. Data
+	 * following after the last pixel of the image is ignored.
+	 */
+	@Override
+	public void transcode(byte[] inputData, int length) throws ImageHandlingException {
+		CodecEvent event = new CodecEvent();
+		event.begin();
+		transcodeChunk(inputData, length);
+		event.complete(ConversionStage.DECODE, this, length, getOutputLength());
+	}
+
+	private void transcodeChunk(byte[] inputData, int length) throws ImageHandlingException {
+		outputLength = 0;
+		int inputIndex = 0;
+		while (inputIndex < length && alreadyDecodedBytes < bytesInImage) {
+			if (remainingPixels == 0) {
+				// The first byte MUST be a header byte
+				byte controlByte = inputData[inputIndex++];
+				remainingPixels = (controlByte & 0x7F) + 1;
+				equalPixels = (controlByte & 0x80) == 0x80;
+				currentPixelLength = 0;
+				continue;
+			}
+
+			currentPixel[currentPixelLength++] = inputData[inputIndex++];
+			if (currentPixelLength < 3) {
+				continue;
+			}
+			currentPixelLength = 0;
+			if (swapPixelBytes) {
+				byte firstByte = currentPixel[0];
+				currentPixel[0] = currentPixel[1];
+				currentPixel[1] = firstByte;
+			}
+
+			int pixelCount = equalPixels ? remainingPixels : 1;
+			// Pixels exceeding the image are ignored
+			pixelCount = (int) Math.min(pixelCount, (bytesInImage - alreadyDecodedBytes) / 3);
+			ensureOutputCapacity(outputLength + pixelCount * 3);
+			for (int i = 0; i < pixelCount; i++) {
+				outputBuffer[outputLength++] = currentPixel[0];
+				outputBuffer[outputLength++] = currentPixel[1];
+				outputBuffer[outputLength++] = currentPixel[2];
+			}
+			alreadyDecodedBytes += pixelCount * 3;
+			remainingPixels = equalPixels ? 0 : remainingPixels - 1;
+		}
+	}
+
+	@Override
+	public byte[] flush() throws ImageHandlingException {
+		if (alreadyDecodedBytes != bytesInImage) {
+			throw new ImageHandlingException("Image data segment corrupt. Missing number of bytes: "
+					+ (bytesInImage - alreadyDecodedBytes), ImageConverterErrorCode.INVALID_DATASEGMENT);
+		}
+		return null;
+	}
+
+	@Override
+	public void reset() {
+		outputLength = 0;
+		alreadyDecodedBytes = 0;
+		remainingPixels = 0;
+		currentPixelLength = 0;
+	}
+}
@@ -0,0 +1,252 @@
+package propra.imageconverter.codecs.rle;
+
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.CodecEvent;
+import propra.imageconverter.monitoring.ConversionStage;
+
+/**
+ * An <code>RLEEncodingKernel</code> transcodes an uncompressed data segment
+ * into a run-length encoded data segment. If desired it changes the byte order
+ * of the pixels while it collects them so that an uncompressed *.tga image can
+ * directly be transcoded into a run-length encoded *.propra image and vice
+ * versa. Like the <code>RLEEncoder</code> it performs the compression line by
+ * line and produces exactly the same packets.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class RLEEncodingKernel extends TranscodingKernel {
+
+	/**
+	 * The maximum number of pixels which can be encoded after a header byte.
+	 */
+	private final int MAX_PIXEL_STREAK = 128;
+
+	/**
+	 * The current image's line to be encoded.
+	 */
+	private byte[] currentLine;
+
+	/**
+	 * The number of bytes which were already collected for the current line.
+	 */
+	private int currentLineLength;
+
+	/**
+	 * The number of bytes of the uncompressed data segment.
+	 */
+	private long bytesInImage;
+
+	/**
+	 * The number of bytes of the uncompressed data segment which were already
+	 * collected.
+	 */
+	private long collectedBytes;
+
+	/**
+	 * Indicates whether the first and the second byte of each pixel get swapped.
+	 */
+	private boolean swapPixelBytes;
+
+	/**
+	 * Creates a new <code>RLEEncodingKernel</code>.
+	 *
+	 * @param width          the width of the image which gets transcoded.
+	 * @param height         the height of the image which gets transcoded.
+	 * @param swapPixelBytes <code>true</code> when the byte order of the pixels
+	 *                       should be changed, <code>false</code> otherwise.
+	 */
+	public RLEEncodingKernel(int width, int height, boolean swapPixelBytes) {
+		super();
+		this.swapPixelBytes = swapPixelBytes;
+		currentLine = new byte[width * 3];
+		bytesInImage = (long) width * height * 3;
+		reset();
+	}
+
+	/**
+	 * To transcode the next part of an uncompressed data segment. Data following
+	 * after the last pixel of the image is ignored.
+	 */
+	@Override
+	public void transcode(byte[] inputData, int length) throws ImageHandlingException {
+		CodecEvent event = new CodecEvent();
+		event.begin();
+		transcodeChunk(inputData, length);
+		event.complete(ConversionStage.ENCODE, this, length, getOutputLength());
+	}
+
+	private void transcodeChunk(byte[] inputData, int length) throws ImageHandlingException {
+		outputLength = 0;
+		int inputIndex = 0;
+		if (length > bytesInImage - collectedBytes) {
+			length = (int) (bytesInImage - collectedBytes);
+		}
+		collectedBytes += length;
+
+		while (inputIndex < length) {
+			// Collect the next bytes of the current line
+			int bytesToCopy = Math.min(length - inputIndex, currentLine.length - currentLineLength);
+			if (swapPixelBytes) {
+				for (int i = 0; i < bytesToCopy; i++) {
+					int positionInLine = currentLineLength + i;
+					switch (positionInLine % 3) {
+					case 0:
+						currentLine[positionInLine + 1] = inputData[inputIndex + i];
+						break;
+					case 1:
+						currentLine[positionInLine - 1] = inputData[inputIndex + i];
+						break;
+					default:
+						currentLine[positionInLine] = inputData[inputIndex + i];
+					}
+				}
+			} else {
+				System.arraycopy(inputData, inputIndex, currentLine, currentLineLength, bytesToCopy);
+			}
+			inputIndex += bytesToCopy;
+			currentLineLength += bytesToCopy;
+
+			if (currentLineLength == currentLine.length) {
+				encodeLine();
+				currentLineLength = 0;
+			}
+		}
+	}
+
+	/**
+	 * Encodes the current line and appends the packets to the output buffer.
+	 */
+	private void encodeLine() {
+		// Worst case: only unequal pixels with one header byte per 128 pixels
+		ensureOutputCapacity(outputLength + currentLine.length + currentLine.length / (3 * MAX_PIXEL_STREAK) + 1);
+		byte[] output = outputBuffer;
+		int outputIndex = outputLength;
+
+		int pixelsInLine = currentLine.length / 3;
+		int equalPixels = 0;
+		int unequalPixels = 0;
+		int unequalPixelsStart = 0;
+		int currentPixel = 0;
+
+		for (int nextPixel = 1; nextPixel < pixelsInLine; nextPixel++) {
+			// Scan the current line pixel by pixel
+			if (pixelsAreEqual(currentPixel, nextPixel)) {
+				if (unequalPixels > 0) {
+					// After a streak of unequal pixels, at least two equal pixels were detected
+					// Therefore the unequal pixels get written
+					outputIndex = writeUnequalPixels(output, outputIndex, unequalPixelsStart, unequalPixels);
+					unequalPixels = 0;
+				}
+				equalPixels++;
+			} else {
+				if (equalPixels > 0) {
+					// After a streak of equal pixels, at least two unequal pixels were detected
+					// Therefore the equal pixels get written
+					outputIndex = writeEqualPixels(output, outputIndex, currentPixel, equalPixels);
+					equalPixels = 0;
+				} else {
+					if (unequalPixels == 0) {
+						unequalPixelsStart = currentPixel;
+					}
+					unequalPixels++;
+				}
+			}
+
+			if (equalPixels == MAX_PIXEL_STREAK) {
+				// 128 equal pixels get written
+				outputIndex = writeEqualPixels(output, outputIndex, currentPixel, MAX_PIXEL_STREAK - 1);
+				equalPixels = 0;
+			}
+
+			if (unequalPixels == MAX_PIXEL_STREAK) {
+				// 128 unequal pixels get written
+				outputIndex = writeUnequalPixels(output, outputIndex, unequalPixelsStart, unequalPixels);
+				unequalPixels = 0;
+			}
+
+			currentPixel = nextPixel;
+		}
+
+		// The last pixels of this line get written
+		if (equalPixels > 0) {
+			outputIndex = writeEqualPixels(output, outputIndex, currentPixel, equalPixels);
+		} else {
+			// The last pixel is unequal from the preceding pixels.
+			if (unequalPixels == 0) {
+				unequalPixelsStart = currentPixel;
+			}
+			unequalPixels++;
+			outputIndex = writeUnequalPixels(output, outputIndex, unequalPixelsStart, unequalPixels);
+		}
+		outputLength = outputIndex;
+	}
+
+	/**
+	 * Writes a packet of equal pixels.
+	 *
+	 * @param output      the buffer to write the packet into.
+	 * @param outputIndex the position in the buffer to write the packet at.
+	 * @param pixel       the index of the pixel within the current line.
+	 * @param equalPixels the number of repetitions of the pixel (the pixel count
+	 *                    minus one).
+	 * @return the position in the buffer after the packet.
+	 */
+	private int writeEqualPixels(byte[] output, int outputIndex, int pixel, int equalPixels) {
+		output[outputIndex++] = (byte) (0x80 + equalPixels);
+		output[outputIndex++] = currentLine[pixel * 3];
+		output[outputIndex++] = currentLine[pixel * 3 + 1];
+		output[outputIndex++] = currentLine[pixel * 3 + 2];
+		return outputIndex;
+	}
+
+	/**
+	 * Writes a packet of unequal pixels.
+	 *
+	 * @param output        the buffer to write the packet into.
+	 * @param outputIndex   the position in the buffer to write the packet at.
+	 * @param firstPixel    the index of the first pixel within the current line.
+	 * @param unequalPixels the number of pixels.
+	 * @return the position in the buffer after the packet.
+	 */
+	private int writeUnequalPixels(byte[] output, int outputIndex, int firstPixel, int unequalPixels) {
+		output[outputIndex++] = (byte) (unequalPixels - 1);
+		System.arraycopy(currentLine, firstPixel * 3, output, outputIndex, unequalPixels * 3);
+		return outputIndex + unequalPixels * 3;
+	}
+
+	/**
+	 * Compares two pixels of the current line whether they are equal or not.
+	 *
+	 * @param pixel1 the index of the first pixel.
+	 * @param pixel2 the index of the second pixel.
+	 * @return <code>true</code> when both pixels are equal, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean pixelsAreEqual(int pixel1, int pixel2) {
+		int index1 = pixel1 * 3;
+		int index2 = pixel2 * 3;
+		return currentLine[index1] == currentLine[index2] && currentLine[index1 + 1] == currentLine[index2 + 1]
+				&& currentLine[index1 + 2] == currentLine[index2 + 2];
+	}
+
+	@Override
+	public byte[] flush() throws ImageHandlingException {
+		if (collectedBytes != bytesInImage) {
+			throw new ImageHandlingException(
+					"Not enough bytes were given in order to perform RLE encoding. Missing number of bytes: "
+							+ (bytesInImage - collectedBytes),
+					ImageConverterErrorCode.COMPRESSION_ERROR);
+		}
+		return null;
+	}
+
+	@Override
+	public void reset() {
+		outputLength = 0;
+		currentLineLength = 0;
+		collectedBytes = 0;
+	}
+}
@@ -0,0 +1,175 @@
+package propra.imageconverter.codecs.rle;
+
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.CodecEvent;
+import propra.imageconverter.monitoring.ConversionStage;
+
+/**
+ * An <code>RLETranscoder</code> converts run-length encoded image data of a
+ * *.tga image into run-length encoded image data of a *.propra image or vice
+ * versa without decoding it. Both formats use the same packet structure and
+ * only differ in the byte order of a pixel. Therefore the header bytes of the
+ * packets are copied as they are and only the first and the second byte of each
+ * pixel inside the packets get swapped.
+ * <p>
+ * Without swapping the pixels the data is copied as it is. The packets are
+ * still walked through to check that they contain exactly the pixels of the
+ * image.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class RLETranscoder extends TranscodingKernel {
+
+	/**
+	 * The number of pixels of the image which gets transcoded.
+	 */
+	private long pixelsInImage;
+
+	/**
+	 * The number of pixels which were already announced by the header bytes of the
+	 * processed packets.
+	 */
+	private long pixelsInPackets;
+
+	/**
+	 * The number of pixel bytes which still belong to the current packet.
+	 */
+	private int remainingPacketBytes;
+
+	/**
+	 * In case a pixel was split between two encode()-calls its first bytes are
+	 * kept here until the pixel is complete.
+	 */
+	private byte[] remainingPixelBytes;
+
+	/**
+	 * The number of valid bytes in <code>remainingPixelBytes</code>.
+	 */
+	private int remainingPixelByteCount;
+
+	private boolean swapPixelBytes;
+
+	/**
+	 * Creates a new <code>RLETranscoder</code>.
+	 *
+	 * @param width          the width of the image which gets transcoded.
+	 * @param height         the height of the image which gets transcoded.
+	 * @param swapPixelBytes <code>true</code> when the byte order of the pixels
+	 *                       should be changed, <code>false</code> otherwise.
+	 */
+	public RLETranscoder(int width, int height, boolean swapPixelBytes) {
+		super();
+		pixelsInImage = (long) width * height;
+		this.swapPixelBytes = swapPixelBytes;
+		remainingPixelBytes = new byte[3];
+		reset();
+	}
+
+	/**
+	 * To transcode the next part of a run-length encoded data segment. Data
+	 * following after the last pixel of the image is ignored.
+	 *
+	 * @throws ImageHandlingException when a packet announces more pixels than the
+	 *                                image has.
+	 */
+	@Override
+	public void transcode(byte[] inputData, int length) throws ImageHandlingException {
+		CodecEvent event = new CodecEvent();
+		event.begin();
+		transcodeChunk(inputData, length);
+		event.complete(ConversionStage.ENCODE, this, length, getOutputLength());
+	}
+
+	private void transcodeChunk(byte[] inputData, int length) throws ImageHandlingException {
+		outputLength = 0;
+		ensureOutputCapacity(remainingPixelByteCount + length);
+		byte[] outputData = outputBuffer;
+		int outputIndex = 0;
+		int inputIndex = 0;
+
+		// A pixel which was split between the last and this call gets completed first
+		while (remainingPixelByteCount > 0 && inputIndex < length) {
+			remainingPixelBytes[remainingPixelByteCount++] = inputData[inputIndex++];
+			if (remainingPixelByteCount == 3) {
+				outputData[outputIndex++] = remainingPixelBytes[1];
+				outputData[outputIndex++] = remainingPixelBytes[0];
+				outputData[outputIndex++] = remainingPixelBytes[2];
+				remainingPixelByteCount = 0;
+				remainingPacketBytes -= 3;
+			}
+		}
+
+		while (inputIndex < length && encodingState != EncodingState.FINISHED) {
+			if (remainingPacketBytes == 0) {
+				if (pixelsInPackets == pixelsInImage) {
+					// All pixels of the image were transcoded. Further data is ignored.
+					encodingState = EncodingState.FINISHED;
+					break;
+				}
+				// The next byte is the header byte of a new packet
+				byte controlByte = inputData[inputIndex++];
+				int pixelCount = (controlByte & 0x7F) + 1;
+				pixelsInPackets += pixelCount;
+				if (pixelsInPackets > pixelsInImage) {
+					throw new ImageHandlingException(
+							"Image data segment corrupt. RLE packets contain more pixels than the image.",
+							ImageConverterErrorCode.INVALID_DATASEGMENT);
+				}
+				remainingPacketBytes = (controlByte & 0x80) == 0x80 ? 3 : pixelCount * 3;
+				outputData[outputIndex++] = controlByte;
+			} else if (!swapPixelBytes) {
+				// The pixels of the current packet are copied as far as they are available
+				int count = Math.min(remainingPacketBytes, length - inputIndex);
+				System.arraycopy(inputData, inputIndex, outputData, outputIndex, count);
+				inputIndex += count;
+				outputIndex += count;
+				remainingPacketBytes -= count;
+			} else if (length - inputIndex >= 3) {
+				// A complete pixel of the current packet
+				outputData[outputIndex++] = inputData[inputIndex + 1];
+				outputData[outputIndex++] = inputData[inputIndex];
+				outputData[outputIndex++] = inputData[inputIndex + 2];
+				inputIndex += 3;
+				remainingPacketBytes -= 3;
+			} else {
+				// The pixel will be completed in the next call
+				while (inputIndex < length) {
+					remainingPixelBytes[remainingPixelByteCount++] = inputData[inputIndex++];
+				}
+			}
+		}
+
+		outputLength = outputIndex;
+	}
+
+	/**
+	 * Checks whether the transcoded packets contained exactly as many pixels as the
+	 * image.
+	 *
+	 * @return <code>null</code> since all data was already returned by
+	 *         <code>transcode(byte[] inputData, int length)</code>.
+	 * @throws ImageHandlingException when the data segment ended before all pixels
+	 *                                of the image were transcoded.
+	 */
+	@Override
+	public byte[] flush() throws ImageHandlingException {
+		if (pixelsInPackets != pixelsInImage || remainingPacketBytes != 0) {
+			throw new ImageHandlingException(
+					"Image data segment corrupt. RLE packets contain less pixels than the image.",
+					ImageConverterErrorCode.INVALID_DATASEGMENT);
+		}
+		return null;
+	}
+
+	@Override
+	public void reset() {
+		encodingState = EncodingState.ENCODING;
+		outputLength = 0;
+		pixelsInPackets = 0;
+		remainingPacketBytes = 0;
+		remainingPixelByteCount = 0;
+	}
+}
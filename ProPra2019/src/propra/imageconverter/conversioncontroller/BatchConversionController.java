@@ -0,0 +1,400 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.cache.ConversionCache;
+import propra.imageconverter.codecs.huffman.HuffmanTreeCache;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.scheduler.ConversionJob;
+import propra.imageconverter.scheduler.ExecutionStrategy;
+import propra.imageconverter.scheduler.JobEstimate;
+import propra.imageconverter.scheduler.JobScheduler;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>BatchConversionController</code> converts all images found in
+ * several input directories or matching several glob patterns into one output
+ * directory. Each image gets converted by its own
+ * conversion job and the jobs run in parallel on a <code>JobScheduler</code>.
+ * It starts small images first and decides from the image headers whether an
+ * image is converted in memory or using temp-files. After all conversions have
+ * finished a summary gets printed.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class BatchConversionController extends ConversionController {
+
+	private List<String> inputPatterns;
+	private Path outputDirectory;
+	private Format outputFormat;
+	private CompressionFormat outputCompressionFormat;
+	private int threadCount;
+	private boolean pipelined;
+	private boolean roundTripVerified;
+
+	/**
+	 * To create a new <code>BatchConversionController</code>.
+	 *
+	 * @param inputPatterns           the input directories and glob patterns.
+	 * @param outputDirectory         the directory the converted images are
+	 *                                written into.
+	 * @param outputFormat            the format of the converted images.
+	 * @param outputCompressionFormat the compression of the converted images.
+	 * @param threadCount             the number of threads converting images at
+	 *                                the same time.
+	 */
+	public BatchConversionController(List<String> inputPatterns, String outputDirectory, Format outputFormat,
+			CompressionFormat outputCompressionFormat, int threadCount) {
+		super(ConverterOperationMode.BATCH_CONVERT);
+		this.inputPatterns = inputPatterns;
+		this.outputDirectory = Paths.get(outputDirectory);
+		this.outputFormat = outputFormat;
+		this.outputCompressionFormat = outputCompressionFormat;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * To let the single conversions run in a pipeline.
+	 *
+	 * @param pipelined <code>true</code> when the conversions should be pipelined,
+	 *                  <code>false</code> otherwise.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * To let the single conversions verify that their output images decode back
+	 * to the pixels of the input images.
+	 *
+	 * @param roundTripVerified <code>true</code> when the output images should be
+	 *                          verified, <code>false</code> otherwise.
+	 */
+	public void setRoundTripVerified(boolean roundTripVerified) {
+		this.roundTripVerified = roundTripVerified;
+	}
+
+	/**
+	 * To convert all images of the batch and to print a summary afterwards.
+	 *
+	 * @throws ImageHandlingException when no images were found, the output
+	 *                                directory could not be created or at least one
+	 *                                image could not be converted.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		List<Path> inputFiles = findInputFiles(inputPatterns);
+		if (inputFiles.isEmpty()) {
+			throw new ImageHandlingException("No images found for the given input directories or patterns.",
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+
+		try {
+			Files.createDirectories(outputDirectory);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create output directory: " + outputDirectory,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+
+		long startNanos = System.nanoTime();
+		List<BatchJobResult> results = runJobs(inputFiles);
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		int failures = printSummary(results, elapsedNanos);
+		if (failures > 0) {
+			throw new ImageHandlingException(failures + " of " + results.size() + " images could not be converted.",
+					ImageConverterErrorCode.BATCH_CONVERSION_ERROR);
+		}
+	}
+
+	/**
+	 * Submits one job per input image to a <code>JobScheduler</code> and waits
+	 * until all of them have finished.
+	 *
+	 * @param inputFiles the input images.
+	 * @return the results of the jobs in the order of the input images.
+	 * @throws ImageHandlingException when the batch conversion was interrupted.
+	 */
+	private List<BatchJobResult> runJobs(List<Path> inputFiles) throws ImageHandlingException {
+		JobScheduler scheduler = new JobScheduler(threadCount, JobScheduler.getDefaultMemoryBudget());
+		List<BatchImageJob> jobs = new ArrayList<BatchImageJob>();
+		Set<Path> outputFiles = new HashSet<Path>();
+
+		for (Path inputFile : inputFiles) {
+			Path outputFile = getOutputFile(inputFile);
+			// Two input images with the same name but different formats must not
+			// overwrite each other's output
+			boolean outputIsUnique = outputFiles.add(outputFile) && !isSameFile(inputFile, outputFile);
+			jobs.add(new BatchImageJob(inputFile, outputFile, outputIsUnique));
+		}
+		List<Future<BatchJobResult>> futures = scheduler.submitAll(jobs);
+
+		List<BatchJobResult> results = new ArrayList<BatchJobResult>();
+		try {
+			for (Future<BatchJobResult> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Batch conversion was interrupted.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			throw new ImageHandlingException("Unexpected error during batch conversion: " + e.getCause(),
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} finally {
+			scheduler.shutdown();
+		}
+		System.out.println(" " + scheduler.getStatistics());
+		if (ConversionCache.getDefault() != null) {
+			System.out.println(" " + ConversionCache.getDefault().getStatistics());
+		}
+		if (HuffmanTreeCache.getDefault() != null) {
+			System.out.println(" " + HuffmanTreeCache.getDefault().getStatistics());
+			HuffmanTreeCache.getDefault().save();
+		}
+		return results;
+	}
+
+	/**
+	 * Converts a single image of the batch. Errors do not stop the batch but are
+	 * recorded in the result.
+	 *
+	 * @param inputFile      the input image.
+	 * @param outputFile     the output image.
+	 * @param outputIsUnique <code>false</code> when another image of the batch
+	 *                       already gets written into the output file or the
+	 *                       output file is the input image itself.
+	 * @param strategy       whether the image is converted in memory or using
+	 *                       temp-files.
+	 * @return the result of the conversion.
+	 */
+	private BatchJobResult convertImage(Path inputFile, Path outputFile, boolean outputIsUnique,
+			ExecutionStrategy strategy) {
+		BatchJobResult result = new BatchJobResult(inputFile);
+		ConversionController controller = null;
+		try {
+			if (!outputIsUnique) {
+				throw new ImageHandlingException("Output file would be overwritten by another image: " + outputFile,
+						ImageConverterErrorCode.INVALID_FILEPATH);
+			}
+			Format inputFormat = Format.fromFileExtension(getFileExtension(inputFile));
+			ConversionOptions imageOptions = ConversionOptions.forImage(inputFormat, outputFormat,
+					outputCompressionFormat);
+			ConversionOptions options = roundTripVerified ? imageOptions.withRoundTripVerification() : imageOptions;
+			controller = CachingConversionController.create(inputFile.toString(), outputFile.toString(), options,
+					() -> {
+						if (strategy == ExecutionStrategy.IN_MEMORY) {
+							return new StreamConversionController(inputFile.toString(), outputFile.toString(),
+									options);
+						}
+						FormatConversionController formatConversionController = new FormatConversionController(
+								inputFormat, outputFormat, ConverterOperationMode.CONVERT, inputFile.toString(),
+								outputFile.toString(), outputCompressionFormat);
+						formatConversionController.setPipelined(pipelined);
+						formatConversionController.setRoundTripVerified(roundTripVerified);
+						return formatConversionController;
+					});
+			controller.convert();
+			result.setSizes(Files.size(inputFile), Files.size(outputFile));
+		} catch (ImageHandlingException e) {
+			if (controller != null) {
+				controller.abortConversion();
+			}
+			result.setError(e.getMessage());
+		} catch (IOException e) {
+			result.setError("Could not read file size: " + e.getMessage());
+		} catch (RuntimeException e) {
+			// A corrupt image must not stop the whole batch
+			if (controller != null) {
+				controller.abortConversion();
+			}
+			result.setError("Unexpected error: " + e);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds all images of the batch. Directories are searched for *.tga and
+	 * *.propra files, everything else is treated as glob pattern whose last part
+	 * is matched against the file names of the directory given by the preceding
+	 * part.
+	 *
+	 * @param inputPatterns the input directories and glob patterns.
+	 * @return the input images sorted by the order of the patterns and their
+	 *         names.
+	 * @throws ImageHandlingException when a directory could not be read.
+	 */
+	static List<Path> findInputFiles(List<String> inputPatterns) throws ImageHandlingException {
+		Set<Path> inputFiles = new LinkedHashSet<Path>();
+		for (String pattern : inputPatterns) {
+			Path path = Paths.get(pattern);
+			Path directory;
+			String glob;
+			if (Files.isDirectory(path)) {
+				directory = path;
+				glob = "*.{tga,propra,TGA,PROPRA}";
+			} else {
+				directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+				glob = path.getFileName().toString();
+			}
+
+			List<Path> matches = new ArrayList<Path>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+				for (Path file : stream) {
+					if (Files.isRegularFile(file) && Format.fromFileExtension(getFileExtension(file)) != null) {
+						matches.add(file);
+					}
+				}
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not read directory: " + directory,
+						ImageConverterErrorCode.INVALID_FILEPATH);
+			}
+			matches.sort(null);
+			inputFiles.addAll(matches);
+		}
+		return new ArrayList<Path>(inputFiles);
+	}
+
+	/**
+	 * Prints the summary of the batch conversion.
+	 *
+	 * @param results      the results of all jobs.
+	 * @param elapsedNanos the time the batch conversion took.
+	 * @return the number of images which could not be converted.
+	 */
+	private int printSummary(List<BatchJobResult> results, long elapsedNanos) {
+		int failures = 0;
+		long inputBytes = 0;
+		long outputBytes = 0;
+		for (BatchJobResult result : results) {
+			if (result.getError() != null) {
+				failures++;
+				System.out.println(" FAILED " + result.getInputFile() + ": " + result.getError());
+			} else {
+				inputBytes += result.getInputBytes();
+				outputBytes += result.getOutputBytes();
+			}
+		}
+
+		double seconds = elapsedNanos / 1e9;
+		int converted = results.size() - failures;
+		System.out.println(String.format(Locale.ROOT, " Batch conversion finished in %.2f s using %d threads",
+				seconds, threadCount));
+		System.out.println(String.format(Locale.ROOT, " Images: %d converted, %d failed", converted, failures));
+		System.out.println(String.format(Locale.ROOT, " Throughput: %.1f images/s, %.1f MB/s", converted / seconds,
+				inputBytes / seconds / (1024 * 1024)));
+		System.out.println(String.format(Locale.ROOT, " Bytes: %d read, %d written, %d saved (%.1f%%)", inputBytes,
+				outputBytes, inputBytes - outputBytes,
+				inputBytes == 0 ? 0.0 : 100.0 * (inputBytes - outputBytes) / inputBytes));
+		return failures;
+	}
+
+	private Path getOutputFile(Path inputFile) {
+		String fileName = inputFile.getFileName().toString();
+		String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+		return outputDirectory.resolve(baseName + "." + outputFormat.getFileExtension()).toAbsolutePath()
+				.normalize();
+	}
+
+	private boolean isSameFile(Path inputFile, Path outputFile) {
+		return inputFile.toAbsolutePath().normalize().equals(outputFile);
+	}
+
+	static String getFileExtension(Path file) {
+		String fileName = file.getFileName().toString();
+		int dotIndex = fileName.lastIndexOf('.');
+		return dotIndex <= 0 ? "" : fileName.substring(dotIndex + 1);
+	}
+
+	/**
+	 * The handlers of a <code>BatchConversionController</code> are opened and
+	 * closed by the single conversions.
+	 */
+	@Override
+	protected void finalizeConversion() {
+	}
+
+	/**
+	 * The conversion of a single image of the batch.
+	 */
+	private class BatchImageJob implements ConversionJob<BatchJobResult> {
+		private final Path inputFile;
+		private final Path outputFile;
+		private final boolean outputIsUnique;
+
+		BatchImageJob(Path inputFile, Path outputFile, boolean outputIsUnique) {
+			this.inputFile = inputFile;
+			this.outputFile = outputFile;
+			this.outputIsUnique = outputIsUnique;
+		}
+
+		@Override
+		public JobEstimate getEstimate() {
+			JobEstimate estimate = JobEstimate.forImageFile(inputFile,
+					Format.fromFileExtension(getFileExtension(inputFile)), outputFormat, outputCompressionFormat);
+			// The pipeline is only available for conversions using files
+			return pipelined ? estimate.withoutInMemoryExecution() : estimate;
+		}
+
+		@Override
+		public BatchJobResult execute(ExecutionStrategy strategy) {
+			return convertImage(inputFile, outputFile, outputIsUnique, strategy);
+		}
+	}
+
+	/**
+	 * The result of the conversion of a single image of the batch.
+	 */
+	private static class BatchJobResult {
+		private final Path inputFile;
+		private long inputBytes;
+		private long outputBytes;
+		private String error;
+
+		BatchJobResult(Path inputFile) {
+			this.inputFile = inputFile;
+		}
+
+		void setSizes(long inputBytes, long outputBytes) {
+			this.inputBytes = inputBytes;
+			this.outputBytes = outputBytes;
+		}
+
+		void setError(String error) {
+			this.error = error;
+		}
+
+		Path getInputFile() {
+			return inputFile;
+		}
+
+		long getInputBytes() {
+			return inputBytes;
+		}
+
+		long getOutputBytes() {
+			return outputBytes;
+		}
+
+		String getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,371 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.ConversionTarget;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>BenchmarkConversionController</code> measures complete conversions
+ * of all images found in several input directories or matching several glob
+ * patterns. Every image is converted into every target of a matrix of output
+ * formats and compressions. For each target it reports the wall time, the
+ * throughput, the 50th, 95th and 99th percentile of the latency per image, the
+ * compression ratio, the CPU time of the process and its peak resident set
+ * size.
+ * <p>
+ * The images are converted one after another by a
+ * <code>FormatConversionController</code> without the
+ * <code>ConversionCache</code>. Before the measured runs, all images are
+ * converted the given number of times as warmup. The outputs are written into
+ * a temp directory and removed right after their size was read. The results can
+ * be saved as CSV or JSON to compare two builds.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class BenchmarkConversionController extends ConversionController {
+
+	private static final String CSV_HEADER = "format,compression,files,runs,failures,wallSeconds,mbPerSecond,"
+			+ "p50Millis,p95Millis,p99Millis,compressionRatio,cpuSeconds,peakRssBytes,inputBytes,outputBytes";
+
+	private List<String> inputPatterns;
+	private List<ConversionTarget> targets;
+	private int warmupRuns;
+	private int repetitions;
+	private String resultsPath;
+	private boolean pipelined;
+
+	/**
+	 * The temp directory the outputs are written into.
+	 */
+	private Path outputDirectory;
+
+	/**
+	 * To create a new <code>BenchmarkConversionController</code>.
+	 *
+	 * @param inputPatterns the input directories and glob patterns.
+	 * @param targets       the output formats and compressions to measure. Their
+	 *                      paths are not used.
+	 * @param warmupRuns    how often all images are converted before measuring.
+	 * @param repetitions   how often all images are converted while measuring.
+	 * @param resultsPath   the file the results are saved into or
+	 *                      <code>null</code>. Files ending with
+	 *                      <code>.json</code> are written as JSON, all others as
+	 *                      CSV.
+	 */
+	public BenchmarkConversionController(List<String> inputPatterns, List<ConversionTarget> targets, int warmupRuns,
+			int repetitions, String resultsPath) {
+		super(ConverterOperationMode.BENCHMARK);
+		this.inputPatterns = inputPatterns;
+		this.targets = targets;
+		this.warmupRuns = warmupRuns;
+		this.repetitions = repetitions;
+		this.resultsPath = resultsPath;
+	}
+
+	/**
+	 * To let the conversions run in a pipeline whose stages run in their own
+	 * threads.
+	 *
+	 * @param pipelined <code>true</code> if the conversions should be pipelined.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * Runs the benchmark and prints the results.
+	 *
+	 * @throws ImageHandlingException when no images were found or the temp
+	 *                                directory or the results could not be
+	 *                                written.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		List<Path> inputFiles = BatchConversionController.findInputFiles(inputPatterns);
+		if (inputFiles.isEmpty()) {
+			throw new ImageHandlingException("No images found for the given input directories or patterns.",
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+		try {
+			outputDirectory = Files.createTempDirectory("propra-benchmark");
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create temp directory.", ImageConverterErrorCode.IO_ERROR);
+		}
+
+		System.out.println(String.format(Locale.ROOT, " Benchmark of %d images, %d warmup and %d measured runs",
+				inputFiles.size(), warmupRuns, repetitions));
+		List<TargetResult> results = new ArrayList<TargetResult>();
+		try {
+			for (ConversionTarget target : targets) {
+				TargetResult result = runTarget(target, inputFiles);
+				System.out.println(result.toSummary());
+				results.add(result);
+			}
+		} finally {
+			finalizeConversion();
+		}
+
+		if (resultsPath != null) {
+			writeResults(results);
+		}
+	}
+
+	/**
+	 * Converts all images into one target in the warmup and measured runs.
+	 */
+	private TargetResult runTarget(ConversionTarget target, List<Path> inputFiles) {
+		for (int run = 0; run < warmupRuns; run++) {
+			for (Path inputFile : inputFiles) {
+				try {
+					convertImage(inputFile, target);
+				} catch (ImageHandlingException e) {
+					// Failures are reported by the measured runs
+				}
+			}
+		}
+
+		TargetResult result = new TargetResult(target, inputFiles.size());
+		resetPeakResidentSetSize();
+		long cpuNanosBefore = getProcessCpuNanos();
+		long startNanos = System.nanoTime();
+		for (int run = 0; run < repetitions; run++) {
+			for (Path inputFile : inputFiles) {
+				long conversionStartNanos = System.nanoTime();
+				try {
+					long outputBytes = convertImage(inputFile, target);
+					result.addConversion(Files.size(inputFile), outputBytes, System.nanoTime() - conversionStartNanos);
+				} catch (ImageHandlingException | IOException e) {
+					if (run == 0) {
+						System.out.println(" FAILED " + inputFile + ": " + e.getMessage());
+					}
+					result.failures++;
+				}
+			}
+		}
+		result.wallNanos = System.nanoTime() - startNanos;
+		result.cpuNanos = cpuNanosBefore < 0 ? -1 : getProcessCpuNanos() - cpuNanosBefore;
+		result.peakRssBytes = readPeakResidentSetSize();
+		return result;
+	}
+
+	/**
+	 * Converts one image and removes the output afterwards.
+	 *
+	 * @return the size of the output image.
+	 */
+	private long convertImage(Path inputFile, ConversionTarget target) throws ImageHandlingException {
+		Format inputFormat = Format.fromFileExtension(BatchConversionController.getFileExtension(inputFile));
+		String fileName = inputFile.getFileName().toString();
+		Path outputFile = outputDirectory
+				.resolve(fileName.substring(0, fileName.lastIndexOf('.')) + "." + target.getFormat().getFileExtension());
+
+		FormatConversionController controller = new FormatConversionController(inputFormat, target.getFormat(),
+				ConverterOperationMode.CONVERT, inputFile.toString(), outputFile.toString(),
+				target.getCompressionFormat());
+		controller.setPipelined(pipelined);
+		try {
+			controller.convert();
+			return Files.size(outputFile);
+		} catch (ImageHandlingException e) {
+			controller.abortConversion();
+			throw e;
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read file size: " + outputFile,
+					ImageConverterErrorCode.IO_ERROR);
+		} finally {
+			try {
+				Files.deleteIfExists(outputFile);
+			} catch (IOException e) {
+				// The temp directory gets removed at the end anyway
+			}
+		}
+	}
+
+	private void writeResults(List<TargetResult> results) throws ImageHandlingException {
+		Path resultsFile = Paths.get(resultsPath);
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8))) {
+			if (resultsPath.toLowerCase().endsWith(".json")) {
+				writer.println(String.format(Locale.ROOT,
+						"{\"javaVersion\":\"%s\",\"processors\":%d,\"warmupRuns\":%d,\"repetitions\":%d,\"results\":[",
+						System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), warmupRuns,
+						repetitions));
+				for (int i = 0; i < results.size(); i++) {
+					writer.println(results.get(i).toJson() + (i < results.size() - 1 ? "," : ""));
+				}
+				writer.println("]}");
+			} else {
+				writer.println(CSV_HEADER);
+				for (TargetResult result : results) {
+					writer.println(result.toCsvLine());
+				}
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write the benchmark results: " + resultsPath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * To get the CPU time of all threads of the process, including the garbage
+	 * collector.
+	 *
+	 * @return the CPU time or <code>-1</code> if it cannot be measured.
+	 */
+	private static long getProcessCpuNanos() {
+		if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+					.getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	/**
+	 * Resets the peak resident set size of the process so that each target is
+	 * measured on its own. This only works on Linux.
+	 */
+	private static void resetPeakResidentSetSize() {
+		try {
+			Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+		} catch (IOException | UnsupportedOperationException e) {
+			// The peak since the start of the process is reported then
+		}
+	}
+
+	/**
+	 * Reads the peak resident set size of the process. This only works on Linux.
+	 *
+	 * @return the peak resident set size or <code>-1</code> if it is unknown.
+	 */
+	private static long readPeakResidentSetSize() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmHWM:")) {
+					// The value is given in kB
+					return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Not available on this system
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the temp directory.
+	 */
+	@Override
+	protected void finalizeConversion() {
+		if (outputDirectory != null) {
+			try {
+				Files.deleteIfExists(outputDirectory);
+			} catch (IOException e) {
+				System.out.println(" Could not remove temp directory: " + outputDirectory);
+			}
+		}
+	}
+
+	@Override
+	public void abortConversion() {
+		finalizeConversion();
+	}
+
+	/**
+	 * The measurements of one target.
+	 */
+	private static class TargetResult {
+		private final ConversionTarget target;
+		private final int files;
+		private final List<Long> latencies;
+		private long inputBytes;
+		private long outputBytes;
+		private int failures;
+		private long wallNanos;
+		private long cpuNanos;
+		private long peakRssBytes;
+
+		TargetResult(ConversionTarget target, int files) {
+			this.target = target;
+			this.files = files;
+			latencies = new ArrayList<Long>();
+		}
+
+		void addConversion(long inputBytes, long outputBytes, long latencyNanos) {
+			this.inputBytes += inputBytes;
+			this.outputBytes += outputBytes;
+			latencies.add(latencyNanos);
+		}
+
+		/**
+		 * To get a percentile of the latencies using the nearest-rank method.
+		 *
+		 * @param percentile the percentile between 0 and 100.
+		 * @return the latency in milliseconds or 0 if no image was converted.
+		 */
+		double getLatencyMillis(double percentile) {
+			if (latencies.isEmpty()) {
+				return 0;
+			}
+			Long[] sortedLatencies = latencies.toArray(new Long[0]);
+			Arrays.sort(sortedLatencies);
+			int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+			return sortedLatencies[Math.max(0, rank - 1)] / 1e6;
+		}
+
+		double getMegabytesPerSecond() {
+			return wallNanos == 0 ? 0 : inputBytes / (wallNanos / 1e9) / (1024 * 1024);
+		}
+
+		double getCompressionRatio() {
+			return inputBytes == 0 ? 0 : outputBytes / (double) inputBytes;
+		}
+
+		String getCompressionName() {
+			return target.getCompressionFormat().name().toLowerCase();
+		}
+
+		String toSummary() {
+			return String.format(Locale.ROOT,
+					" %-6s %-12s %8.2f s %8.1f MB/s  p50 %8.2f ms  p95 %8.2f ms  p99 %8.2f ms  ratio %.3f  "
+							+ "cpu %8.2f s  peak RSS %6d MB  %d failed",
+					target.getFormat().getFileExtension(), getCompressionName(), wallNanos / 1e9,
+					getMegabytesPerSecond(), getLatencyMillis(50), getLatencyMillis(95), getLatencyMillis(99),
+					getCompressionRatio(), cpuNanos / 1e9, peakRssBytes < 0 ? -1 : peakRssBytes / (1024 * 1024),
+					failures);
+		}
+
+		String toCsvLine() {
+			return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.4f,%.3f,%d,%d,%d",
+					target.getFormat().getFileExtension(), getCompressionName(), files, latencies.size(), failures,
+					wallNanos / 1e9, getMegabytesPerSecond(), getLatencyMillis(50), getLatencyMillis(95),
+					getLatencyMillis(99), getCompressionRatio(), cpuNanos / 1e9, peakRssBytes, inputBytes,
+					outputBytes);
+		}
+
+		String toJson() {
+			return String.format(Locale.ROOT,
+					"{\"format\":\"%s\",\"compression\":\"%s\",\"files\":%d,\"runs\":%d,\"failures\":%d,"
+							+ "\"wallSeconds\":%.3f,\"mbPerSecond\":%.3f,\"p50Millis\":%.3f,\"p95Millis\":%.3f,"
+							+ "\"p99Millis\":%.3f,\"compressionRatio\":%.4f,\"cpuSeconds\":%.3f,\"peakRssBytes\":%d,"
+							+ "\"inputBytes\":%d,\"outputBytes\":%d}",
+					target.getFormat().getFileExtension(), getCompressionName(), files, latencies.size(), failures,
+					wallNanos / 1e9, getMegabytesPerSecond(), getLatencyMillis(50), getLatencyMillis(95),
+					getLatencyMillis(99), getCompressionRatio(), cpuNanos / 1e9, peakRssBytes, inputBytes,
+					outputBytes);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.cache.ConversionCache;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.ImageInfo;
+import propra.imageconverter.monitoring.ConversionMetrics;
+import propra.imageconverter.monitoring.ConversionReport;
+import propra.imageconverter.monitoring.ConversionReportWriter;
+
+/**
+ * A <code>CachingConversionController</code> looks up the result of a
+ * conversion in a <code>ConversionCache</code> first. Only if it is not cached,
+ * another <code>ConversionController</code> gets created to perform the
+ * conversion and its result is stored in the cache afterwards.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class CachingConversionController extends ConversionController {
+
+	/**
+	 * Creates the <code>ConversionController</code> which performs the conversion
+	 * if its result is not cached.
+	 */
+	public interface ControllerFactory {
+		ConversionController create() throws ImageHandlingException;
+	}
+
+	private ConversionCache cache;
+	private Path inputFile;
+	private Path outputFile;
+	private ConversionOptions options;
+	private ControllerFactory factory;
+
+	/**
+	 * The controller performing the conversion or <code>null</code> if the result
+	 * was cached.
+	 */
+	private ConversionController controller;
+
+	/**
+	 * To create a new <code>CachingConversionController</code>.
+	 *
+	 * @param cache      the cache.
+	 * @param inputPath  the path of the source file.
+	 * @param outputPath the path of the destination file.
+	 * @param options    what should be done with the input data.
+	 * @param factory    creates the controller performing the conversion.
+	 */
+	public CachingConversionController(ConversionCache cache, String inputPath, String outputPath,
+			ConversionOptions options, ControllerFactory factory) {
+		super(options.getOperationMode());
+		this.cache = cache;
+		this.inputFile = Paths.get(inputPath);
+		this.outputFile = Paths.get(outputPath);
+		this.options = options;
+		this.factory = factory;
+	}
+
+	/**
+	 * Creates a <code>ConversionController</code> which uses the cache configured
+	 * with <code>-Dpropra.cache.directory=</code>, if there is one. Conversions
+	 * whose round trip should be verified do not use the cache since a cached
+	 * output image was not necessarily verified.
+	 *
+	 * @param inputPath  the path of the source file.
+	 * @param outputPath the path of the destination file.
+	 * @param options    what should be done with the input data.
+	 * @param factory    creates the controller performing the conversion.
+	 * @return the controller.
+	 * @throws ImageHandlingException when the cache could not be opened or the
+	 *                                controller could not be created.
+	 */
+	public static ConversionController create(String inputPath, String outputPath, ConversionOptions options,
+			ControllerFactory factory) throws ImageHandlingException {
+		ConversionCache cache = ConversionCache.getDefault();
+		if (cache == null || options.isRoundTripVerified()) {
+			return factory.create();
+		}
+		return new CachingConversionController(cache, inputPath, outputPath, options, factory);
+	}
+
+	/**
+	 * Restores the result of the conversion from the cache or performs it. A
+	 * restored image is reported to the default
+	 * <code>ConversionReportWriter</code> if there is one.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		long startNanos = System.nanoTime();
+		ConversionCache.Key key = cache.createKey(inputFile, options);
+		if (key != null && cache.restore(key, outputFile)) {
+			writeReport(System.nanoTime() - startNanos);
+			return;
+		}
+
+		controller = factory.create();
+		controller.convert();
+		if (key != null) {
+			cache.store(key, outputFile);
+		}
+	}
+
+	/**
+	 * Writes the report of a conversion restored from the cache. The input and the
+	 * output image are described by their headers.
+	 * 
+	 * @param durationNanos the time it took to restore the output image.
+	 * @throws ImageHandlingException when the report could not be written.
+	 */
+	private void writeReport(long durationNanos) throws ImageHandlingException {
+		ConversionReportWriter writer = ConversionReportWriter.getDefault();
+		if (writer == null || options.getOperationMode().operationIsBaseCoding()) {
+			return;
+		}
+		ImageInfo inputInfo = ImageInfo.probe(inputFile, false);
+		ImageInfo outputInfo = ImageInfo.probe(outputFile, false);
+		ConversionReport report = new ConversionReport(inputFile.toString());
+		report.setInput(options.getInputFormat(), inputInfo.getCompressionFormat(), inputInfo.getFileLength(),
+				inputInfo.getWidth(), inputInfo.getHeight());
+		report.addOutput(outputFile.toString(), options.getOutputFormat(), options.getOutputCompressionFormat(),
+				outputInfo.getCompressionFormat(), outputInfo.getFileLength(), null);
+		report.setTimes(durationNanos, null);
+		// The input image was hashed to find the cached output image
+		report.setBytes(inputInfo.getFileLength() + outputInfo.getFileLength(), outputInfo.getFileLength(), 0);
+		report.setThreads(1, ConversionMetrics.getDefault().getInFlightConversions() + 1);
+		report.setCached();
+		writer.write(report);
+	}
+
+	@Override
+	public void abortConversion() {
+		if (controller != null) {
+			controller.abortConversion();
+		}
+	}
+}
@@ -0,0 +1,628 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import propra.imageconverter.codecs.PixelSwapKernel;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.huffman.HuffmanEncoder;
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.codecs.rle.RLEEncodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.monitoring.ConversionMetrics;
+import propra.imageconverter.util.FileHandler;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConversionTarget;
+import propra.imageconverter.util.arguments.Format;
+import propra.imageconverter.verification.RoundTripVerification;
+
+/**
+ * A <code>FanOutConversion</code> converts one input image into several output
+ * images. The data segment of the input image gets decoded only once and the
+ * pixels are passed to one encoder per combination of output format and
+ * compression. Each encoder runs in its own thread so that the output images
+ * are written in parallel. Output images with the same format and compression
+ * share their encoder.
+ * <p>
+ * Huffman encoding and 'auto' compression need all pixels before the first
+ * byte can be written. Therefore the pixels are staged in a temp-file while the
+ * byte frequencies and the run-length-encoded size are collected once for all
+ * of these output images. A second pass over the temp-file then feeds their
+ * encoders at once.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+class FanOutConversion {
+
+	/**
+	 * The number of decoded chunks which may wait for the encoders. It limits the
+	 * memory in use when the encoders are slower than the decoding.
+	 */
+	private static final int MAX_CHUNKS_IN_FLIGHT = 16;
+
+	private final FileHandler inputHandler;
+	private final Format inputFormat;
+	private final CompressionFormat inputCompressionFormat;
+	private final int width;
+	private final int height;
+	private final long pixelBytes;
+	private final List<Output> outputs;
+
+	private final Semaphore chunksInFlight;
+
+	/**
+	 * The first error which occurred in one of the encoders.
+	 */
+	private volatile ImageHandlingException error;
+
+	/*
+	 * Decoding the input image
+	 */
+	private RLEDecodingKernel rleDecodingKernel;
+	private HuffmanDecoder huffmanDecoder;
+	private long decodedBytes;
+
+	/*
+	 * Collected in the first pass for Huffman and 'auto' output images
+	 */
+	private FileHandler stagingFileHandler;
+	private HuffmanEncoder huffmanEncoder;
+	private long rleCompressedLength;
+
+	/**
+	 * The largest number of threads working at the same time.
+	 */
+	private int threadCount = 1;
+
+	/**
+	 * Decodes the output images while they are being written, may be
+	 * <code>null</code>.
+	 */
+	private RoundTripVerification roundTripVerification;
+
+	/**
+	 * Creates a new <code>FanOutConversion</code>.
+	 *
+	 * @param inputHandler   the file handler of the input image. It must point to
+	 *                       the beginning of the data segment.
+	 * @param inputImage     the input image whose header was read.
+	 * @param inputFormat    the format of the input image.
+	 * @param targets        the output images.
+	 * @param outputHandlers the opened file handlers of the output images in the
+	 *                       same order.
+	 */
+	FanOutConversion(FileHandler inputHandler, Image inputImage, Format inputFormat, List<ConversionTarget> targets,
+			List<FileHandler> outputHandlers) {
+		this.inputHandler = inputHandler;
+		this.inputFormat = inputFormat;
+		inputCompressionFormat = inputImage.getCompressionMode();
+		width = inputImage.getWidth();
+		height = inputImage.getHeight();
+		pixelBytes = (long) width * height * 3;
+		outputs = new ArrayList<Output>();
+		for (int i = 0; i < targets.size(); i++) {
+			outputs.add(new Output(targets.get(i), outputHandlers.get(i)));
+		}
+		chunksInFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+	}
+
+	/**
+	 * To pass the data segments of the output images to a
+	 * <code>RoundTripVerification</code> while they are being written. The
+	 * verification must be finished by the caller.
+	 *
+	 * @param roundTripVerification the verification or <code>null</code>.
+	 */
+	void setRoundTripVerification(RoundTripVerification roundTripVerification) {
+		this.roundTripVerification = roundTripVerification;
+	}
+
+	/**
+	 * Converts the input image into all output images.
+	 *
+	 * @throws ImageHandlingException when the input image is corrupt or an output
+	 *                                image could not be written.
+	 */
+	void run() throws ImageHandlingException {
+		List<Output> immediateOutputs = new ArrayList<Output>();
+		List<Output> stagedOutputs = new ArrayList<Output>();
+		Format stagingFormat = inputFormat;
+		boolean frequenciesNeeded = false;
+		boolean rleLengthNeeded = false;
+		for (Output output : outputs) {
+			CompressionFormat compressionFormat = output.target.getCompressionFormat();
+			if (compressionFormat == CompressionFormat.HUFFMAN || compressionFormat == CompressionFormat.AUTO) {
+				stagedOutputs.add(output);
+				if (output.target.getFormat() == Format.PROPRA) {
+					// The Huffman tree depends on the order in which the byte values occur
+					frequenciesNeeded = true;
+					stagingFormat = Format.PROPRA;
+				}
+				rleLengthNeeded |= compressionFormat == CompressionFormat.AUTO;
+			} else {
+				output.createImage(compressionFormat);
+				immediateOutputs.add(output);
+			}
+		}
+
+		if (inputCompressionFormat == CompressionFormat.RLE) {
+			rleDecodingKernel = new RLEDecodingKernel(width, height, false);
+		} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+			huffmanDecoder = new HuffmanDecoder(pixelBytes);
+		}
+
+		try {
+			List<ChunkConsumer> consumers = createEncoders(immediateOutputs);
+			if (!stagedOutputs.isEmpty()) {
+				stagingFileHandler = FileHandler.createTempFileHandler("propra-");
+				stagingFileHandler.createFile();
+				stagingFileHandler.openOutputFile();
+				consumers.add(new Stage(stagingFormat, frequenciesNeeded, rleLengthNeeded));
+			}
+			runPass(this::decodeNextChunk, inputFormat, consumers);
+
+			if (!stagedOutputs.isEmpty()) {
+				for (Output output : stagedOutputs) {
+					output.createImage(selectCompression(output.target));
+				}
+				stagingFileHandler.openInputStream();
+				runPass(stagingFileHandler::readData, stagingFormat, createEncoders(stagedOutputs));
+			}
+
+			for (Output output : outputs) {
+				output.image.finalizeConversion();
+			}
+		} finally {
+			if (stagingFileHandler != null) {
+				stagingFileHandler.closeFile();
+				stagingFileHandler.getFile().delete();
+			}
+		}
+	}
+
+	/**
+	 * Passes all chunks of a source to the consumers and waits until they have
+	 * processed them. The pixels of each chunk are swapped at most once for all
+	 * consumers expecting the other format.
+	 *
+	 * @param source       the source of the pixels.
+	 * @param sourceFormat the order of the bytes within the pixels of the source.
+	 * @param consumers    the consumers.
+	 * @throws ImageHandlingException when the source or one of the consumers
+	 *                                failed.
+	 */
+	private void runPass(ChunkSource source, Format sourceFormat, List<ChunkConsumer> consumers)
+			throws ImageHandlingException {
+		// Each consumer runs in its own thread
+		threadCount = Math.max(threadCount, consumers.size() + 1);
+		PixelSwapKernel pixelSwapKernel = null;
+		for (ChunkConsumer consumer : consumers) {
+			if (consumer.format != sourceFormat) {
+				pixelSwapKernel = new PixelSwapKernel(width, height);
+			}
+		}
+
+		boolean complete = false;
+		try {
+			byte[] pixels;
+			while (error == null && (pixels = source.next()) != null) {
+				byte[] swappedPixels = null;
+				if (pixelSwapKernel != null) {
+					pixelSwapKernel.transcode(pixels, pixels.length);
+					swappedPixels = Arrays.copyOf(pixelSwapKernel.getOutputBuffer(),
+							pixelSwapKernel.getOutputLength());
+				}
+				chunksInFlight.acquireUninterruptibly();
+				Chunk chunk = new Chunk(pixels, sourceFormat, swappedPixels, consumers.size());
+				for (ChunkConsumer consumer : consumers) {
+					consumer.submit(chunk);
+				}
+			}
+			complete = true;
+		} finally {
+			for (ChunkConsumer consumer : consumers) {
+				consumer.finish(complete);
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Reads and decodes the next chunk of the input image's data segment. Data
+	 * following after the last pixel is ignored.
+	 *
+	 * @return the pixels in the order of the input format or <code>null</code>
+	 *         when all pixels were decoded.
+	 * @throws ImageHandlingException when the data segment is corrupt.
+	 */
+	private byte[] decodeNextChunk() throws ImageHandlingException {
+		byte[] pixels = null;
+		while (pixels == null || pixels.length == 0) {
+			byte[] data = inputHandler.readData();
+			if (data == null) {
+				if (decodedBytes != pixelBytes) {
+					throw new ImageHandlingException(
+							"Image data segment corrupt. Missing number of bytes: " + (pixelBytes - decodedBytes),
+							ImageConverterErrorCode.INVALID_DATASEGMENT);
+				}
+				return null;
+			}
+
+			if (inputCompressionFormat == CompressionFormat.RLE) {
+				rleDecodingKernel.transcode(data, data.length);
+				pixels = Arrays.copyOf(rleDecodingKernel.getOutputBuffer(), rleDecodingKernel.getOutputLength());
+			} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+				pixels = huffmanDecoder.decode(data);
+			} else {
+				pixels = data;
+			}
+
+			if (pixels != null && pixels.length > pixelBytes - decodedBytes) {
+				pixels = Arrays.copyOf(pixels, (int) (pixelBytes - decodedBytes));
+			}
+		}
+		decodedBytes += pixels.length;
+		return pixels;
+	}
+
+	/**
+	 * Selects the compression of an output image. For 'auto' the one producing
+	 * the smallest data segment is selected based on the data collected in the
+	 * first pass.
+	 *
+	 * @param target the output image.
+	 * @return the compression.
+	 * @throws ImageHandlingException when the Huffman tree could not be created.
+	 */
+	private CompressionFormat selectCompression(ConversionTarget target) throws ImageHandlingException {
+		if (target.getCompressionFormat() != CompressionFormat.AUTO) {
+			return target.getCompressionFormat();
+		}
+		// Huffman encoding is not available for *.tga images
+		long huffmanCompressedLength = target.getFormat() == Format.PROPRA ? huffmanEncoder.getEncodedLength()
+				: Long.MAX_VALUE;
+		CompressionFormat compressionFormat = FormatConversionController.selectSmallestCompression(pixelBytes,
+				rleCompressedLength, huffmanCompressedLength);
+		ConversionMetrics.getDefault().autoCompressionSelected(compressionFormat);
+		return compressionFormat;
+	}
+
+	/**
+	 * To get the compressions of the output images after the conversion. They
+	 * differ from those of the targets for 'auto'.
+	 *
+	 * @return the compressions in the order of the targets.
+	 */
+	List<CompressionFormat> getOutputCompressionFormats() {
+		List<CompressionFormat> compressionFormats = new ArrayList<CompressionFormat>();
+		for (Output output : outputs) {
+			compressionFormats.add(output.compressionFormat);
+		}
+		return compressionFormats;
+	}
+
+	/**
+	 * To get the lengths of the data segment 'auto' compared for an output image
+	 * of the given format.
+	 *
+	 * @param format the format of the output image.
+	 * @return the length for each compression.
+	 * @throws ImageHandlingException when the Huffman tree could not be created.
+	 */
+	Map<CompressionFormat, Long> getAutoCandidateLengths(Format format) throws ImageHandlingException {
+		Map<CompressionFormat, Long> candidateLengths = new LinkedHashMap<CompressionFormat, Long>();
+		candidateLengths.put(CompressionFormat.UNCOMPRESSED, pixelBytes);
+		candidateLengths.put(CompressionFormat.RLE, rleCompressedLength);
+		if (format == Format.PROPRA) {
+			candidateLengths.put(CompressionFormat.HUFFMAN, huffmanEncoder.getEncodedLength());
+		}
+		return candidateLengths;
+	}
+
+	/**
+	 * To get the largest number of threads which worked on the conversion at the
+	 * same time.
+	 *
+	 * @return the number of threads.
+	 */
+	int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * To get the number of bytes written into the temp-file the pixels were
+	 * staged in for Huffman and 'auto' output images.
+	 *
+	 * @return the number of bytes.
+	 */
+	long getStagedBytes() {
+		return stagingFileHandler == null ? 0 : stagingFileHandler.getBytesWritten();
+	}
+
+	/**
+	 * To get the number of bytes read from files besides the input image, i.e.
+	 * from the staging temp-file and from the output images to calculate their
+	 * check sums.
+	 *
+	 * @return the number of bytes.
+	 */
+	long getAdditionalBytesRead() {
+		long bytesRead = stagingFileHandler == null ? 0 : stagingFileHandler.getBytesRead();
+		for (Output output : outputs) {
+			if (output.image instanceof ImagePropra) {
+				bytesRead += ((ImagePropra) output.image).getCheckSumBytes();
+			}
+		}
+		return bytesRead;
+	}
+
+	/**
+	 * Creates one encoder for each combination of format and compression of the
+	 * given output images.
+	 *
+	 * @param outputs the output images.
+	 * @return the encoders.
+	 */
+	private List<ChunkConsumer> createEncoders(List<Output> outputs) {
+		Map<String, Encoder> encoders = new LinkedHashMap<String, Encoder>();
+		for (Output output : outputs) {
+			String name = (output.target.getFormat() + "-" + output.compressionFormat).toLowerCase();
+			Encoder encoder = encoders.get(name);
+			if (encoder == null) {
+				encoder = new Encoder(name, output.target.getFormat(), output.compressionFormat);
+				encoders.put(name, encoder);
+			}
+			encoder.outputs.add(output);
+		}
+		return new ArrayList<ChunkConsumer>(encoders.values());
+	}
+
+	private synchronized void fail(ImageHandlingException e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Provides the pixels of a pass.
+	 */
+	private interface ChunkSource {
+		byte[] next() throws ImageHandlingException;
+	}
+
+	/**
+	 * A decoded part of the data segment which is shared by all consumers of a
+	 * pass.
+	 */
+	private class Chunk {
+		private final byte[] pixels;
+		private final Format format;
+		private final byte[] swappedPixels;
+		private final AtomicInteger pendingConsumers;
+
+		Chunk(byte[] pixels, Format format, byte[] swappedPixels, int consumerCount) {
+			this.pixels = pixels;
+			this.format = format;
+			this.swappedPixels = swappedPixels;
+			pendingConsumers = new AtomicInteger(consumerCount);
+		}
+
+		byte[] getPixels(Format format) {
+			return format == this.format ? pixels : swappedPixels;
+		}
+
+		void release() {
+			if (pendingConsumers.decrementAndGet() == 0) {
+				chunksInFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * Processes the chunks of a pass in its own thread in the order they were
+	 * submitted.
+	 */
+	private abstract class ChunkConsumer {
+		private final Format format;
+		private final ExecutorService executor;
+
+		ChunkConsumer(String name, Format format) {
+			this.format = format;
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "fan-out-" + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		void submit(Chunk chunk) {
+			executor.execute(() -> {
+				try {
+					if (error == null) {
+						consume(chunk.getPixels(format));
+					}
+				} catch (ImageHandlingException e) {
+					fail(e);
+				} catch (RuntimeException e) {
+					fail(new ImageHandlingException("Unexpected error in thread " + Thread.currentThread().getName()
+							+ ": " + e, ImageConverterErrorCode.UNEXPECTED_ERROR));
+				} finally {
+					chunk.release();
+				}
+			});
+		}
+
+		/**
+		 * Waits until all submitted chunks were processed.
+		 *
+		 * @param complete <code>true</code> when all chunks of the pass were
+		 *                 submitted so that the consumer can flush its data.
+		 */
+		void finish(boolean complete) {
+			if (complete) {
+				executor.execute(() -> {
+					try {
+						if (error == null) {
+							flush();
+						}
+					} catch (ImageHandlingException e) {
+						fail(e);
+					}
+				});
+			}
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		protected abstract void consume(byte[] pixels) throws ImageHandlingException;
+
+		protected abstract void flush() throws ImageHandlingException;
+	}
+
+	/**
+	 * Encodes the pixels for all output images with the same format and
+	 * compression and writes the result into each of them.
+	 */
+	private class Encoder extends ChunkConsumer {
+		private final CompressionFormat compressionFormat;
+		private final List<Output> outputs;
+		private RLEEncodingKernel rleEncodingKernel;
+
+		Encoder(String name, Format format, CompressionFormat compressionFormat) {
+			super(name, format);
+			this.compressionFormat = compressionFormat;
+			outputs = new ArrayList<Output>();
+			if (compressionFormat == CompressionFormat.RLE) {
+				rleEncodingKernel = new RLEEncodingKernel(width, height, false);
+			}
+		}
+
+		@Override
+		protected void consume(byte[] pixels) throws ImageHandlingException {
+			if (compressionFormat == CompressionFormat.RLE) {
+				rleEncodingKernel.transcode(pixels, pixels.length);
+				write(rleEncodingKernel.getOutputBuffer(), rleEncodingKernel.getOutputLength());
+			} else if (compressionFormat == CompressionFormat.HUFFMAN) {
+				// The Huffman tree was created in the first pass
+				byte[] encodedData = huffmanEncoder.encode(pixels);
+				write(encodedData, encodedData.length);
+			} else {
+				write(pixels, pixels.length);
+			}
+		}
+
+		@Override
+		protected void flush() throws ImageHandlingException {
+			if (compressionFormat == CompressionFormat.RLE) {
+				rleEncodingKernel.flush();
+			} else if (compressionFormat == CompressionFormat.HUFFMAN) {
+				byte[] encodedData = huffmanEncoder.flush();
+				if (encodedData != null) {
+					write(encodedData, encodedData.length);
+				}
+			}
+		}
+
+		private void write(byte[] data, int length) throws ImageHandlingException {
+			for (Output output : outputs) {
+				output.fileHandler.writeData(data, 0, length);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pixels into the temp-file and collects the byte frequencies and
+	 * the run-length-encoded size for the second pass.
+	 */
+	private class Stage extends ChunkConsumer {
+		private final boolean frequenciesNeeded;
+		private RLEEncodingKernel rleEncodingKernel;
+
+		Stage(Format format, boolean frequenciesNeeded, boolean rleLengthNeeded) {
+			super("staging", format);
+			this.frequenciesNeeded = frequenciesNeeded;
+			if (frequenciesNeeded) {
+				huffmanEncoder = new HuffmanEncoder();
+			}
+			if (rleLengthNeeded) {
+				rleEncodingKernel = new RLEEncodingKernel(width, height, false);
+			}
+		}
+
+		@Override
+		protected void consume(byte[] pixels) throws ImageHandlingException {
+			stagingFileHandler.writeData(pixels);
+			if (frequenciesNeeded) {
+				huffmanEncoder.prepareEncoding(pixels);
+			}
+			if (rleEncodingKernel != null) {
+				rleEncodingKernel.transcode(pixels, pixels.length);
+				rleCompressedLength += rleEncodingKernel.getOutputLength();
+			}
+		}
+
+		@Override
+		protected void flush() throws ImageHandlingException {
+			if (rleEncodingKernel != null) {
+				rleEncodingKernel.flush();
+			}
+			stagingFileHandler.closeFile();
+		}
+	}
+
+	/**
+	 * One output image.
+	 */
+	private class Output {
+		private final ConversionTarget target;
+		private final FileHandler fileHandler;
+		private CompressionFormat compressionFormat;
+		private Image image;
+
+		Output(ConversionTarget target, FileHandler fileHandler) {
+			this.target = target;
+			this.fileHandler = fileHandler;
+		}
+
+		/**
+		 * Creates the output image and writes its header.
+		 *
+		 * @param compressionFormat the compression of the output image.
+		 * @throws ImageHandlingException when the header could not be written.
+		 */
+		void createImage(CompressionFormat compressionFormat) throws ImageHandlingException {
+			this.compressionFormat = compressionFormat;
+			if (target.getFormat() == Format.TGA) {
+				image = new ImageTGA(fileHandler, compressionFormat);
+			} else {
+				image = new ImagePropra(fileHandler, compressionFormat);
+			}
+			image.setDimensions(width, height);
+			fileHandler.writeData(image.getHeader());
+			if (roundTripVerification != null) {
+				fileHandler.setDataListener(
+						roundTripVerification.verifyOutput(target.getPath(), target.getFormat(), compressionFormat));
+			}
+		}
+	}
+}
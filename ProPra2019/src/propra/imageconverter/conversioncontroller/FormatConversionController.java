@@ -1,409 +1,1143 @@
-package propra.imageconverter.conversioncontroller;
-
-import propra.imageconverter.codecs.Decoder;
-import propra.imageconverter.codecs.Encoder;
-import propra.imageconverter.codecs.RGBEncoder;
-import propra.imageconverter.codecs.huffman.HuffmanDecoder;
-import propra.imageconverter.codecs.huffman.HuffmanEncoder;
-import propra.imageconverter.codecs.rle.RLEDecoder;
-import propra.imageconverter.codecs.rle.RLEEncoder;
-import propra.imageconverter.error.ImageConverterErrorCode;
-import propra.imageconverter.error.ImageHandlingException;
-import propra.imageconverter.image.Image;
-import propra.imageconverter.image.ImagePropra;
-import propra.imageconverter.image.ImageTGA;
-import propra.imageconverter.util.FileHandler;
-import propra.imageconverter.util.arguments.CompressionFormat;
-import propra.imageconverter.util.arguments.ConverterOperationMode;
-import propra.imageconverter.util.arguments.Format;
-
-/**
- * A <code>FormatConversionController</code> performs all the necessary
- * operations in order to convert images using various conversion and/or
- * compression algorithms.
- * 
- * @author Oliver Eckstein
- *
- */
-public class FormatConversionController extends ConversionController {
-
-	/**
-	 * <code>FileHandler</code> which stores already decoded data and which can be
-	 * re-used so that the data does not need to get decoded again if it is
-	 * necessary at a later step.
-	 */
-	private FileHandler uncompressedInputDataFileHandler;
-	private Format inputFormat;
-	private Format outputFormat;
-	private CompressionFormat inputCompressionFormat;
-	private CompressionFormat outputCompressionFormat;
-	private Image inputImage;
-	private Image outputImage;
-
-	private Encoder rgbEncoder;
-	private Encoder rleEncoder;
-	private Encoder huffmanEncoder;
-	private Decoder rleDecoder;
-	private Decoder huffmanDecoder;
-
-	/**
-	 * The path of the source file.
-	 */
-	private String inputPath;
-
-	/**
-	 * The length of the output image if it gets stored uncompressed.
-	 */
-	private long uncompressedLength;
-
-	/**
-	 * The length of the output image if it gets stored run-length-encoded.
-	 */
-	private long rleCompressedLength;
-
-	/**
-	 * The length of the output image if it gets stored using Huffman encoding.
-	 */
-	private long huffmanCompressedLength;
-
-	/**
-	 * Indicates whether the 'auto' option was set for compression.
-	 */
-	private boolean autoCompressionWasSet;
-
-	/**
-	 * To create a new <code>FormatConversionController</code> and initiate the file
-	 * handlers.
-	 * 
-	 * @param inputFormat   the input image's format.
-	 * @param outputFormat  the output image's format.
-	 * @param operationMode the <code>BaseConversionController</code>'s operation
-	 *                      mode.
-	 * @param inputPath     the path of the source file.
-	 * @param outputPath    the path of the destination file.
-	 * @throws ImageHandlingException when an error occurred during initiating the
-	 *                                file handlers for reading from the source file
-	 *                                or writing into the destination file.
-	 */
-	public FormatConversionController(Format inputFormat, Format outputFormat, ConverterOperationMode operationMode,
-			String inputPath, String outputPath, CompressionFormat outputCompressionFormat)
-			throws ImageHandlingException {
-		super(operationMode, inputPath, outputPath);
-		this.inputFormat = inputFormat;
-		this.outputFormat = outputFormat;
-		this.outputCompressionFormat = outputCompressionFormat;
-		autoCompressionWasSet = (outputCompressionFormat == CompressionFormat.AUTO);
-		super.initHandlers(inputPath, outputPath);
-
-		uncompressedLength = 0;
-		rleCompressedLength = 0;
-		huffmanCompressedLength = 0;
-	}
-
-	/**
-	 * To handle the conversion from all supported input formats to all supported
-	 * output formats including the supported input and output compression format.
-	 * 
-	 * @throws ImageHandlingException when an error occurred during the conversion
-	 *                                process.
-	 */
-	@Override
-	public void convert() throws ImageHandlingException {
-
-		// Create the input image
-		if (inputFormat == Format.TGA) {
-			inputImage = new ImageTGA(inputHandler);
-		} else if (inputFormat == Format.PROPRA) {
-			inputImage = new ImagePropra(inputHandler);
-		} else {
-			throw new ImageHandlingException("Unknown input format.", ImageConverterErrorCode.UNEXPECTED_ERROR);
-		}
-
-		inputCompressionFormat = inputImage.getCompressionMode();
-
-		// Create the encoders and decoders. Not all of them will necessarily be used.
-		rgbEncoder = new RGBEncoder();
-		rleEncoder = new RLEEncoder(inputImage.getWidth());
-		huffmanEncoder = new HuffmanEncoder();
-		rleDecoder = new RLEDecoder(inputImage.getUncompressedImageDataLength());
-		huffmanDecoder = new HuffmanDecoder(inputImage.getUncompressedImageDataLength());
-
-		if (autoCompressionWasSet) {
-			// First it must be found out which compression setting is the best one and then
-			// the according mode will be chosen and executed.
-			// After calling this method 'outputCompressionFormat' is changed from AUTO to
-			// the
-			// best option which produces the smallest output images.
-			findBestCompressionMode();
-		}
-
-		// Create the output image
-		if (outputFormat == Format.TGA) {
-			outputImage = new ImageTGA(outputHandler, outputCompressionFormat);
-		} else if (outputFormat == Format.PROPRA) {
-			outputImage = new ImagePropra(outputHandler, outputCompressionFormat);
-		} else {
-			throw new ImageHandlingException("Unknown output format.", ImageConverterErrorCode.UNEXPECTED_ERROR);
-		}
-
-		// Prepare the output image
-		outputImage.setDimensions(inputImage.getWidth(), inputImage.getHeight());
-		outputHandler.writeData(outputImage.getHeader());
-
-		// Now the conversion begins...
-		executeConversion(true);
-		if (outputCompressionFormat == CompressionFormat.HUFFMAN && !autoCompressionWasSet) {
-			// Currently a quite ugly way to reset the Huffman decoder ... :-(
-			// This is necessary if the inputImage and the outputImage are both Huffman
-			// compressed
-			huffmanDecoder = null;
-			huffmanDecoder = new HuffmanDecoder(inputImage.getUncompressedImageDataLength());
-			executeConversion(false);
-		}
-
-		// Some housekeeping before the conversion finishes
-		outputImage.finalizeConversion();
-		this.finalizeConversion();
-	}
-
-	/**
-	 * To convert the input image to the output image.
-	 * 
-	 * @param firstPass <code>true</code> when this is the first conversion pass.
-	 *                  Sometimes two passes are necessary i.e. for Huffman encoding
-	 *                  because in the first pass the Huffman tree gets built and in
-	 *                  the second pass the actual encoding is executed.
-	 * @throws ImageHandlingException when an error occurred during conversion
-	 */
-	private void executeConversion(boolean firstPass) throws ImageHandlingException {
-		byte[] imageData;
-
-		if (!autoCompressionWasSet && outputCompressionFormat == CompressionFormat.HUFFMAN && firstPass) {
-			// Initiate the temp-file file handler which stores the uncompressed data
-			uncompressedInputDataFileHandler = new FileHandler(inputPath + ".tmp");
-			uncompressedInputDataFileHandler.createFile();
-			uncompressedInputDataFileHandler.openOutputFile();
-		}
-
-		if (!firstPass && outputCompressionFormat == CompressionFormat.HUFFMAN) {
-			// Huffman tree was created. The input data must be read again to perform the
-			// encoding.
-			// This only is necessary when Huffman encoding should be performed and only
-			// if 'huffman' was set as an input argument.
-			// In case 'auto' was set the resetting of the inputHandler already happened
-			// in the simulateConversion() method.
-			swapFileHandlers();
-		}
-
-		if (autoCompressionWasSet && outputCompressionFormat == CompressionFormat.HUFFMAN) {
-			// In case 'auto' compression was set and Huffman encoding is the best
-			// compression scenario
-			// the preparation of the Huffman encoder (i.e. creating the tree) can be
-			// avoided
-			// because it was already done in simulateConversion() below.
-			firstPass = false;
-		}
-
-		while (((imageData = inputHandler.readData()) != null)) {
-			if (!autoCompressionWasSet && firstPass) {
-				// This part is only necessary when compression was not set to 'auto' because
-				// if it was set to 'auto' the inputHandler already points to the uncompressed
-				// data
-
-				// First the data must be decompressed if it was compressed
-				if (inputCompressionFormat == CompressionFormat.RLE) {
-					imageData = rleDecoder.decode(imageData);
-				} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
-					imageData = huffmanDecoder.decode(imageData);
-				}
-
-				// Now the pixel order will be changed if propra>tga or tga>propra conversion is
-				// desired by the user
-				if (inputFormat != outputFormat) {
-					imageData = rgbEncoder.encode(imageData);
-				}
-
-				if (outputCompressionFormat == CompressionFormat.HUFFMAN) {
-					// Write the uncompressed input image data into the temp-file
-					uncompressedInputDataFileHandler.writeData(imageData);
-				}
-			}
-
-			// Finally the data gets encoded if desired by the user
-			if (outputCompressionFormat == CompressionFormat.RLE) {
-				imageData = rleEncoder.encode(imageData);
-			} else if (outputCompressionFormat == CompressionFormat.HUFFMAN) {
-				if (firstPass && !autoCompressionWasSet) {
-					huffmanEncoder.prepareEncoding(imageData);
-					// This only creates the Huffman tree. No encoding is done here.
-					// The encoding of the data will take place the next time this method will be
-					// called
-				} else {
-					imageData = huffmanEncoder.encode(imageData);
-					// This method was now called with "false", the Huffman tree was created in the
-					// first pass
-					// and now the image data gets encoded.
-				}
-			}
-
-			if (outputCompressionFormat != CompressionFormat.HUFFMAN) {
-				// If Huffman compression is NOT the desired output format then the data can
-				// already be written in the first pass.
-				outputHandler.writeData(imageData);
-			} else {
-				if (!firstPass) {
-					// The data can only be written in the 2nd pass when the Huffman tree was
-					// created.
-					outputHandler.writeData(imageData);
-				}
-			}
-		}
-
-		// All encoders and/or decoders should be flushed now to either check whether
-		// there is still some data to be written (i.e. HuffmanEncoder) or whether
-		// the input file was corrupt and there is missing data (i.e. RLEEncoder).
-		if (inputFormat != outputFormat) {
-			rgbEncoder.flush();
-		}
-
-		if (outputCompressionFormat == CompressionFormat.RLE) {
-			rleEncoder.flush();
-		}
-
-		if (outputCompressionFormat == CompressionFormat.HUFFMAN && !firstPass) {
-			// Writing the very last bytes when the file should be encoded using Huffman
-			// encoding
-			outputHandler.writeData(huffmanEncoder.flush());
-		}
-	}
-
-	/**
-	 * Finds the compression mode for the output image which produces the smallest
-	 * output files. It basically simulates the encoding for all uncompressed,
-	 * run-length encoded compressed or Huffman algorithm compressed images. This
-	 * simulation is taken as a basis for the best choice. After having called this
-	 * method, 'outputCompressionFormat' is changed from <code>AUTO</code> to the
-	 * optimal compression setting.
-	 * 
-	 * @throws ImageHandlingException when an error occurred during the encoding
-	 *                                simulation.
-	 */
-	private void findBestCompressionMode() throws ImageHandlingException {
-		byte[] inputData;
-		byte[] outputDataUncompressed = null;
-		byte[] outputDataRLE;
-		byte[] outputDataHuffman;
-		boolean huffmanPreparationStep = true;
-
-		// Writes the uncompressed data from the input image into a temp-file which will
-		// be reused
-		// so that the decoding is only executed once to save computing power.
-		uncompressedInputDataFileHandler = new FileHandler(inputPath + ".tmp");
-		uncompressedInputDataFileHandler.createFile();
-		uncompressedInputDataFileHandler.openOutputFile();
-
-		for (int i = 0; i < 2; i++) {
-			// Two passes are necessary because of the Huffman algorithm.
-			if (!huffmanPreparationStep) {
-				// Huffman tree was created. The uncompressed input data will be used to
-				// simulate the Huffman encoding
-				swapFileHandlers();
-			}
-
-			if (i == 0 || i == 1 && outputFormat == Format.PROPRA) {
-				while (((inputData = inputHandler.readData()) != null)) {
-					if (huffmanPreparationStep) {
-						// First the data must be decompressed if it was compressed
-						if (inputCompressionFormat == CompressionFormat.RLE) {
-							outputDataUncompressed = rleDecoder.decode(inputData);
-						} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
-							outputDataUncompressed = huffmanDecoder.decode(inputData);
-						} else {
-							outputDataUncompressed = inputData;
-						}
-
-						if (inputFormat != outputFormat) {
-							// Change the pixel order if converting from tga>propra or propra>tga
-							outputDataUncompressed = rgbEncoder.encode(outputDataUncompressed);
-						}
-						// Write the uncompressed input image data into the temp-file
-						uncompressedInputDataFileHandler.writeData(outputDataUncompressed);
-
-						// Calculate the file size for an uncompressed or an RLE compressed image
-						outputDataRLE = rleEncoder.encode(outputDataUncompressed);
-						uncompressedLength += outputDataUncompressed.length;
-						rleCompressedLength += outputDataRLE.length;
-						// Create the Huffman tree which will later be re-used in case Huffman
-						// compression
-						// is the one which produces the smallest files
-						huffmanEncoder.prepareEncoding(outputDataUncompressed);
-					} else {
-						// Calculate the file size for a Huffman compressed image
-						outputDataHuffman = huffmanEncoder.encode(outputDataUncompressed);
-						huffmanCompressedLength += outputDataHuffman.length;
-					}
-				}
-			} else {
-				// In case the output file is *.tga, Huffman cannot be used
-				// Therefore it will always be the "worst" compression option.
-				huffmanCompressedLength = Integer.MAX_VALUE;
-			}
-
-			if (!huffmanPreparationStep && outputFormat == Format.PROPRA) {
-				// Retrieve the last bytes for a Huffman compressed image
-				outputDataHuffman = huffmanEncoder.flush();
-				huffmanCompressedLength += outputDataHuffman.length;
-			}
-			huffmanPreparationStep = false;
-		}
-		// Now the file sizes of all three compression algorithms are known and the
-		// smallest one gets choosen
-		if ((uncompressedLength < rleCompressedLength) & (uncompressedLength < huffmanCompressedLength)) {
-			outputCompressionFormat = CompressionFormat.UNCOMPRESSED;
-		} else if ((rleCompressedLength < uncompressedLength) & (rleCompressedLength < huffmanCompressedLength)) {
-			outputCompressionFormat = CompressionFormat.RLE;
-		} else if ((huffmanCompressedLength < uncompressedLength) & (huffmanCompressedLength < rleCompressedLength)) {
-			outputCompressionFormat = CompressionFormat.HUFFMAN;
-		} else {
-			// In the unlikely case all strategies create the same file size the strategy
-			// which needs
-			// less computing time will be used --> uncompressed.
-			outputCompressionFormat = CompressionFormat.UNCOMPRESSED;
-		}
-		// If the input data was corrupt (i.e. invalid RLE data such as missing bytes)
-		// it will be detected
-		// when calling the Encoder's flush() method
-		uncompressedInputDataFileHandler.reset();
-		rgbEncoder.flush();
-		rleEncoder.flush();
-		rleEncoder.reset();
-		rgbEncoder.reset();
-		huffmanEncoder.reset();
-	}
-
-	/**
-	 * Swaps the uncompressedInputDataFileHandler with the inputHandler.
-	 * 
-	 * @throws ImageHandlingException
-	 */
-	private void swapFileHandlers() throws ImageHandlingException {
-		uncompressedInputDataFileHandler.closeFile();
-		uncompressedInputDataFileHandler.openInputStream();
-		uncompressedInputDataFileHandler.reset();
-		inputHandler.closeFile();
-		inputHandler = uncompressedInputDataFileHandler;
-	}
-
-	/**
-	 * Closes the input and output files and removes the temp-file which contained
-	 * the uncompressed image data segment of the input image.
-	 */
-	@Override
-	protected void finalizeConversion() throws ImageHandlingException {
-		super.finalizeConversion();
-		if (outputCompressionFormat == CompressionFormat.HUFFMAN) {
-			inputHandler.removeFile();
-		}
-	}
-
-}
+package propra.imageconverter.conversioncontroller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import propra.imageconverter.codecs.Decoder;
+import propra.imageconverter.codecs.Encoder;
+import propra.imageconverter.codecs.PixelSwapKernel;
+import propra.imageconverter.codecs.RGBEncoder;
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.huffman.HuffmanEncoder;
+import propra.imageconverter.codecs.huffman.HuffmanTree;
+import propra.imageconverter.codecs.huffman.HuffmanTreeCache;
+import propra.imageconverter.codecs.rle.RLEDecoder;
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.codecs.rle.RLEEncoder;
+import propra.imageconverter.codecs.rle.RLEEncodingKernel;
+import propra.imageconverter.conversioncontroller.pipeline.ConversionPipeline;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.monitoring.ConversionEvent;
+import propra.imageconverter.monitoring.ConversionMetrics;
+import propra.imageconverter.monitoring.ConversionReport;
+import propra.imageconverter.monitoring.ConversionReportWriter;
+import propra.imageconverter.monitoring.ConversionStage;
+import propra.imageconverter.monitoring.StageTimes;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.DataListener;
+import propra.imageconverter.util.FileHandler;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConversionTarget;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+import propra.imageconverter.verification.RoundTripVerification;
+
+/**
+ * A <code>FormatConversionController</code> performs all the necessary
+ * operations in order to convert images using various conversion and/or
+ * compression algorithms.
+ * <p>
+ * It can also convert one input image into several output images at once. The
+ * input image then only gets decoded once, see <code>FanOutConversion</code>.
+ * 
+ * @author Oliver Eckstein
+ *
+ */
+public class FormatConversionController extends ConversionController {
+
+	/**
+	 * <code>FileHandler</code> which stores already decoded data and which can be
+	 * re-used so that the data does not need to get decoded again if it is
+	 * necessary at a later step.
+	 */
+	private FileHandler uncompressedInputDataFileHandler;
+	private Format inputFormat;
+	private Format outputFormat;
+	private CompressionFormat inputCompressionFormat;
+	private CompressionFormat outputCompressionFormat;
+	private CompressionFormat requestedCompressionFormat;
+	private Image inputImage;
+	private Image outputImage;
+
+	private Encoder rgbEncoder;
+	private Encoder rleEncoder;
+	private Encoder huffmanEncoder;
+	private Decoder rleDecoder;
+	private Decoder huffmanDecoder;
+
+	/**
+	 * The length of the output image if it gets stored uncompressed.
+	 */
+	private long uncompressedLength;
+
+	/**
+	 * The length of the output image if it gets stored run-length-encoded.
+	 */
+	private long rleCompressedLength;
+
+	/**
+	 * The length of the output image if it gets stored using Huffman encoding.
+	 */
+	private long huffmanCompressedLength;
+
+	/**
+	 * Indicates whether the 'auto' option was set for compression.
+	 */
+	private boolean autoCompressionWasSet;
+
+	/**
+	 * Indicates whether the conversion should run in a pipeline whose stages run
+	 * in their own threads.
+	 */
+	private boolean pipelined;
+
+	/**
+	 * Indicates whether the output images should be decoded while they are being
+	 * written and compared with the input image.
+	 */
+	private boolean roundTripVerified;
+	private RoundTripVerification roundTripVerification;
+	private DataListener outputVerification;
+
+	/**
+	 * The output images when converting into several output images at once,
+	 * <code>null</code> otherwise.
+	 */
+	private List<ConversionTarget> outputTargets;
+	private List<FileHandler> outputHandlers;
+
+	/**
+	 * The compressions of the output images when converting into several output
+	 * images at once. They differ from those of the targets for 'auto'.
+	 */
+	private List<CompressionFormat> outputCompressionFormats;
+	private FanOutConversion fanOutConversion;
+
+	/**
+	 * The <code>FileHandler</code> of the input image. <code>inputHandler</code>
+	 * gets replaced by the temp-file when 'auto' was set.
+	 */
+	private FileHandler sourceFileHandler;
+
+	/**
+	 * The time the conversion spent in each stage.
+	 */
+	private final StageTimes stageTimes = new StageTimes();
+
+	/**
+	 * The number of threads working on this conversion.
+	 */
+	private int threadCount = 1;
+
+	/**
+	 * The utilization of the stages of a pipelined conversion.
+	 */
+	private Map<String, Double> stageUtilization;
+
+	/**
+	 * To create a new <code>FormatConversionController</code> and initiate the file
+	 * handlers.
+	 * 
+	 * @param inputFormat   the input image's format.
+	 * @param outputFormat  the output image's format.
+	 * @param operationMode the <code>BaseConversionController</code>'s operation
+	 *                      mode.
+	 * @param inputPath     the path of the source file.
+	 * @param outputPath    the path of the destination file.
+	 * @throws ImageHandlingException when an error occurred during initiating the
+	 *                                file handlers for reading from the source file
+	 *                                or writing into the destination file.
+	 */
+	public FormatConversionController(Format inputFormat, Format outputFormat, ConverterOperationMode operationMode,
+			String inputPath, String outputPath, CompressionFormat outputCompressionFormat)
+			throws ImageHandlingException {
+		super(operationMode, inputPath, outputPath);
+		this.inputFormat = inputFormat;
+		this.outputFormat = outputFormat;
+		this.outputCompressionFormat = outputCompressionFormat;
+		requestedCompressionFormat = outputCompressionFormat;
+		autoCompressionWasSet = (outputCompressionFormat == CompressionFormat.AUTO);
+
+		uncompressedLength = 0;
+		rleCompressedLength = 0;
+		huffmanCompressedLength = 0;
+	}
+
+	/**
+	 * To create a new <code>FormatConversionController</code> which converts one
+	 * input image into several output images at once.
+	 * 
+	 * @param inputFormat   the input image's format.
+	 * @param inputPath     the path of the source file.
+	 * @param outputTargets the output images.
+	 * @throws ImageHandlingException when an error occurred during initiating the
+	 *                                file handlers for reading from the source file
+	 *                                or writing into the destination files.
+	 */
+	public FormatConversionController(Format inputFormat, String inputPath, List<ConversionTarget> outputTargets)
+			throws ImageHandlingException {
+		super(ConverterOperationMode.CONVERT);
+		this.inputFormat = inputFormat;
+		this.outputTargets = outputTargets;
+		outputHandlers = new ArrayList<FileHandler>();
+
+		inputHandler = new FileHandler(inputPath);
+		inputHandler.createFile();
+		inputHandler.openInputStream();
+		try {
+			for (ConversionTarget outputTarget : outputTargets) {
+				FileHandler outputHandler = new FileHandler(outputTarget.getPath());
+				outputHandler.createFile();
+				outputHandler.openOutputFile();
+				outputHandlers.add(outputHandler);
+			}
+		} catch (ImageHandlingException e) {
+			abortConversion();
+			throw e;
+		}
+	}
+
+	/**
+	 * To handle the conversion from all supported input formats to all supported
+	 * output formats including the supported input and output compression format.
+	 * The conversion is recorded in the default <code>ConversionMetrics</code> and
+	 * reported to the default <code>ConversionReportWriter</code> if there is one.
+	 * 
+	 * @throws ImageHandlingException when an error occurred during the conversion
+	 *                                process.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		ConversionMetrics metrics = ConversionMetrics.getDefault();
+		metrics.conversionStarted();
+		int concurrentConversions = metrics.getInFlightConversions();
+		ConversionEvent event = new ConversionEvent();
+		event.begin();
+		long startNanos = System.nanoTime();
+		sourceFileHandler = inputHandler;
+		long inputLength = inputHandler.getFile().length();
+		try {
+			convertImage();
+		} catch (ImageHandlingException e) {
+			abortRoundTripVerification();
+			metrics.conversionFailed(e.getErrorCode());
+			commitEvent(event, inputLength, e.getErrorCode());
+			writeReport(System.nanoTime() - startNanos, inputLength, concurrentConversions, e.getErrorCode(),
+					e.getMessage(), e);
+			throw e;
+		} catch (RuntimeException e) {
+			abortRoundTripVerification();
+			metrics.conversionFailed(ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode());
+			commitEvent(event, inputLength, ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode());
+			writeReport(System.nanoTime() - startNanos, inputLength, concurrentConversions,
+					ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode(), e.toString(), e);
+			throw e;
+		}
+
+		long durationNanos = System.nanoTime() - startNanos;
+		metrics.conversionCompleted(ConversionMetrics.describe(inputFormat, inputCompressionFormat), inputLength,
+				durationNanos, stageTimes);
+		if (outputTargets == null) {
+			metrics.outputWritten(ConversionMetrics.describe(outputFormat, outputCompressionFormat),
+					outputHandler.getFile().length());
+		} else {
+			for (int i = 0; i < outputTargets.size(); i++) {
+				metrics.outputWritten(
+						ConversionMetrics.describe(outputTargets.get(i).getFormat(), outputCompressionFormats.get(i)),
+						outputHandlers.get(i).getFile().length());
+			}
+		}
+		commitEvent(event, inputLength, 0);
+		writeReport(durationNanos, inputLength, concurrentConversions, 0, null, null);
+	}
+
+	/**
+	 * Writes the <code>ConversionReport</code> of this conversion if there is a
+	 * default <code>ConversionReportWriter</code>.
+	 * 
+	 * @param durationNanos         the duration of the conversion.
+	 * @param inputLength           the length of the input image.
+	 * @param concurrentConversions the number of conversions running when this
+	 *                              one started.
+	 * @param errorCode             the error code if the conversion failed or
+	 *                              <code>0</code>.
+	 * @param message               the error message if the conversion failed.
+	 * @param failure               the exception the conversion failed with or
+	 *                              <code>null</code>. An error writing the report
+	 *                              is added to it instead of being thrown.
+	 * @throws ImageHandlingException when the report could not be written.
+	 */
+	private void writeReport(long durationNanos, long inputLength, int concurrentConversions, int errorCode,
+			String message, Exception failure) throws ImageHandlingException {
+		ConversionReportWriter writer = ConversionReportWriter.getDefault();
+		if (writer == null) {
+			return;
+		}
+		ConversionReport report = new ConversionReport(sourceFileHandler.getFilePath());
+		report.setInput(inputFormat, inputCompressionFormat, inputLength,
+				inputImage == null ? 0 : inputImage.getWidth(), inputImage == null ? 0 : inputImage.getHeight());
+
+		long bytesRead = sourceFileHandler.getBytesRead();
+		long bytesWritten = 0;
+		long tempBytes = 0;
+		if (inputImage instanceof ImagePropra) {
+			bytesRead += ((ImagePropra) inputImage).getCheckSumBytes();
+		}
+		if (outputTargets == null) {
+			report.addOutput(outputHandler.getFilePath(), outputFormat, requestedCompressionFormat,
+					outputCompressionFormat == CompressionFormat.AUTO ? null : outputCompressionFormat,
+					outputHandler.getFile().length(), getAutoCandidateLengths());
+			bytesWritten += outputHandler.getBytesWritten();
+			if (outputImage instanceof ImagePropra) {
+				bytesRead += ((ImagePropra) outputImage).getCheckSumBytes();
+			}
+			if (uncompressedInputDataFileHandler != null) {
+				bytesRead += uncompressedInputDataFileHandler.getBytesRead();
+				tempBytes += uncompressedInputDataFileHandler.getBytesWritten();
+			}
+		} else {
+			for (int i = 0; i < outputTargets.size(); i++) {
+				ConversionTarget target = outputTargets.get(i);
+				CompressionFormat compressionFormat = outputCompressionFormats == null ? null
+						: outputCompressionFormats.get(i);
+				Map<CompressionFormat, Long> autoCandidates = null;
+				if (target.getCompressionFormat() == CompressionFormat.AUTO && compressionFormat != null) {
+					autoCandidates = fanOutConversion.getAutoCandidateLengths(target.getFormat());
+				}
+				report.addOutput(target.getPath(), target.getFormat(), target.getCompressionFormat(),
+						compressionFormat, outputHandlers.get(i).getFile().length(), autoCandidates);
+				bytesWritten += outputHandlers.get(i).getBytesWritten();
+			}
+			if (fanOutConversion != null) {
+				bytesRead += fanOutConversion.getAdditionalBytesRead();
+				tempBytes += fanOutConversion.getStagedBytes();
+				threadCount = fanOutConversion.getThreadCount();
+			}
+		}
+		report.setBytes(bytesRead, bytesWritten + tempBytes, tempBytes);
+		report.setTimes(durationNanos, stageTimes);
+		report.setStageUtilization(stageUtilization);
+		report.setThreads(threadCount, concurrentConversions);
+		if (errorCode != 0) {
+			report.setError(errorCode, message);
+		}
+
+		try {
+			writer.write(report);
+		} catch (ImageHandlingException e) {
+			if (failure == null) {
+				throw e;
+			}
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * To get the lengths of the data segment 'auto' compared.
+	 * 
+	 * @return the length for each compression or <code>null</code> if 'auto' was
+	 *         not used or did not finish.
+	 */
+	private Map<CompressionFormat, Long> getAutoCandidateLengths() {
+		if (!autoCompressionWasSet || outputCompressionFormat == CompressionFormat.AUTO) {
+			return null;
+		}
+		Map<CompressionFormat, Long> candidateLengths = new LinkedHashMap<CompressionFormat, Long>();
+		candidateLengths.put(CompressionFormat.UNCOMPRESSED, uncompressedLength);
+		candidateLengths.put(CompressionFormat.RLE, rleCompressedLength);
+		if (huffmanCompressedLength != Long.MAX_VALUE) {
+			candidateLengths.put(CompressionFormat.HUFFMAN, huffmanCompressedLength);
+		}
+		return candidateLengths;
+	}
+
+	/**
+	 * Commits the Java Flight Recorder event of this conversion if it took longer
+	 * than its threshold.
+	 * 
+	 * @param event       the event.
+	 * @param inputLength the length of the input image.
+	 * @param errorCode   the error code if the conversion failed or
+	 *                    <code>0</code>.
+	 */
+	private void commitEvent(ConversionEvent event, long inputLength, int errorCode) {
+		event.end();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		event.setInput(sourceFileHandler.getFilePath(), inputFormat, inputCompressionFormat,
+				inputImage == null ? 0 : inputImage.getWidth(), inputImage == null ? 0 : inputImage.getHeight(),
+				inputLength);
+		if (outputTargets == null) {
+			event.setOutput(outputHandler.getFilePath(), outputFormat, outputCompressionFormat,
+					outputHandler.getFile().length());
+		} else {
+			long bytesWritten = 0;
+			for (FileHandler handler : outputHandlers) {
+				bytesWritten += handler.getFile().length();
+			}
+			event.setOutputs(outputTargets, outputCompressionFormats, bytesWritten);
+		}
+		event.setStageTimes(stageTimes);
+		if (errorCode != 0) {
+			event.setErrorCode(errorCode);
+		}
+		event.commit();
+	}
+
+	/**
+	 * To get the time the conversion spent in each stage. Conversions into several
+	 * output images at once only record reading the header and the check sum of
+	 * the input image since their stages run in parallel.
+	 * 
+	 * @return the stage times.
+	 */
+	public StageTimes getStageTimes() {
+		return stageTimes;
+	}
+
+	private void convertImage() throws ImageHandlingException {
+
+		// Create the input image
+		long time = System.nanoTime();
+		if (inputFormat == Format.TGA) {
+			inputImage = new ImageTGA(inputHandler);
+		} else if (inputFormat == Format.PROPRA) {
+			inputImage = new ImagePropra(inputHandler);
+		} else {
+			throw new ImageHandlingException("Unknown input format.", ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+		stageTimes.lap(ConversionStage.HEADER_PARSE, time);
+		if (inputImage instanceof ImagePropra) {
+			// The check sum was verified while reading the header
+			long checkSumNanos = ((ImagePropra) inputImage).getCheckSumNanos();
+			stageTimes.add(ConversionStage.HEADER_PARSE, -checkSumNanos);
+			stageTimes.add(ConversionStage.CHECKSUM, checkSumNanos);
+		}
+
+		inputCompressionFormat = inputImage.getCompressionMode();
+
+		if (roundTripVerified && (outputTargets != null || !dataSegmentCanBeCopied())) {
+			// The input image is decoded once more while it is being converted
+			roundTripVerification = new RoundTripVerification(inputImage.getWidth(), inputImage.getHeight(),
+					inputFormat);
+			roundTripVerification.verifyInputFile(sourceFileHandler.getFilePath(), inputImage.getHeaderLength(),
+					inputCompressionFormat);
+		}
+
+		if (outputTargets != null) {
+			fanOutConversion = new FanOutConversion(inputHandler, inputImage, inputFormat,
+					outputTargets, outputHandlers);
+			fanOutConversion.setRoundTripVerification(roundTripVerification);
+			fanOutConversion.run();
+			if (roundTripVerification != null) {
+				finishRoundTripVerification();
+			}
+			outputCompressionFormats = fanOutConversion.getOutputCompressionFormats();
+			this.finalizeConversion();
+			return;
+		}
+
+		if (dataSegmentCanBeCopied()) {
+			// The input image's data segment already is in the desired form. It does not
+			// need to be decoded and encoded again.
+			executePassthrough();
+			finalizeOutputImage();
+			this.finalizeConversion();
+			return;
+		}
+
+		// Create the encoders and decoders. Not all of them will necessarily be used.
+		rgbEncoder = new RGBEncoder();
+		rleEncoder = new RLEEncoder(inputImage.getWidth());
+		huffmanEncoder = new HuffmanEncoder();
+		rleDecoder = new RLEDecoder(inputImage.getUncompressedImageDataLength());
+		huffmanDecoder = new HuffmanDecoder(inputImage.getUncompressedImageDataLength());
+
+		if (autoCompressionWasSet) {
+			// First it must be found out which compression setting is the best one and then
+			// the according mode will be chosen and executed.
+			// After calling this method 'outputCompressionFormat' is changed from AUTO to
+			// the
+			// best option which produces the smallest output images.
+			findBestCompressionMode();
+		}
+
+		createOutputImage();
+		outputHandler.writeData(outputImage.getHeader());
+		if (roundTripVerification != null) {
+			outputVerification = roundTripVerification.verifyOutput(outputHandler.getFilePath(), outputFormat,
+					outputCompressionFormat);
+			outputHandler.setDataListener(outputVerification);
+		}
+
+		// Now the conversion begins...
+		TranscodingKernel kernel = selectTranscodingKernel();
+		if (pipelineCanBeUsed()) {
+			executePipelinedConversion();
+		} else if (kernel != null) {
+			executeKernelConversion(kernel);
+		} else if (outputCompressionFormat == CompressionFormat.HUFFMAN && !autoCompressionWasSet
+				&& executeConversionWithReusedTree()) {
+			// The image was encoded in one pass using the tree of a similar image
+		} else {
+			executeConversion(true);
+			if (outputCompressionFormat == CompressionFormat.HUFFMAN && !autoCompressionWasSet) {
+				// Currently a quite ugly way to reset the Huffman decoder ... :-(
+				// This is necessary if the inputImage and the outputImage are both Huffman
+				// compressed
+				huffmanDecoder = null;
+				huffmanDecoder = new HuffmanDecoder(inputImage.getUncompressedImageDataLength());
+				executeConversion(false);
+			}
+			if (outputCompressionFormat == CompressionFormat.HUFFMAN && HuffmanTreeCache.getDefault() != null) {
+				HuffmanTreeCache.getDefault().learn((HuffmanEncoder) huffmanEncoder);
+			}
+		}
+
+		// Some housekeeping before the conversion finishes
+		if (roundTripVerification != null) {
+			finishRoundTripVerification();
+		}
+		finalizeOutputImage();
+		this.finalizeConversion();
+	}
+
+	/**
+	 * Completes the output image. Calculating the check sum of a *.propra output
+	 * image is recorded separately from writing the header.
+	 * 
+	 * @throws ImageHandlingException when the output image could not be written.
+	 */
+	private void finalizeOutputImage() throws ImageHandlingException {
+		long time = System.nanoTime();
+		outputImage.finalizeConversion();
+		stageTimes.lap(ConversionStage.WRITE, time);
+		if (outputImage instanceof ImagePropra) {
+			long checkSumNanos = ((ImagePropra) outputImage).getCheckSumNanos();
+			stageTimes.add(ConversionStage.WRITE, -checkSumNanos);
+			stageTimes.add(ConversionStage.CHECKSUM, checkSumNanos);
+		}
+	}
+
+	/**
+	 * To let the conversion run in a pipeline whose stages (reading, decoding,
+	 * changing the byte order, encoding, writing) run in their own threads. Only
+	 * conversions which need one pass over the input data can be pipelined. All
+	 * other conversions run as usual.
+	 * 
+	 * @param pipelined <code>true</code> when the conversion should be pipelined,
+	 *                  <code>false</code> otherwise.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * To decode the output images while they are being written and compare their
+	 * pixels with the pixels of the input image which gets decoded once more at
+	 * the same time. Output images which do not decode back to the pixels of the
+	 * input image are deleted and the conversion fails. Data segments which are
+	 * copied from the input image as they are are not verified.
+	 * 
+	 * @param roundTripVerified <code>true</code> when the output images should be
+	 *                          verified, <code>false</code> otherwise.
+	 */
+	public void setRoundTripVerified(boolean roundTripVerified) {
+		this.roundTripVerified = roundTripVerified;
+	}
+
+	/**
+	 * Waits until the output images were decoded completely and compares them with
+	 * the input image.
+	 * 
+	 * @throws ImageHandlingException when an output image does not decode back to
+	 *                                the pixels of the input image. All output
+	 *                                images were deleted then.
+	 */
+	private void finishRoundTripVerification() throws ImageHandlingException {
+		if (outputHandlers != null) {
+			for (FileHandler handler : outputHandlers) {
+				handler.setDataListener(null);
+			}
+		} else {
+			outputHandler.setDataListener(null);
+		}
+		try {
+			roundTripVerification.finish();
+		} catch (ImageHandlingException e) {
+			abortConversion();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops the round-trip verification of a failed conversion.
+	 */
+	private void abortRoundTripVerification() {
+		if (roundTripVerification != null) {
+			roundTripVerification.abort();
+		}
+	}
+
+	/**
+	 * Creates the output image and sets its dimensions according to the input
+	 * image.
+	 * 
+	 * @throws ImageHandlingException when the output format is unknown.
+	 */
+	private void createOutputImage() throws ImageHandlingException {
+		if (outputFormat == Format.TGA) {
+			outputImage = new ImageTGA(outputHandler, outputCompressionFormat);
+		} else if (outputFormat == Format.PROPRA) {
+			outputImage = new ImagePropra(outputHandler, outputCompressionFormat);
+		} else {
+			throw new ImageHandlingException("Unknown output format.", ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+		outputImage.setDimensions(inputImage.getWidth(), inputImage.getHeight());
+	}
+
+	/**
+	 * Checks whether the data segment of the input image can be copied into the
+	 * output image as it is. This is the case when the input and the output image
+	 * have the same format and the same compression and the data segment is
+	 * either uncompressed or protected by the check sum of a *.propra image.
+	 * Compressed *.tga data segments are transcoded instead so that broken
+	 * packets are still detected.
+	 * 
+	 * @return <code>true</code> when the data segment can be copied,
+	 *         <code>false</code> otherwise.
+	 */
+	private boolean dataSegmentCanBeCopied() {
+		return !autoCompressionWasSet && inputFormat == outputFormat
+				&& inputCompressionFormat == outputCompressionFormat
+				&& (inputCompressionFormat == CompressionFormat.UNCOMPRESSED || inputFormat == Format.PROPRA);
+	}
+
+	/**
+	 * Writes the header of the output image and copies the data segment of the
+	 * input image into the output image without decoding and encoding it. The
+	 * length and the check sum of a *.propra data segment are taken over from the
+	 * input image's header which was already verified when the input image was
+	 * created.
+	 * 
+	 * @throws ImageHandlingException when an error occurred during copying the
+	 *                                data segment.
+	 */
+	private void executePassthrough() throws ImageHandlingException {
+		long dataSegmentLength;
+		if (inputCompressionFormat == CompressionFormat.UNCOMPRESSED) {
+			dataSegmentLength = inputImage.getUncompressedImageDataLength();
+		} else {
+			dataSegmentLength = inputImage.getImageDataLength();
+		}
+
+		createOutputImage();
+		if (outputFormat == Format.PROPRA) {
+			((ImagePropra) outputImage).setDataSegmentDescription(dataSegmentLength,
+					((ImagePropra) inputImage).getCheckSum());
+		}
+		outputHandler.writeData(outputImage.getHeader());
+		long time = System.nanoTime();
+		outputHandler.transferDataFrom(inputHandler, inputImage.getHeaderLength(), dataSegmentLength);
+		stageTimes.lap(ConversionStage.WRITE, time);
+	}
+
+	/**
+	 * Selects a <code>TranscodingKernel</code> which converts the data segment of
+	 * the input image into the data segment of the output image in one pass. The
+	 * kernel is selected based on the input and output format and the input and
+	 * output compression.
+	 * 
+	 * @return the kernel or <code>null</code> when there is no kernel for this
+	 *         conversion. The conversion must then be executed by chaining the
+	 *         decoders and encoders.
+	 */
+	private TranscodingKernel selectTranscodingKernel() {
+		if (autoCompressionWasSet) {
+			return null;
+		}
+		return TranscodingKernel.select(inputFormat, inputCompressionFormat, outputFormat, outputCompressionFormat,
+				inputImage.getWidth(), inputImage.getHeight());
+	}
+
+	/**
+	 * Converts the data segment of the input image into the data segment of the
+	 * output image using a <code>TranscodingKernel</code>.
+	 * 
+	 * @param kernel the kernel which executes the conversion.
+	 * @throws ImageHandlingException when the data segment of the input image is
+	 *                                corrupt.
+	 */
+	private void executeKernelConversion(TranscodingKernel kernel) throws ImageHandlingException {
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] imageData = bufferPool.lease();
+		ConversionStage kernelStage = getKernelStage();
+		try {
+			int bytesRead;
+			long time = System.nanoTime();
+			while ((bytesRead = inputHandler.readData(imageData)) != -1) {
+				time = stageTimes.lap(ConversionStage.READ, time);
+				kernel.transcode(imageData, bytesRead);
+				time = stageTimes.lap(kernelStage, time);
+				outputHandler.writeData(kernel.getOutputBuffer(), 0, kernel.getOutputLength());
+				time = stageTimes.lap(ConversionStage.WRITE, time);
+			}
+		} finally {
+			bufferPool.release(imageData);
+		}
+		kernel.flush();
+	}
+
+	/**
+	 * To get the stage the time of a <code>TranscodingKernel</code> is recorded
+	 * in. A kernel decodes, changes the byte order and encodes at once, so its
+	 * time is recorded in the stage doing the most work.
+	 * 
+	 * @return the stage.
+	 */
+	private ConversionStage getKernelStage() {
+		if (outputCompressionFormat != CompressionFormat.UNCOMPRESSED) {
+			return ConversionStage.ENCODE;
+		} else if (inputCompressionFormat != CompressionFormat.UNCOMPRESSED) {
+			return ConversionStage.DECODE;
+		}
+		return ConversionStage.SWIZZLE;
+	}
+
+	/**
+	 * Checks whether the conversion can run in a pipeline. This is the case when
+	 * the pipelined mode was requested and the data segment only needs to be read
+	 * once which is not the case for 'auto' and Huffman output compression.
+	 * 
+	 * @return <code>true</code> when the conversion can be pipelined,
+	 *         <code>false</code> otherwise.
+	 */
+	private boolean pipelineCanBeUsed() {
+		return pipelined && !autoCompressionWasSet && outputCompressionFormat != CompressionFormat.HUFFMAN;
+	}
+
+	/**
+	 * Converts the data segment of the input image into the data segment of the
+	 * output image using a <code>ConversionPipeline</code>. Decoding, changing the
+	 * byte order and encoding run in separate stages so that they can overlap with
+	 * each other and with reading and writing. The busy time of each stage is
+	 * recorded in the stage times, its utilization in the metrics and the report.
+	 * 
+	 * @throws ImageHandlingException when an error occurred in one of the stages.
+	 */
+	private void executePipelinedConversion() throws ImageHandlingException {
+		int width = inputImage.getWidth();
+		int height = inputImage.getHeight();
+		ConversionPipeline pipeline = new ConversionPipeline(inputHandler, BufferPool.getDefault());
+
+		if (inputCompressionFormat == CompressionFormat.RLE) {
+			pipeline.addStage("decode", new RLEDecodingKernel(width, height, false));
+		} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+			pipeline.addStage("decode", huffmanDecoder);
+		}
+
+		if (inputFormat != outputFormat) {
+			pipeline.addStage("swizzle", new PixelSwapKernel(width, height));
+		}
+
+		if (outputCompressionFormat == CompressionFormat.RLE) {
+			pipeline.addStage("encode", new RLEEncodingKernel(width, height, false));
+		}
+
+		pipeline.run(outputHandler);
+		threadCount = pipeline.getStageBusyNanos().size();
+		for (Map.Entry<String, Long> stage : pipeline.getStageBusyNanos().entrySet()) {
+			stageTimes.add(ConversionStage.fromName(stage.getKey()), stage.getValue());
+		}
+		stageUtilization = pipeline.getStageUtilization();
+		ConversionMetrics.getDefault().pipelineCompleted(pipeline.getRunNanos(), pipeline.getStageBusyNanos());
+	}
+
+	/**
+	 * To convert the input image to the output image.
+	 * 
+	 * @param firstPass <code>true</code> when this is the first conversion pass.
+	 *                  Sometimes two passes are necessary i.e. for Huffman encoding
+	 *                  because in the first pass the Huffman tree gets built and in
+	 *                  the second pass the actual encoding is executed.
+	 * @throws ImageHandlingException when an error occurred during conversion
+	 */
+	private void executeConversion(boolean firstPass) throws ImageHandlingException {
+		byte[] imageData;
+
+		if (!autoCompressionWasSet && outputCompressionFormat == CompressionFormat.HUFFMAN && firstPass) {
+			// Initiate the temp-file file handler which stores the uncompressed data
+			uncompressedInputDataFileHandler = FileHandler.createTempFileHandler("propra-");
+			uncompressedInputDataFileHandler.createFile();
+			uncompressedInputDataFileHandler.openOutputFile();
+		}
+
+		if (!firstPass && outputCompressionFormat == CompressionFormat.HUFFMAN) {
+			// Huffman tree was created. The input data must be read again to perform the
+			// encoding.
+			// This only is necessary when Huffman encoding should be performed and only
+			// if 'huffman' was set as an input argument.
+			// In case 'auto' was set the resetting of the inputHandler already happened
+			// in the simulateConversion() method.
+			swapFileHandlers();
+		}
+
+		if (autoCompressionWasSet && outputCompressionFormat == CompressionFormat.HUFFMAN) {
+			// In case 'auto' compression was set and Huffman encoding is the best
+			// compression scenario
+			// the preparation of the Huffman encoder (i.e. creating the tree) can be
+			// avoided
+			// because it was already done in simulateConversion() below.
+			firstPass = false;
+		}
+
+		long time = System.nanoTime();
+		while (((imageData = inputHandler.readData()) != null)) {
+			time = stageTimes.lap(ConversionStage.READ, time);
+			if (!autoCompressionWasSet && firstPass) {
+				// This part is only necessary when compression was not set to 'auto' because
+				// if it was set to 'auto' the inputHandler already points to the uncompressed
+				// data
+
+				// First the data must be decompressed if it was compressed
+				if (inputCompressionFormat == CompressionFormat.RLE) {
+					imageData = rleDecoder.decode(imageData);
+				} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+					imageData = huffmanDecoder.decode(imageData);
+				}
+				time = stageTimes.lap(ConversionStage.DECODE, time);
+
+				// Now the pixel order will be changed if propra>tga or tga>propra conversion is
+				// desired by the user
+				if (inputFormat != outputFormat) {
+					imageData = rgbEncoder.encode(imageData);
+					time = stageTimes.lap(ConversionStage.SWIZZLE, time);
+				}
+
+				if (outputCompressionFormat == CompressionFormat.HUFFMAN) {
+					// Write the uncompressed input image data into the temp-file
+					uncompressedInputDataFileHandler.writeData(imageData);
+					time = stageTimes.lap(ConversionStage.TEMP_SPILL, time);
+				}
+			}
+
+			// Finally the data gets encoded if desired by the user
+			if (outputCompressionFormat == CompressionFormat.RLE) {
+				imageData = rleEncoder.encode(imageData);
+			} else if (outputCompressionFormat == CompressionFormat.HUFFMAN) {
+				if (firstPass && !autoCompressionWasSet) {
+					huffmanEncoder.prepareEncoding(imageData);
+					// This only creates the Huffman tree. No encoding is done here.
+					// The encoding of the data will take place the next time this method will be
+					// called
+				} else {
+					imageData = huffmanEncoder.encode(imageData);
+					// This method was now called with "false", the Huffman tree was created in the
+					// first pass
+					// and now the image data gets encoded.
+				}
+			}
+			time = stageTimes.lap(ConversionStage.ENCODE, time);
+
+			if (outputCompressionFormat != CompressionFormat.HUFFMAN) {
+				// If Huffman compression is NOT the desired output format then the data can
+				// already be written in the first pass.
+				outputHandler.writeData(imageData);
+			} else {
+				if (!firstPass) {
+					// The data can only be written in the 2nd pass when the Huffman tree was
+					// created.
+					outputHandler.writeData(imageData);
+				}
+			}
+			time = stageTimes.lap(ConversionStage.WRITE, time);
+		}
+
+		// All encoders and/or decoders should be flushed now to either check whether
+		// there is still some data to be written (i.e. HuffmanEncoder) or whether
+		// the input file was corrupt and there is missing data (i.e. RLEEncoder).
+		if (inputFormat != outputFormat) {
+			rgbEncoder.flush();
+		}
+
+		if (outputCompressionFormat == CompressionFormat.RLE) {
+			rleEncoder.flush();
+		}
+
+		if (outputCompressionFormat == CompressionFormat.HUFFMAN && !firstPass) {
+			// Writing the very last bytes when the file should be encoded using Huffman
+			// encoding
+			outputHandler.writeData(huffmanEncoder.flush());
+		}
+	}
+
+	/**
+	 * To convert the input image into a Huffman encoded output image in one pass
+	 * using a tree of the <code>HuffmanTreeCache</code>. Whether the tree is
+	 * suitable for the image is only known after all data was encoded. If it is
+	 * not, the input and the output file are reset so that the image can be
+	 * converted with its own tree.
+	 * 
+	 * @return <code>true</code> when the image was converted, <code>false</code>
+	 *         when there is no suitable tree.
+	 * @throws ImageHandlingException when an error occurred during conversion.
+	 */
+	private boolean executeConversionWithReusedTree() throws ImageHandlingException {
+		HuffmanTreeCache treeCache = HuffmanTreeCache.getDefault();
+		HuffmanTree tree = treeCache == null ? null : treeCache.getTree();
+		if (tree == null) {
+			return false;
+		}
+
+		HuffmanEncoder reusedTreeEncoder = new HuffmanEncoder(tree);
+		long[] byteFrequencies = new long[256];
+		boolean treeContainsAllBytes = true;
+		byte[] imageData;
+		long time = System.nanoTime();
+		while (treeContainsAllBytes && (imageData = inputHandler.readData()) != null) {
+			time = stageTimes.lap(ConversionStage.READ, time);
+			if (inputCompressionFormat == CompressionFormat.RLE) {
+				imageData = rleDecoder.decode(imageData);
+			} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+				imageData = huffmanDecoder.decode(imageData);
+			}
+			time = stageTimes.lap(ConversionStage.DECODE, time);
+			if (imageData == null) {
+				continue;
+			}
+			if (inputFormat != outputFormat) {
+				imageData = rgbEncoder.encode(imageData);
+				time = stageTimes.lap(ConversionStage.SWIZZLE, time);
+			}
+
+			for (byte currentByte : imageData) {
+				byteFrequencies[currentByte & 0xFF]++;
+			}
+			// A byte value which is missing in the tree cannot be encoded
+			treeContainsAllBytes = tree.getEncodedBitCount(byteFrequencies) != -1;
+			if (treeContainsAllBytes) {
+				byte[] encodedData = reusedTreeEncoder.encode(imageData);
+				time = stageTimes.lap(ConversionStage.ENCODE, time);
+				outputHandler.writeData(encodedData);
+				time = stageTimes.lap(ConversionStage.WRITE, time);
+			}
+		}
+
+		if (treeCache.accepts(tree, byteFrequencies)) {
+			if (inputFormat != outputFormat) {
+				rgbEncoder.flush();
+			}
+			outputHandler.writeData(reusedTreeEncoder.flush());
+			return true;
+		}
+
+		// Start all over again
+		inputHandler.reset();
+		inputHandler.skipNBytes(inputImage.getHeaderLength());
+		outputHandler.setDataListener(null);
+		outputHandler.closeFile();
+		outputHandler.openOutputFile();
+		outputHandler.writeData(outputImage.getHeader());
+		if (roundTripVerification != null) {
+			roundTripVerification.restartOutput(outputVerification);
+			outputHandler.setDataListener(outputVerification);
+		}
+		rgbEncoder = new RGBEncoder();
+		rleDecoder = new RLEDecoder(inputImage.getUncompressedImageDataLength());
+		huffmanDecoder = new HuffmanDecoder(inputImage.getUncompressedImageDataLength());
+		return false;
+	}
+
+	/**
+	 * Finds the compression mode for the output image which produces the smallest
+	 * output files. It basically simulates the encoding for all uncompressed,
+	 * run-length encoded compressed or Huffman algorithm compressed images. This
+	 * simulation is taken as a basis for the best choice. After having called this
+	 * method, 'outputCompressionFormat' is changed from <code>AUTO</code> to the
+	 * optimal compression setting.
+	 * 
+	 * @throws ImageHandlingException when an error occurred during the encoding
+	 *                                simulation.
+	 */
+	private void findBestCompressionMode() throws ImageHandlingException {
+		byte[] inputData;
+		byte[] outputDataUncompressed = null;
+		byte[] outputDataRLE;
+		byte[] outputDataHuffman;
+		boolean huffmanPreparationStep = true;
+
+		// Writes the uncompressed data from the input image into a temp-file which will
+		// be reused
+		// so that the decoding is only executed once to save computing power.
+		uncompressedInputDataFileHandler = FileHandler.createTempFileHandler("propra-");
+		uncompressedInputDataFileHandler.createFile();
+		uncompressedInputDataFileHandler.openOutputFile();
+
+		for (int i = 0; i < 2; i++) {
+			// Two passes are necessary because of the Huffman algorithm.
+			if (!huffmanPreparationStep) {
+				// Huffman tree was created. The uncompressed input data will be used to
+				// simulate the Huffman encoding
+				swapFileHandlers();
+			}
+
+			if (i == 0 || i == 1 && outputFormat == Format.PROPRA) {
+				long time = System.nanoTime();
+				while (((inputData = inputHandler.readData()) != null)) {
+					time = stageTimes.lap(ConversionStage.READ, time);
+					if (huffmanPreparationStep) {
+						// First the data must be decompressed if it was compressed
+						if (inputCompressionFormat == CompressionFormat.RLE) {
+							outputDataUncompressed = rleDecoder.decode(inputData);
+						} else if (inputCompressionFormat == CompressionFormat.HUFFMAN) {
+							outputDataUncompressed = huffmanDecoder.decode(inputData);
+						} else {
+							outputDataUncompressed = inputData;
+						}
+						time = stageTimes.lap(ConversionStage.DECODE, time);
+
+						if (inputFormat != outputFormat) {
+							// Change the pixel order if converting from tga>propra or propra>tga
+							outputDataUncompressed = rgbEncoder.encode(outputDataUncompressed);
+							time = stageTimes.lap(ConversionStage.SWIZZLE, time);
+						}
+						// Write the uncompressed input image data into the temp-file
+						uncompressedInputDataFileHandler.writeData(outputDataUncompressed);
+						time = stageTimes.lap(ConversionStage.TEMP_SPILL, time);
+
+						// Calculate the file size for an uncompressed or an RLE compressed image
+						outputDataRLE = rleEncoder.encode(outputDataUncompressed);
+						uncompressedLength += outputDataUncompressed.length;
+						rleCompressedLength += outputDataRLE.length;
+						// Create the Huffman tree which will later be re-used in case Huffman
+						// compression
+						// is the one which produces the smallest files
+						huffmanEncoder.prepareEncoding(outputDataUncompressed);
+					} else {
+						// Calculate the file size for a Huffman compressed image
+						outputDataHuffman = huffmanEncoder.encode(inputData);
+						huffmanCompressedLength += outputDataHuffman.length;
+					}
+					time = stageTimes.lap(ConversionStage.ENCODE, time);
+				}
+			} else {
+				// In case the output file is *.tga, Huffman cannot be used
+				// Therefore it will always be the "worst" compression option.
+				huffmanCompressedLength = Long.MAX_VALUE;
+			}
+
+			if (!huffmanPreparationStep && outputFormat == Format.PROPRA) {
+				// Retrieve the last bytes for a Huffman compressed image
+				outputDataHuffman = huffmanEncoder.flush();
+				huffmanCompressedLength += outputDataHuffman.length;
+			}
+			huffmanPreparationStep = false;
+		}
+		// Now the file sizes of all three compression algorithms are known and the
+		// smallest one gets choosen
+		outputCompressionFormat = selectSmallestCompression(uncompressedLength, rleCompressedLength,
+				huffmanCompressedLength);
+		ConversionMetrics.getDefault().autoCompressionSelected(outputCompressionFormat);
+		// If the input data was corrupt (i.e. invalid RLE data such as missing bytes)
+		// it will be detected
+		// when calling the Encoder's flush() method
+		uncompressedInputDataFileHandler.reset();
+		rgbEncoder.flush();
+		rleEncoder.flush();
+		rleEncoder.reset();
+		rgbEncoder.reset();
+		huffmanEncoder.reset();
+	}
+
+	/**
+	 * Selects the compression which produces the smallest data segment.
+	 * 
+	 * @param uncompressedLength      the length of the uncompressed data segment.
+	 * @param rleCompressedLength     the length of the run-length-encoded data
+	 *                                segment.
+	 * @param huffmanCompressedLength the length of the Huffman encoded data
+	 *                                segment.
+	 * @return the compression.
+	 */
+	static CompressionFormat selectSmallestCompression(long uncompressedLength, long rleCompressedLength,
+			long huffmanCompressedLength) {
+		if ((uncompressedLength < rleCompressedLength) & (uncompressedLength < huffmanCompressedLength)) {
+			return CompressionFormat.UNCOMPRESSED;
+		} else if ((rleCompressedLength < uncompressedLength) & (rleCompressedLength < huffmanCompressedLength)) {
+			return CompressionFormat.RLE;
+		} else if ((huffmanCompressedLength < uncompressedLength) & (huffmanCompressedLength < rleCompressedLength)) {
+			return CompressionFormat.HUFFMAN;
+		}
+		// In the unlikely case all strategies create the same file size the strategy
+		// which needs less computing time will be used --> uncompressed.
+		return CompressionFormat.UNCOMPRESSED;
+	}
+
+	/**
+	 * Swaps the uncompressedInputDataFileHandler with the inputHandler.
+	 * 
+	 * @throws ImageHandlingException
+	 */
+	private void swapFileHandlers() throws ImageHandlingException {
+		uncompressedInputDataFileHandler.closeFile();
+		uncompressedInputDataFileHandler.openInputStream();
+		uncompressedInputDataFileHandler.reset();
+		inputHandler.closeFile();
+		inputHandler = uncompressedInputDataFileHandler;
+	}
+
+	/**
+	 * Closes the input and output files and removes the temp-file which contained
+	 * the uncompressed image data segment of the input image.
+	 */
+	@Override
+	protected void finalizeConversion() throws ImageHandlingException {
+		if (outputHandlers != null) {
+			inputHandler.closeFile();
+			for (FileHandler outputHandler : outputHandlers) {
+				outputHandler.closeFile();
+			}
+		} else {
+			super.finalizeConversion();
+		}
+		if (uncompressedInputDataFileHandler != null) {
+			uncompressedInputDataFileHandler.removeFile();
+		}
+	}
+
+	/**
+	 * Additionally removes the temp-file which contained the uncompressed image
+	 * data segment of the input image.
+	 */
+	@Override
+	public void abortConversion() {
+		super.abortConversion();
+		if (outputHandlers != null) {
+			for (FileHandler outputHandler : outputHandlers) {
+				try {
+					outputHandler.closeFile();
+				} catch (ImageHandlingException e) {
+					// The conversion already failed
+				}
+				outputHandler.getFile().delete();
+			}
+		}
+		if (uncompressedInputDataFileHandler != null) {
+			try {
+				uncompressedInputDataFileHandler.closeFile();
+			} catch (ImageHandlingException e) {
+				// The conversion already failed
+			}
+			uncompressedInputDataFileHandler.getFile().delete();
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import propra.imageconverter.analysis.ImageAnalysis;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+
+/**
+ * An <code>ImageAnalysisController</code> prints the <code>ImageAnalysis</code>
+ * of all images found in several input directories or matching several glob
+ * patterns without converting them. The images are analyzed one after another,
+ * each of them by several threads. Each image is printed as one line of JSON
+ * to the standard output in the order the images were found.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ImageAnalysisController extends ConversionController {
+
+	private static final int STANDARD_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	private List<String> inputPatterns;
+	private int threadCount;
+
+	/**
+	 * To create a new <code>ImageAnalysisController</code>.
+	 *
+	 * @param inputPatterns the input directories and glob patterns.
+	 * @param threadCount   the number of threads analyzing the pixels of an image
+	 *                      at the same time.
+	 */
+	public ImageAnalysisController(List<String> inputPatterns, int threadCount) {
+		super(ConverterOperationMode.ANALYZE);
+		this.inputPatterns = inputPatterns;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * To print the analysis of all images.
+	 *
+	 * @throws ImageHandlingException when no images were found or a directory
+	 *                                could not be read.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		List<Path> inputFiles = BatchConversionController.findInputFiles(inputPatterns);
+		if (inputFiles.isEmpty()) {
+			throw new ImageHandlingException("No images found for the given input directories or patterns.",
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+
+		ExecutorService analysisThreads = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "image-analysis");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The messages of the ImageConverter are written to the standard error
+		PrintStream standardOutput = new PrintStream(
+				new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), STANDARD_OUTPUT_BUFFER_SIZE));
+		try {
+			for (Path inputFile : inputFiles) {
+				standardOutput.println(ImageAnalysis.analyze(inputFile, analysisThreads, threadCount).toJson());
+			}
+		} finally {
+			analysisThreads.shutdownNow();
+			standardOutput.flush();
+		}
+	}
+
+	/**
+	 * An <code>ImageAnalysisController</code> does not open any handlers.
+	 */
+	@Override
+	protected void finalizeConversion() {
+	}
+
+	@Override
+	public void abortConversion() {
+	}
+}
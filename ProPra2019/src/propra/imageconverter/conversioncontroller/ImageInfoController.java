@@ -0,0 +1,108 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.ImageInfo;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+
+/**
+ * An <code>ImageInfoController</code> prints the metadata of all images found
+ * in several input directories or matching several glob patterns without
+ * converting them. Only the headers of the images are read, several images at
+ * the same time. Each image is printed as one line of JSON to the standard
+ * output in the order the images were found.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ImageInfoController extends ConversionController {
+
+	private static final int STANDARD_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	private List<String> inputPatterns;
+	private boolean verifyCheckSums;
+	private int threadCount;
+
+	/**
+	 * To create a new <code>ImageInfoController</code>.
+	 *
+	 * @param inputPatterns   the input directories and glob patterns.
+	 * @param verifyCheckSums <code>true</code> when the check sums of *.propra
+	 *                        images should be verified which reads the whole
+	 *                        files.
+	 * @param threadCount     the number of threads reading headers at the same
+	 *                        time.
+	 */
+	public ImageInfoController(List<String> inputPatterns, boolean verifyCheckSums, int threadCount) {
+		super(ConverterOperationMode.INFO);
+		this.inputPatterns = inputPatterns;
+		this.verifyCheckSums = verifyCheckSums;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * To print the metadata of all images.
+	 *
+	 * @throws ImageHandlingException when no images were found or a directory
+	 *                                could not be read.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		List<Path> inputFiles = BatchConversionController.findInputFiles(inputPatterns);
+		if (inputFiles.isEmpty()) {
+			throw new ImageHandlingException("No images found for the given input directories or patterns.",
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+
+		ExecutorService probeThreads = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "image-probe");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The messages of the ImageConverter are written to the standard error
+		PrintStream standardOutput = new PrintStream(
+				new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), STANDARD_OUTPUT_BUFFER_SIZE));
+		try {
+			List<Future<ImageInfo>> futures = new ArrayList<Future<ImageInfo>>();
+			for (Path inputFile : inputFiles) {
+				futures.add(probeThreads.submit(() -> ImageInfo.probe(inputFile, verifyCheckSums)));
+			}
+			for (Future<ImageInfo> future : futures) {
+				standardOutput.println(future.get().toJson());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Reading the images was interrupted.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			throw new ImageHandlingException("Unexpected error while reading the images: " + e.getCause(),
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} finally {
+			probeThreads.shutdownNow();
+			standardOutput.flush();
+		}
+	}
+
+	/**
+	 * An <code>ImageInfoController</code> does not open any handlers.
+	 */
+	@Override
+	protected void finalizeConversion() {
+	}
+
+	@Override
+	public void abortConversion() {
+	}
+}
@@ -0,0 +1,129 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.verification.ImageVerification;
+
+/**
+ * An <code>ImageVerificationController</code> verifies the structure of all
+ * images found in several input directories or matching several glob patterns
+ * without converting them. Several images are verified at the same time and
+ * the check sum of each *.propra image is calculated by several threads. Each
+ * image is printed as one line of JSON to the standard output in the order the
+ * images were found.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ImageVerificationController extends ConversionController {
+
+	private static final int STANDARD_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	private List<String> inputPatterns;
+	private int threadCount;
+
+	/**
+	 * To create a new <code>ImageVerificationController</code>.
+	 *
+	 * @param inputPatterns the input directories and glob patterns.
+	 * @param threadCount   the number of images verified at the same time and the
+	 *                      number of threads calculating check sums.
+	 */
+	public ImageVerificationController(List<String> inputPatterns, int threadCount) {
+		super(ConverterOperationMode.VERIFY);
+		this.inputPatterns = inputPatterns;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * To verify all images and print the problems found.
+	 *
+	 * @throws ImageHandlingException when no images were found, a directory could
+	 *                                not be read or at least one image is invalid.
+	 *                                The error code is the one of the first
+	 *                                problem found then.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		List<Path> inputFiles = BatchConversionController.findInputFiles(inputPatterns);
+		if (inputFiles.isEmpty()) {
+			throw new ImageHandlingException("No images found for the given input directories or patterns.",
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+
+		ExecutorService verificationThreads = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "image-verification");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The check sums get their own threads since the verifications wait for them
+		ExecutorService checksumThreads = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "image-checksum");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The messages of the ImageConverter are written to the standard error
+		PrintStream standardOutput = new PrintStream(
+				new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), STANDARD_OUTPUT_BUFFER_SIZE));
+		int invalidImages = 0;
+		ImageConverterErrorCode firstErrorCode = null;
+		try {
+			List<Future<ImageVerification>> futures = new ArrayList<Future<ImageVerification>>();
+			for (Path inputFile : inputFiles) {
+				futures.add(verificationThreads
+						.submit(() -> ImageVerification.verify(inputFile, checksumThreads, threadCount)));
+			}
+			for (Future<ImageVerification> future : futures) {
+				ImageVerification verification = future.get();
+				standardOutput.println(verification.toJson());
+				if (!verification.isValid()) {
+					invalidImages++;
+					if (firstErrorCode == null) {
+						firstErrorCode = verification.getErrorCode();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Verifying the images was interrupted.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			throw new ImageHandlingException("Unexpected error while verifying the images: " + e.getCause(),
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} finally {
+			verificationThreads.shutdownNow();
+			checksumThreads.shutdownNow();
+			standardOutput.flush();
+		}
+
+		if (invalidImages > 0) {
+			throw new ImageHandlingException(invalidImages + " of " + inputFiles.size() + " images are invalid.",
+					firstErrorCode);
+		}
+		System.out.println(" All " + inputFiles.size() + " images are valid.");
+	}
+
+	/**
+	 * An <code>ImageVerificationController</code> does not open any handlers.
+	 */
+	@Override
+	protected void finalizeConversion() {
+	}
+
+	@Override
+	public void abortConversion() {
+	}
+}
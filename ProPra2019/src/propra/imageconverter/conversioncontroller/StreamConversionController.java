@@ -0,0 +1,166 @@
+package propra.imageconverter.conversioncontroller;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.api.InMemoryConverter;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.ConversionReport;
+import propra.imageconverter.monitoring.ConversionReportWriter;
+import propra.imageconverter.util.arguments.ImageConverterArgumentHandler;
+
+/**
+ * A <code>StreamConversionController</code> performs a conversion on channels
+ * using the <code>InMemoryConverter</code>. It is used for reading from the
+ * standard input or writing to the standard output so that the
+ * <code>ImageConverter</code> can be used in shell pipelines, and for images a
+ * <code>JobScheduler</code> decided to convert in memory.
+ * <p>
+ * The standard output cannot seek back to the header of a *.propra image.
+ * Therefore its data segment gets staged in memory up to the size given by
+ * <code>-Dpropra.stagingMemory=</code> and in a temp-file beyond that. *.tga
+ * images and data segments which are copied from the input image are streamed
+ * without staging.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class StreamConversionController extends ConversionController {
+
+	/**
+	 * The default number of bytes of a data segment staged in memory.
+	 */
+	public static final int DEFAULT_STAGING_MEMORY = 64 * 1024 * 1024;
+
+	private static final int STANDARD_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	private String inputPath;
+	private String outputPath;
+	private ConversionOptions options;
+
+	private ReadableByteChannel inputChannel;
+	private WritableByteChannel outputChannel;
+
+	/**
+	 * To create a new <code>StreamConversionController</code>.
+	 *
+	 * @param inputPath  the path of the source file or '-' for the standard input.
+	 * @param outputPath the path of the destination file or '-' for the standard
+	 *                   output.
+	 * @param options    what should be done with the input data.
+	 */
+	public StreamConversionController(String inputPath, String outputPath, ConversionOptions options) {
+		super(options.getOperationMode());
+		this.inputPath = inputPath;
+		this.outputPath = outputPath;
+		this.options = options.withSpilling(Integer.getInteger("propra.stagingMemory", DEFAULT_STAGING_MEMORY));
+	}
+
+	/**
+	 * Converts the input image. Image conversions are reported to the default
+	 * <code>ConversionReportWriter</code> if there is one.
+	 */
+	@Override
+	public void convert() throws ImageHandlingException {
+		ConversionReportWriter reportWriter = ConversionReportWriter.getDefault();
+		ConversionReport report = null;
+		if (reportWriter != null && !options.getOperationMode().operationIsBaseCoding()) {
+			report = new ConversionReport(inputPath, outputPath);
+		}
+		openChannels();
+		try {
+			InMemoryConverter.convert(inputChannel, outputChannel, options, report);
+		} catch (ImageHandlingException | RuntimeException e) {
+			abortConversion();
+			if (report != null) {
+				try {
+					reportWriter.write(report);
+				} catch (ImageHandlingException reportException) {
+					e.addSuppressed(reportException);
+				}
+			}
+			throw e;
+		}
+		closeChannels();
+		if (report != null) {
+			reportWriter.write(report);
+		}
+	}
+
+	private void openChannels() throws ImageHandlingException {
+		if (inputPath.equals(ImageConverterArgumentHandler.STANDARD_STREAM)) {
+			inputChannel = new FileInputStream(FileDescriptor.in).getChannel();
+		} else {
+			try {
+				inputChannel = FileChannel.open(Paths.get(inputPath), StandardOpenOption.READ);
+			} catch (NoSuchFileException e) {
+				throw new ImageHandlingException("File not found: " + inputPath,
+						ImageConverterErrorCode.INVALID_FILEPATH);
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not open file: " + inputPath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+		}
+
+		if (outputPath.equals(ImageConverterArgumentHandler.STANDARD_STREAM)) {
+			// Even if the standard output is redirected into a file, it is treated as
+			// not seekable since it might have been opened for appending. Without the
+			// BufferedOutputStream the channel would be a FileChannel.
+			outputChannel = Channels.newChannel(
+					new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), STANDARD_OUTPUT_BUFFER_SIZE));
+		} else {
+			try {
+				outputChannel = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			} catch (IOException e) {
+				abortConversion();
+				throw new ImageHandlingException("File not found: " + outputPath,
+						ImageConverterErrorCode.INVALID_FILEPATH);
+			}
+		}
+	}
+
+	private void closeChannels() throws ImageHandlingException {
+		try {
+			inputChannel.close();
+			outputChannel.close();
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not close file: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Closes the channels and removes the incomplete destination file. The
+	 * standard streams are left open.
+	 */
+	@Override
+	public void abortConversion() {
+		try {
+			if (inputChannel instanceof FileChannel
+					&& !inputPath.equals(ImageConverterArgumentHandler.STANDARD_STREAM)) {
+				inputChannel.close();
+			}
+			if (outputChannel instanceof FileChannel) {
+				outputChannel.close();
+				Files.deleteIfExists(Path.of(outputPath));
+			}
+		} catch (IOException e) {
+			// The conversion already failed
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import propra.imageconverter.codecs.Decoder;
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.FileHandler;
+
+/**
+ * A <code>ConversionPipeline</code> converts a data segment using several
+ * stages which run in their own threads: reading the input image, decoding,
+ * changing the byte order of the pixels, encoding and writing the output image.
+ * This way the I/O and the CPU-bound stages overlap and one conversion can use
+ * more than one core.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionPipeline {
+
+	private List<PipelineStage> stages;
+
+	/**
+	 * The pool providing the buffers passed between the stages.
+	 */
+	private BufferPool bufferPool;
+
+	/**
+	 * The first error which occurred in one of the stages.
+	 */
+	private volatile ImageHandlingException error;
+
+	/**
+	 * The time the pipeline was running.
+	 */
+	private long runNanos;
+
+	/**
+	 * Creates a new <code>ConversionPipeline</code> which reads from the given
+	 * input file.
+	 *
+	 * @param inputHandler the file handler of the input image. It must point to
+	 *                     the beginning of the data segment.
+	 * @param bufferPool   the pool providing the buffers passed between the
+	 *                     stages.
+	 */
+	public ConversionPipeline(FileHandler inputHandler, BufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+		stages = new ArrayList<PipelineStage>();
+		stages.add(new ReadStage(this, inputHandler));
+	}
+
+	/**
+	 * Adds a stage which processes the data using a kernel.
+	 *
+	 * @param name   the name of the stage.
+	 * @param kernel the kernel.
+	 */
+	public void addStage(String name, TranscodingKernel kernel) {
+		addStage(new ProcessingStage(this, name, kernel));
+	}
+
+	/**
+	 * Adds a stage which decodes the data.
+	 *
+	 * @param name    the name of the stage.
+	 * @param decoder the decoder.
+	 */
+	public void addStage(String name, Decoder decoder) {
+		addStage(new ProcessingStage(this, name, decoder));
+	}
+
+	private void addStage(PipelineStage stage) {
+		stages.get(stages.size() - 1).connect(stage);
+		stages.add(stage);
+	}
+
+	/**
+	 * Runs all stages and writes the result into the output file. Returns after
+	 * the last stage has finished.
+	 *
+	 * @param outputHandler the file handler of the output image.
+	 * @throws ImageHandlingException when an error occurred in one of the stages.
+	 */
+	public void run(FileHandler outputHandler) throws ImageHandlingException {
+		addStage(new WriteStage(this, outputHandler));
+
+		long startNanos = System.nanoTime();
+		for (PipelineStage stage : stages) {
+			stage.start();
+		}
+		for (PipelineStage stage : stages) {
+			try {
+				stage.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		runNanos = System.nanoTime() - startNanos;
+
+		for (PipelineStage stage : stages) {
+			stage.releaseBuffers();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * To get how much of the pipeline's running time each stage spent doing actual
+	 * work. The stage with the highest utilization is the bottleneck of the
+	 * pipeline.
+	 *
+	 * @return the utilization between 0 and 1 of each stage in the order of the
+	 *         stages.
+	 */
+	public Map<String, Double> getStageUtilization() {
+		Map<String, Double> utilization = new LinkedHashMap<String, Double>();
+		for (PipelineStage stage : stages) {
+			utilization.put(stage.getName(), runNanos == 0 ? 0.0 : (double) stage.getBusyNanos() / runNanos);
+		}
+		return utilization;
+	}
+
+	/**
+	 * To get how long the pipeline was running.
+	 *
+	 * @return the running time in nanoseconds.
+	 */
+	public long getRunNanos() {
+		return runNanos;
+	}
+
+	/**
+	 * To get how long each stage spent doing actual work. Since the stages run at
+	 * the same time, the sum of these times is usually longer than the running
+	 * time of the pipeline.
+	 *
+	 * @return the busy time in nanoseconds of each stage in the order of the
+	 *         stages.
+	 */
+	public Map<String, Long> getStageBusyNanos() {
+		Map<String, Long> busyNanos = new LinkedHashMap<String, Long>();
+		for (PipelineStage stage : stages) {
+			busyNanos.put(stage.getName(), stage.getBusyNanos());
+		}
+		return busyNanos;
+	}
+
+	BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	/**
+	 * Stops the pipeline because a stage failed.
+	 *
+	 * @param e the error of the stage.
+	 */
+	synchronized void fail(ImageHandlingException e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+
+	boolean hasFailed() {
+		return error != null;
+	}
+}
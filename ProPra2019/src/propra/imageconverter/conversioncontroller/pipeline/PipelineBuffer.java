@@ -0,0 +1,71 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+/**
+ * A <code>PipelineBuffer</code> holds a part of a data segment which gets
+ * passed from one stage of a <code>ConversionPipeline</code> to the next one.
+ * After the next stage has processed it, it is given back to the stage which
+ * filled it so that it can be re-used.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class PipelineBuffer {
+
+	/**
+	 * Marks the end of the data segment.
+	 */
+	static final PipelineBuffer END_OF_DATA = new PipelineBuffer(new byte[0]);
+
+	private byte[] data;
+
+	/**
+	 * The number of valid bytes in <code>data</code>.
+	 */
+	private int length;
+
+	/**
+	 * Creates a new empty <code>PipelineBuffer</code>.
+	 *
+	 * @param data the array holding the data. Its length is the number of bytes
+	 *             this <code>PipelineBuffer</code> can hold.
+	 */
+	public PipelineBuffer(byte[] data) {
+		this.data = data;
+		length = 0;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public void setLength(int length) {
+		this.length = length;
+	}
+
+	/**
+	 * To get the number of bytes which can still be added to this
+	 * <code>PipelineBuffer</code>.
+	 *
+	 * @return the number of free bytes.
+	 */
+	public int getRemainingCapacity() {
+		return data.length - length;
+	}
+
+	/**
+	 * Appends data to this <code>PipelineBuffer</code>.
+	 *
+	 * @param source the buffer containing the data.
+	 * @param offset the position of the first byte to be appended.
+	 * @param count  the number of bytes to be appended. Must not exceed the
+	 *               remaining capacity.
+	 */
+	public void append(byte[] source, int offset, int count) {
+		System.arraycopy(source, offset, data, length, count);
+		length += count;
+	}
+}
@@ -0,0 +1,280 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>PipelineStage</code> is one step of a <code>ConversionPipeline</code>
+ * which runs in its own thread. It receives buffers from the preceding stage,
+ * processes them and passes its results in own buffers to the next stage.
+ * Buffers are given back to the stage which filled them as soon as they have
+ * been processed so that no new buffers need to be created while the pipeline
+ * is running.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public abstract class PipelineStage extends Thread {
+
+	/**
+	 * The number of buffers which can be in flight between two stages.
+	 */
+	static final int BUFFERS_PER_STAGE = 8;
+
+	/**
+	 * How often a stage checks a queue before it starts to sleep while waiting.
+	 */
+	private static final int SPIN_COUNT = 100;
+
+	private static final long PARK_NANOS = 50_000;
+
+	protected final ConversionPipeline pipeline;
+
+	/**
+	 * The buffers coming from the preceding stage.
+	 */
+	private SpscQueue<PipelineBuffer> inputQueue;
+
+	/**
+	 * The processed buffers which are given back to the preceding stage.
+	 */
+	private SpscQueue<PipelineBuffer> returnQueue;
+
+	/**
+	 * The buffers passed to the next stage.
+	 */
+	private SpscQueue<PipelineBuffer> outputQueue;
+
+	/**
+	 * The buffers which were given back by the next stage.
+	 */
+	private SpscQueue<PipelineBuffer> recycleQueue;
+
+	/**
+	 * The buffers this stage has leased from the pool of the pipeline so far.
+	 */
+	private List<PipelineBuffer> ownBuffers;
+
+	/**
+	 * The buffer which is currently filled by this stage.
+	 */
+	private PipelineBuffer currentOutputBuffer;
+
+	/**
+	 * The time this stage was running.
+	 */
+	private long runNanos;
+
+	/**
+	 * The time this stage spent waiting for other stages.
+	 */
+	private long waitNanos;
+
+	/**
+	 * Creates a new <code>PipelineStage</code>.
+	 *
+	 * @param pipeline the pipeline this stage belongs to.
+	 * @param name     the name of this stage.
+	 */
+	public PipelineStage(ConversionPipeline pipeline, String name) {
+		super(name);
+		this.pipeline = pipeline;
+		ownBuffers = new ArrayList<PipelineBuffer>(BUFFERS_PER_STAGE);
+		setDaemon(true);
+	}
+
+	/**
+	 * Connects this stage with the next stage of the pipeline.
+	 *
+	 * @param nextStage the next stage.
+	 */
+	void connect(PipelineStage nextStage) {
+		outputQueue = new SpscQueue<PipelineBuffer>(BUFFERS_PER_STAGE + 1);
+		recycleQueue = new SpscQueue<PipelineBuffer>(BUFFERS_PER_STAGE + 1);
+		nextStage.inputQueue = outputQueue;
+		nextStage.returnQueue = recycleQueue;
+	}
+
+	@Override
+	public void run() {
+		long startNanos = System.nanoTime();
+		try {
+			execute();
+		} catch (ImageHandlingException e) {
+			pipeline.fail(e);
+		} catch (PipelineAbortedException e) {
+			// Another stage failed. This stage just stops.
+		} catch (RuntimeException e) {
+			// The other stages must not wait for this stage forever
+			pipeline.fail(new ImageHandlingException("Unexpected error in thread " + getName() + ": " + e,
+					ImageConverterErrorCode.UNEXPECTED_ERROR));
+		}
+		runNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Executes the work of this stage until the end of the data segment was
+	 * reached.
+	 *
+	 * @throws ImageHandlingException when an error occurred during processing the
+	 *                                data.
+	 */
+	protected abstract void execute() throws ImageHandlingException;
+
+	/**
+	 * To get the time this stage spent doing actual work and not waiting for
+	 * other stages.
+	 *
+	 * @return the busy time in nanoseconds.
+	 */
+	public long getBusyNanos() {
+		return runNanos - waitNanos;
+	}
+
+	/**
+	 * Waits for the next buffer of the preceding stage.
+	 *
+	 * @return the next buffer or <code>PipelineBuffer.END_OF_DATA</code>.
+	 */
+	protected PipelineBuffer receive() {
+		PipelineBuffer buffer = inputQueue.poll();
+		if (buffer == null) {
+			long startNanos = System.nanoTime();
+			int spins = 0;
+			while ((buffer = inputQueue.poll()) == null) {
+				spins = await(spins);
+			}
+			waitNanos += System.nanoTime() - startNanos;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Gives a processed buffer back to the preceding stage.
+	 *
+	 * @param buffer the processed buffer.
+	 */
+	protected void giveBack(PipelineBuffer buffer) {
+		buffer.setLength(0);
+		// The preceding stage never has more buffers than the queue can hold
+		returnQueue.offer(buffer);
+	}
+
+	/**
+	 * Appends data to the buffers of this stage and passes every full buffer to
+	 * the next stage.
+	 *
+	 * @param data   the data.
+	 * @param offset the position of the first byte to be passed.
+	 * @param length the number of bytes to be passed.
+	 */
+	protected void emit(byte[] data, int offset, int length) {
+		while (length > 0) {
+			if (currentOutputBuffer == null) {
+				currentOutputBuffer = obtainBuffer();
+			}
+			int count = Math.min(length, currentOutputBuffer.getRemainingCapacity());
+			currentOutputBuffer.append(data, offset, count);
+			offset += count;
+			length -= count;
+			if (currentOutputBuffer.getRemainingCapacity() == 0) {
+				send(currentOutputBuffer);
+				currentOutputBuffer = null;
+			}
+		}
+	}
+
+	/**
+	 * Passes the partially filled buffer and the end of the data segment to the
+	 * next stage.
+	 */
+	protected void emitEndOfData() {
+		if (currentOutputBuffer != null && currentOutputBuffer.getLength() > 0) {
+			send(currentOutputBuffer);
+		}
+		currentOutputBuffer = null;
+		send(PipelineBuffer.END_OF_DATA);
+	}
+
+	/**
+	 * Returns an empty buffer which can be filled by this stage. It either is a
+	 * buffer given back by the next stage or a new one as long as not all buffers
+	 * of this stage are in flight. New buffers are leased from the pool of the
+	 * pipeline.
+	 *
+	 * @return the empty buffer.
+	 */
+	protected PipelineBuffer obtainBuffer() {
+		PipelineBuffer buffer = recycleQueue.poll();
+		if (buffer == null && ownBuffers.size() < BUFFERS_PER_STAGE) {
+			buffer = new PipelineBuffer(pipeline.getBufferPool().lease());
+			ownBuffers.add(buffer);
+			return buffer;
+		}
+		if (buffer == null) {
+			long startNanos = System.nanoTime();
+			int spins = 0;
+			while ((buffer = recycleQueue.poll()) == null) {
+				spins = await(spins);
+			}
+			waitNanos += System.nanoTime() - startNanos;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Passes a buffer to the next stage.
+	 *
+	 * @param buffer the buffer.
+	 */
+	protected void send(PipelineBuffer buffer) {
+		if (!outputQueue.offer(buffer)) {
+			long startNanos = System.nanoTime();
+			int spins = 0;
+			while (!outputQueue.offer(buffer)) {
+				spins = await(spins);
+			}
+			waitNanos += System.nanoTime() - startNanos;
+		}
+	}
+
+	/**
+	 * Returns all buffers of this stage to the pool of the pipeline. May only be
+	 * called after all stages have finished.
+	 */
+	void releaseBuffers() {
+		for (PipelineBuffer buffer : ownBuffers) {
+			pipeline.getBufferPool().release(buffer.getData());
+		}
+		ownBuffers.clear();
+	}
+
+	/**
+	 * Waits a short moment for another stage.
+	 *
+	 * @param spins how often this stage has already waited in a row.
+	 * @return the new number of times this stage has waited in a row.
+	 */
+	private int await(int spins) {
+		if (pipeline.hasFailed()) {
+			throw new PipelineAbortedException();
+		}
+		if (spins < SPIN_COUNT) {
+			Thread.onSpinWait();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return spins + 1;
+	}
+
+	/**
+	 * Thrown inside a stage to stop it when another stage of the pipeline failed.
+	 */
+	private static class PipelineAbortedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
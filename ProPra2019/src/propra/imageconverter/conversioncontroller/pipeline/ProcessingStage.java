@@ -0,0 +1,73 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import propra.imageconverter.codecs.Decoder;
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>ProcessingStage</code> is a stage of a <code>ConversionPipeline</code>
+ * which decodes, re-orders or encodes the data it receives using either a
+ * <code>TranscodingKernel</code> or a <code>Decoder</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ProcessingStage extends PipelineStage {
+
+	private TranscodingKernel kernel;
+	private Decoder decoder;
+
+	/**
+	 * Creates a new <code>ProcessingStage</code> which uses a
+	 * <code>TranscodingKernel</code>.
+	 *
+	 * @param pipeline the pipeline this stage belongs to.
+	 * @param name     the name of this stage.
+	 * @param kernel   the kernel which processes the data.
+	 */
+	public ProcessingStage(ConversionPipeline pipeline, String name, TranscodingKernel kernel) {
+		super(pipeline, name);
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Creates a new <code>ProcessingStage</code> which uses a <code>Decoder</code>.
+	 *
+	 * @param pipeline the pipeline this stage belongs to.
+	 * @param name     the name of this stage.
+	 * @param decoder  the decoder which processes the data.
+	 */
+	public ProcessingStage(ConversionPipeline pipeline, String name, Decoder decoder) {
+		super(pipeline, name);
+		this.decoder = decoder;
+	}
+
+	@Override
+	protected void execute() throws ImageHandlingException {
+		PipelineBuffer buffer;
+		while ((buffer = receive()) != PipelineBuffer.END_OF_DATA) {
+			if (kernel != null) {
+				kernel.transcode(buffer.getData(), buffer.getLength());
+				emit(kernel.getOutputBuffer(), 0, kernel.getOutputLength());
+			} else {
+				byte[] inputData = new byte[buffer.getLength()];
+				System.arraycopy(buffer.getData(), 0, inputData, 0, inputData.length);
+				byte[] outputData = decoder.decode(inputData);
+				if (outputData != null) {
+					emit(outputData, 0, outputData.length);
+				}
+			}
+			giveBack(buffer);
+		}
+
+		if (kernel != null) {
+			kernel.flush();
+		} else {
+			byte[] outputData = decoder.flush();
+			if (outputData != null) {
+				emit(outputData, 0, outputData.length);
+			}
+		}
+		emitEndOfData();
+	}
+}
@@ -0,0 +1,43 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.FileHandler;
+
+/**
+ * A <code>ReadStage</code> is the first stage of a
+ * <code>ConversionPipeline</code>. It reads the data segment of the input image
+ * into the buffers of the pipeline.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ReadStage extends PipelineStage {
+
+	private FileHandler inputHandler;
+
+	/**
+	 * Creates a new <code>ReadStage</code>.
+	 *
+	 * @param pipeline     the pipeline this stage belongs to.
+	 * @param inputHandler the file handler of the input image. It must point to
+	 *                     the beginning of the data segment.
+	 */
+	public ReadStage(ConversionPipeline pipeline, FileHandler inputHandler) {
+		super(pipeline, "read");
+		this.inputHandler = inputHandler;
+	}
+
+	@Override
+	protected void execute() throws ImageHandlingException {
+		while (true) {
+			PipelineBuffer buffer = obtainBuffer();
+			int bytesRead = inputHandler.readData(buffer.getData());
+			if (bytesRead == -1) {
+				break;
+			}
+			buffer.setLength(bytesRead);
+			send(buffer);
+		}
+		emitEndOfData();
+	}
+}
@@ -0,0 +1,82 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>SpscQueue</code> is a bounded lock-free queue for exactly one thread
+ * which adds elements and exactly one thread which removes elements. It is used
+ * to pass buffers between two neighbouring stages of a
+ * <code>ConversionPipeline</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ * @param <E> the type of the elements in this queue.
+ */
+public class SpscQueue<E> {
+
+	private final Object[] elements;
+	private final int mask;
+
+	/**
+	 * The index of the next element to be removed. Only written by the consuming
+	 * thread.
+	 */
+	private final AtomicLong head;
+
+	/**
+	 * The index of the next element to be added. Only written by the producing
+	 * thread.
+	 */
+	private final AtomicLong tail;
+
+	/**
+	 * Creates a new <code>SpscQueue</code>.
+	 *
+	 * @param capacity the minimum number of elements this queue can hold. It gets
+	 *                 rounded up to the next power of two.
+	 */
+	public SpscQueue(int capacity) {
+		int actualCapacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		elements = new Object[actualCapacity];
+		mask = actualCapacity - 1;
+		head = new AtomicLong();
+		tail = new AtomicLong();
+	}
+
+	/**
+	 * Adds an element to this queue. May only be called by the producing thread.
+	 *
+	 * @param element the element to be added.
+	 * @return <code>true</code> when the element was added, <code>false</code>
+	 *         when this queue is full.
+	 */
+	public boolean offer(E element) {
+		long currentTail = tail.get();
+		if (currentTail - head.get() == elements.length) {
+			return false;
+		}
+		elements[(int) (currentTail & mask)] = element;
+		// The element becomes visible to the consumer with the new tail
+		tail.lazySet(currentTail + 1);
+		return true;
+	}
+
+	/**
+	 * Removes an element from this queue. May only be called by the consuming
+	 * thread.
+	 *
+	 * @return the removed element or <code>null</code> when this queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long currentHead = head.get();
+		if (currentHead == tail.get()) {
+			return null;
+		}
+		int index = (int) (currentHead & mask);
+		E element = (E) elements[index];
+		elements[index] = null;
+		head.lazySet(currentHead + 1);
+		return element;
+	}
+}
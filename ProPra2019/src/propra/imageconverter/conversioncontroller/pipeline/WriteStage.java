@@ -0,0 +1,38 @@
+package propra.imageconverter.conversioncontroller.pipeline;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.FileHandler;
+
+/**
+ * A <code>WriteStage</code> is the last stage of a
+ * <code>ConversionPipeline</code>. It writes the buffers it receives into the
+ * output image.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class WriteStage extends PipelineStage {
+
+	private FileHandler outputHandler;
+
+	/**
+	 * Creates a new <code>WriteStage</code>.
+	 *
+	 * @param pipeline      the pipeline this stage belongs to.
+	 * @param outputHandler the file handler of the output image.
+	 */
+	public WriteStage(ConversionPipeline pipeline, FileHandler outputHandler) {
+		super(pipeline, "write");
+		this.outputHandler = outputHandler;
+	}
+
+	@Override
+	protected void execute() throws ImageHandlingException {
+		PipelineBuffer buffer;
+		while ((buffer = receive()) != PipelineBuffer.END_OF_DATA) {
+			outputHandler.writeData(buffer.getData(), 0, buffer.getLength());
+			giveBack(buffer);
+		}
+		outputHandler.flush();
+	}
+}
@@ -0,0 +1,218 @@
+package propra.imageconverter.daemon;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.scheduler.JobScheduler;
+
+/**
+ * A <code>ConversionDaemon</code> keeps the <code>ImageConverter</code> running
+ * and accepts conversion requests on a Unix domain socket or a TCP port of the
+ * loopback interface. This way the start-up of the JVM and the warm-up of the
+ * JIT compiler are only paid once and not for every image.
+ * <p>
+ * Every client connection is served by its own thread. The conversions of all
+ * clients are executed by one <code>JobScheduler</code> which runs as many
+ * conversions at the same time as there are cores, since the conversions are
+ * CPU-bound, and keeps their memory within a budget. The protocol is described
+ * in <code>DaemonConnection</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionDaemon {
+
+	private static final String TCP_PREFIX = "tcp:";
+	private static final String UNIX_PREFIX = "unix:";
+
+	/**
+	 * How long the responses of the last requests may take to be sent after all
+	 * conversions have finished.
+	 */
+	private static final long RESPONSE_MILLIS = 1000;
+
+	private String address;
+	private ServerSocketChannel serverChannel;
+	private Path socketFile;
+
+	/**
+	 * Executes the conversions of all clients.
+	 */
+	private JobScheduler scheduler;
+
+	/**
+	 * Creates a new <code>ConversionDaemon</code>.
+	 *
+	 * @param address the address to listen on, either 'tcp:&lt;port&gt;' or
+	 *                'unix:&lt;path&gt;'.
+	 */
+	public ConversionDaemon(String address) {
+		this.address = address;
+		scheduler = new JobScheduler(Runtime.getRuntime().availableProcessors(), JobScheduler.getDefaultMemoryBudget());
+	}
+
+	/**
+	 * Listens for client connections until a client sends a shutdown request.
+	 *
+	 * @throws ImageHandlingException when the daemon could not listen on the given
+	 *                                address.
+	 */
+	public void run() throws ImageHandlingException {
+		openServerChannel();
+		System.out.println(" ImageConverter daemon listening on " + address);
+
+		ExecutorService connectionThreads = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "daemon-connection");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			while (true) {
+				SocketChannel clientChannel = serverChannel.accept();
+				connectionThreads.execute(new DaemonConnection(this, clientChannel));
+			}
+		} catch (ClosedChannelException e) {
+			// The daemon was shut down
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not accept connection: " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		} finally {
+			closeServerChannel();
+			finishRequests(connectionThreads);
+			System.out.println(" " + scheduler.getStatistics());
+		}
+	}
+
+	/**
+	 * Lets the conversions which are running finish and sends their responses.
+	 * Afterwards the connections which are waiting for the next request get
+	 * closed.
+	 *
+	 * @param connectionThreads the threads serving the connections.
+	 */
+	private void finishRequests(ExecutorService connectionThreads) {
+		scheduler.shutdown();
+		connectionThreads.shutdown();
+		try {
+			scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			connectionThreads.awaitTermination(RESPONSE_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Interrupting a thread blocked in reading from its channel closes the channel
+		connectionThreads.shutdownNow();
+	}
+
+	/**
+	 * Stops accepting new connections. Conversions which are currently running get
+	 * finished, requests which are still waiting for the scheduler fail.
+	 */
+	public void shutdown() {
+		closeServerChannel();
+	}
+
+	/**
+	 * To get the scheduler which executes the conversions of all clients.
+	 *
+	 * @return the scheduler.
+	 */
+	JobScheduler getScheduler() {
+		return scheduler;
+	}
+
+	private void openServerChannel() throws ImageHandlingException {
+		try {
+			SocketAddress socketAddress;
+			if (address.startsWith(TCP_PREFIX)) {
+				int port = Integer.parseInt(address.substring(TCP_PREFIX.length()));
+				socketAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+				serverChannel = ServerSocketChannel.open(StandardProtocolFamily.INET);
+			} else if (address.startsWith(UNIX_PREFIX)) {
+				Path path = Path.of(address.substring(UNIX_PREFIX.length()));
+				removeStaleSocketFile(path);
+				socketAddress = UnixDomainSocketAddress.of(path);
+				serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+				socketFile = path;
+			} else {
+				throw new ImageHandlingException("Unknown daemon address: " + address,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			serverChannel.bind(socketAddress);
+		} catch (NumberFormatException e) {
+			throw new ImageHandlingException("Invalid port: " + address, ImageConverterErrorCode.INVALID_USER_INPUT);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not listen on " + address + ": " + e.getMessage(),
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Removes a socket file left behind by a daemon which was killed since it
+	 * would block the address. Other files are never removed.
+	 *
+	 * @param path the path of the socket file.
+	 * @throws ImageHandlingException when the path is not a socket or another
+	 *                                daemon is still listening on it.
+	 */
+	private void removeStaleSocketFile(Path path) throws ImageHandlingException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (IOException e) {
+			// There is no file yet
+			return;
+		}
+		// Sockets are neither regular files, directories nor symbolic links
+		if (!attributes.isOther()) {
+			throw new ImageHandlingException("Daemon address is not a socket: " + path,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		boolean daemonIsListening;
+		try {
+			SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+			daemonIsListening = true;
+		} catch (IOException e) {
+			// Nobody is listening anymore
+			daemonIsListening = false;
+		}
+		if (daemonIsListening) {
+			throw new ImageHandlingException("Another daemon is already listening on " + path,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		try {
+			Files.delete(path);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not remove stale socket file: " + path,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	private synchronized void closeServerChannel() {
+		try {
+			if (serverChannel != null) {
+				serverChannel.close();
+			}
+			if (socketFile != null) {
+				Files.deleteIfExists(socketFile);
+			}
+		} catch (IOException e) {
+			// Nothing left to do for a daemon which stops anyway
+		}
+	}
+}
@@ -0,0 +1,474 @@
+package propra.imageconverter.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import propra.imageconverter.ImageConverter;
+import propra.imageconverter.api.ConversionOptions;
+import propra.imageconverter.api.InMemoryConverter;
+import propra.imageconverter.conversioncontroller.CachingConversionController;
+import propra.imageconverter.conversioncontroller.ConversionController;
+import propra.imageconverter.conversioncontroller.StreamConversionController;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.scheduler.ConversionJob;
+import propra.imageconverter.scheduler.ExecutionStrategy;
+import propra.imageconverter.scheduler.JobEstimate;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConverterOperationMode;
+import propra.imageconverter.util.arguments.Format;
+import propra.imageconverter.util.arguments.ImageConverterArgumentHandler;
+
+/**
+ * A <code>DaemonConnection</code> serves the requests of one client of a
+ * <code>ConversionDaemon</code>. Requests and responses are lines whose fields
+ * are separated by tabs:
+ * <ul>
+ * <li><code>CONVERT &lt;argument&gt; ...</code> converts files. The arguments
+ * are the same as on the command line. Options which print to the standard
+ * output or write a report are not available.</li>
+ * <li><code>INLINE &lt;input format&gt; &lt;output format&gt; &lt;compression&gt;
+ * &lt;length&gt;</code> followed by <code>length</code> bytes of the input image
+ * converts an image sent by the client. The converted image is sent back after
+ * the response line.</li>
+ * <li><code>SHUTDOWN</code> stops the daemon.</li>
+ * </ul>
+ * Each request is answered with <code>OK 0 &lt;milliseconds&gt;</code>
+ * (followed by the length of the converted image for inline requests) or with
+ * <code>ERROR &lt;error code&gt; &lt;milliseconds&gt; &lt;message&gt;</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class DaemonConnection implements Runnable {
+
+	private static final String CONVERT = "CONVERT";
+	private static final String INLINE = "INLINE";
+	private static final String SHUTDOWN = "SHUTDOWN";
+
+	/**
+	 * The maximum length of a request line.
+	 */
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	private ConversionDaemon daemon;
+	private SocketChannel channel;
+	private InputStream input;
+	private OutputStream output;
+
+	/**
+	 * The number of bytes of the image of the current inline request which were
+	 * not received yet.
+	 */
+	private long remainingPayloadLength;
+
+	/**
+	 * Creates a new <code>DaemonConnection</code>.
+	 *
+	 * @param daemon  the daemon which accepted the connection.
+	 * @param channel the channel connected to the client.
+	 */
+	public DaemonConnection(ConversionDaemon daemon, SocketChannel channel) {
+		this.daemon = daemon;
+		this.channel = channel;
+	}
+
+	/**
+	 * Serves the requests of the client until it closes the connection.
+	 */
+	@Override
+	public void run() {
+		try (SocketChannel channel = this.channel) {
+			input = new BufferedInputStream(Channels.newInputStream(channel));
+			output = new BufferedOutputStream(Channels.newOutputStream(channel));
+			String request;
+			while ((request = readLine()) != null) {
+				if (request.isEmpty()) {
+					continue;
+				}
+				if (!handleRequest(request.split("\t"))) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			// The client closed the connection
+		}
+	}
+
+	/**
+	 * Executes a request and sends the response.
+	 *
+	 * @param fields the fields of the request line.
+	 * @return <code>false</code> when the connection should be closed,
+	 *         <code>true</code> otherwise.
+	 * @throws IOException when the response could not be sent.
+	 */
+	private boolean handleRequest(String[] fields) throws IOException {
+		long startNanos = System.nanoTime();
+		ByteBuffer payload = null;
+		try {
+			switch (fields[0]) {
+			case CONVERT:
+				convert(Arrays.copyOfRange(fields, 1, fields.length));
+				break;
+			case INLINE:
+				payload = convertInline(fields);
+				break;
+			case SHUTDOWN:
+				sendResponse("OK\t0\t0");
+				daemon.shutdown();
+				return false;
+			default:
+				throw new ImageHandlingException("Unknown request: " + fields[0],
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		} catch (ImageHandlingException e) {
+			sendError(e.getErrorCode(), startNanos, e.getMessage());
+			return true;
+		} catch (RuntimeException e) {
+			// The daemon must keep running even if a conversion fails unexpectedly
+			sendError(ImageConverterErrorCode.UNEXPECTED_ERROR.getErrorCode(), startNanos, e.toString());
+			return true;
+		}
+
+		long millis = (System.nanoTime() - startNanos) / 1_000_000;
+		if (payload == null) {
+			sendResponse("OK\t0\t" + millis);
+		} else {
+			sendResponse("OK\t0\t" + millis + "\t" + payload.remaining());
+			while (payload.hasRemaining()) {
+				channel.write(payload);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Executes a conversion with the same arguments as on the command line.
+	 *
+	 * @param args the arguments.
+	 * @throws ImageHandlingException when the arguments are invalid or the
+	 *                                conversion failed.
+	 */
+	private void convert(String[] args) throws ImageHandlingException {
+		ImageConverterArgumentHandler argHandler = new ImageConverterArgumentHandler(args);
+		if (argHandler.getConverterOperationMode() == ConverterOperationMode.DAEMON) {
+			throw new ImageHandlingException("The daemon is already running.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		ConverterOperationMode operationMode = argHandler.getConverterOperationMode();
+		if (operationMode == ConverterOperationMode.INFO || operationMode == ConverterOperationMode.ANALYZE
+				|| operationMode == ConverterOperationMode.VERIFY || operationMode == ConverterOperationMode.BENCHMARK) {
+			// Their results would be printed to the standard output of the daemon
+			throw new ImageHandlingException("--info, --analyze, --verify and --benchmark are not available in the daemon.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (argHandler.getReportPath() != null) {
+			// The report writer is set up once per process
+			throw new ImageHandlingException("--report= is not available in the daemon.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (argHandler.usesStandardStreams()) {
+			// The standard streams belong to the daemon and not to the client
+			throw new ImageHandlingException("The standard streams cannot be used by the daemon. Use INLINE instead.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		executeOnScheduler(new ConversionJob<Void>() {
+			@Override
+			public JobEstimate getEstimate() {
+				if (argHandler.getConverterOperationMode() != ConverterOperationMode.CONVERT) {
+					// Base-n coding and batches only hold buffers of a fixed size
+					long inputLength = argHandler.getInputPath() == null ? 0
+							: new File(argHandler.getInputPath()).length();
+					return JobEstimate.forData(inputLength).withoutInMemoryExecution();
+				}
+				JobEstimate estimate = JobEstimate.forImageFile(Paths.get(argHandler.getInputPath()),
+						argHandler.getInputFormat(), argHandler.getOutputFormat(),
+						argHandler.getOutputCompressionFormat());
+				// The pipeline and several outputs are only available for conversions using
+				// files
+				return argHandler.isPipelined() || argHandler.getOutputTargets().size() > 1
+						? estimate.withoutInMemoryExecution()
+						: estimate;
+			}
+
+			@Override
+			public Void execute(ExecutionStrategy strategy) throws ImageHandlingException {
+				ConversionController controller = null;
+				try {
+					if (strategy == ExecutionStrategy.IN_MEMORY) {
+						// The same options as on the command line, i.e. with round-trip verification
+						ConversionOptions options = ImageConverter.createConversionOptions(argHandler);
+						controller = CachingConversionController.create(argHandler.getInputPath(),
+								argHandler.getOutputPath(), options,
+								() -> new StreamConversionController(argHandler.getInputPath(),
+										argHandler.getOutputPath(), options));
+					} else {
+						controller = ImageConverter.createConversionController(argHandler);
+					}
+					controller.convert();
+				} catch (ImageHandlingException | RuntimeException e) {
+					// Unlike on the command line the open files would not be released by the
+					// end of the process
+					if (controller != null) {
+						controller.abortConversion();
+					}
+					throw e;
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Receives an image from the client, converts it and returns the converted
+	 * image. Only the header of the image is received before the conversion was
+	 * admitted by the scheduler. Images which are converted in memory are
+	 * received into memory reserved by the scheduler, all other images are
+	 * received into temp-files.
+	 *
+	 * @param fields the fields of the request line.
+	 * @return the converted image.
+	 * @throws ImageHandlingException when the request is invalid or the conversion
+	 *                                failed.
+	 * @throws IOException            when the image could not be received.
+	 */
+	private ByteBuffer convertInline(String[] fields) throws ImageHandlingException, IOException {
+		if (fields.length != 5) {
+			throw new ImageHandlingException(
+					"Inline requests need: INLINE <input format> <output format> <compression> <length>",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		int length;
+		try {
+			length = Integer.parseInt(fields[4]);
+		} catch (NumberFormatException e) {
+			length = -1;
+		}
+		if (length < 0) {
+			throw new ImageHandlingException("Invalid payload length: " + fields[4],
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		remainingPayloadLength = length;
+		try {
+			return convertInlinePayload(fields, length);
+		} finally {
+			// The rest of a rejected payload is skipped so that the next request can be
+			// read
+			input.skipNBytes(remainingPayloadLength);
+			remainingPayloadLength = 0;
+		}
+	}
+
+	private ByteBuffer convertInlinePayload(String[] fields, int length) throws ImageHandlingException, IOException {
+		Format inputFormat = Format.fromFileExtension(fields[1]);
+		Format outputFormat = Format.fromFileExtension(fields[2]);
+		if (inputFormat == null || outputFormat == null) {
+			throw new ImageHandlingException("Unknown image format. Currently only 'tga' and 'propra' are allowed.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		CompressionFormat compressionFormat;
+		try {
+			compressionFormat = CompressionFormat.valueOf(fields[3].toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new ImageHandlingException(
+					"Given compression type unknown. Currently only 'uncompressed', 'rle', 'huffman' or 'auto' are allowed.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		ConversionOptions options = ConversionOptions.forImage(inputFormat, outputFormat, compressionFormat);
+
+		int headerLength = inputFormat == Format.TGA ? ImageTGA.HEADER_LENGTH : ImagePropra.HEADER_LENGTH;
+		byte[] header = new byte[Math.min(length, headerLength)];
+		receivePayload(header, 0, header.length);
+
+		return executeOnScheduler(new ConversionJob<ByteBuffer>() {
+			@Override
+			public JobEstimate getEstimate() {
+				try {
+					if (header.length == headerLength) {
+						Image image = inputFormat == Format.TGA ? new ImageTGA(header) : new ImagePropra(header);
+						return JobEstimate.forImage(image, length, outputFormat, compressionFormat, true);
+					}
+				} catch (ImageHandlingException e) {
+					// The conversion will report the error
+				}
+				// Without a valid header the size of the image is unknown
+				return JobEstimate.forData(length).withoutInMemoryExecution();
+			}
+
+			@Override
+			public ByteBuffer execute(ExecutionStrategy strategy) throws ImageHandlingException {
+				try {
+					if (strategy == ExecutionStrategy.IN_MEMORY) {
+						byte[] inputImage = Arrays.copyOf(header, length);
+						receivePayload(inputImage, header.length, length - header.length);
+						return ByteBuffer.wrap(InMemoryConverter.convert(inputImage, options));
+					}
+					return convertInlineUsingFiles(header, fields);
+				} catch (IOException e) {
+					throw new ImageHandlingException("Could not receive inline image: " + e.getMessage(),
+							ImageConverterErrorCode.IO_ERROR);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Converts an image sent by the client using temp-files. The rest of the image
+	 * is received directly into a temp-file. The converted image is mapped into
+	 * memory so that it is not held on the heap.
+	 *
+	 * @param header the part of the image which was already received.
+	 * @param fields the fields of the request line.
+	 * @return the converted image.
+	 * @throws ImageHandlingException when the conversion failed.
+	 * @throws IOException            when the image could not be received.
+	 */
+	private ByteBuffer convertInlineUsingFiles(byte[] header, String[] fields)
+			throws ImageHandlingException, IOException {
+		Path inputFile = null;
+		Path outputFile = null;
+		ConversionController controller = null;
+		try {
+			inputFile = Files.createTempFile("propra-daemon-", "." + fields[1]);
+			outputFile = Files.createTempFile("propra-daemon-", "." + fields[2]);
+			try (OutputStream inputFileStream = Files.newOutputStream(inputFile)) {
+				inputFileStream.write(header);
+				BufferPool bufferPool = BufferPool.getDefault();
+				byte[] buffer = bufferPool.lease();
+				try {
+					while (remainingPayloadLength > 0) {
+						int count = (int) Math.min(buffer.length, remainingPayloadLength);
+						receivePayload(buffer, 0, count);
+						inputFileStream.write(buffer, 0, count);
+					}
+				} finally {
+					bufferPool.release(buffer);
+				}
+			}
+			controller = ImageConverter.createConversionController(new ImageConverterArgumentHandler(new String[] {
+					"--input=" + inputFile, "--output=" + outputFile, "--compression=" + fields[3] }));
+			controller.convert();
+			try (FileChannel outputChannel = FileChannel.open(outputFile, StandardOpenOption.READ)) {
+				return outputChannel.map(FileChannel.MapMode.READ_ONLY, 0, outputChannel.size());
+			}
+		} catch (ImageHandlingException | RuntimeException e) {
+			if (controller != null) {
+				controller.abortConversion();
+			}
+			throw e;
+		} finally {
+			// A mapped file stays readable after it was deleted
+			deleteQuietly(inputFile);
+			deleteQuietly(outputFile);
+		}
+	}
+
+	/**
+	 * Receives the next part of the image of an inline request.
+	 *
+	 * @param buffer the buffer to receive the data into.
+	 * @param offset the position in the buffer.
+	 * @param length the number of bytes to be received.
+	 * @throws IOException when the client closed the connection before.
+	 */
+	private void receivePayload(byte[] buffer, int offset, int length) throws IOException {
+		int count = input.readNBytes(buffer, offset, length);
+		remainingPayloadLength -= count;
+		if (count != length) {
+			throw new IOException("Connection closed while receiving the payload.");
+		}
+	}
+
+	/**
+	 * Executes a job on the scheduler of the daemon and waits for its result.
+	 *
+	 * @param <T> the result of the job.
+	 * @param job the job.
+	 * @return the result of the job.
+	 * @throws ImageHandlingException when the job failed or the daemon is shutting
+	 *                                down.
+	 */
+	private <T> T executeOnScheduler(ConversionJob<T> job) throws ImageHandlingException {
+		try {
+			return daemon.getScheduler().submit(job).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Daemon is shutting down.", ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ImageHandlingException) {
+				throw (ImageHandlingException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new ImageHandlingException("Unexpected error: " + cause, ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+	}
+
+	private void sendError(int errorCode, long startNanos, String message) throws IOException {
+		long millis = (System.nanoTime() - startNanos) / 1_000_000;
+		String singleLineMessage = String.valueOf(message).replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+		sendResponse("ERROR\t" + errorCode + "\t" + millis + "\t" + singleLineMessage);
+	}
+
+	private void sendResponse(String response) throws IOException {
+		output.write((response + "\n").getBytes(StandardCharsets.UTF_8));
+		output.flush();
+	}
+
+	/**
+	 * Reads the next request line.
+	 *
+	 * @return the line without the line break or <code>null</code> when the client
+	 *         closed the connection.
+	 * @throws IOException when the line could not be read or is too long.
+	 */
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int nextByte;
+		while ((nextByte = input.read()) != '\n') {
+			if (nextByte == -1) {
+				return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+			}
+			if (line.size() == MAX_LINE_LENGTH) {
+				throw new IOException("Request line too long.");
+			}
+			line.write(nextByte);
+		}
+		return line.toString(StandardCharsets.UTF_8).replace("\r", "");
+	}
+
+	private void deleteQuietly(Path file) {
+		if (file != null) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				// Temp-files are cleaned up by the system eventually
+			}
+		}
+	}
+}
@@ -1,30 +1,47 @@
-package propra.imageconverter.error;
-
-/**
- * Error codes which might be produced when using the <code>ImageConverter</code>.
- * @author Oliver Eckstein
- *
- */
-public enum ImageConverterErrorCode {
-	INVALID_FILEPATH(1),
-	INVALID_FILEFORMAT(2),
-	INVALID_HEADERDATA(3),
-	INVALID_DATASEGMENT(4),
-	INVALID_CHECKSUM(5),
-	IO_ERROR(6),
-	INVALID_FILE(7),
-	COMPRESSION_ERROR(8),
-	INVALID_USER_INPUT(9),
-	UNEXPECTED_ERROR(10);
-	
-	
-	private int errorCode;
-	
-	ImageConverterErrorCode(int errorCode) {
-		this.errorCode = errorCode;		
-	}
-	
-	public int getErrorCode() {
-		return errorCode;
-	}
-}
+package propra.imageconverter.error;
+
+/**
+ * Error codes which might be produced when using the <code>ImageConverter</code>.
+ * @author Oliver Eckstein
+ *
+ */
+public enum ImageConverterErrorCode {
+	INVALID_FILEPATH(1),
+	INVALID_FILEFORMAT(2),
+	INVALID_HEADERDATA(3),
+	INVALID_DATASEGMENT(4),
+	INVALID_CHECKSUM(5),
+	IO_ERROR(6),
+	INVALID_FILE(7),
+	COMPRESSION_ERROR(8),
+	INVALID_USER_INPUT(9),
+	UNEXPECTED_ERROR(10),
+	BATCH_CONVERSION_ERROR(11);
+	
+	
+	private int errorCode;
+	
+	ImageConverterErrorCode(int errorCode) {
+		this.errorCode = errorCode;		
+	}
+	
+	public int getErrorCode() {
+		return errorCode;
+	}
+	
+	/**
+	 * To get the error code with the given number.
+	 * 
+	 * @param errorCode the number of the error code.
+	 * @return the error code or <code>null</code> if there is no error code with
+	 *         this number.
+	 */
+	public static ImageConverterErrorCode fromErrorCode(int errorCode) {
+		for (ImageConverterErrorCode code : values()) {
+			if (code.errorCode == errorCode) {
+				return code;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,195 @@
+package propra.imageconverter.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.ChecksumCalculator;
+import propra.imageconverter.util.Util;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * An <code>ImageInfo</code> holds the metadata of an image file: its format,
+ * dimensions, compression and the length of its data segment. It is created by
+ * <code>probe()</code> which only reads the fixed-size header of the file, so
+ * probing is cheap even for very large sets of files. The check sum of a
+ * *.propra file is only verified on request since this reads the whole file.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class ImageInfo {
+
+	private final Path file;
+	private Format format;
+	private int width;
+	private int height;
+	private CompressionFormat compressionFormat;
+	private long dataLength;
+	private long fileLength;
+
+	/**
+	 * <code>null</code> if the check sum was not verified.
+	 */
+	private Boolean checkSumValid;
+
+	/**
+	 * <code>null</code> if the header is valid.
+	 */
+	private String error;
+
+	private ImageInfo(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the metadata of an image file. The format is derived from the file
+	 * extension. Errors are not thrown but recorded in the result so that probing
+	 * many files does not stop at the first invalid one.
+	 *
+	 * @param file           the image file.
+	 * @param verifyCheckSum <code>true</code> when the check sum of a *.propra
+	 *                       file should be verified.
+	 * @return the metadata of the image.
+	 */
+	public static ImageInfo probe(Path file, boolean verifyCheckSum) {
+		ImageInfo info = new ImageInfo(file);
+		String fileName = file.getFileName().toString();
+		int dotIndex = fileName.lastIndexOf('.');
+		info.format = dotIndex <= 0 ? null : Format.fromFileExtension(fileName.substring(dotIndex + 1));
+		if (info.format == null) {
+			info.error = "Unknown image format.";
+			return info;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			info.fileLength = channel.size();
+			int headerLength = info.format == Format.TGA ? ImageTGA.HEADER_LENGTH : ImagePropra.HEADER_LENGTH;
+			ByteBuffer header = ByteBuffer.allocate(headerLength);
+			int bytesRead = 0;
+			while (header.hasRemaining() && bytesRead != -1) {
+				bytesRead = channel.read(header, header.position());
+			}
+
+			Image image;
+			if (info.format == Format.TGA) {
+				image = new ImageTGA(Arrays.copyOf(header.array(), header.position()));
+				info.dataLength = info.fileLength - headerLength;
+			} else {
+				ImagePropra imagePropra = new ImagePropra(Arrays.copyOf(header.array(), header.position()));
+				info.dataLength = imagePropra.getDataSegmentLengthFromHeader();
+				if (verifyCheckSum) {
+					info.checkSumValid = info.dataLength == info.fileLength - headerLength
+							&& Arrays.equals(imagePropra.getCheckSum(), calculateCheckSum(channel, headerLength));
+				}
+				image = imagePropra;
+			}
+			info.width = image.getWidth();
+			info.height = image.getHeight();
+			info.compressionFormat = image.getCompressionMode();
+		} catch (NoSuchFileException e) {
+			info.error = "File not found.";
+		} catch (IOException e) {
+			info.error = "Could not read file: " + e.getMessage();
+		} catch (ImageHandlingException e) {
+			info.error = e.getMessage();
+		}
+		return info;
+	}
+
+	/**
+	 * Calculates the check sum of the data segment starting after the header.
+	 */
+	private static byte[] calculateCheckSum(FileChannel channel, long headerLength) throws IOException {
+		ChecksumCalculator checksumCalc = new ChecksumCalculator();
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] buffer = bufferPool.lease();
+		try {
+			long position = headerLength;
+			int bytesRead;
+			while ((bytesRead = channel.read(ByteBuffer.wrap(buffer), position)) != -1) {
+				checksumCalc.update(buffer, 0, bytesRead);
+				position += bytesRead;
+			}
+		} finally {
+			bufferPool.release(buffer);
+		}
+		return checksumCalc.getCheckSum();
+	}
+
+	/**
+	 * To get the metadata as one line of JSON. Invalid images only contain the
+	 * file and the error.
+	 *
+	 * @return the JSON object.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"file\":").append(Util.toJsonString(file.toString()));
+		if (error != null) {
+			return json.append(",\"error\":").append(Util.toJsonString(error)).append('}').toString();
+		}
+		json.append(",\"format\":\"").append(format.getFileExtension()).append('"');
+		json.append(",\"width\":").append(width);
+		json.append(",\"height\":").append(height);
+		json.append(",\"compression\":\"").append(compressionFormat.name().toLowerCase()).append('"');
+		json.append(",\"dataLength\":").append(dataLength);
+		json.append(",\"fileLength\":").append(fileLength);
+		if (checkSumValid != null) {
+			json.append(",\"checkSumValid\":").append(checkSumValid);
+		}
+		return json.append('}').toString();
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public CompressionFormat getCompressionFormat() {
+		return compressionFormat;
+	}
+
+	public long getDataLength() {
+		return dataLength;
+	}
+
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	/**
+	 * To find out whether the check sum of the data segment is valid.
+	 *
+	 * @return <code>null</code> if the check sum was not verified.
+	 */
+	public Boolean isCheckSumValid() {
+		return checkSumValid;
+	}
+
+	/**
+	 * To get the reason why the header of the image is invalid.
+	 *
+	 * @return the error or <code>null</code> if the header is valid.
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,69 @@
+package propra.imageconverter.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A <code>CodecEvent</code> is a Java Flight Recorder event for one chunk of
+ * image data being decoded, encoded, changed in its byte order or added to a
+ * check sum. Only chunks taking longer than the threshold are recorded.
+ * <p>
+ * It is used like any other JFR event:
+ *
+ * <pre>
+ * CodecEvent event = new CodecEvent();
+ * event.begin();
+ * byte[] outputData = decodeChunk(inputData);
+ * event.complete(ConversionStage.DECODE, this, inputData.length, outputData.length);
+ * </pre>
+ *
+ * @author Oliver Eckstein
+ *
+ */
+@Name("propra.imageconverter.Codec")
+@Label("Codec")
+@Category({ "ProPra", "ImageConverter" })
+@Description("Processing of one chunk of image data")
+@Threshold("10 ms")
+@StackTrace(false)
+public class CodecEvent extends Event {
+
+	@Label("Stage")
+	private String stage;
+
+	@Label("Codec")
+	private Class<?> codec;
+
+	@Label("Input Bytes")
+	@DataAmount
+	private long inputBytes;
+
+	@Label("Output Bytes")
+	@DataAmount
+	private long outputBytes;
+
+	/**
+	 * Ends this event and commits it if it took longer than the threshold.
+	 *
+	 * @param stage       the stage the chunk was processed in.
+	 * @param codec       the codec which processed the chunk.
+	 * @param inputBytes  the length of the chunk.
+	 * @param outputBytes the length of the processed data.
+	 */
+	public void complete(ConversionStage stage, Object codec, long inputBytes, long outputBytes) {
+		end();
+		if (shouldCommit()) {
+			this.stage = stage.getName();
+			this.codec = codec.getClass();
+			this.inputBytes = inputBytes;
+			this.outputBytes = outputBytes;
+			commit();
+		}
+	}
+}
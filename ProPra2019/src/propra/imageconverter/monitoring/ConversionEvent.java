@@ -0,0 +1,213 @@
+package propra.imageconverter.monitoring;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.ConversionTarget;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>ConversionEvent</code> is a Java Flight Recorder event for the
+ * conversion of one image. Besides the images it contains the time the
+ * conversion spent in each <code>ConversionStage</code> so that slow
+ * conversions can be correlated with garbage collections and CPU samples of
+ * the same period.
+ * <p>
+ * The fields are only set if the event gets committed:
+ *
+ * <pre>
+ * event.end();
+ * if (event.shouldCommit()) {
+ * 	event.setInput(...);
+ * 	...
+ * 	event.commit();
+ * }
+ * </pre>
+ *
+ * @author Oliver Eckstein
+ *
+ */
+@Name("propra.imageconverter.Conversion")
+@Label("Conversion")
+@Category({ "ProPra", "ImageConverter" })
+@Description("Conversion of one image")
+@Threshold("20 ms")
+@StackTrace(false)
+public class ConversionEvent extends Event {
+
+	@Label("Input")
+	private String input;
+
+	@Label("Input Format")
+	private String inputFormat;
+
+	@Label("Input Compression")
+	private String inputCompression;
+
+	@Label("Output")
+	private String output;
+
+	@Label("Output Format")
+	private String outputFormat;
+
+	@Label("Output Compression")
+	private String outputCompression;
+
+	@Label("Width")
+	private int width;
+
+	@Label("Height")
+	private int height;
+
+	@Label("Bytes Read")
+	@DataAmount
+	private long bytesRead;
+
+	@Label("Bytes Written")
+	@DataAmount
+	private long bytesWritten;
+
+	@Label("Error")
+	@Description("The error code of a failed conversion")
+	private String error;
+
+	@Label("Header Parse Time")
+	@Timespan
+	private long headerParseTime;
+
+	@Label("Checksum Time")
+	@Timespan
+	private long checksumTime;
+
+	@Label("Read Time")
+	@Timespan
+	private long readTime;
+
+	@Label("Decode Time")
+	@Timespan
+	private long decodeTime;
+
+	@Label("Swizzle Time")
+	@Timespan
+	private long swizzleTime;
+
+	@Label("Encode Time")
+	@Timespan
+	private long encodeTime;
+
+	@Label("Write Time")
+	@Timespan
+	private long writeTime;
+
+	@Label("Temp Spill Time")
+	@Timespan
+	private long tempSpillTime;
+
+	/**
+	 * To set the input image.
+	 *
+	 * @param path              the path of the input image or <code>null</code> if
+	 *                          it is not read from a file.
+	 * @param format            the format of the input image.
+	 * @param compressionFormat the compression of the input image or
+	 *                          <code>null</code> if its header was not read.
+	 * @param width             the width of the image.
+	 * @param height            the height of the image.
+	 * @param bytesRead         the length of the input image.
+	 */
+	public void setInput(String path, Format format, CompressionFormat compressionFormat, int width, int height,
+			long bytesRead) {
+		input = path;
+		inputFormat = describe(format);
+		inputCompression = describe(compressionFormat);
+		this.width = width;
+		this.height = height;
+		this.bytesRead = bytesRead;
+	}
+
+	/**
+	 * To set the output image.
+	 *
+	 * @param path              the path of the output image or <code>null</code>
+	 *                          if it is not written into a file.
+	 * @param format            the format of the output image.
+	 * @param compressionFormat the compression of the output image.
+	 * @param bytesWritten      the length of the output image.
+	 */
+	public void setOutput(String path, Format format, CompressionFormat compressionFormat, long bytesWritten) {
+		output = path;
+		outputFormat = describe(format);
+		outputCompression = describe(compressionFormat);
+		this.bytesWritten = bytesWritten;
+	}
+
+	/**
+	 * To set the output images of a conversion into several output images at
+	 * once. Their paths, formats and compressions are listed separated by commas.
+	 *
+	 * @param targets            the output images.
+	 * @param compressionFormats the compressions of the output images.
+	 * @param bytesWritten       the length of all output images together.
+	 */
+	public void setOutputs(List<ConversionTarget> targets, List<CompressionFormat> compressionFormats,
+			long bytesWritten) {
+		StringBuilder paths = new StringBuilder();
+		StringBuilder formats = new StringBuilder();
+		StringBuilder compressions = new StringBuilder();
+		for (int i = 0; i < targets.size(); i++) {
+			String separator = i == 0 ? "" : ",";
+			paths.append(separator).append(targets.get(i).getPath());
+			formats.append(separator).append(describe(targets.get(i).getFormat()));
+			compressions.append(separator)
+					.append(describe(compressionFormats == null ? null : compressionFormats.get(i)));
+		}
+		output = paths.toString();
+		outputFormat = formats.toString();
+		outputCompression = compressions.toString();
+		this.bytesWritten = bytesWritten;
+	}
+
+	/**
+	 * To set the error code of a failed conversion.
+	 *
+	 * @param errorCode the error code.
+	 */
+	public void setErrorCode(int errorCode) {
+		ImageConverterErrorCode code = ImageConverterErrorCode.fromErrorCode(errorCode);
+		error = code == null ? String.valueOf(errorCode) : code.name();
+	}
+
+	/**
+	 * To set the time the conversion spent in each stage.
+	 *
+	 * @param stageTimes the stage times.
+	 */
+	public void setStageTimes(StageTimes stageTimes) {
+		headerParseTime = stageTimes.getNanos(ConversionStage.HEADER_PARSE);
+		checksumTime = stageTimes.getNanos(ConversionStage.CHECKSUM);
+		readTime = stageTimes.getNanos(ConversionStage.READ);
+		decodeTime = stageTimes.getNanos(ConversionStage.DECODE);
+		swizzleTime = stageTimes.getNanos(ConversionStage.SWIZZLE);
+		encodeTime = stageTimes.getNanos(ConversionStage.ENCODE);
+		writeTime = stageTimes.getNanos(ConversionStage.WRITE);
+		tempSpillTime = stageTimes.getNanos(ConversionStage.TEMP_SPILL);
+	}
+
+	private static String describe(Format format) {
+		return format == null ? null : format.getFileExtension();
+	}
+
+	private static String describe(CompressionFormat compressionFormat) {
+		return compressionFormat == null ? null : compressionFormat.name().toLowerCase();
+	}
+}
@@ -0,0 +1,329 @@
+package propra.imageconverter.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * <code>ConversionMetrics</code> count the conversions of the
+ * <code>ImageConverter</code>: how many were started, completed and failed, how
+ * many bytes were read and written, where the time went and what 'auto'
+ * selected. The conversions record themselves in the default instance which
+ * gets exposed via JMX by <code>register()</code>.
+ * <p>
+ * Recording is thread-safe and cheap enough to be done for every conversion,
+ * whether the metrics are registered or not.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionMetrics implements ConversionMetricsMXBean {
+
+	/**
+	 * The name the default instance gets registered with.
+	 */
+	public static final String OBJECT_NAME = "propra.imageconverter:type=ConversionMetrics";
+
+	/**
+	 * The upper bounds of the histogram buckets in milliseconds. The last bucket
+	 * holds everything above.
+	 */
+	private static final long[] HISTOGRAM_BOUNDS_MILLIS = { 1, 10, 100, 1000, 10000, 60000 };
+
+	private static final ConversionMetrics DEFAULT_METRICS = new ConversionMetrics();
+	private static boolean registered;
+
+	private final LongAdder conversionsStarted = new LongAdder();
+	private final LongAdder conversionsCompleted = new LongAdder();
+	private final LongAdder conversionsFailed = new LongAdder();
+	private final ConcurrentMap<String, LongAdder> failuresByErrorCode = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> bytesRead = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> bytesWritten = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> autoCompressionDecisions = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder[] stageNanos;
+	private final Histogram conversionDurations = new Histogram();
+	private final Histogram[] stageDurations;
+	private final ConcurrentMap<String, LongAdder> pipelineStageBusyNanos = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder pipelineNanos = new LongAdder();
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger inFlightConversions = new AtomicInteger();
+
+	/**
+	 * Creates new <code>ConversionMetrics</code>. Conversions only record
+	 * themselves in the default instance.
+	 */
+	public ConversionMetrics() {
+		stageNanos = new LongAdder[ConversionStage.values().length];
+		stageDurations = new Histogram[stageNanos.length];
+		for (int i = 0; i < stageNanos.length; i++) {
+			stageNanos[i] = new LongAdder();
+			stageDurations[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * To get the metrics all conversions record themselves in.
+	 *
+	 * @return the default metrics.
+	 */
+	public static ConversionMetrics getDefault() {
+		return DEFAULT_METRICS;
+	}
+
+	/**
+	 * Registers the default metrics with the platform MBean server under
+	 * <code>OBJECT_NAME</code>. Further calls do nothing. The conversions are not
+	 * affected if the registration fails.
+	 */
+	public static synchronized void register() {
+		if (registered) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(DEFAULT_METRICS, new ObjectName(OBJECT_NAME));
+			registered = true;
+		} catch (JMException e) {
+			System.err.println("Could not register the conversion metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To describe the format and compression of an image the way the metrics use
+	 * it as key.
+	 *
+	 * @param format            the format of the image.
+	 * @param compressionFormat the compression of the image.
+	 * @return the description, e.g. <code>propra/huffman</code>.
+	 */
+	public static String describe(Format format, CompressionFormat compressionFormat) {
+		return format.getFileExtension() + "/" + compressionFormat.name().toLowerCase();
+	}
+
+	/**
+	 * Records the start of a conversion. It must be followed by either
+	 * <code>conversionCompleted()</code> or <code>conversionFailed()</code>.
+	 */
+	public void conversionStarted() {
+		conversionsStarted.increment();
+		inFlightConversions.incrementAndGet();
+	}
+
+	/**
+	 * Records a completed conversion. The output images are recorded with
+	 * <code>outputWritten()</code>.
+	 *
+	 * @param inputType   the format and compression of the input image, see
+	 *                    <code>describe()</code>.
+	 * @param inputLength the length of the input image in bytes.
+	 * @param nanos       the duration of the conversion.
+	 * @param stageTimes  the time spent in each stage.
+	 */
+	public void conversionCompleted(String inputType, long inputLength, long nanos, StageTimes stageTimes) {
+		inFlightConversions.decrementAndGet();
+		conversionsCompleted.increment();
+		add(bytesRead, inputType, inputLength);
+		conversionDurations.record(nanos);
+		for (ConversionStage stage : ConversionStage.values()) {
+			long stageNanos = stageTimes.getNanos(stage);
+			this.stageNanos[stage.ordinal()].add(stageNanos);
+			if (stageNanos > 0) {
+				stageDurations[stage.ordinal()].record(stageNanos);
+			}
+		}
+	}
+
+	/**
+	 * Records an output image of a completed conversion.
+	 *
+	 * @param outputType   the format and compression of the output image, see
+	 *                     <code>describe()</code>.
+	 * @param outputLength the length of the output image in bytes.
+	 */
+	public void outputWritten(String outputType, long outputLength) {
+		add(bytesWritten, outputType, outputLength);
+	}
+
+	/**
+	 * Records a failed conversion.
+	 *
+	 * @param errorCode the error code of the <code>ImageHandlingException</code>
+	 *                  the conversion failed with.
+	 */
+	public void conversionFailed(int errorCode) {
+		inFlightConversions.decrementAndGet();
+		conversionsFailed.increment();
+		ImageConverterErrorCode code = ImageConverterErrorCode.fromErrorCode(errorCode);
+		add(failuresByErrorCode, code == null ? String.valueOf(errorCode) : code.name(), 1);
+	}
+
+	/**
+	 * Records the stages of a <code>ConversionPipeline</code> which has finished.
+	 *
+	 * @param runNanos       the running time of the pipeline.
+	 * @param stageBusyNanos the busy time of each stage by its name.
+	 */
+	public void pipelineCompleted(long runNanos, Map<String, Long> stageBusyNanos) {
+		pipelineNanos.add(runNanos);
+		for (Map.Entry<String, Long> stage : stageBusyNanos.entrySet()) {
+			add(pipelineStageBusyNanos, stage.getKey(), stage.getValue());
+		}
+	}
+
+	/**
+	 * Records the compression 'auto' selected for an output image.
+	 *
+	 * @param compressionFormat the selected compression.
+	 */
+	public void autoCompressionSelected(CompressionFormat compressionFormat) {
+		add(autoCompressionDecisions, compressionFormat.name().toLowerCase(), 1);
+	}
+
+	/**
+	 * Records jobs entering or leaving the queue of a <code>JobScheduler</code>.
+	 *
+	 * @param delta the number of jobs which were queued, negative for jobs which
+	 *              were started or dropped.
+	 */
+	public void queueChanged(int delta) {
+		queueDepth.addAndGet(delta);
+	}
+
+	private static void add(ConcurrentMap<String, LongAdder> counters, String key, long value) {
+		counters.computeIfAbsent(key, k -> new LongAdder()).add(value);
+	}
+
+	private static Map<String, Long> toMap(ConcurrentMap<String, LongAdder> counters) {
+		Map<String, Long> map = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			map.put(counter.getKey(), counter.getValue().sum());
+		}
+		return map;
+	}
+
+	@Override
+	public long getConversionsStarted() {
+		return conversionsStarted.sum();
+	}
+
+	@Override
+	public long getConversionsCompleted() {
+		return conversionsCompleted.sum();
+	}
+
+	@Override
+	public long getConversionsFailed() {
+		return conversionsFailed.sum();
+	}
+
+	@Override
+	public Map<String, Long> getFailuresByErrorCode() {
+		return toMap(failuresByErrorCode);
+	}
+
+	@Override
+	public Map<String, Long> getBytesRead() {
+		return toMap(bytesRead);
+	}
+
+	@Override
+	public Map<String, Long> getBytesWritten() {
+		return toMap(bytesWritten);
+	}
+
+	@Override
+	public Map<String, Long> getStageMillis() {
+		Map<String, Long> millis = new TreeMap<String, Long>();
+		for (ConversionStage stage : ConversionStage.values()) {
+			millis.put(stage.getName(), stageNanos[stage.ordinal()].sum() / 1_000_000);
+		}
+		return millis;
+	}
+
+	@Override
+	public Map<String, Long> getConversionDurationHistogram() {
+		return conversionDurations.toMap();
+	}
+
+	@Override
+	public Map<String, Map<String, Long>> getStageDurationHistograms() {
+		Map<String, Map<String, Long>> histograms = new TreeMap<String, Map<String, Long>>();
+		for (ConversionStage stage : ConversionStage.values()) {
+			histograms.put(stage.getName(), stageDurations[stage.ordinal()].toMap());
+		}
+		return histograms;
+	}
+
+	@Override
+	public Map<String, Double> getPipelineStageUtilization() {
+		Map<String, Double> utilization = new TreeMap<String, Double>();
+		long runNanos = pipelineNanos.sum();
+		for (Map.Entry<String, LongAdder> stage : pipelineStageBusyNanos.entrySet()) {
+			utilization.put(stage.getKey(), runNanos == 0 ? 0.0 : (double) stage.getValue().sum() / runNanos);
+		}
+		return utilization;
+	}
+
+	@Override
+	public Map<String, Long> getAutoCompressionDecisions() {
+		return toMap(autoCompressionDecisions);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public int getInFlightConversions() {
+		return inFlightConversions.get();
+	}
+
+	/**
+	 * A histogram of durations with the buckets of
+	 * <code>HISTOGRAM_BOUNDS_MILLIS</code>.
+	 */
+	private static class Histogram {
+		private final LongAdder[] buckets;
+
+		Histogram() {
+			buckets = new LongAdder[HISTOGRAM_BOUNDS_MILLIS.length + 1];
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+			int bucket = 0;
+			while (bucket < HISTOGRAM_BOUNDS_MILLIS.length && nanos > HISTOGRAM_BOUNDS_MILLIS[bucket] * 1_000_000) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+		}
+
+		/**
+		 * The counts are cumulative like those of a Prometheus histogram. The bounds
+		 * are padded so that the keys are sorted by them in a JMX table.
+		 */
+		Map<String, Long> toMap() {
+			Map<String, Long> map = new TreeMap<String, Long>();
+			long count = 0;
+			for (int i = 0; i < HISTOGRAM_BOUNDS_MILLIS.length; i++) {
+				count += buckets[i].sum();
+				map.put(String.format("le_%05dms", HISTOGRAM_BOUNDS_MILLIS[i]), count);
+			}
+			map.put("le_inf", count + buckets[HISTOGRAM_BOUNDS_MILLIS.length].sum());
+			return map;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package propra.imageconverter.monitoring;
+
+import java.util.Map;
+
+/**
+ * The management interface of the <code>ConversionMetrics</code>. It is
+ * registered as <code>propra.imageconverter:type=ConversionMetrics</code> so
+ * that tools like JConsole or a JMX exporter can read the metrics of a running
+ * <code>ImageConverter</code>.
+ * <p>
+ * All counters start when the <code>ImageConverter</code> starts. The keys of
+ * the bytes read and written are the format and compression of the images,
+ * e.g. <code>propra/huffman</code>. The histograms count the conversions whose
+ * duration is at most the time given by the key.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public interface ConversionMetricsMXBean {
+
+	long getConversionsStarted();
+
+	long getConversionsCompleted();
+
+	long getConversionsFailed();
+
+	/**
+	 * @return the number of failed conversions by the name of their
+	 *         <code>ImageConverterErrorCode</code>.
+	 */
+	Map<String, Long> getFailuresByErrorCode();
+
+	/**
+	 * @return the bytes of the input images by format and compression.
+	 */
+	Map<String, Long> getBytesRead();
+
+	/**
+	 * @return the bytes of the output images by format and compression.
+	 */
+	Map<String, Long> getBytesWritten();
+
+	/**
+	 * @return the time of all completed conversions spent in each stage in
+	 *         milliseconds.
+	 */
+	Map<String, Long> getStageMillis();
+
+	/**
+	 * @return the number of completed conversions by their duration.
+	 */
+	Map<String, Long> getConversionDurationHistogram();
+
+	/**
+	 * @return for each stage the number of completed conversions by the time
+	 *         they spent in it.
+	 */
+	Map<String, Map<String, Long>> getStageDurationHistograms();
+
+	/**
+	 * @return for each stage of the pipelined conversions the part of the running
+	 *         time of the pipelines it spent doing actual work, between 0 and 1.
+	 */
+	Map<String, Double> getPipelineStageUtilization();
+
+	/**
+	 * @return how often 'auto' selected each compression.
+	 */
+	Map<String, Long> getAutoCompressionDecisions();
+
+	/**
+	 * @return the number of jobs waiting in a <code>JobScheduler</code>.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return the number of conversions currently running.
+	 */
+	int getInFlightConversions();
+}
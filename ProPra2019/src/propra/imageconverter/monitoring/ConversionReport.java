@@ -0,0 +1,261 @@
+package propra.imageconverter.monitoring;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.util.Util;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>ConversionReport</code> describes the conversion of one image for
+ * later analysis: the sizes of the images, the compression chosen for each
+ * output image together with the sizes 'auto' compared, the time spent in each
+ * <code>ConversionStage</code>, the utilization of the stages of a pipelined
+ * conversion, the bytes read and written including temp-files and the number
+ * of threads involved.
+ * <p>
+ * It gets filled by the conversion and is written as one line of JSON by a
+ * <code>ConversionReportWriter</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionReport {
+
+	private final Instant timestamp = Instant.now();
+
+	private String input;
+	private String output;
+	private Format inputFormat;
+	private CompressionFormat inputCompressionFormat;
+	private long inputBytes;
+	private int width;
+	private int height;
+
+	private final List<String> outputs = new ArrayList<String>();
+
+	private long durationNanos;
+	private StageTimes stageTimes;
+	private Map<String, Double> stageUtilization;
+	private long bytesRead;
+	private long bytesWritten;
+	private long tempBytes;
+	private int threads = 1;
+	private int concurrentConversions;
+	private boolean cached;
+	private String error;
+	private String errorMessage;
+
+	/**
+	 * Creates a new <code>ConversionReport</code>.
+	 *
+	 * @param input the path of the input image.
+	 */
+	public ConversionReport(String input) {
+		this.input = input;
+	}
+
+	/**
+	 * Creates a new <code>ConversionReport</code> of a conversion into one output
+	 * image whose path is not known to the conversion itself.
+	 *
+	 * @param input  the path of the input image.
+	 * @param output the path of the output image.
+	 */
+	public ConversionReport(String input, String output) {
+		this.input = input;
+		this.output = output;
+	}
+
+	/**
+	 * To get the path of the output image given when creating this report.
+	 *
+	 * @return the path or <code>null</code>.
+	 */
+	public String getOutput() {
+		return output;
+	}
+
+	/**
+	 * To set the input image as described by its header.
+	 *
+	 * @param format            the format of the input image.
+	 * @param compressionFormat the compression of the input image.
+	 * @param inputBytes        the length of the input image.
+	 * @param width             the width of the image.
+	 * @param height            the height of the image.
+	 */
+	public void setInput(Format format, CompressionFormat compressionFormat, long inputBytes, int width, int height) {
+		inputFormat = format;
+		inputCompressionFormat = compressionFormat;
+		this.inputBytes = inputBytes;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Adds an output image.
+	 *
+	 * @param path                 the path of the output image.
+	 * @param format               the format of the output image.
+	 * @param requestedCompression the compression given by the user, e.g.
+	 *                             'auto'.
+	 * @param compressionFormat    the compression actually used or
+	 *                             <code>null</code> if the conversion failed
+	 *                             before it was chosen.
+	 * @param outputBytes          the length of the output image.
+	 * @param autoCandidates       the lengths of the data segment 'auto' compared
+	 *                             or <code>null</code> if 'auto' was not used.
+	 */
+	public void addOutput(String path, Format format, CompressionFormat requestedCompression,
+			CompressionFormat compressionFormat, long outputBytes, Map<CompressionFormat, Long> autoCandidates) {
+		StringBuilder json = new StringBuilder("{\"path\":").append(path == null ? "null" : Util.toJsonString(path));
+		json.append(",\"format\":\"").append(format.getFileExtension()).append('"');
+		json.append(",\"requestedCompression\":").append(describe(requestedCompression));
+		json.append(",\"compression\":").append(describe(compressionFormat));
+		json.append(",\"bytes\":").append(outputBytes);
+		if (autoCandidates != null) {
+			json.append(",\"autoCandidates\":{");
+			String separator = "";
+			for (Map.Entry<CompressionFormat, Long> candidate : autoCandidates.entrySet()) {
+				json.append(separator).append(describe(candidate.getKey())).append(':').append(candidate.getValue());
+				separator = ",";
+			}
+			json.append('}');
+		}
+		outputs.add(json.append('}').toString());
+	}
+
+	/**
+	 * To set the duration of the conversion.
+	 *
+	 * @param durationNanos the duration in nanoseconds.
+	 * @param stageTimes    the time spent in each stage.
+	 */
+	public void setTimes(long durationNanos, StageTimes stageTimes) {
+		this.durationNanos = durationNanos;
+		this.stageTimes = stageTimes;
+	}
+
+	/**
+	 * To set the utilization of the stages of a pipelined conversion.
+	 *
+	 * @param stageUtilization the part of the pipeline's running time each stage
+	 *                         spent doing actual work, between 0 and 1.
+	 */
+	public void setStageUtilization(Map<String, Double> stageUtilization) {
+		this.stageUtilization = stageUtilization;
+	}
+
+	/**
+	 * To set the amount of data the conversion read and wrote.
+	 *
+	 * @param bytesRead    the bytes read including the input image, temp-files
+	 *                     and the data read again to calculate check sums.
+	 * @param bytesWritten the bytes written including the output images and
+	 *                     temp-files.
+	 * @param tempBytes    the part of <code>bytesWritten</code> written into
+	 *                     temp-files.
+	 */
+	public void setBytes(long bytesRead, long bytesWritten, long tempBytes) {
+		this.bytesRead = bytesRead;
+		this.bytesWritten = bytesWritten;
+		this.tempBytes = tempBytes;
+	}
+
+	/**
+	 * To set the number of threads involved.
+	 *
+	 * @param threads               the number of threads working on this
+	 *                              conversion.
+	 * @param concurrentConversions the number of conversions running at the same
+	 *                              time including this one.
+	 */
+	public void setThreads(int threads, int concurrentConversions) {
+		this.threads = threads;
+		this.concurrentConversions = concurrentConversions;
+	}
+
+	/**
+	 * To mark the output image as restored from the <code>ConversionCache</code>
+	 * instead of being converted.
+	 */
+	public void setCached() {
+		cached = true;
+	}
+
+	/**
+	 * To set the error of a failed conversion.
+	 *
+	 * @param errorCode the error code.
+	 * @param message   the error message.
+	 */
+	public void setError(int errorCode, String message) {
+		ImageConverterErrorCode code = ImageConverterErrorCode.fromErrorCode(errorCode);
+		error = code == null ? String.valueOf(errorCode) : code.name();
+		errorMessage = message;
+	}
+
+	/**
+	 * To get the report as one line of JSON.
+	 *
+	 * @return the JSON object.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"timestamp\":\"").append(timestamp).append('"');
+		json.append(",\"input\":").append(input == null ? "null" : Util.toJsonString(input));
+		if (inputFormat != null) {
+			json.append(",\"inputFormat\":\"").append(inputFormat.getFileExtension()).append('"');
+		}
+		if (inputCompressionFormat != null) {
+			json.append(",\"inputCompression\":").append(describe(inputCompressionFormat));
+			json.append(",\"width\":").append(width);
+			json.append(",\"height\":").append(height);
+		}
+		json.append(",\"inputBytes\":").append(inputBytes);
+		json.append(",\"outputs\":[").append(String.join(",", outputs)).append(']');
+		json.append(",\"durationMillis\":").append(toMillis(durationNanos));
+		if (stageTimes != null) {
+			json.append(",\"stageMillis\":{");
+			for (ConversionStage stage : ConversionStage.values()) {
+				json.append(stage.ordinal() == 0 ? "\"" : ",\"").append(stage.getName()).append("\":")
+						.append(toMillis(stageTimes.getNanos(stage)));
+			}
+			json.append('}');
+		}
+		if (stageUtilization != null) {
+			json.append(",\"stageUtilization\":{");
+			String separator = "";
+			for (Map.Entry<String, Double> stage : stageUtilization.entrySet()) {
+				json.append(separator).append(Util.toJsonString(stage.getKey())).append(':')
+						.append(String.format(Locale.ROOT, "%.3f", stage.getValue()));
+				separator = ",";
+			}
+			json.append('}');
+		}
+		json.append(",\"bytesRead\":").append(bytesRead);
+		json.append(",\"bytesWritten\":").append(bytesWritten);
+		json.append(",\"tempBytes\":").append(tempBytes);
+		json.append(",\"threads\":").append(threads);
+		json.append(",\"concurrentConversions\":").append(concurrentConversions);
+		json.append(",\"cached\":").append(cached);
+		if (error != null) {
+			json.append(",\"error\":\"").append(error).append('"');
+			json.append(",\"errorMessage\":").append(Util.toJsonString(String.valueOf(errorMessage)));
+		}
+		return json.append('}').toString();
+	}
+
+	private static String describe(CompressionFormat compressionFormat) {
+		return compressionFormat == null ? "null" : "\"" + compressionFormat.name().toLowerCase() + "\"";
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,80 @@
+package propra.imageconverter.monitoring;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>ConversionReportWriter</code> appends <code>ConversionReport</code>s
+ * to a file as JSON lines, i.e. one JSON object per line. Reports of several
+ * conversions running at the same time are written one after the other.
+ * <p>
+ * The default writer is set with '--report=' and used by all conversions of
+ * the <code>ImageConverter</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class ConversionReportWriter {
+
+	private static volatile ConversionReportWriter defaultWriter;
+
+	private final Path file;
+
+	/**
+	 * Creates a new <code>ConversionReportWriter</code>. An existing file is
+	 * appended to.
+	 *
+	 * @param file the file the reports are appended to.
+	 * @throws ImageHandlingException when the file could not be created.
+	 */
+	public ConversionReportWriter(Path file) throws ImageHandlingException {
+		this.file = file;
+		try {
+			Files.write(file, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create the report file: " + file,
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+	}
+
+	/**
+	 * To get the writer used by all conversions.
+	 *
+	 * @return the writer or <code>null</code> if no report should be written.
+	 */
+	public static ConversionReportWriter getDefault() {
+		return defaultWriter;
+	}
+
+	/**
+	 * To set the writer used by all conversions.
+	 *
+	 * @param writer the writer or <code>null</code> if no report should be
+	 *               written.
+	 */
+	public static void setDefault(ConversionReportWriter writer) {
+		defaultWriter = writer;
+	}
+
+	/**
+	 * Appends a report to the file.
+	 *
+	 * @param report the report.
+	 * @throws ImageHandlingException when the report could not be written.
+	 */
+	public synchronized void write(ConversionReport report) throws ImageHandlingException {
+		try {
+			Files.write(file, (report.toJson() + "\n").getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not write the report file: " + file,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+}
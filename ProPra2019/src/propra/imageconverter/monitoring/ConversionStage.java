@@ -0,0 +1,75 @@
+package propra.imageconverter.monitoring;
+
+/**
+ * The stages a conversion spends its time in. Stages which do not apply to a
+ * conversion, e.g. decoding an uncompressed image, take no time.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public enum ConversionStage {
+	/**
+	 * Reading and checking the header of the input image.
+	 */
+	HEADER_PARSE("header-parse"),
+
+	/**
+	 * Calculating the check sum of a *.propra input or output image.
+	 */
+	CHECKSUM("checksum"),
+
+	/**
+	 * Reading the data segment of the input image.
+	 */
+	READ("read"),
+
+	/**
+	 * Decoding a compressed data segment.
+	 */
+	DECODE("decode"),
+
+	/**
+	 * Changing the byte order of the pixels between *.tga and *.propra.
+	 */
+	SWIZZLE("swizzle"),
+
+	/**
+	 * Encoding the pixels using the output compression.
+	 */
+	ENCODE("encode"),
+
+	/**
+	 * Writing the output image.
+	 */
+	WRITE("write"),
+
+	/**
+	 * Writing the decoded pixels into a temp-file for a second pass.
+	 */
+	TEMP_SPILL("temp-spill");
+
+	private final String name;
+
+	ConversionStage(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * To get the stage with the given name.
+	 *
+	 * @param name the name of the stage, e.g. <code>decode</code>.
+	 * @return the stage or <code>null</code> if there is no stage with this name.
+	 */
+	public static ConversionStage fromName(String name) {
+		for (ConversionStage stage : values()) {
+			if (stage.name.equals(name)) {
+				return stage;
+			}
+		}
+		return null;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,48 @@
+package propra.imageconverter.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A <code>FileReadEvent</code> is a Java Flight Recorder event for data being
+ * read from a file by a <code>FileHandler</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+@Name("propra.imageconverter.FileRead")
+@Label("File Read")
+@Category({ "ProPra", "ImageConverter" })
+@Description("Reading of data by a FileHandler")
+@Threshold("10 ms")
+@StackTrace(false)
+public class FileReadEvent extends Event {
+
+	@Label("Path")
+	private String path;
+
+	@Label("Bytes Read")
+	@DataAmount
+	private long bytes;
+
+	/**
+	 * Ends this event and commits it if it took longer than the threshold.
+	 *
+	 * @param path  the path of the file.
+	 * @param bytes the number of bytes read.
+	 */
+	public void complete(String path, long bytes) {
+		end();
+		if (shouldCommit()) {
+			this.path = path;
+			this.bytes = bytes;
+			commit();
+		}
+	}
+}
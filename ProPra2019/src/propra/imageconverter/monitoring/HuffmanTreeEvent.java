@@ -0,0 +1,50 @@
+package propra.imageconverter.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A <code>HuffmanTreeEvent</code> is a Java Flight Recorder event for a Huffman
+ * tree being built, either from the byte frequencies of an image to be encoded
+ * or from the header of an encoded data segment.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+@Name("propra.imageconverter.HuffmanTree")
+@Label("Huffman Tree")
+@Category({ "ProPra", "ImageConverter" })
+@Description("Building of a Huffman tree")
+@Threshold("1 ms")
+@StackTrace(false)
+public class HuffmanTreeEvent extends Event {
+
+	@Label("From Data Segment")
+	@Description("Whether the tree was read from an encoded data segment")
+	private boolean fromDataSegment;
+
+	@Label("Tree Bits")
+	@Description("The length of the tree's pre-order code")
+	private long treeBits;
+
+	/**
+	 * Ends this event and commits it if it took longer than the threshold.
+	 *
+	 * @param fromDataSegment <code>true</code> if the tree was read from an
+	 *                        encoded data segment.
+	 * @param treeBits        the length of the tree's pre-order code.
+	 */
+	public void complete(boolean fromDataSegment, long treeBits) {
+		end();
+		if (shouldCommit()) {
+			this.fromDataSegment = fromDataSegment;
+			this.treeBits = treeBits;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package propra.imageconverter.monitoring;
+
+/**
+ * <code>StageTimes</code> sum up the time one conversion spends in each
+ * <code>ConversionStage</code>. They are not thread-safe and are meant to be
+ * used by the thread executing the conversion.
+ * <p>
+ * The time of consecutive stages is taken with <code>lap()</code>:
+ *
+ * <pre>
+ * long time = System.nanoTime();
+ * data = decoder.decode(data);
+ * time = stageTimes.lap(ConversionStage.DECODE, time);
+ * data = encoder.encode(data);
+ * time = stageTimes.lap(ConversionStage.ENCODE, time);
+ * </pre>
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class StageTimes {
+
+	private final long[] nanos = new long[ConversionStage.values().length];
+
+	/**
+	 * Adds the time since <code>startNanos</code> to a stage.
+	 *
+	 * @param stage      the stage.
+	 * @param startNanos the value of <code>System.nanoTime()</code> when the stage
+	 *                   started.
+	 * @return the current value of <code>System.nanoTime()</code> which is the
+	 *         start of the next stage.
+	 */
+	public long lap(ConversionStage stage, long startNanos) {
+		long now = System.nanoTime();
+		nanos[stage.ordinal()] += now - startNanos;
+		return now;
+	}
+
+	/**
+	 * Adds time to a stage.
+	 *
+	 * @param stage the stage.
+	 * @param nanos the time in nanoseconds.
+	 */
+	public void add(ConversionStage stage, long nanos) {
+		this.nanos[stage.ordinal()] += nanos;
+	}
+
+	/**
+	 * To get the time spent in a stage.
+	 *
+	 * @param stage the stage.
+	 * @return the time in nanoseconds.
+	 */
+	public long getNanos(ConversionStage stage) {
+		return nanos[stage.ordinal()];
+	}
+}
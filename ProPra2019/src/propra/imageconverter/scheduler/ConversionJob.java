@@ -0,0 +1,31 @@
+package propra.imageconverter.scheduler;
+
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>ConversionJob</code> is a single conversion which gets executed by a
+ * <code>JobScheduler</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ * @param <T> the result of the conversion.
+ */
+public interface ConversionJob<T> {
+
+	/**
+	 * To get the estimated costs of this job. It is called once when the job gets
+	 * submitted.
+	 *
+	 * @return the estimate.
+	 */
+	JobEstimate getEstimate();
+
+	/**
+	 * Executes the conversion.
+	 *
+	 * @param strategy the strategy the scheduler selected for this job.
+	 * @return the result of the conversion.
+	 * @throws ImageHandlingException when the conversion failed.
+	 */
+	T execute(ExecutionStrategy strategy) throws ImageHandlingException;
+}
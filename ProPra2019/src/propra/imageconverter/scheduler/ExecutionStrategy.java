@@ -0,0 +1,23 @@
+package propra.imageconverter.scheduler;
+
+/**
+ * The ways a <code>ConversionJob</code> can be executed by a
+ * <code>JobScheduler</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public enum ExecutionStrategy {
+	/**
+	 * The image is decoded and staged in memory. This is the fastest way but needs
+	 * memory in the order of the image size for Huffman encoding and 'auto'
+	 * compression.
+	 */
+	IN_MEMORY,
+
+	/**
+	 * Decoded image data is kept in temp-files so that only buffers of a fixed
+	 * size are held in memory.
+	 */
+	SPILL_TO_DISK;
+}
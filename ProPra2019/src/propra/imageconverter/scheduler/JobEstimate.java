@@ -0,0 +1,183 @@
+package propra.imageconverter.scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>JobEstimate</code> describes how much memory and CPU time a
+ * <code>ConversionJob</code> is expected to need. It is derived from the header
+ * of the input image so that it is known before the conversion starts.
+ * <p>
+ * The CPU cost is given in abstract units which are only used to compare jobs
+ * with each other. The memory is given in bytes for each
+ * <code>ExecutionStrategy</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class JobEstimate {
+
+	/**
+	 * The memory every conversion needs independent of the image size: chunk
+	 * buffers, codec state and Huffman tables.
+	 */
+	static final long WORKING_SET_BYTES = 1024 * 1024;
+
+	/*
+	 * The CPU cost per byte of pixel data for decoding and encoding. Huffman
+	 * encoding reads the pixels twice and 'auto' tries all compressions.
+	 */
+	private static final int COST_UNCOMPRESSED = 1;
+	private static final int COST_RLE = 2;
+	private static final int COST_HUFFMAN_DECODING = 6;
+	private static final int COST_HUFFMAN_ENCODING = 8;
+	private static final int COST_AUTO = COST_RLE + 2 * COST_HUFFMAN_ENCODING;
+
+	private final long inMemoryBytes;
+	private final long spillToDiskBytes;
+	private final long cost;
+	private final boolean inMemoryPossible;
+
+	private JobEstimate(long inMemoryBytes, long spillToDiskBytes, long cost, boolean inMemoryPossible) {
+		this.inMemoryBytes = inMemoryBytes;
+		this.spillToDiskBytes = spillToDiskBytes;
+		this.cost = cost;
+		this.inMemoryPossible = inMemoryPossible;
+	}
+
+	/**
+	 * Estimates the costs of an image conversion.
+	 *
+	 * @param inputImage              the input image whose header was read.
+	 * @param inputLength             the length of the input image in bytes.
+	 * @param outputFormat            the format of the output image.
+	 * @param outputCompressionFormat the compression of the output image.
+	 * @param inputInMemory           <code>true</code> when the input image and the
+	 *                                output image are held in memory completely,
+	 *                                e.g. for images sent to the daemon.
+	 * @return the estimate.
+	 */
+	public static JobEstimate forImage(Image inputImage, long inputLength, Format outputFormat,
+			CompressionFormat outputCompressionFormat, boolean inputInMemory) {
+		long pixelBytes = (long) inputImage.getWidth() * inputImage.getHeight() * 3;
+		boolean decodesCompletely = outputCompressionFormat == CompressionFormat.AUTO
+				|| outputCompressionFormat == CompressionFormat.HUFFMAN;
+
+		long inMemoryBytes = WORKING_SET_BYTES;
+		long spillToDiskBytes = WORKING_SET_BYTES;
+		if (decodesCompletely) {
+			inMemoryBytes += pixelBytes;
+		}
+		if (inputInMemory) {
+			// The input image, the output image and, for *.propra images, the staged
+			// data segment. The output image is assumed to be as large as the pixels.
+			long outputBytes = outputFormat == Format.PROPRA ? 2 * pixelBytes : pixelBytes;
+			inMemoryBytes += inputLength + outputBytes;
+			spillToDiskBytes += inputLength;
+		}
+
+		long cost = pixelBytes * (decodingCost(inputImage.getCompressionMode())
+				+ encodingCost(outputCompressionFormat));
+		return new JobEstimate(inMemoryBytes, spillToDiskBytes, cost, true);
+	}
+
+	/**
+	 * Estimates the costs of converting an image file. Only the header of the file
+	 * gets read.
+	 *
+	 * @param inputFile               the input image.
+	 * @param inputFormat             the format of the input image.
+	 * @param outputFormat            the format of the output image.
+	 * @param outputCompressionFormat the compression of the output image.
+	 * @return the estimate. If the header could not be read the estimate is based
+	 *         on the file size only, the conversion will report the error then.
+	 */
+	public static JobEstimate forImageFile(Path inputFile, Format inputFormat, Format outputFormat,
+			CompressionFormat outputCompressionFormat) {
+		long inputLength;
+		byte[] header;
+		try (InputStream input = Files.newInputStream(inputFile)) {
+			inputLength = Files.size(inputFile);
+			header = input.readNBytes(inputFormat == Format.TGA ? ImageTGA.HEADER_LENGTH : ImagePropra.HEADER_LENGTH);
+		} catch (IOException e) {
+			return forData(0);
+		}
+
+		try {
+			Image inputImage = inputFormat == Format.TGA ? new ImageTGA(header) : new ImagePropra(header);
+			return forImage(inputImage, inputLength, outputFormat, outputCompressionFormat, false);
+		} catch (ImageHandlingException e) {
+			return forData(inputLength);
+		}
+	}
+
+	/**
+	 * Estimates the costs of processing data whose content is not known, e.g. for
+	 * base-n coding. Only buffers of a fixed size are needed.
+	 *
+	 * @param length the length of the data in bytes.
+	 * @return the estimate.
+	 */
+	public static JobEstimate forData(long length) {
+		return new JobEstimate(WORKING_SET_BYTES, WORKING_SET_BYTES, length * COST_RLE, true);
+	}
+
+	/**
+	 * Creates a copy of this estimate for a job which can only be executed
+	 * spilling to disk.
+	 *
+	 * @return the new estimate.
+	 */
+	public JobEstimate withoutInMemoryExecution() {
+		return new JobEstimate(inMemoryBytes, spillToDiskBytes, cost, false);
+	}
+
+	private static int decodingCost(CompressionFormat compressionFormat) {
+		switch (compressionFormat) {
+		case RLE:
+			return COST_RLE;
+		case HUFFMAN:
+			return COST_HUFFMAN_DECODING;
+		default:
+			return COST_UNCOMPRESSED;
+		}
+	}
+
+	private static int encodingCost(CompressionFormat compressionFormat) {
+		switch (compressionFormat) {
+		case RLE:
+			return COST_RLE;
+		case HUFFMAN:
+			return COST_HUFFMAN_ENCODING;
+		case AUTO:
+			return COST_AUTO;
+		default:
+			return COST_UNCOMPRESSED;
+		}
+	}
+
+	public long getInMemoryBytes() {
+		return inMemoryBytes;
+	}
+
+	public long getSpillToDiskBytes() {
+		return spillToDiskBytes;
+	}
+
+	public long getCost() {
+		return cost;
+	}
+
+	public boolean isInMemoryPossible() {
+		return inMemoryPossible;
+	}
+}
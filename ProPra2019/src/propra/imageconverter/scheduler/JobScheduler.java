@@ -0,0 +1,307 @@
+package propra.imageconverter.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.ConversionMetrics;
+
+/**
+ * A <code>JobScheduler</code> executes <code>ConversionJob</code>s on a fixed
+ * number of worker threads while keeping the estimated memory of all running
+ * jobs within a global budget.
+ * <p>
+ * Waiting jobs are started in the order of their estimated CPU cost so that
+ * small images do not queue behind large ones. A job which waited longer than
+ * <code>MAX_WAITING_MILLIS</code> is started before all others to prevent
+ * large jobs from starving. If the next job does not fit into the remaining
+ * budget, no other job is started until enough memory was released.
+ * <p>
+ * Jobs whose in-memory execution would need more than half of the budget are
+ * executed spilling to disk instead of risking an
+ * <code>OutOfMemoryError</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class JobScheduler {
+
+	/**
+	 * How long a job may be overtaken by cheaper jobs.
+	 */
+	static final long MAX_WAITING_MILLIS = 2000;
+
+	private final int workerCount;
+	private final long memoryBudget;
+	private final ExecutorService workers;
+
+	private final List<QueuedJob<?>> waitingJobs;
+	private int runningJobs;
+	private long reservedBytes;
+	private long nextSequenceNumber;
+	private boolean shutDown;
+
+	/*
+	 * Statistics
+	 */
+	private long startedJobs;
+	private long completedJobs;
+	private long spilledJobs;
+	private long peakReservedBytes;
+	private long totalWaitingNanos;
+	private long maxWaitingNanos;
+
+	/**
+	 * Creates a new <code>JobScheduler</code>.
+	 *
+	 * @param workerCount  the number of jobs running at the same time.
+	 * @param memoryBudget the number of bytes all running jobs may use together.
+	 */
+	public JobScheduler(int workerCount, long memoryBudget) {
+		this.workerCount = workerCount;
+		this.memoryBudget = memoryBudget;
+		waitingJobs = new ArrayList<QueuedJob<?>>();
+		workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+			Thread thread = new Thread(runnable, "conversion-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * To get the default memory budget. It can be set with
+	 * <code>-Dpropra.memoryBudget=&lt;bytes&gt;</code> and is half of the maximum
+	 * heap size otherwise.
+	 *
+	 * @return the memory budget in bytes.
+	 */
+	public static long getDefaultMemoryBudget() {
+		return Long.getLong("propra.memoryBudget", Runtime.getRuntime().maxMemory() / 2);
+	}
+
+	/**
+	 * Submits a job. It gets started as soon as a worker and enough memory are
+	 * available and no cheaper job is waiting.
+	 *
+	 * @param <T> the result of the job.
+	 * @param job the job.
+	 * @return the future result of the job. It fails with the exception thrown by
+	 *         the job.
+	 */
+	public <T> Future<T> submit(ConversionJob<T> job) {
+		return submitAll(Collections.singletonList(job)).get(0);
+	}
+
+	/**
+	 * Submits several jobs at once. In contrast to submitting them one after the
+	 * other, the cheapest of them get started first.
+	 *
+	 * @param <T>  the result of the jobs.
+	 * @param jobs the jobs.
+	 * @return the future results of the jobs in the same order. They fail when
+	 *         the scheduler gets shut down before the jobs were started.
+	 */
+	public <T> List<Future<T>> submitAll(List<? extends ConversionJob<T>> jobs) {
+		// The estimates may read from files and are therefore created before locking
+		List<QueuedJob<T>> queuedJobs = new ArrayList<QueuedJob<T>>();
+		for (ConversionJob<T> job : jobs) {
+			JobEstimate estimate = job.getEstimate();
+			ExecutionStrategy strategy = selectStrategy(estimate);
+			long reservation = strategy == ExecutionStrategy.IN_MEMORY ? estimate.getInMemoryBytes()
+					: estimate.getSpillToDiskBytes();
+			// A job larger than the whole budget still has to run at some point
+			reservation = Math.min(reservation, memoryBudget);
+			queuedJobs.add(new QueuedJob<T>(job, estimate.getCost(), strategy, reservation));
+		}
+
+		List<Future<T>> results = new ArrayList<Future<T>>();
+		synchronized (this) {
+			if (shutDown) {
+				for (QueuedJob<T> queuedJob : queuedJobs) {
+					queuedJob.result.completeExceptionally(createShutDownException());
+					results.add(queuedJob.result);
+				}
+				return results;
+			}
+			for (QueuedJob<T> queuedJob : queuedJobs) {
+				queuedJob.sequenceNumber = nextSequenceNumber++;
+				waitingJobs.add(queuedJob);
+				results.add(queuedJob.result);
+			}
+			ConversionMetrics.getDefault().queueChanged(queuedJobs.size());
+			dispatch();
+		}
+		return results;
+	}
+
+	private ExecutionStrategy selectStrategy(JobEstimate estimate) {
+		if (estimate.isInMemoryPossible() && estimate.getInMemoryBytes() <= memoryBudget / 2) {
+			return ExecutionStrategy.IN_MEMORY;
+		}
+		return ExecutionStrategy.SPILL_TO_DISK;
+	}
+
+	/**
+	 * Starts waiting jobs as long as workers and memory are available.
+	 */
+	private synchronized void dispatch() {
+		while (runningJobs < workerCount && !waitingJobs.isEmpty()) {
+			QueuedJob<?> nextJob = selectNextJob();
+			if (reservedBytes + nextJob.reservedBytes > memoryBudget && runningJobs > 0) {
+				// The job gets started when a running job released its memory
+				return;
+			}
+			waitingJobs.remove(nextJob);
+			ConversionMetrics.getDefault().queueChanged(-1);
+			runningJobs++;
+			startedJobs++;
+			reservedBytes += nextJob.reservedBytes;
+			peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+			if (nextJob.strategy == ExecutionStrategy.SPILL_TO_DISK) {
+				spilledJobs++;
+			}
+			long waitingNanos = System.nanoTime() - nextJob.submitNanos;
+			totalWaitingNanos += waitingNanos;
+			maxWaitingNanos = Math.max(maxWaitingNanos, waitingNanos);
+			try {
+				workers.execute(() -> execute(nextJob));
+			} catch (RejectedExecutionException e) {
+				runningJobs--;
+				startedJobs--;
+				totalWaitingNanos -= waitingNanos;
+				reservedBytes -= nextJob.reservedBytes;
+				if (nextJob.strategy == ExecutionStrategy.SPILL_TO_DISK) {
+					spilledJobs--;
+				}
+				nextJob.result.completeExceptionally(createShutDownException());
+			}
+		}
+	}
+
+	/**
+	 * Selects the cheapest waiting job or, if a job waited too long, the one
+	 * waiting the longest.
+	 *
+	 * @return the job to be started next.
+	 */
+	private QueuedJob<?> selectNextJob() {
+		long overdueNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(MAX_WAITING_MILLIS);
+		QueuedJob<?> cheapestJob = null;
+		QueuedJob<?> oldestJob = null;
+		for (QueuedJob<?> job : waitingJobs) {
+			if (oldestJob == null || job.sequenceNumber < oldestJob.sequenceNumber) {
+				oldestJob = job;
+			}
+			if (cheapestJob == null || job.cost < cheapestJob.cost
+					|| job.cost == cheapestJob.cost && job.sequenceNumber < cheapestJob.sequenceNumber) {
+				cheapestJob = job;
+			}
+		}
+		return oldestJob.submitNanos - overdueNanos < 0 ? oldestJob : cheapestJob;
+	}
+
+	private <T> void execute(QueuedJob<T> queuedJob) {
+		T result = null;
+		Throwable error = null;
+		try {
+			result = queuedJob.job.execute(queuedJob.strategy);
+		} catch (Throwable e) {
+			error = e;
+		}
+
+		// The memory gets released before the result is handed out so that the
+		// statistics are complete when the last result arrives
+		synchronized (this) {
+			runningJobs--;
+			reservedBytes -= queuedJob.reservedBytes;
+			completedJobs++;
+			dispatch();
+		}
+		if (error == null) {
+			queuedJob.result.complete(result);
+		} else {
+			queuedJob.result.completeExceptionally(error);
+		}
+	}
+
+	/**
+	 * Stops the workers after the running jobs have finished. Jobs which are still
+	 * waiting are not executed anymore and their results fail, as do the results
+	 * of jobs submitted afterwards.
+	 */
+	public void shutdown() {
+		List<QueuedJob<?>> abandonedJobs;
+		synchronized (this) {
+			shutDown = true;
+			abandonedJobs = new ArrayList<QueuedJob<?>>(waitingJobs);
+			ConversionMetrics.getDefault().queueChanged(-waitingJobs.size());
+			waitingJobs.clear();
+		}
+		workers.shutdown();
+		for (QueuedJob<?> job : abandonedJobs) {
+			job.result.completeExceptionally(createShutDownException());
+		}
+	}
+
+	private static ImageHandlingException createShutDownException() {
+		return new ImageHandlingException("Job was not executed because the scheduler was shut down.",
+				ImageConverterErrorCode.UNEXPECTED_ERROR);
+	}
+
+	/**
+	 * Waits until the jobs which were running when the scheduler was shut down
+	 * have finished.
+	 *
+	 * @param timeout the maximum time to wait.
+	 * @param unit    the unit of the timeout.
+	 * @return <code>true</code> when all jobs have finished, <code>false</code> if
+	 *         the timeout elapsed before.
+	 * @throws InterruptedException when the waiting thread was interrupted.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * To get a short summary of the statistics of this scheduler.
+	 *
+	 * @return the summary.
+	 */
+	public synchronized String getStatistics() {
+		return String.format(Locale.ROOT,
+				"Scheduler: %d jobs, %d spilled to disk, peak reserved memory %.1f of %.1f MB, waiting %.1f ms on average (max. %.1f ms)",
+				completedJobs, spilledJobs, peakReservedBytes / (1024.0 * 1024), memoryBudget / (1024.0 * 1024),
+				startedJobs == 0 ? 0.0 : totalWaitingNanos / 1e6 / startedJobs, maxWaitingNanos / 1e6);
+	}
+
+	/**
+	 * A job waiting to be started.
+	 */
+	private static class QueuedJob<T> {
+		private final ConversionJob<T> job;
+		private final long cost;
+		private final ExecutionStrategy strategy;
+		private final long reservedBytes;
+		private long sequenceNumber;
+		private final long submitNanos;
+		private final CompletableFuture<T> result;
+
+		QueuedJob(ConversionJob<T> job, long cost, ExecutionStrategy strategy, long reservedBytes) {
+			this.job = job;
+			this.cost = cost;
+			this.strategy = strategy;
+			this.reservedBytes = reservedBytes;
+			submitNanos = System.nanoTime();
+			result = new CompletableFuture<T>();
+		}
+	}
+}
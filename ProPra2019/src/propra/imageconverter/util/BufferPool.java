@@ -0,0 +1,204 @@
+package propra.imageconverter.util;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>BufferPool</code> hands out chunk buffers of a fixed size which are
+ * used to pass image data from reading over transcoding to writing. Buffers are
+ * leased with <code>lease()</code> and must be returned with
+ * <code>release()</code> as soon as they are no longer needed so that no new
+ * buffers have to be created for every chunk of data.
+ * <p>
+ * Returned buffers are first kept in a small pool of the returning thread which
+ * can be accessed without synchronization. When that pool is full they are
+ * kept in a pool shared by all threads. Buffers which do not fit into any of
+ * them are left to the garbage collector.
+ * <p>
+ * The size of the buffers of the default pool can be set with the system
+ * property <code>propra.chunkSize</code>. Invalid sizes are rejected by
+ * <code>checkDefaultChunkSize()</code>.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class BufferPool {
+
+	/**
+	 * The default size of the buffers in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * The number of buffers each thread keeps for itself.
+	 */
+	private static final int THREAD_LOCAL_CAPACITY = 4;
+
+	/**
+	 * The number of buffers kept in the pool shared by all threads.
+	 */
+	private static final int SHARED_CAPACITY = 64;
+
+	private static final String CHUNK_SIZE_PROPERTY = "propra.chunkSize";
+
+	private static final BufferPool DEFAULT_POOL = new BufferPool(readDefaultChunkSize());
+
+	private final int chunkSize;
+	private final ThreadLocal<ArrayDeque<byte[]>> threadLocalBuffers;
+	private final ArrayBlockingQueue<byte[]> sharedBuffers;
+
+	private final AtomicLong leases;
+	private final AtomicLong allocations;
+
+	/**
+	 * Creates a new empty <code>BufferPool</code>.
+	 *
+	 * @param chunkSize the size of the buffers handed out by this pool. It must
+	 *                  be positive.
+	 */
+	public BufferPool(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		threadLocalBuffers = ThreadLocal.withInitial(() -> new ArrayDeque<byte[]>(THREAD_LOCAL_CAPACITY));
+		sharedBuffers = new ArrayBlockingQueue<byte[]>(SHARED_CAPACITY);
+		leases = new AtomicLong();
+		allocations = new AtomicLong();
+	}
+
+	/**
+	 * To get the pool which is used for all image conversions.
+	 *
+	 * @return the default pool.
+	 */
+	public static BufferPool getDefault() {
+		return DEFAULT_POOL;
+	}
+
+	/**
+	 * Checks the size of the buffers set with the system property
+	 * <code>propra.chunkSize</code>. The default pool uses
+	 * <code>DEFAULT_CHUNK_SIZE</code> if the size is invalid so this has to be
+	 * called before the first conversion to inform the user.
+	 *
+	 * @throws ImageHandlingException when the size is not a positive number.
+	 */
+	public static void checkDefaultChunkSize() throws ImageHandlingException {
+		String chunkSize = System.getProperty(CHUNK_SIZE_PROPERTY);
+		if (chunkSize != null && parseChunkSize(chunkSize) <= 0) {
+			throw new ImageHandlingException("Invalid chunk size: " + chunkSize + ". It must be a positive number of bytes.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+	}
+
+	private static int readDefaultChunkSize() {
+		String chunkSize = System.getProperty(CHUNK_SIZE_PROPERTY);
+		if (chunkSize == null || parseChunkSize(chunkSize) <= 0) {
+			return DEFAULT_CHUNK_SIZE;
+		}
+		return parseChunkSize(chunkSize);
+	}
+
+	/**
+	 * To parse a chunk size.
+	 *
+	 * @param chunkSize the chunk size as text.
+	 * @return the parsed size or <code>-1</code> if it is no number.
+	 */
+	private static int parseChunkSize(String chunkSize) {
+		try {
+			return Integer.parseInt(chunkSize.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Leases a buffer from this pool. Its content is undefined.
+	 *
+	 * @return a buffer of <code>getChunkSize()</code> bytes.
+	 */
+	public byte[] lease() {
+		leases.incrementAndGet();
+		byte[] buffer = threadLocalBuffers.get().pollFirst();
+		if (buffer == null) {
+			buffer = sharedBuffers.poll();
+		}
+		if (buffer == null) {
+			allocations.incrementAndGet();
+			buffer = new byte[chunkSize];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns a leased buffer to this pool. The buffer must not be used after it
+	 * was returned.
+	 *
+	 * @param buffer the buffer. Buffers which were not created by this pool are
+	 *               ignored.
+	 */
+	public void release(byte[] buffer) {
+		if (buffer == null || buffer.length != chunkSize) {
+			return;
+		}
+		ArrayDeque<byte[]> localBuffers = threadLocalBuffers.get();
+		if (localBuffers.size() < THREAD_LOCAL_CAPACITY) {
+			localBuffers.offerFirst(buffer);
+		} else {
+			sharedBuffers.offer(buffer);
+		}
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * To get how many buffers were leased from this pool so far.
+	 *
+	 * @return the number of leases.
+	 */
+	public long getLeaseCount() {
+		return leases.get();
+	}
+
+	/**
+	 * To get how many buffers this pool had to create so far because no returned
+	 * buffer was available. Once the conversions are running in a steady state
+	 * this number does not grow anymore.
+	 *
+	 * @return the number of created buffers.
+	 */
+	public long getAllocationCount() {
+		return allocations.get();
+	}
+
+	/**
+	 * To get how many bytes this pool has allocated so far.
+	 *
+	 * @return the number of allocated bytes.
+	 */
+	public long getAllocatedBytes() {
+		return allocations.get() * chunkSize;
+	}
+
+	/**
+	 * To get a short summary of the statistics of this pool.
+	 *
+	 * @return the summary.
+	 */
+	public String getStatistics() {
+		long leaseCount = getLeaseCount();
+		long allocationCount = getAllocationCount();
+		return String.format(Locale.ROOT, "Buffer pool: %d leases, %d allocations (%d bytes), %.1f%% reused", leaseCount,
+				allocationCount, getAllocatedBytes(),
+				leaseCount == 0 ? 0.0 : 100.0 * (leaseCount - allocationCount) / leaseCount);
+	}
+}
@@ -1,70 +1,144 @@
-package propra.imageconverter.util;
-
-import propra.imageconverter.error.ImageHandlingException;
-
-/**
- * A <code>ChecksumCalculator</code> calculates the check sum for PROPRA image files.
- * @author Oliver Eckstein
- *
- */
-public class ChecksumCalculator {
-	
-	private final int X = 65513;
-	private int a_i;
-	private int b_i;
-	private long bytesInTotal = 0;
-	private FileHandler fileHandler;
-
-	/**
-	 * To create a new <code>ChecksumCalculator</code>.
-	 * @param fileHandler the file handler which reads the PROPRA image's image data segment.
-	 */
-	public ChecksumCalculator(FileHandler fileHandler) {
-		a_i = 0;
-		b_i = 1;
-		this.fileHandler = fileHandler;
-	}
-	
-	/**
-	 * Calculates the check sum of image data based on the PROPRA file specification
-	 * V3.0.
-	 * 
-	 * @param inputData the data of which this checksum shall be calculated
-	 * @throws ImageHandlingException when an error occurred handling the image file
-	 */
-	public byte[] getCheckSum(int headerLength) throws ImageHandlingException {
-		
-		fileHandler.createFile();
-		fileHandler.openInputStream();
-		fileHandler.skipNBytes(headerLength);
-		
-		byte[] inputData;
-		while ((inputData = fileHandler.readData()) != null) {
-			calculateChecksum(inputData);
-		}
-		
-		fileHandler.closeFile();		
-		
-		int checkSum = a_i * (int) Math.pow(2, 16) + b_i;
-		byte[] checkSumArray = new byte[4];
-		checkSumArray[0] = (byte) checkSum;
-		checkSumArray[1] = (byte) (checkSum >> 8);
-		checkSumArray[2] = (byte) (checkSum >> 16);
-		checkSumArray[3] = (byte) (checkSum >> 24);
-
-		return checkSumArray;
-	}
-
-	private void calculateChecksum(byte[] inputData) {
-
-		for (int i = 0; i < inputData.length; i++) {
-			a_i += (i + bytesInTotal + 1) + Byte.toUnsignedInt(inputData[i]);
-			a_i %= X;
-			b_i = (b_i % X + a_i) % X;
-		}
-		bytesInTotal += inputData.length;
-
-	}
-
-
-}
+package propra.imageconverter.util;
+
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.CodecEvent;
+import propra.imageconverter.monitoring.ConversionStage;
+
+/**
+ * A <code>ChecksumCalculator</code> calculates the check sum for PROPRA image files.
+ * @author Oliver Eckstein
+ *
+ */
+public class ChecksumCalculator {
+	
+	private final int X = 65513;
+	private int a_i;
+	private int b_i;
+	private long bytesInTotal = 0;
+	private FileHandler fileHandler;
+
+	/**
+	 * To create a new <code>ChecksumCalculator</code>.
+	 * @param fileHandler the file handler which reads the PROPRA image's image data segment.
+	 */
+	public ChecksumCalculator(FileHandler fileHandler) {
+		a_i = 0;
+		b_i = 1;
+		this.fileHandler = fileHandler;
+	}
+	
+	/**
+	 * To create a new <code>ChecksumCalculator</code> which is not bound to a file.
+	 * The data segment gets passed in parts via <code>update()</code>.
+	 */
+	public ChecksumCalculator() {
+		this(null);
+	}
+	
+	/**
+	 * To create a new <code>ChecksumCalculator</code> for a part of the data
+	 * segment which does not start at its beginning. Several parts can be
+	 * calculated at the same time and afterwards be joined in their order via
+	 * <code>append()</code> to a calculator of the data before them, i.e. one
+	 * created with <code>ChecksumCalculator()</code>.
+	 * 
+	 * @param offset the position of the first byte of the part within the data
+	 *               segment.
+	 */
+	public ChecksumCalculator(long offset) {
+		a_i = 0;
+		b_i = 0;
+		bytesInTotal = offset;
+	}
+	
+	/**
+	 * Adds the check sum of the part of the data segment which directly follows
+	 * the data passed to this <code>ChecksumCalculator</code> so far.
+	 * 
+	 * @param part the calculator of the following part, created with
+	 *             <code>ChecksumCalculator(long offset)</code>.
+	 */
+	public void append(ChecksumCalculator part) {
+		long partLength = part.bytesInTotal - bytesInTotal;
+		// Every sum A of the part is increased by the sum A of the data before it
+		b_i = (int) ((b_i + (partLength % X) * a_i + part.b_i) % X);
+		a_i = (a_i + part.a_i) % X;
+		bytesInTotal = part.bytesInTotal;
+	}
+	
+	/**
+	 * Calculates the check sum of image data based on the PROPRA file specification
+	 * V3.0.
+	 * 
+	 * @param inputData the data of which this checksum shall be calculated
+	 * @throws ImageHandlingException when an error occurred handling the image file
+	 */
+	public byte[] getCheckSum(int headerLength) throws ImageHandlingException {
+		
+		fileHandler.createFile();
+		fileHandler.openInputStream();
+		fileHandler.skipNBytes(headerLength);
+		
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] inputData = bufferPool.lease();
+		try {
+			int bytesRead;
+			while ((bytesRead = fileHandler.readData(inputData)) != -1) {
+				update(inputData, 0, bytesRead);
+			}
+		} finally {
+			bufferPool.release(inputData);
+		}
+		
+		fileHandler.closeFile();		
+		
+		return getCheckSum();
+	}
+
+	/**
+	 * To get the check sum of all data passed via <code>update()</code> so far.
+	 * 
+	 * @return the check sum (little-endian).
+	 */
+	public byte[] getCheckSum() {
+		int checkSum = a_i * (int) Math.pow(2, 16) + b_i;
+		byte[] checkSumArray = new byte[4];
+		checkSumArray[0] = (byte) checkSum;
+		checkSumArray[1] = (byte) (checkSum >> 8);
+		checkSumArray[2] = (byte) (checkSum >> 16);
+		checkSumArray[3] = (byte) (checkSum >> 24);
+
+		return checkSumArray;
+	}
+
+	/**
+	 * Adds the next part of the data segment to the check sum.
+	 * 
+	 * @param inputData the buffer containing the data.
+	 * @param offset    the position of the first byte of the data.
+	 * @param length    the number of bytes of the data.
+	 */
+	public void update(byte[] inputData, int offset, int length) {
+		CodecEvent event = new CodecEvent();
+		event.begin();
+		updateSums(inputData, offset, length);
+		event.complete(ConversionStage.CHECKSUM, this, length, 0);
+	}
+
+	private void updateSums(byte[] inputData, int offset, int length) {
+		// The position of each byte is only needed modulo X, so data segments longer
+		// than 2 GB do not overflow the sums
+		int position = (int) ((bytesInTotal + 1) % X);
+		for (int i = 0; i < length; i++) {
+			a_i = (a_i + position + Byte.toUnsignedInt(inputData[offset + i])) % X;
+			b_i = (b_i + a_i) % X;
+			if (++position == X) {
+				position = 0;
+			}
+		}
+		bytesInTotal += length;
+
+	}
+
+
+}
@@ -0,0 +1,24 @@
+package propra.imageconverter.util;
+
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * A <code>DataListener</code> gets notified about data which was written, i.e.
+ * to verify it while it is being written.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public interface DataListener {
+
+	/**
+	 * Called after data was written. The data must not be kept since the buffer
+	 * gets re-used afterwards.
+	 *
+	 * @param data   the buffer containing the data.
+	 * @param offset the position of the first byte of the data.
+	 * @param length the number of bytes of the data.
+	 * @throws ImageHandlingException when the data could not be processed.
+	 */
+	void dataWritten(byte[] data, int offset, int length) throws ImageHandlingException;
+}
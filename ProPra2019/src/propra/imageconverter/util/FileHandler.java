@@ -1,307 +1,511 @@
-package propra.imageconverter.util;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.Scanner;
-
-import propra.imageconverter.error.ImageConverterErrorCode;
-import propra.imageconverter.error.ImageHandlingException;
-
-/**
- * A <code>FileHandler</code> provides helper methods to access files, read from
- * files or write into files.
- * 
- * @author Oliver Eckstein
- *
- */
-public class FileHandler {
-
-	private BufferedInputStream inputStream;
-	private BufferedOutputStream outputStream;
-	private String filePath;
-	private final int BUFFER_SIZE = 8 * 1024;
-	private File file;
-
-	/**
-	 * Creates a new <code>FileHandler</code>.
-	 * 
-	 * @param filePath the file's file path.
-	 * @throws ImageHandlingException
-	 */
-	public FileHandler(String filePath) throws ImageHandlingException {
-		if (filePath == null) {
-			throw new ImageHandlingException("File path cannot be null.", ImageConverterErrorCode.UNEXPECTED_ERROR);
-		}
-		this.filePath = filePath;
-		inputStream = null;
-		outputStream = null;
-		file = null;
-	}
-
-	/**
-	 * To assign a file to this <code>FileHandler</code>.
-	 * 
-	 */
-	public void createFile() {
-		file = new File(filePath);
-	}
-
-	/**
-	 * Opens and input stream of this <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @throws ImageHandlingException when the assigned file was not found.
-	 */
-	public void openInputStream() throws ImageHandlingException {
-		try {
-			inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
-		} catch (FileNotFoundException e) {
-			throw new ImageHandlingException("File not found: " + filePath, ImageConverterErrorCode.INVALID_FILEPATH);
-		}
-	}
-
-	/**
-	 * Opens and output stream of this <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @throws ImageHandlingException when the assigned file was not found.
-	 */
-	public void openOutputFile() throws ImageHandlingException {
-		try {
-			outputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
-		} catch (FileNotFoundException e) {
-			throw new ImageHandlingException("File not found: " + filePath, ImageConverterErrorCode.INVALID_FILEPATH);
-		}
-	}
-
-	/**
-	 * Writes a new line into this <code>FileHandler</code>'s assigned file. The
-	 * <code>FileHandler</code>'s output stream points to the next line after the
-	 * written new line after calling this method.
-	 * 
-	 * @param input the new line's input.
-	 * @throws ImageHandlingException when the <code>FileHandler</code>'s output
-	 *                                stream could not write into the file.
-	 */
-	public void writeNewLine(String input) throws ImageHandlingException {
-		if (input != null && input.length() > 0) {
-			try {
-				outputStream.write(input.getBytes());
-				outputStream.write('\n');
-				outputStream.flush();
-			} catch (IOException e) {
-				throw new ImageHandlingException("Could not write a new line into file: " + filePath,
-						ImageConverterErrorCode.IO_ERROR);
-			}
-		}
-	}
-
-	/**
-	 * Writes data into the output file.
-	 * 
-	 * @param data the data to be written
-	 * @throws ImageHandlingException when the <code>FileHandler</code>'s output
-	 *                                stream could not write into the file.
-	 */
-	public void writeData(byte[] data) throws ImageHandlingException {
-		if (data != null && data.length > 0) {
-			try {
-				outputStream.write(data);
-				outputStream.flush();
-			} catch (IOException e) {
-				throw new ImageHandlingException("Could not write data into file: " + filePath,
-						ImageConverterErrorCode.IO_ERROR);
-			}
-		}
-	}
-
-	/**
-	 * To read data from the <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @return the file's data or <code>null</code> if there is no more data because
-	 *         the end of the stream has been reached.
-	 * @throws ImageHandlingException when the <code>FileHandler</code>'s input
-	 *                                stream could not read from the file.
-	 */
-	public byte[] readData() throws ImageHandlingException {
-		byte[] outputData = new byte[BUFFER_SIZE];
-		int bytesRead = 0;
-		try {
-			bytesRead = inputStream.read(outputData);
-		} catch (IOException e) {
-			throw new ImageHandlingException("Could not read data from file: " + filePath,
-					ImageConverterErrorCode.IO_ERROR);
-		}
-
-		if (bytesRead == -1) {
-			return null;
-		} else if (bytesRead < BUFFER_SIZE) {
-			byte[] tmpOutputData = new byte[bytesRead];
-			System.arraycopy(outputData, 0, tmpOutputData, 0, bytesRead);
-			outputData = tmpOutputData;
-		}
-
-		return outputData;
-	}
-
-	/**
-	 * Reads up to a specified number of bytes from the input stream.
-	 * 
-	 * @param length the number of bytes to be read.
-	 * @return the read data or null if no data was read.
-	 * @throws ImageHandlingException when the <code>FileHandler</code>'s input
-	 *                                stream could not read from the file.
-	 */
-	public byte[] readNBytes(int length) throws ImageHandlingException {
-		byte[] outputData;
-
-		try {
-			outputData = inputStream.readNBytes(length);
-		} catch (IOException e) {
-			throw new ImageHandlingException("Could not read data from file: " + filePath,
-					ImageConverterErrorCode.IO_ERROR);
-		}
-
-		if (outputData.length == 0) {
-			return null;
-		}
-
-		return outputData;
-	}
-
-	/**
-	 * Closes this <code>FileHandler</code>'s assigned file and sets the reference
-	 * of the input or output stream to <code>null</code>.
-	 * 
-	 * @throws ImageHandlingException when the file could not be closed.
-	 */
-	public void closeFile() throws ImageHandlingException {
-		try {
-			if (inputStream != null) {
-				inputStream.close();
-				inputStream = null;
-			} else if (outputStream != null) {
-				outputStream.close();
-				outputStream = null;
-			}
-		} catch (IOException e) {
-			throw new ImageHandlingException("Could not close file: " + filePath, ImageConverterErrorCode.IO_ERROR);
-		}
-	}
-
-	/**
-	 * Removes this <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @throws ImageHandlingException when the file could not be removed.
-	 */
-	public void removeFile() throws ImageHandlingException {
-		if (!file.delete()) {
-			throw new ImageHandlingException("Could not remove file: " + filePath, ImageConverterErrorCode.IO_ERROR);
-		}
-	}
-
-	/**
-	 * Returns the file path of this <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @return the file path
-	 */
-	public String getFilePath() {
-		return file.getPath();
-	}
-
-	/**
-	 * Returns this <code>FileHandler</code>'s assigned file.
-	 * 
-	 * @return the file
-	 */
-	public File getFile() {
-		return file;
-	}
-
-	/**
-	 * Reads the first line of this <code>FileHandler</code>'s assigned file. The
-	 * pointer of this <code>FileHandler</code>'s assigned input stream points to
-	 * the position after the first line after calling this method.
-	 * 
-	 * @return the first line.
-	 * @throws ImageHandlingException when the file was not found.
-	 */
-	public String readFirstLine() throws ImageHandlingException {
-		String firstLine;
-		try (Scanner fileReader = new Scanner(file)) {
-			firstLine = fileReader.nextLine();
-			fileReader.close();
-		} catch (FileNotFoundException e) {
-			throw new ImageHandlingException("Could not read first line of file: " + filePath,
-					ImageConverterErrorCode.IO_ERROR);
-		}
-		skipNBytes(firstLine.length() + 1);
-		return firstLine;
-	}
-
-	/**
-	 * To write data into an already existing file.
-	 * 
-	 * @param inputData the data to be written
-	 * @param offset    the offset at which position the data should be written.<br>
-	 *                  0 if the data should be written at the beginning of the
-	 *                  file.
-	 * @throws ImageHandlingException
-	 */
-	public void writeDataRandomlyIntoFile(byte[] inputData, int offset) throws ImageHandlingException {
-		RandomAccessFile raf = null;
-		try {
-			raf = new RandomAccessFile(file, "rw");
-		} catch (FileNotFoundException e) {
-			throw new ImageHandlingException("Error writing into file. Could not find file: " + filePath,
-					ImageConverterErrorCode.IO_ERROR);
-		}
-		try {
-			for (int i = offset; i < inputData.length; i++) {
-				raf.seek(i);
-				raf.write(inputData[i]);
-			}
-			raf.close();
-		} catch (IOException e) {
-			throw new ImageHandlingException("Error while closing file: " + filePath, ImageConverterErrorCode.IO_ERROR);
-		}
-	}
-
-	/**
-	 * To let this <code>FileHandler</code>'s assigned input stream skip a specified
-	 * number of bytes.
-	 * 
-	 * @param n the number of bytes to be skipped
-	 * @throws ImageHandlingException when an error occurred during skipping.
-	 */
-	public void skipNBytes(long n) throws ImageHandlingException {
-		try {
-			inputStream.skip(n);
-		} catch (IOException e) {
-			throw new ImageHandlingException("Error while skipping bytes", ImageConverterErrorCode.IO_ERROR);
-		}
-	}
-
-	/**
-	 * Closes this <code>FileHandler</code>'s assigned input stream and recreates it
-	 * to set it to the beginning of the file.
-	 * 
-	 * @throws ImageHandlingException when the input stream could not neither be
-	 *                                closed nor recreated.
-	 */
-	public void reset() throws ImageHandlingException {
-		try {
-			inputStream.close();
-			inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
-		} catch (IOException e) {
-			throw new ImageHandlingException("Error while resetting this input stream: " + filePath,
-					ImageConverterErrorCode.IO_ERROR);
-		}
-
-	}
-
-}
+package propra.imageconverter.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Scanner;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.monitoring.FileReadEvent;
+import propra.imageconverter.monitoring.FileWriteEvent;
+
+/**
+ * A <code>FileHandler</code> provides helper methods to access files, read from
+ * files or write into files.
+ * 
+ * @author Oliver Eckstein
+ *
+ */
+public class FileHandler {
+
+	private BufferedInputStream inputStream;
+	private BufferedOutputStream outputStream;
+	private FileOutputStream fileOutputStream;
+	private String filePath;
+	private final int BUFFER_SIZE = 8 * 1024;
+	private File file;
+
+	/**
+	 * The number of bytes read from and written into the file by this
+	 * <code>FileHandler</code>.
+	 */
+	private long bytesRead;
+	private long bytesWritten;
+
+	/**
+	 * Gets notified about the data written by <code>writeData()</code>, may be
+	 * <code>null</code>.
+	 */
+	private DataListener dataListener;
+
+	/**
+	 * Creates a new <code>FileHandler</code>.
+	 * 
+	 * @param filePath the file's file path.
+	 * @throws ImageHandlingException
+	 */
+	public FileHandler(String filePath) throws ImageHandlingException {
+		if (filePath == null) {
+			throw new ImageHandlingException("File path cannot be null.", ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+		this.filePath = filePath;
+		inputStream = null;
+		outputStream = null;
+		file = null;
+	}
+
+	/**
+	 * Creates a new <code>FileHandler</code> for a new empty temp-file with a
+	 * unique name in the temp directory of the system. This way several
+	 * conversions can run at the same time without overwriting each other's
+	 * temp-files.
+	 * 
+	 * @param prefix the prefix of the temp-file's name.
+	 * @return the new <code>FileHandler</code>.
+	 * @throws ImageHandlingException when the temp-file could not be created.
+	 */
+	public static FileHandler createTempFileHandler(String prefix) throws ImageHandlingException {
+		try {
+			return new FileHandler(Files.createTempFile(prefix, ".tmp").toString());
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not create temp-file.", ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * To assign a file to this <code>FileHandler</code>.
+	 * 
+	 */
+	public void createFile() {
+		file = new File(filePath);
+	}
+
+	/**
+	 * Opens and input stream of this <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @throws ImageHandlingException when the assigned file was not found.
+	 */
+	public void openInputStream() throws ImageHandlingException {
+		try {
+			inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		} catch (FileNotFoundException e) {
+			throw new ImageHandlingException("File not found: " + filePath, ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+	}
+
+	/**
+	 * Opens and output stream of this <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @throws ImageHandlingException when the assigned file was not found.
+	 */
+	public void openOutputFile() throws ImageHandlingException {
+		try {
+			fileOutputStream = new FileOutputStream(file);
+			outputStream = new BufferedOutputStream(fileOutputStream, BUFFER_SIZE);
+		} catch (FileNotFoundException e) {
+			throw new ImageHandlingException("File not found: " + filePath, ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+	}
+
+	/**
+	 * Writes a new line into this <code>FileHandler</code>'s assigned file. The
+	 * <code>FileHandler</code>'s output stream points to the next line after the
+	 * written new line after calling this method.
+	 * 
+	 * @param input the new line's input.
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s output
+	 *                                stream could not write into the file.
+	 */
+	public void writeNewLine(String input) throws ImageHandlingException {
+		if (input != null && input.length() > 0) {
+			try {
+				outputStream.write(input.getBytes());
+				outputStream.write('\n');
+				outputStream.flush();
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write a new line into file: " + filePath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * Writes data into the output file.
+	 * 
+	 * @param data the data to be written
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s output
+	 *                                stream could not write into the file.
+	 */
+	public void writeData(byte[] data) throws ImageHandlingException {
+		if (data != null && data.length > 0) {
+			FileWriteEvent event = new FileWriteEvent();
+			event.begin();
+			try {
+				outputStream.write(data);
+				outputStream.flush();
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write data into file: " + filePath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+			bytesWritten += data.length;
+			event.complete(filePath, data.length);
+			if (dataListener != null) {
+				dataListener.dataWritten(data, 0, data.length);
+			}
+		}
+	}
+
+	/**
+	 * Writes a part of a buffer into the output file.
+	 * 
+	 * @param data   the buffer containing the data to be written.
+	 * @param offset the position of the first byte to be written.
+	 * @param length the number of bytes to be written.
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s output
+	 *                                stream could not write into the file.
+	 */
+	public void writeData(byte[] data, int offset, int length) throws ImageHandlingException {
+		if (data != null && length > 0) {
+			FileWriteEvent event = new FileWriteEvent();
+			event.begin();
+			try {
+				outputStream.write(data, offset, length);
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write data into file: " + filePath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+			bytesWritten += length;
+			event.complete(filePath, length);
+			if (dataListener != null) {
+				dataListener.dataWritten(data, offset, length);
+			}
+		}
+	}
+
+	/**
+	 * To set the listener which gets notified about the data written by
+	 * <code>writeData()</code>. Data written by
+	 * <code>writeDataRandomlyIntoFile()</code> or <code>transferDataFrom()</code>
+	 * is not passed to it.
+	 * 
+	 * @param dataListener the listener or <code>null</code> to remove it.
+	 */
+	public void setDataListener(DataListener dataListener) {
+		this.dataListener = dataListener;
+	}
+
+	/**
+	 * Writes all data which is still buffered by the output stream into the output
+	 * file.
+	 * 
+	 * @throws ImageHandlingException when the buffered data could not be written.
+	 */
+	public void flush() throws ImageHandlingException {
+		if (outputStream != null) {
+			try {
+				outputStream.flush();
+			} catch (IOException e) {
+				throw new ImageHandlingException("Could not write data into file: " + filePath,
+						ImageConverterErrorCode.IO_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * Copies a part of another file into the output file without passing the data
+	 * through this application. The data gets appended to the data already written
+	 * into the output file and the copying is delegated to the operating system if
+	 * it supports it.
+	 * 
+	 * @param source   the <code>FileHandler</code> of the file to copy from.
+	 * @param position the position within the source file from where on the data
+	 *                 should be copied.
+	 * @param count    the number of bytes to be copied.
+	 * @throws ImageHandlingException when the source file does not contain enough
+	 *                                data or when the data could not be copied.
+	 */
+	public void transferDataFrom(FileHandler source, long position, long count) throws ImageHandlingException {
+		FileWriteEvent event = new FileWriteEvent();
+		event.begin();
+		try (FileChannel sourceChannel = FileChannel.open(source.getFile().toPath(), StandardOpenOption.READ)) {
+			outputStream.flush();
+			FileChannel targetChannel = fileOutputStream.getChannel();
+			long transferredBytes = 0;
+			while (transferredBytes < count) {
+				long bytesTransferred = sourceChannel.transferTo(position + transferredBytes, count - transferredBytes,
+						targetChannel);
+				if (bytesTransferred <= 0) {
+					throw new ImageHandlingException("Not enough data in file: " + source.getFilePath(),
+							ImageConverterErrorCode.INVALID_DATASEGMENT);
+				}
+				transferredBytes += bytesTransferred;
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not copy data from " + source.getFilePath() + " into " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		bytesWritten += count;
+		source.bytesRead += count;
+		event.complete(filePath, count);
+	}
+
+	/**
+	 * To read data from the <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @return the file's data or <code>null</code> if there is no more data because
+	 *         the end of the stream has been reached.
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s input
+	 *                                stream could not read from the file.
+	 */
+	public byte[] readData() throws ImageHandlingException {
+		byte[] outputData = new byte[BUFFER_SIZE];
+		int bytesRead = 0;
+		FileReadEvent event = new FileReadEvent();
+		event.begin();
+		try {
+			bytesRead = inputStream.read(outputData);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read data from file: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		this.bytesRead += Math.max(bytesRead, 0);
+		event.complete(filePath, Math.max(bytesRead, 0));
+
+		if (bytesRead == -1) {
+			return null;
+		} else if (bytesRead < BUFFER_SIZE) {
+			byte[] tmpOutputData = new byte[bytesRead];
+			System.arraycopy(outputData, 0, tmpOutputData, 0, bytesRead);
+			outputData = tmpOutputData;
+		}
+
+		return outputData;
+	}
+
+	/**
+	 * To read data from the <code>FileHandler</code>'s assigned file into a given
+	 * buffer. The buffer gets filled completely unless the end of the stream is
+	 * reached.
+	 * 
+	 * @param buffer the buffer to read the data into.
+	 * @return the number of bytes read or <code>-1</code> if there is no more data
+	 *         because the end of the stream has been reached.
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s input
+	 *                                stream could not read from the file.
+	 */
+	public int readData(byte[] buffer) throws ImageHandlingException {
+		int bytesRead = 0;
+		FileReadEvent event = new FileReadEvent();
+		event.begin();
+		try {
+			bytesRead = inputStream.readNBytes(buffer, 0, buffer.length);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read data from file: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		this.bytesRead += bytesRead;
+		event.complete(filePath, bytesRead);
+		return bytesRead == 0 ? -1 : bytesRead;
+	}
+
+	/**
+	 * Reads up to a specified number of bytes from the input stream.
+	 * 
+	 * @param length the number of bytes to be read.
+	 * @return the read data or null if no data was read.
+	 * @throws ImageHandlingException when the <code>FileHandler</code>'s input
+	 *                                stream could not read from the file.
+	 */
+	public byte[] readNBytes(int length) throws ImageHandlingException {
+		byte[] outputData;
+
+		FileReadEvent event = new FileReadEvent();
+		event.begin();
+		try {
+			outputData = inputStream.readNBytes(length);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not read data from file: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		bytesRead += outputData.length;
+		event.complete(filePath, outputData.length);
+
+		if (outputData.length == 0) {
+			return null;
+		}
+
+		return outputData;
+	}
+
+	/**
+	 * Closes this <code>FileHandler</code>'s assigned file and sets the reference
+	 * of the input or output stream to <code>null</code>.
+	 * 
+	 * @throws ImageHandlingException when the file could not be closed.
+	 */
+	public void closeFile() throws ImageHandlingException {
+		try {
+			if (inputStream != null) {
+				inputStream.close();
+				inputStream = null;
+			} else if (outputStream != null) {
+				outputStream.close();
+				outputStream = null;
+				fileOutputStream = null;
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Could not close file: " + filePath, ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Removes this <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @throws ImageHandlingException when the file could not be removed.
+	 */
+	public void removeFile() throws ImageHandlingException {
+		if (!file.delete()) {
+			throw new ImageHandlingException("Could not remove file: " + filePath, ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * To get the number of bytes read from the file by this
+	 * <code>FileHandler</code> so far.
+	 * 
+	 * @return the number of bytes.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * To get the number of bytes written into the file by this
+	 * <code>FileHandler</code> so far.
+	 * 
+	 * @return the number of bytes.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Returns the file path of this <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @return the file path
+	 */
+	public String getFilePath() {
+		return file.getPath();
+	}
+
+	/**
+	 * Returns this <code>FileHandler</code>'s assigned file.
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reads the first line of this <code>FileHandler</code>'s assigned file. The
+	 * pointer of this <code>FileHandler</code>'s assigned input stream points to
+	 * the position after the first line after calling this method.
+	 * 
+	 * @return the first line.
+	 * @throws ImageHandlingException when the file was not found.
+	 */
+	public String readFirstLine() throws ImageHandlingException {
+		String firstLine;
+		try (Scanner fileReader = new Scanner(file)) {
+			firstLine = fileReader.nextLine();
+			fileReader.close();
+		} catch (FileNotFoundException e) {
+			throw new ImageHandlingException("Could not read first line of file: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		skipNBytes(firstLine.length() + 1);
+		return firstLine;
+	}
+
+	/**
+	 * To write data into an already existing file.
+	 * 
+	 * @param inputData the data to be written
+	 * @param offset    the offset at which position the data should be written.<br>
+	 *                  0 if the data should be written at the beginning of the
+	 *                  file.
+	 * @throws ImageHandlingException
+	 */
+	public void writeDataRandomlyIntoFile(byte[] inputData, long offset) throws ImageHandlingException {
+		RandomAccessFile raf = null;
+		FileWriteEvent event = new FileWriteEvent();
+		event.begin();
+		try {
+			raf = new RandomAccessFile(file, "rw");
+		} catch (FileNotFoundException e) {
+			throw new ImageHandlingException("Error writing into file. Could not find file: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+		try {
+			raf.seek(offset);
+			raf.write(inputData);
+			raf.close();
+		} catch (IOException e) {
+			throw new ImageHandlingException("Error while closing file: " + filePath, ImageConverterErrorCode.IO_ERROR);
+		}
+		bytesWritten += inputData.length;
+		event.complete(filePath, inputData.length);
+	}
+
+	/**
+	 * To let this <code>FileHandler</code>'s assigned input stream skip a specified
+	 * number of bytes.
+	 * 
+	 * @param n the number of bytes to be skipped
+	 * @throws ImageHandlingException when an error occurred during skipping.
+	 */
+	public void skipNBytes(long n) throws ImageHandlingException {
+		try {
+			// skip() may skip less bytes than requested, e.g. at the end of its buffer
+			long remainingBytes = n;
+			while (remainingBytes > 0) {
+				long skippedBytes = inputStream.skip(remainingBytes);
+				if (skippedBytes <= 0) {
+					break;
+				}
+				remainingBytes -= skippedBytes;
+			}
+		} catch (IOException e) {
+			throw new ImageHandlingException("Error while skipping bytes", ImageConverterErrorCode.IO_ERROR);
+		}
+	}
+
+	/**
+	 * Closes this <code>FileHandler</code>'s assigned input stream and recreates it
+	 * to set it to the beginning of the file.
+	 * 
+	 * @throws ImageHandlingException when the input stream could not neither be
+	 *                                closed nor recreated.
+	 */
+	public void reset() throws ImageHandlingException {
+		try {
+			inputStream.close();
+			inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		} catch (IOException e) {
+			throw new ImageHandlingException("Error while resetting this input stream: " + filePath,
+					ImageConverterErrorCode.IO_ERROR);
+		}
+
+	}
+
+}
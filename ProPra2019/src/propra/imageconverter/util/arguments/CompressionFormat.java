@@ -1,15 +1,15 @@
-package propra.imageconverter.util.arguments;
-
-/**
- * Allowed source or target compression types when using <code>ImageConverter</code>.
- * @author Oliver Eckstein
- *
- */
-public enum CompressionFormat {	
-	UNCOMPRESSED,
-	RLE,
-	HUFFMAN,
-	AUTO;
-}
-
-
+package propra.imageconverter.util.arguments;
+
+/**
+ * Allowed source or target compression types when using <code>ImageConverter</code>.
+ * @author Oliver Eckstein
+ *
+ */
+public enum CompressionFormat {	
+	UNCOMPRESSED,
+	RLE,
+	HUFFMAN,
+	AUTO;
+}
+
+
@@ -0,0 +1,42 @@
+package propra.imageconverter.util.arguments;
+
+/**
+ * A <code>ConversionTarget</code> describes one output image of an image
+ * conversion: where it gets written to, its format and its compression. Several
+ * targets can be given with '--output=&lt;path&gt;[:&lt;compression&gt;]' so
+ * that the input image only gets decoded once.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class ConversionTarget {
+
+	private final String path;
+	private final Format format;
+	private final CompressionFormat compressionFormat;
+
+	/**
+	 * Creates a new <code>ConversionTarget</code>.
+	 *
+	 * @param path              the path of the output image.
+	 * @param format            the format of the output image.
+	 * @param compressionFormat the compression of the output image.
+	 */
+	public ConversionTarget(String path, Format format, CompressionFormat compressionFormat) {
+		this.path = path;
+		this.format = format;
+		this.compressionFormat = compressionFormat;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public CompressionFormat getCompressionFormat() {
+		return compressionFormat;
+	}
+}
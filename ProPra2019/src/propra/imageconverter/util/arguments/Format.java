@@ -1,11 +1,36 @@
-package propra.imageconverter.util.arguments;
-
-/**
- * Allowed source or target formats when using <code>ImageConverter</code>.
- * @author Oliver Eckstein
- *
- */
-public enum Format {
-	TGA,
-	PROPRA
-}
+package propra.imageconverter.util.arguments;
+
+/**
+ * Allowed source or target formats when using <code>ImageConverter</code>.
+ * @author Oliver Eckstein
+ *
+ */
+public enum Format {
+	TGA,
+	PROPRA;
+
+	/**
+	 * To find the <code>Format</code> belonging to a file extension.
+	 * 
+	 * @param extension the file extension without the leading dot.
+	 * @return the <code>Format</code> or <code>null</code> if the file extension
+	 *         does not belong to a supported format.
+	 */
+	public static Format fromFileExtension(String extension) {
+		if (extension.equalsIgnoreCase("tga")) {
+			return TGA;
+		} else if (extension.equalsIgnoreCase("propra")) {
+			return PROPRA;
+		}
+		return null;
+	}
+
+	/**
+	 * To get the file extension of this <code>Format</code>.
+	 * 
+	 * @return the file extension without the leading dot.
+	 */
+	public String getFileExtension() {
+		return name().toLowerCase();
+	}
+}
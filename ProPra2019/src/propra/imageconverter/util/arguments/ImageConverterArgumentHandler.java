@@ -1,323 +1,959 @@
-package propra.imageconverter.util.arguments;
-
-import propra.imageconverter.error.ImageConverterErrorCode;
-import propra.imageconverter.error.ImageHandlingException;
-
-/**
- * The <code>ImageConverterArgumentHandler</code> handles command line argument
- * inputs given by the user when executing the <code>ImageConverter</code>. It
- * reads the user's input and based on that define's the working mode of the
- * <code>ImageConverter</code>.
- * 
- * @author Oliver Eckstein
- *
- */
-public class ImageConverterArgumentHandler {
-
-	/*
-	 * All valid input argument prefixes.
-	 */
-	private final String INPUT = "--input=";
-	private final String OUTPUT = "--output=";
-	private final String COMPRESSION = "--compression=";
-	private final String DECODE32 = "--decode-base-32";
-	private final String ENCODE32 = "--encode-base-32";
-	private final String DECODE_N = "--decode-base-n";
-	private final String ENCODE_N = "--encode-base-n=";
-	
-	/*
-	 * All valid input argument control words.
-	 */
-	private final String EXT_TGA = "tga";
-	private final String EXT_PROPRA = "propra";
-	private final String COMP_UNC = "uncompressed";
-	private final String COMP_RLE = "rle";
-	private final String COMP_HUF = "huffman";
-	private final String COMP_AUTO = "auto";
-
-	private final String EXTENSION_BASE32 = ".base-32";
-	private final String EXTENSION_BASEN = ".base-n";
-	/*
-	 * The arguments which are necessary to create a new ConversionHandler. They get
-	 * decoded from the user input.
-	 */
-	private String inputPath;
-	private String outputPath;
-	private ConverterOperationMode operationMode;
-	private Format inputFormat;
-	private Format outputFormat;
-	private CompressionFormat outputCompressionFormat;
-	private String encodingAlphabet;
-
-	/**
-	 * To create a new <code>ImageConverterArgumentHandler</code>, check the user
-	 * input and decode it for further use when executing the
-	 * <code>ImageConverter</code>.
-	 * 
-	 * @param args the user's command line input
-	 * @throws ImageHandlingException when <code>args</code> is <code>null</code> or
-	 *                                invalid user input was given.
-	 */
-	public ImageConverterArgumentHandler(String[] args) throws ImageHandlingException {
-		if (args == null) {
-			throw new ImageHandlingException("No input arguments were defined.",
-					ImageConverterErrorCode.INVALID_USER_INPUT);
-		}
-		readArguments(args);
-	}
-
-	/**
-	 * Reads the user input and decodes it for further use when executing the
-	 * <code>ImageConverter</code>.
-	 * 
-	 * @param args the user's command line input
-	 * @throws ImageHandlingException when invalid user input was given
-	 */
-	private void readArguments(String[] args) throws ImageHandlingException {
-		if (args.length < 2 || args.length > 3) {
-			throw new ImageHandlingException("Wrong number of arguments specified.",
-					ImageConverterErrorCode.INVALID_USER_INPUT);
-		}
-
-		// Find out which arguments the user has specified
-		String inputPath = findCommand(args, INPUT);
-		String outputPath = findCommand(args, OUTPUT);
-		String targetCompression = findCommand(args, COMPRESSION);
-		String decode32 = findCommand(args, DECODE32);
-		String encode32 = findCommand(args, ENCODE32);
-		String decode_n = findCommand(args, DECODE_N);
-		String encode_n = findCommand(args, ENCODE_N);
-		String encodingAlphabet = findCommand(args, ENCODE_N);
-
-		// Now a series of checks begins which ultimately define in which mode the
-		// ImageConverter is operating
-
-		// Begin with the input file path
-		if (inputPath == null) {
-			throw new ImageHandlingException("Input path must be set.", ImageConverterErrorCode.INVALID_USER_INPUT);
-		} else {
-			this.inputPath = inputPath;
-		}
-
-		// Check the output file path
-		if (outputPath == null) {
-			// This is only allowed in case a base-coding operation should be performed
-
-			if (targetCompression != null) {
-				// User did not pass an output path but defined a compression for the target
-				// file
-				throw new ImageHandlingException("An output path must be given in order to compress an image.",
-						ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-
-			// Now it gets checked whether the user passed multiple base-coding commands
-			// This would not be allowed currently because it would not be clear which
-			// operation should be performed.
-			String[] baseArgs = { decode32, encode32, decode_n, encode_n };
-			if (!argumentsSet(baseArgs, 1)) {
-				throw new ImageHandlingException("One base-coding command must be set.",
-						ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-
-			// The user wants to perform a base-coding operation
-			// Now it gets checked whether the input file name matches the base-coding
-			// operation mode
-			boolean fileExtensionIsCorrect = false;
-			if (decode32 != null) {
-				fileExtensionIsCorrect = inputPath.contains(EXTENSION_BASE32);
-				this.outputPath = inputPath.replace(EXTENSION_BASE32, "");
-				operationMode = ConverterOperationMode.DECODE_BASE32;
-			}
-
-			if (decode_n != null) {
-				fileExtensionIsCorrect = inputPath.contains(EXTENSION_BASEN);
-				this.outputPath = inputPath.replace(EXTENSION_BASEN, "");
-				operationMode = ConverterOperationMode.DECODE_BASEN;
-			}
-
-			if (!fileExtensionIsCorrect && (decode_n != null || decode32 != null)) {
-				throw new ImageHandlingException(
-						"Invalid file extension of the source file. To decode a base-coded file it must be of type *.base-32 or *.base-n.",
-						ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-
-			if (encode32 != null) {
-				this.outputPath = inputPath + EXTENSION_BASE32;
-				operationMode = ConverterOperationMode.CODE_BASE32;
-			}
-
-			if (encode_n != null) {
-				if (encodingAlphabet == null || encodingAlphabet.equals("")) {
-					throw new ImageHandlingException("Invalid encoding alphabet given for base-n encoding.",
-							ImageConverterErrorCode.INVALID_USER_INPUT);
-				}
-				this.outputPath = inputPath + EXTENSION_BASEN;
-				operationMode = ConverterOperationMode.CODE_BASEN;
-				this.encodingAlphabet = encodingAlphabet;
-			}
-
-		} else {
-			// The user wants to perform an image conversion since an input and an output path were given
-			this.outputPath = outputPath;
-			String inputExtension = getFileExtension(inputPath);
-			String outputExtension = getFileExtension(outputPath);
-			operationMode = ConverterOperationMode.CONVERT;
-			
-			/*
-			 * Now there are two possibilities: Either the user uses the ImageConverter
-			 * according to KE1 specifications: Only --input=... and --output=... are set or
-			 * according to KE2 or later including --compression=<...>
-			 */
-			if (inputExtension.equals(EXT_TGA)) {
-				inputFormat = Format.TGA;
-			} else if (inputExtension.equals(EXT_PROPRA)) {
-				inputFormat = Format.PROPRA;
-			} else {
-				throw new ImageHandlingException(
-						"Input format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
-						ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-
-			if (outputExtension.equals(EXT_TGA)) {
-				outputFormat = Format.TGA;
-			} else if (outputExtension.equals(EXT_PROPRA)) {
-				outputFormat = Format.PROPRA;
-			} else {
-				throw new ImageHandlingException(
-						"Output format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
-						ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-
-			if (targetCompression == null) {
-				// KE1 case
-				outputCompressionFormat = CompressionFormat.UNCOMPRESSED;
-			} else {
-				// KE2 and later case
-				if (targetCompression.equals(COMP_UNC)) {
-					outputCompressionFormat = CompressionFormat.UNCOMPRESSED;
-				} else if (targetCompression.equals(COMP_RLE)) {
-					outputCompressionFormat = CompressionFormat.RLE;
-				} else if (targetCompression.equals(COMP_HUF)) {
-					if (outputFormat == Format.PROPRA) {
-						outputCompressionFormat = CompressionFormat.HUFFMAN;
-					} else {
-						throw new ImageHandlingException(
-								"Huffman encoding currently only supported if target file is a *.propra file.",
-								ImageConverterErrorCode.INVALID_USER_INPUT);
-					}
-				} else if (targetCompression.equals(COMP_AUTO)) {
-					outputCompressionFormat = CompressionFormat.AUTO;
-				} else {
-					throw new ImageHandlingException(
-							"Given compression type unknown. Currently only 'uncompressed', 'rle', 'huffman' or 'auto' are allowed.",
-							ImageConverterErrorCode.INVALID_USER_INPUT);
-				}
-			}
-		}
-	}
-
-	public String getInputPath() {
-		return inputPath;
-	}
-
-	public String getOutputPath() {
-		return outputPath;
-	}
-
-	public ConverterOperationMode getConverterOperationMode() {
-		return operationMode;
-	}
-
-	public Format getInputFormat() {
-		return inputFormat;
-	}
-
-	public Format getOutputFormat() {
-		return outputFormat;
-	}
-
-	public CompressionFormat getOutputCompressionFormat() {
-		return outputCompressionFormat;
-	}
-
-	public String getEncodingAlphabet() {
-		return encodingAlphabet;
-	}
-
-	/**
-	 * Helper function to find out which input parameter can be found in an array of
-	 * arguments.
-	 * 
-	 * @param args          the array of arguments.
-	 * @param commandToFind the input parameter related to an input command.
-	 * @return the input parameter without the command.
-	 * @throws ImageHandlingException when a command was found a second time or when
-	 *                                an args-array entry is <code>null</code>.
-	 */
-	private String findCommand(String[] args, String commandToFind) throws ImageHandlingException {
-		String foundCommand = null;
-		for (int i = 0; i < args.length; i++) {
-			String currentString = args[i];
-			if (currentString == null) {
-				throw new ImageHandlingException("Null input not allowed!", ImageConverterErrorCode.INVALID_USER_INPUT);
-			}
-			if (currentString.startsWith(commandToFind)) {
-				if (foundCommand == null) {
-					foundCommand = currentString.replace(commandToFind, "");
-				} else {
-					throw new ImageHandlingException(commandToFind + " was given multiple times.",
-							ImageConverterErrorCode.INVALID_USER_INPUT);
-				}
-
-			}
-		}
-		return foundCommand;
-	}
-
-	/**
-	 * To find out whether a certain number of <code>String</code> values were set
-	 * in an array.
-	 * 
-	 * @param args             the array
-	 * @param allowedArgsCount the number of entries in the array which must be
-	 *                         unequal <code>null</code>.
-	 * @return <code>true</code> when the number of entries in the array which are
-	 *         different than <code>null</code> are equal to
-	 *         <code>allowedArgsCount</code>.
-	 */
-	private boolean argumentsSet(String[] args, int allowedArgsCount) {
-		int foundArgs = 0;
-		for (int i = 0; i < args.length; i++) {
-			if (args[i] != null) {
-				foundArgs++;
-			}
-		}
-		return foundArgs == allowedArgsCount;
-	}
-
-	/**
-	 * To extract the file extension of a given file path.
-	 * 
-	 * @param filePath the file path.
-	 * @return the extension of the file path in lower case letters.
-	 * @throws ImageHandlingException when file path does not contain a file
-	 *                                extension.
-	 */
-	private String getFileExtension(String filePath) throws ImageHandlingException {
-		String fileExtension = null;
-
-		/*
-		 * If fileName does not contain "." or starts with "." then it is not a valid
-		 * file.
-		 */
-		if (filePath.contains(".") && filePath.lastIndexOf(".") != 0) {
-			fileExtension = filePath.substring(filePath.lastIndexOf(".") + 1);
-		}
-		if (fileExtension == null) {
-			throw new ImageHandlingException("Could not read file extension. Invalid file path: " + filePath,
-					ImageConverterErrorCode.INVALID_FILEPATH);
-		}
-		return fileExtension.toLowerCase();
-	}
-
-}
+package propra.imageconverter.util.arguments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+
+/**
+ * The <code>ImageConverterArgumentHandler</code> handles command line argument
+ * inputs given by the user when executing the <code>ImageConverter</code>. It
+ * reads the user's input and based on that define's the working mode of the
+ * <code>ImageConverter</code>.
+ * 
+ * @author Oliver Eckstein
+ *
+ */
+public class ImageConverterArgumentHandler {
+
+	/*
+	 * All valid input argument prefixes.
+	 */
+	private final String INPUT = "--input=";
+	private final String OUTPUT = "--output=";
+	private final String COMPRESSION = "--compression=";
+	private final String DECODE32 = "--decode-base-32";
+	private final String ENCODE32 = "--encode-base-32";
+	private final String DECODE_N = "--decode-base-n";
+	private final String ENCODE_N = "--encode-base-n=";
+	private final String PIPELINE = "--pipeline";
+	private final String BATCH = "--batch";
+	private final String FORMAT = "--format=";
+	private final String THREADS = "--threads=";
+	private final String DAEMON = "--daemon=";
+	private final String INPUT_FORMAT = "--input-format=";
+	private final String INFO = "--info";
+	private final String ANALYZE = "--analyze";
+	private final String VERIFY = "--verify";
+	private final String VERIFY_CHECKSUM = "--verify-checksum";
+	private final String BENCHMARK = "--benchmark";
+	private final String WARMUP = "--warmup=";
+	private final String REPEAT = "--repeat=";
+	private final String RESULTS = "--results=";
+	private final String REPORT = "--report=";
+	private final String ROUND_TRIP = "--round-trip";
+
+	/**
+	 * The path standing for the standard input or the standard output.
+	 */
+	public static final String STANDARD_STREAM = "-";
+	
+	/*
+	 * All valid input argument control words.
+	 */
+	private final String EXT_TGA = "tga";
+	private final String EXT_PROPRA = "propra";
+	private final String COMP_UNC = "uncompressed";
+	private final String COMP_RLE = "rle";
+	private final String COMP_HUF = "huffman";
+	private final String COMP_AUTO = "auto";
+
+	private final String EXTENSION_BASE32 = ".base-32";
+	private final String EXTENSION_BASEN = ".base-n";
+	/*
+	 * The arguments which are necessary to create a new ConversionHandler. They get
+	 * decoded from the user input.
+	 */
+	private String inputPath;
+	private String outputPath;
+	private ConverterOperationMode operationMode;
+	private Format inputFormat;
+	private Format outputFormat;
+	private CompressionFormat outputCompressionFormat;
+	private String encodingAlphabet;
+	private boolean pipelined;
+	private boolean roundTripVerified;
+
+	/*
+	 * All output images of an image conversion. The first one is also described
+	 * by outputPath, outputFormat and outputCompressionFormat.
+	 */
+	private List<ConversionTarget> outputTargets;
+
+	/*
+	 * The arguments which are only used for batch conversions.
+	 */
+	private List<String> inputPatterns;
+	private int threadCount;
+
+	/*
+	 * The address the daemon listens on.
+	 */
+	private String daemonAddress;
+
+	/*
+	 * Whether '--info' should verify the check sums of *.propra images.
+	 */
+	private boolean verifyCheckSums;
+
+	/*
+	 * The arguments which are only used for '--benchmark'. The matrix of formats
+	 * and compressions is kept in outputTargets.
+	 */
+	private int warmupRuns;
+	private int repetitions;
+	private String resultsPath;
+	private String reportPath;
+
+	/**
+	 * To create a new <code>ImageConverterArgumentHandler</code>, check the user
+	 * input and decode it for further use when executing the
+	 * <code>ImageConverter</code>.
+	 * 
+	 * @param args the user's command line input
+	 * @throws ImageHandlingException when <code>args</code> is <code>null</code> or
+	 *                                invalid user input was given.
+	 */
+	public ImageConverterArgumentHandler(String[] args) throws ImageHandlingException {
+		if (args == null) {
+			throw new ImageHandlingException("No input arguments were defined.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		readArguments(args);
+	}
+
+	/**
+	 * To find out whether the user input lets the output data be written to the
+	 * standard output. This is the case for '--output=-', for base-coding the
+	 * standard input, for '--info' and for '--analyze'.
+	 * 
+	 * @param args the user's command line input
+	 * @return <code>true</code> if the output data gets written to the standard
+	 *         output, <code>false</code> otherwise.
+	 */
+	public static boolean writesStandardOutput(String[] args) {
+		boolean readsStandardInput = false;
+		boolean outputGiven = false;
+		for (String argument : args) {
+			if (argument == null) {
+				continue;
+			}
+			if (argument.equals("--output=" + STANDARD_STREAM)
+					|| argument.startsWith("--output=" + STANDARD_STREAM + ":") || argument.equals("--info")
+					|| argument.equals("--analyze") || argument.equals("--verify")) {
+				return true;
+			}
+			readsStandardInput |= argument.equals("--input=" + STANDARD_STREAM);
+			outputGiven |= argument.startsWith("--output=");
+		}
+		return readsStandardInput && !outputGiven;
+	}
+
+	/**
+	 * Reads the user input and decodes it for further use when executing the
+	 * <code>ImageConverter</code>.
+	 * 
+	 * @param args the user's command line input
+	 * @throws ImageHandlingException when invalid user input was given
+	 */
+	private void readArguments(String[] args) throws ImageHandlingException {
+		String daemon = findCommand(args, DAEMON);
+		if (daemon != null) {
+			if (args.length != 1 || daemon.equals("")) {
+				throw new ImageHandlingException(
+						"The daemon mode only accepts " + DAEMON + "tcp:<port> or " + DAEMON + "unix:<path>.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			operationMode = ConverterOperationMode.DAEMON;
+			daemonAddress = daemon;
+			return;
+		}
+
+		if (findCommand(args, BATCH) != null) {
+			readBatchArguments(args);
+			return;
+		}
+
+		if (findCommand(args, INFO) != null || findCommand(args, ANALYZE) != null || findCommand(args, VERIFY) != null) {
+			readInfoArguments(args);
+			return;
+		}
+
+		if (findCommand(args, BENCHMARK) != null) {
+			readBenchmarkArguments(args);
+			return;
+		}
+
+		// Options which can be given in addition to the other arguments
+		String pipeline = findCommand(args, PIPELINE);
+		String roundTrip = findCommand(args, ROUND_TRIP);
+		String inputFormatName = findCommand(args, INPUT_FORMAT);
+		String outputFormatName = findCommand(args, FORMAT);
+		reportPath = readReportPath(args);
+		// Several outputs may be given for an image conversion
+		List<String> outputs = findCommands(args, OUTPUT);
+		int optionCount = (pipeline != null ? 1 : 0) + (roundTrip != null ? 1 : 0) + (inputFormatName != null ? 1 : 0)
+				+ (outputFormatName != null ? 1 : 0) + (reportPath != null ? 1 : 0) + Math.max(0, outputs.size() - 1);
+
+		if (args.length - optionCount < 2 || args.length - optionCount > 3) {
+			throw new ImageHandlingException("Wrong number of arguments specified.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		// Find out which arguments the user has specified
+		String inputPath = findCommand(args, INPUT);
+		String outputPath = outputs.isEmpty() ? null : removeCompressionSuffix(outputs.get(0));
+		String targetCompression = findCommand(args, COMPRESSION);
+		String decode32 = findCommand(args, DECODE32);
+		String encode32 = findCommand(args, ENCODE32);
+		String decode_n = findCommand(args, DECODE_N);
+		String encode_n = findCommand(args, ENCODE_N);
+		String encodingAlphabet = findCommand(args, ENCODE_N);
+
+		// Now a series of checks begins which ultimately define in which mode the
+		// ImageConverter is operating
+
+		// Begin with the input file path
+		if (inputPath == null) {
+			throw new ImageHandlingException("Input path must be set.", ImageConverterErrorCode.INVALID_USER_INPUT);
+		} else {
+			this.inputPath = inputPath;
+		}
+
+		if (inputFormatName != null && !inputPath.equals(STANDARD_STREAM)) {
+			throw new ImageHandlingException(INPUT_FORMAT + " is only allowed when reading from the standard input.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (outputFormatName != null && !STANDARD_STREAM.equals(outputPath)) {
+			throw new ImageHandlingException(FORMAT + " is only allowed when writing to the standard output.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (pipeline != null && (inputPath.equals(STANDARD_STREAM) || STANDARD_STREAM.equals(outputPath))) {
+			throw new ImageHandlingException("The pipelined mode is only available for files.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		// Check the output file path
+		if (outputPath == null) {
+			// This is only allowed in case a base-coding operation should be performed
+
+			if (pipeline != null) {
+				throw new ImageHandlingException("The pipelined mode is only available for image conversions.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			if (reportPath != null) {
+				throw new ImageHandlingException(REPORT + " is only available for image conversions.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			if (roundTrip != null) {
+				throw new ImageHandlingException(ROUND_TRIP + " is only available for image conversions.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			if (targetCompression != null) {
+				// User did not pass an output path but defined a compression for the target
+				// file
+				throw new ImageHandlingException("An output path must be given in order to compress an image.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			// Now it gets checked whether the user passed multiple base-coding commands
+			// This would not be allowed currently because it would not be clear which
+			// operation should be performed.
+			String[] baseArgs = { decode32, encode32, decode_n, encode_n };
+			if (!argumentsSet(baseArgs, 1)) {
+				throw new ImageHandlingException("One base-coding command must be set.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			// The user wants to perform a base-coding operation
+			// Now it gets checked whether the input file name matches the base-coding
+			// operation mode. Data read from the standard input is written to the
+			// standard output.
+			boolean readsStandardInput = inputPath.equals(STANDARD_STREAM);
+			boolean fileExtensionIsCorrect = readsStandardInput;
+			if (decode32 != null) {
+				fileExtensionIsCorrect |= inputPath.contains(EXTENSION_BASE32);
+				this.outputPath = inputPath.replace(EXTENSION_BASE32, "");
+				operationMode = ConverterOperationMode.DECODE_BASE32;
+			}
+
+			if (decode_n != null) {
+				fileExtensionIsCorrect |= inputPath.contains(EXTENSION_BASEN);
+				this.outputPath = inputPath.replace(EXTENSION_BASEN, "");
+				operationMode = ConverterOperationMode.DECODE_BASEN;
+			}
+
+			if (!fileExtensionIsCorrect && (decode_n != null || decode32 != null)) {
+				throw new ImageHandlingException(
+						"Invalid file extension of the source file. To decode a base-coded file it must be of type *.base-32 or *.base-n.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			if (encode32 != null) {
+				this.outputPath = inputPath + EXTENSION_BASE32;
+				operationMode = ConverterOperationMode.CODE_BASE32;
+			}
+
+			if (encode_n != null) {
+				if (encodingAlphabet == null || encodingAlphabet.equals("")) {
+					throw new ImageHandlingException("Invalid encoding alphabet given for base-n encoding.",
+							ImageConverterErrorCode.INVALID_USER_INPUT);
+				}
+				this.outputPath = inputPath + EXTENSION_BASEN;
+				operationMode = ConverterOperationMode.CODE_BASEN;
+				this.encodingAlphabet = encodingAlphabet;
+			}
+
+			if (readsStandardInput) {
+				this.outputPath = STANDARD_STREAM;
+			}
+
+		} else {
+			// The user wants to perform an image conversion since an input and an output path were given
+			this.pipelined = (pipeline != null);
+			this.roundTripVerified = (roundTrip != null);
+			String inputExtension = readStreamFormat(inputPath, inputFormatName, INPUT_FORMAT);
+			operationMode = ConverterOperationMode.CONVERT;
+			
+			/*
+			 * Now there are two possibilities: Either the user uses the ImageConverter
+			 * according to KE1 specifications: Only --input=... and --output=... are set or
+			 * according to KE2 or later including --compression=<...>
+			 */
+			if (inputExtension.equals(EXT_TGA)) {
+				inputFormat = Format.TGA;
+			} else if (inputExtension.equals(EXT_PROPRA)) {
+				inputFormat = Format.PROPRA;
+			} else {
+				throw new ImageHandlingException(
+						"Input format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			outputTargets = new ArrayList<ConversionTarget>();
+			boolean usesStandardStreams = inputPath.equals(STANDARD_STREAM);
+			for (String output : outputs) {
+				ConversionTarget target = readConversionTarget(output, outputFormatName, targetCompression);
+				usesStandardStreams |= target.getPath().equals(STANDARD_STREAM);
+				outputTargets.add(target);
+			}
+			if (outputTargets.size() > 1 && (pipeline != null || usesStandardStreams)) {
+				throw new ImageHandlingException(
+						"Several outputs are only allowed when converting files without the pipelined mode.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+
+			ConversionTarget firstTarget = outputTargets.get(0);
+			this.outputPath = firstTarget.getPath();
+			outputFormat = firstTarget.getFormat();
+			outputCompressionFormat = firstTarget.getCompressionFormat();
+		}
+	}
+
+	/**
+	 * Reads one output image of an image conversion. Its compression can be
+	 * appended to its path as in '--output=image.propra:rle', otherwise the one
+	 * given with '--compression=' is used.
+	 * 
+	 * @param output             the output given by the user.
+	 * @param formatName         the format given with '--format=' or
+	 *                           <code>null</code>.
+	 * @param defaultCompression the compression given with '--compression=' or
+	 *                           <code>null</code>.
+	 * @return the output image.
+	 * @throws ImageHandlingException when the format or the compression is invalid.
+	 */
+	private ConversionTarget readConversionTarget(String output, String formatName, String defaultCompression)
+			throws ImageHandlingException {
+		String path = removeCompressionSuffix(output);
+		String compression = path.length() < output.length() ? output.substring(path.length() + 1)
+				: defaultCompression;
+		String extension = readStreamFormat(path, formatName, FORMAT);
+
+		Format format;
+		if (extension.equals(EXT_TGA)) {
+			format = Format.TGA;
+		} else if (extension.equals(EXT_PROPRA)) {
+			format = Format.PROPRA;
+		} else {
+			throw new ImageHandlingException(
+					"Output format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		return new ConversionTarget(path, format, readCompressionFormat(compression, format));
+	}
+
+	/**
+	 * Removes a compression appended to an output path.
+	 * 
+	 * @param output the output given by the user.
+	 * @return the path of the output image.
+	 */
+	private String removeCompressionSuffix(String output) {
+		int separator = output.lastIndexOf(':');
+		if (separator != -1 && Arrays.asList(COMP_UNC, COMP_RLE, COMP_HUF, COMP_AUTO)
+				.contains(output.substring(separator + 1))) {
+			return output.substring(0, separator);
+		}
+		return output;
+	}
+
+	/**
+	 * Finds out the format of an input or output image. The format of a file is
+	 * defined by its extension. Images read from the standard input or written to
+	 * the standard output have no file name so that their format must be given
+	 * explicitly.
+	 * 
+	 * @param path       the path of the image.
+	 * @param formatName the format given by the user or <code>null</code>.
+	 * @param command    the command the format is given with.
+	 * @return the format in the same form as a file extension.
+	 * @throws ImageHandlingException when no format could be found out.
+	 */
+	private String readStreamFormat(String path, String formatName, String command) throws ImageHandlingException {
+		if (!path.equals(STANDARD_STREAM)) {
+			return getFileExtension(path);
+		}
+		if (formatName == null) {
+			throw new ImageHandlingException(command + "tga|propra must be given when using the standard streams.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		return formatName.toLowerCase();
+	}
+
+	/**
+	 * Reads the user input for a batch conversion. In contrast to a single image
+	 * conversion '--input=' may be given several times. Each input either is a
+	 * directory whose images get converted or a glob pattern like
+	 * <code>images/*.tga</code>. The output path is the directory the converted
+	 * images are written into and '--format=' defines their format.
+	 * 
+	 * @param args the user's command line input
+	 * @throws ImageHandlingException when invalid user input was given
+	 */
+	private void readBatchArguments(String[] args) throws ImageHandlingException {
+		operationMode = ConverterOperationMode.BATCH_CONVERT;
+		inputPatterns = new ArrayList<String>();
+		threadCount = Runtime.getRuntime().availableProcessors();
+
+		String targetCompression = findCommand(args, COMPRESSION);
+		String targetFormat = findCommand(args, FORMAT);
+		String threads = findCommand(args, THREADS);
+		outputPath = findCommand(args, OUTPUT);
+		pipelined = (findCommand(args, PIPELINE) != null);
+		roundTripVerified = (findCommand(args, ROUND_TRIP) != null);
+		reportPath = readReportPath(args);
+
+		for (String argument : args) {
+			if (argument.startsWith(INPUT)) {
+				inputPatterns.add(argument.substring(INPUT.length()));
+			} else if (!argument.equals(BATCH) && !argument.startsWith(OUTPUT) && !argument.startsWith(COMPRESSION)
+					&& !argument.startsWith(FORMAT) && !argument.startsWith(THREADS)
+					&& !argument.equals(PIPELINE) && !argument.startsWith(REPORT) && !argument.equals(ROUND_TRIP)) {
+				throw new ImageHandlingException("Argument not allowed for batch conversions: " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+
+		if (inputPatterns.isEmpty()) {
+			throw new ImageHandlingException("At least one input directory or pattern must be set.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (outputPath == null || outputPath.equals("")) {
+			throw new ImageHandlingException("An output directory must be set.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if (targetFormat == null) {
+			throw new ImageHandlingException("The target format must be set with " + FORMAT + "tga|propra.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		if (targetFormat.equals(EXT_TGA)) {
+			outputFormat = Format.TGA;
+		} else if (targetFormat.equals(EXT_PROPRA)) {
+			outputFormat = Format.PROPRA;
+		} else {
+			throw new ImageHandlingException(
+					"Output format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		outputCompressionFormat = readCompressionFormat(targetCompression, outputFormat);
+
+		if (threads != null) {
+			try {
+				threadCount = Integer.parseInt(threads);
+			} catch (NumberFormatException e) {
+				threadCount = 0;
+			}
+			if (threadCount < 1) {
+				throw new ImageHandlingException("Invalid number of threads: " + threads,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+	}
+
+	/**
+	 * Reads the user input for printing the metadata ('--info'), the analysis
+	 * ('--analyze') or the verification ('--verify') of images. Like for a batch conversion '--input=' may be given
+	 * several times and each input either is a directory or a glob pattern.
+	 * '--verify-checksum' additionally verifies the check sums of *.propra images
+	 * for '--info'.
+	 * 
+	 * @param args the user's command line input
+	 * @throws ImageHandlingException when invalid user input was given
+	 */
+	private void readInfoArguments(String[] args) throws ImageHandlingException {
+		String command;
+		if (findCommand(args, INFO) != null) {
+			command = INFO;
+			operationMode = ConverterOperationMode.INFO;
+		} else if (findCommand(args, ANALYZE) != null) {
+			command = ANALYZE;
+			operationMode = ConverterOperationMode.ANALYZE;
+		} else {
+			command = VERIFY;
+			operationMode = ConverterOperationMode.VERIFY;
+		}
+		inputPatterns = new ArrayList<String>();
+		threadCount = Runtime.getRuntime().availableProcessors();
+
+		String threads = findCommand(args, THREADS);
+		verifyCheckSums = (findCommand(args, VERIFY_CHECKSUM) != null);
+
+		for (String argument : args) {
+			if (argument.startsWith(INPUT)) {
+				inputPatterns.add(argument.substring(INPUT.length()));
+			} else if (!argument.equals(command) && !(argument.equals(VERIFY_CHECKSUM) && command.equals(INFO))
+					&& !argument.startsWith(THREADS)) {
+				throw new ImageHandlingException("Argument not allowed for " + command + ": " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+
+		if (inputPatterns.isEmpty()) {
+			throw new ImageHandlingException("At least one input directory or pattern must be set.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		if (threads != null) {
+			try {
+				threadCount = Integer.parseInt(threads);
+			} catch (NumberFormatException e) {
+				threadCount = 0;
+			}
+			if (threadCount < 1) {
+				throw new ImageHandlingException("Invalid number of threads: " + threads,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+	}
+
+	/**
+	 * Reads the user input for a benchmark. Like for a batch conversion '--input='
+	 * may be given several times and each input either is a directory or a glob
+	 * pattern. '--format=' and '--compression=' take comma-separated lists and
+	 * every image is converted into every combination of them. Without them all
+	 * formats and all compressions they support are measured. '--warmup=' and
+	 * '--repeat=' define the number of warmup and measured runs and
+	 * '--results=' the file the results are saved into.
+	 * 
+	 * @param args the user's command line input
+	 * @throws ImageHandlingException when invalid user input was given
+	 */
+	private void readBenchmarkArguments(String[] args) throws ImageHandlingException {
+		operationMode = ConverterOperationMode.BENCHMARK;
+		inputPatterns = new ArrayList<String>();
+
+		String targetFormats = findCommand(args, FORMAT);
+		String targetCompressions = findCommand(args, COMPRESSION);
+		String warmup = findCommand(args, WARMUP);
+		String repeat = findCommand(args, REPEAT);
+		resultsPath = findCommand(args, RESULTS);
+		pipelined = (findCommand(args, PIPELINE) != null);
+
+		for (String argument : args) {
+			if (argument.startsWith(INPUT)) {
+				inputPatterns.add(argument.substring(INPUT.length()));
+			} else if (!argument.equals(BENCHMARK) && !argument.startsWith(FORMAT)
+					&& !argument.startsWith(COMPRESSION) && !argument.startsWith(WARMUP)
+					&& !argument.startsWith(REPEAT) && !argument.startsWith(RESULTS) && !argument.equals(PIPELINE)) {
+				throw new ImageHandlingException("Argument not allowed for " + BENCHMARK + ": " + argument,
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		}
+
+		if (inputPatterns.isEmpty()) {
+			throw new ImageHandlingException("At least one input directory or pattern must be set.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		if ("".equals(resultsPath)) {
+			throw new ImageHandlingException("A file must be given with " + RESULTS,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		List<String> formatNames = Arrays
+				.asList((targetFormats == null ? EXT_TGA + "," + EXT_PROPRA : targetFormats).split(","));
+		outputTargets = new ArrayList<ConversionTarget>();
+		for (String formatName : formatNames) {
+			Format format;
+			if (formatName.equals(EXT_TGA)) {
+				format = Format.TGA;
+			} else if (formatName.equals(EXT_PROPRA)) {
+				format = Format.PROPRA;
+			} else {
+				throw new ImageHandlingException(
+						"Output format unknown. Currently only *.tga or *.propra files allowed for image conversion operations.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			String compressions = targetCompressions == null ? String.join(",", COMP_UNC, COMP_RLE, COMP_HUF, COMP_AUTO)
+					: targetCompressions;
+			for (String compression : compressions.split(",")) {
+				if (compression.equals(COMP_HUF) && format != Format.PROPRA) {
+					// Huffman encoding is only measured for the formats supporting it
+					continue;
+				}
+				outputTargets.add(new ConversionTarget(null, format, readCompressionFormat(compression, format)));
+			}
+		}
+		if (outputTargets.isEmpty()) {
+			throw new ImageHandlingException("No supported combination of format and compression given.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+
+		warmupRuns = readRunCount(warmup, 1, 0, WARMUP);
+		repetitions = readRunCount(repeat, 3, 1, REPEAT);
+	}
+
+	/**
+	 * Reads the number of runs of a benchmark.
+	 * 
+	 * @param runs         the number given by the user or <code>null</code>.
+	 * @param defaultRuns  the number used if none was given.
+	 * @param minimumRuns  the smallest number allowed.
+	 * @param command      the command the number is given with.
+	 * @return the number of runs.
+	 * @throws ImageHandlingException when the number is invalid.
+	 */
+	private int readRunCount(String runs, int defaultRuns, int minimumRuns, String command)
+			throws ImageHandlingException {
+		if (runs == null) {
+			return defaultRuns;
+		}
+		int runCount;
+		try {
+			runCount = Integer.parseInt(runs);
+		} catch (NumberFormatException e) {
+			runCount = -1;
+		}
+		if (runCount < minimumRuns) {
+			throw new ImageHandlingException("Invalid number of runs: " + command + runs,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		return runCount;
+	}
+
+	/**
+	 * Decodes the compression given by the user for the output image.
+	 * 
+	 * @param targetCompression the compression given by the user or
+	 *                          <code>null</code> if none was given.
+	 * @param format            the format of the output image.
+	 * @return the compression of the output image.
+	 * @throws ImageHandlingException when an unknown compression was given or the
+	 *                                compression is not supported by the output
+	 *                                format.
+	 */
+	private CompressionFormat readCompressionFormat(String targetCompression, Format format)
+			throws ImageHandlingException {
+		if (targetCompression == null) {
+			// KE1 case
+			return CompressionFormat.UNCOMPRESSED;
+		}
+
+		// KE2 and later case
+		if (targetCompression.equals(COMP_UNC)) {
+			return CompressionFormat.UNCOMPRESSED;
+		} else if (targetCompression.equals(COMP_RLE)) {
+			return CompressionFormat.RLE;
+		} else if (targetCompression.equals(COMP_HUF)) {
+			if (format == Format.PROPRA) {
+				return CompressionFormat.HUFFMAN;
+			} else {
+				throw new ImageHandlingException(
+						"Huffman encoding currently only supported if target file is a *.propra file.",
+						ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+		} else if (targetCompression.equals(COMP_AUTO)) {
+			return CompressionFormat.AUTO;
+		} else {
+			throw new ImageHandlingException(
+					"Given compression type unknown. Currently only 'uncompressed', 'rle', 'huffman' or 'auto' are allowed.",
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+	}
+
+	public String getInputPath() {
+		return inputPath;
+	}
+
+	public String getOutputPath() {
+		return outputPath;
+	}
+
+	public ConverterOperationMode getConverterOperationMode() {
+		return operationMode;
+	}
+
+	public Format getInputFormat() {
+		return inputFormat;
+	}
+
+	public Format getOutputFormat() {
+		return outputFormat;
+	}
+
+	public CompressionFormat getOutputCompressionFormat() {
+		return outputCompressionFormat;
+	}
+
+	public String getEncodingAlphabet() {
+		return encodingAlphabet;
+	}
+
+	/**
+	 * To get all output images of an image conversion. For '--benchmark' these
+	 * are the combinations of formats and compressions to measure, without
+	 * paths.
+	 * 
+	 * @return the output images in the order they were given.
+	 */
+	public List<ConversionTarget> getOutputTargets() {
+		return outputTargets;
+	}
+
+	/**
+	 * To find out whether the standard input or the standard output is used
+	 * instead of a file.
+	 * 
+	 * @return <code>true</code> if '-' was given as input or output path,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean usesStandardStreams() {
+		return STANDARD_STREAM.equals(inputPath) || STANDARD_STREAM.equals(outputPath);
+	}
+
+	/**
+	 * To find out whether the image conversion should run in a pipeline whose
+	 * stages run in their own threads.
+	 * 
+	 * @return <code>true</code> if '--pipeline' was given, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * To find out whether the output images should be decoded while they are
+	 * being written and compared with the input image.
+	 * 
+	 * @return <code>true</code> if '--round-trip' was given, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isRoundTripVerified() {
+		return roundTripVerified;
+	}
+
+	/**
+	 * To get the input directories and glob patterns of a batch conversion, of
+	 * '--info' or of '--benchmark'.
+	 * 
+	 * @return the input directories and glob patterns.
+	 */
+	public List<String> getInputPatterns() {
+		return inputPatterns;
+	}
+
+	/**
+	 * To get the number of threads a batch conversion, '--info' or '--analyze'
+	 * should use.
+	 * 
+	 * @return the number of threads.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * To find out whether '--info' should verify the check sums of *.propra
+	 * images.
+	 * 
+	 * @return <code>true</code> if '--verify-checksum' was given,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean verifiesCheckSums() {
+		return verifyCheckSums;
+	}
+
+	/**
+	 * To get how often all images are converted before '--benchmark' starts
+	 * measuring.
+	 * 
+	 * @return the number of warmup runs.
+	 */
+	public int getWarmupRuns() {
+		return warmupRuns;
+	}
+
+	/**
+	 * To get how often all images are converted while '--benchmark' measures.
+	 * 
+	 * @return the number of measured runs.
+	 */
+	public int getRepetitions() {
+		return repetitions;
+	}
+
+	/**
+	 * To get the file the results of '--benchmark' are saved into.
+	 * 
+	 * @return the path or <code>null</code> if the results should only be
+	 *         printed.
+	 */
+	public String getResultsPath() {
+		return resultsPath;
+	}
+
+	/**
+	 * To get the file a report of each image conversion is appended to.
+	 * 
+	 * @return the path or <code>null</code> if no report should be written.
+	 */
+	public String getReportPath() {
+		return reportPath;
+	}
+
+	/**
+	 * To get the address the daemon should listen on.
+	 * 
+	 * @return the address, either 'tcp:&lt;port&gt;' or 'unix:&lt;path&gt;'.
+	 */
+	public String getDaemonAddress() {
+		return daemonAddress;
+	}
+
+	/**
+	 * Reads the file given with '--report='.
+	 * 
+	 * @param args the user's command line input
+	 * @return the path or <code>null</code> if '--report=' was not given.
+	 * @throws ImageHandlingException when '--report=' was given without a file.
+	 */
+	private String readReportPath(String[] args) throws ImageHandlingException {
+		String report = findCommand(args, REPORT);
+		if ("".equals(report)) {
+			throw new ImageHandlingException("A file must be given with " + REPORT,
+					ImageConverterErrorCode.INVALID_USER_INPUT);
+		}
+		return report;
+	}
+
+	/**
+	 * Helper function to find out which input parameter can be found in an array of
+	 * arguments.
+	 * 
+	 * @param args          the array of arguments.
+	 * @param commandToFind the input parameter related to an input command.
+	 * @return the input parameter without the command.
+	 * @throws ImageHandlingException when a command was found a second time or when
+	 *                                an args-array entry is <code>null</code>.
+	 */
+	private String findCommand(String[] args, String commandToFind) throws ImageHandlingException {
+		String foundCommand = null;
+		for (int i = 0; i < args.length; i++) {
+			String currentString = args[i];
+			if (currentString == null) {
+				throw new ImageHandlingException("Null input not allowed!", ImageConverterErrorCode.INVALID_USER_INPUT);
+			}
+			if (currentString.startsWith(commandToFind)) {
+				if (foundCommand == null) {
+					foundCommand = currentString.replace(commandToFind, "");
+				} else {
+					throw new ImageHandlingException(commandToFind + " was given multiple times.",
+							ImageConverterErrorCode.INVALID_USER_INPUT);
+				}
+
+			}
+		}
+		return foundCommand;
+	}
+
+	/**
+	 * Helper function to find all input parameters of a command which may be given
+	 * several times.
+	 * 
+	 * @param args          the array of arguments.
+	 * @param commandToFind the input parameter related to an input command.
+	 * @return the input parameters without the command in the order they were
+	 *         given.
+	 */
+	private List<String> findCommands(String[] args, String commandToFind) {
+		List<String> foundCommands = new ArrayList<String>();
+		for (String currentString : args) {
+			if (currentString != null && currentString.startsWith(commandToFind)) {
+				foundCommands.add(currentString.substring(commandToFind.length()));
+			}
+		}
+		return foundCommands;
+	}
+
+	/**
+	 * To find out whether a certain number of <code>String</code> values were set
+	 * in an array.
+	 * 
+	 * @param args             the array
+	 * @param allowedArgsCount the number of entries in the array which must be
+	 *                         unequal <code>null</code>.
+	 * @return <code>true</code> when the number of entries in the array which are
+	 *         different than <code>null</code> are equal to
+	 *         <code>allowedArgsCount</code>.
+	 */
+	private boolean argumentsSet(String[] args, int allowedArgsCount) {
+		int foundArgs = 0;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] != null) {
+				foundArgs++;
+			}
+		}
+		return foundArgs == allowedArgsCount;
+	}
+
+	/**
+	 * To extract the file extension of a given file path.
+	 * 
+	 * @param filePath the file path.
+	 * @return the extension of the file path in lower case letters.
+	 * @throws ImageHandlingException when file path does not contain a file
+	 *                                extension.
+	 */
+	private String getFileExtension(String filePath) throws ImageHandlingException {
+		String fileExtension = null;
+
+		/*
+		 * If fileName does not contain "." or starts with "." then it is not a valid
+		 * file.
+		 */
+		if (filePath.contains(".") && filePath.lastIndexOf(".") != 0) {
+			fileExtension = filePath.substring(filePath.lastIndexOf(".") + 1);
+		}
+		if (fileExtension == null) {
+			throw new ImageHandlingException("Could not read file extension. Invalid file path: " + filePath,
+					ImageConverterErrorCode.INVALID_FILEPATH);
+		}
+		return fileExtension.toLowerCase();
+	}
+
+}
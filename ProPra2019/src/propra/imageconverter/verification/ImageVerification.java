@@ -0,0 +1,478 @@
+package propra.imageconverter.verification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import propra.imageconverter.codecs.huffman.HuffmanElement;
+import propra.imageconverter.codecs.huffman.HuffmanTree;
+import propra.imageconverter.codecs.huffman.HuffmanTree.NodeType;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.image.Image;
+import propra.imageconverter.image.ImagePropra;
+import propra.imageconverter.image.ImageTGA;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.ChecksumCalculator;
+import propra.imageconverter.util.Util;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * An <code>ImageVerification</code> checks the structure of an image file
+ * without converting it: the header, the length of the data segment, the check
+ * sum of *.propra images, the packets of run-length encoded images and the
+ * Huffman tree of Huffman encoded images. Nothing gets decoded into pixels and
+ * nothing is written.
+ * <p>
+ * The check sum of a *.propra image is calculated in parts by several threads
+ * while the data segment is walked through once to check its structure. The
+ * parts are joined to the check sum of the whole data segment afterwards.
+ * <p>
+ * All problems found are recorded with their
+ * <code>ImageConverterErrorCode</code>. Checking stops at an invalid header
+ * since the data segment cannot be interpreted then.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public final class ImageVerification {
+
+	/**
+	 * The minimum number of bytes of the data segment a thread calculates the
+	 * check sum of.
+	 */
+	private static final long MIN_CHECKSUM_PART_LENGTH = 8 * 1024 * 1024;
+
+	/**
+	 * The maximum length of the binary description of a Huffman tree in bytes: 255
+	 * inner nodes and 256 leaves with 8 bits of data each.
+	 */
+	private static final int MAX_HUFFMAN_TREE_LENGTH = (255 + 256 * 9 + 7) / 8;
+
+	private final Path file;
+	private Format format;
+	private CompressionFormat compressionFormat;
+	private int width;
+	private int height;
+	private long dataLength = -1;
+	private long nanos;
+	private final List<ImageConverterErrorCode> errorCodes = new ArrayList<ImageConverterErrorCode>();
+	private final List<String> messages = new ArrayList<String>();
+
+	private ImageVerification(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Verifies an image file. The format is derived from the file extension.
+	 * Problems are not thrown but recorded in the result so that verifying many
+	 * files does not stop at the first invalid one.
+	 *
+	 * @param file            the image file.
+	 * @param checksumWorkers the threads calculating the parts of the check sum.
+	 * @param threadCount     the number of threads of
+	 *                        <code>checksumWorkers</code>.
+	 * @return the verification of the image.
+	 */
+	public static ImageVerification verify(Path file, ExecutorService checksumWorkers, int threadCount) {
+		ImageVerification verification = new ImageVerification(file);
+		long startNanos = System.nanoTime();
+		String fileName = file.getFileName().toString();
+		int dotIndex = fileName.lastIndexOf('.');
+		verification.format = dotIndex <= 0 ? null : Format.fromFileExtension(fileName.substring(dotIndex + 1));
+		if (verification.format == null) {
+			verification.addProblem(ImageConverterErrorCode.INVALID_FILEFORMAT, "Unknown image format.");
+			return verification;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			verification.verify(channel, checksumWorkers, threadCount);
+		} catch (NoSuchFileException e) {
+			verification.addProblem(ImageConverterErrorCode.INVALID_FILEPATH, "File not found.");
+		} catch (IOException e) {
+			verification.addProblem(ImageConverterErrorCode.IO_ERROR, "Could not read file: " + e.getMessage());
+		} catch (ImageHandlingException e) {
+			verification.addProblem(ImageConverterErrorCode.fromErrorCode(e.getErrorCode()), e.getMessage());
+		}
+		verification.nanos = System.nanoTime() - startNanos;
+		return verification;
+	}
+
+	private void verify(FileChannel channel, ExecutorService checksumWorkers, int threadCount)
+			throws IOException, ImageHandlingException {
+		int headerLength = format == Format.TGA ? ImageTGA.HEADER_LENGTH : ImagePropra.HEADER_LENGTH;
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
+		while (header.hasRemaining() && channel.read(header) != -1) {
+			// Read until the header is complete
+		}
+		byte[] headerData = Arrays.copyOf(header.array(), header.position());
+		Image image = format == Format.TGA ? new ImageTGA(headerData) : new ImagePropra(headerData);
+		width = image.getWidth();
+		height = image.getHeight();
+		compressionFormat = image.getCompressionMode();
+		dataLength = channel.size() - headerLength;
+
+		List<Future<ChecksumCalculator>> checksumParts = null;
+		if (format == Format.PROPRA) {
+			ImagePropra propra = (ImagePropra) image;
+			if (dataLength != propra.getDataSegmentLengthFromHeader()) {
+				addProblem(ImageConverterErrorCode.INVALID_HEADERDATA,
+						"Source file corrupt. Invalid image data length information in header.");
+			}
+			checksumParts = submitChecksumParts(channel, headerLength, checksumWorkers, threadCount);
+		}
+
+		try {
+			long pixelBytes = image.getUncompressedImageDataLength();
+			if (compressionFormat == CompressionFormat.UNCOMPRESSED) {
+				if (dataLength < pixelBytes) {
+					addProblem(ImageConverterErrorCode.INVALID_HEADERDATA,
+							"Source file corrupt. Image data length does not fit to header information.");
+				}
+			} else if (compressionFormat == CompressionFormat.RLE) {
+				verifyRunLengthPackets(channel, headerLength, pixelBytes / 3);
+			} else if (compressionFormat == CompressionFormat.HUFFMAN) {
+				try {
+					verifyHuffmanData(channel, headerLength, pixelBytes);
+				} catch (ImageHandlingException e) {
+					// The check sum gets verified anyway
+					addProblem(ImageConverterErrorCode.fromErrorCode(e.getErrorCode()), e.getMessage());
+				}
+			}
+
+			if (checksumParts != null) {
+				ChecksumCalculator checksumCalculator = new ChecksumCalculator();
+				for (Future<ChecksumCalculator> checksumPart : checksumParts) {
+					checksumCalculator.append(checksumPart.get());
+				}
+				if (!Arrays.equals(checksumCalculator.getCheckSum(), ((ImagePropra) image).getCheckSum())) {
+					addProblem(ImageConverterErrorCode.INVALID_CHECKSUM, "Source file corrupt. Invalid check sum.");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ImageHandlingException("Verifying the image was interrupted.",
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new ImageHandlingException("Unexpected error while verifying the image: " + e.getCause(),
+					ImageConverterErrorCode.UNEXPECTED_ERROR);
+		} finally {
+			if (checksumParts != null) {
+				for (Future<ChecksumCalculator> checksumPart : checksumParts) {
+					checksumPart.cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lets the threads calculate the check sums of consecutive parts of the data
+	 * segment. Each thread reads its part on its own.
+	 */
+	private List<Future<ChecksumCalculator>> submitChecksumParts(FileChannel channel, int headerLength,
+			ExecutorService checksumWorkers, int threadCount) {
+		long partLength = Math.max(MIN_CHECKSUM_PART_LENGTH, (dataLength + threadCount - 1) / threadCount);
+		List<Future<ChecksumCalculator>> checksumParts = new ArrayList<Future<ChecksumCalculator>>();
+		for (long partStart = 0; partStart < dataLength; partStart += partLength) {
+			long start = partStart;
+			long end = Math.min(dataLength, partStart + partLength);
+			checksumParts.add(checksumWorkers.submit(() -> {
+				ChecksumCalculator part = new ChecksumCalculator(start);
+				BufferPool bufferPool = BufferPool.getDefault();
+				byte[] buffer = bufferPool.lease();
+				try {
+					long position = start;
+					while (position < end) {
+						ByteBuffer data = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position));
+						int bytesRead = channel.read(data, headerLength + position);
+						if (bytesRead == -1) {
+							throw new IOException("Unexpected end of file.");
+						}
+						part.update(buffer, 0, bytesRead);
+						position += bytesRead;
+					}
+				} finally {
+					bufferPool.release(buffer);
+				}
+				return part;
+			}));
+		}
+		return checksumParts;
+	}
+
+	/**
+	 * Walks through the packets of a run-length encoded data segment. The pixels
+	 * of all packets must exactly fill the image and the last packet must be
+	 * complete. A *.propra data segment must end with the last packet.
+	 */
+	private void verifyRunLengthPackets(FileChannel channel, int headerLength, long pixelCount)
+			throws IOException {
+		long pixels = 0;
+		// The number of pixel bytes of the current packet which were not read yet
+		long remainingPacketBytes = 0;
+		long position = 0;
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] buffer = bufferPool.lease();
+		try {
+			int bytesRead;
+			while ((pixels < pixelCount || remainingPacketBytes > 0)
+					&& (bytesRead = channel.read(ByteBuffer.wrap(buffer), headerLength + position)) != -1) {
+				int index = 0;
+				while (index < bytesRead && (pixels < pixelCount || remainingPacketBytes > 0)) {
+					if (remainingPacketBytes > 0) {
+						int count = (int) Math.min(remainingPacketBytes, bytesRead - index);
+						index += count;
+						remainingPacketBytes -= count;
+						continue;
+					}
+					int controlByte = buffer[index++] & 0xFF;
+					int packetPixels = (controlByte & 0x7F) + 1;
+					pixels += packetPixels;
+					remainingPacketBytes = (controlByte & 0x80) == 0x80 ? 3 : packetPixels * 3;
+				}
+				position += index;
+			}
+		} finally {
+			bufferPool.release(buffer);
+		}
+
+		if (pixels > pixelCount) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. The last packet exceeds the image by number of pixels: "
+							+ (pixels - pixelCount));
+		}
+		if (remainingPacketBytes > 0) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. The last packet is truncated. Missing number of bytes: "
+							+ remainingPacketBytes);
+		} else if (pixels < pixelCount) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. Missing number of bytes: " + (pixelCount - pixels) * 3);
+		} else if (format == Format.PROPRA && position < dataLength) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. Number of bytes following the last pixel: "
+							+ (dataLength - position));
+		}
+	}
+
+	/**
+	 * Reads the Huffman tree at the beginning of the data segment and walks
+	 * through the codes following it. The codes must describe exactly the bytes of
+	 * the image. A *.propra data segment must end with the byte containing the
+	 * last code.
+	 */
+	private void verifyHuffmanData(FileChannel channel, int headerLength, long pixelBytes)
+			throws IOException, ImageHandlingException {
+		ByteBuffer treeData = ByteBuffer.allocate((int) Math.min(MAX_HUFFMAN_TREE_LENGTH, dataLength));
+		while (treeData.hasRemaining() && channel.read(treeData, headerLength + treeData.position()) != -1) {
+			// Read until the longest possible tree is complete
+		}
+		HuffmanTree tree = HuffmanTree.fromPreOrderTreeCode(Util.byteArrayToCharArray(treeData.array()));
+		HuffmanCodeWalker walker = new HuffmanCodeWalker(tree.getRoot());
+		long treeBits = tree.getPreOrderTreeCode().size();
+
+		long decodedBytes = 0;
+		// The position of the byte containing the last bit walked through
+		long position = treeBits / 8;
+		int firstBit = (int) (treeBits % 8);
+		BufferPool bufferPool = BufferPool.getDefault();
+		byte[] buffer = bufferPool.lease();
+		try {
+			int bytesRead;
+			while (decodedBytes < pixelBytes
+					&& (bytesRead = channel.read(ByteBuffer.wrap(buffer), headerLength + position)) != -1) {
+				int index = 0;
+				while (index < bytesRead && decodedBytes < pixelBytes) {
+					int codeBits = buffer[index] & 0xFF;
+					if (firstBit == 0 && decodedBytes + walker.getCodeCount(codeBits) < pixelBytes) {
+						decodedBytes += walker.walk(codeBits);
+					} else {
+						// The byte contains the last code or the end of the tree
+						for (int bit = firstBit; bit < 8 && decodedBytes < pixelBytes; bit++) {
+							decodedBytes += walker.walkBit((codeBits >> (7 - bit)) & 1);
+						}
+						firstBit = 0;
+					}
+					index++;
+				}
+				position += index;
+			}
+		} finally {
+			bufferPool.release(buffer);
+		}
+
+		if (decodedBytes < pixelBytes) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. Missing number of bytes: " + (pixelBytes - decodedBytes));
+		} else if (format == Format.PROPRA && position < dataLength) {
+			addProblem(ImageConverterErrorCode.INVALID_DATASEGMENT,
+					"Image data segment corrupt. Number of bytes following the last pixel: "
+							+ (dataLength - position));
+		}
+	}
+
+	private void addProblem(ImageConverterErrorCode errorCode, String message) {
+		errorCodes.add(errorCode);
+		messages.add(message);
+	}
+
+	/**
+	 * To check whether no problems were found.
+	 *
+	 * @return <code>true</code> if the image is valid.
+	 */
+	public boolean isValid() {
+		return errorCodes.isEmpty();
+	}
+
+	/**
+	 * To get the error code of the first problem found.
+	 *
+	 * @return the error code or <code>null</code> if the image is valid.
+	 */
+	public ImageConverterErrorCode getErrorCode() {
+		return errorCodes.isEmpty() ? null : errorCodes.get(0);
+	}
+
+	/**
+	 * To get the verification as one line of JSON. Images with an invalid header
+	 * only contain the file and the problems.
+	 *
+	 * @return the JSON object.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"file\":").append(Util.toJsonString(file.toString()));
+		if (compressionFormat != null) {
+			json.append(",\"format\":\"").append(format.getFileExtension()).append('"');
+			json.append(",\"compression\":\"").append(compressionFormat.name().toLowerCase()).append('"');
+			json.append(",\"width\":").append(width);
+			json.append(",\"height\":").append(height);
+			json.append(",\"dataLength\":").append(dataLength);
+		}
+		json.append(",\"millis\":").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+		json.append(",\"valid\":").append(isValid());
+		json.append(",\"problems\":[");
+		for (int i = 0; i < errorCodes.size(); i++) {
+			json.append(i == 0 ? "{" : ",{");
+			json.append("\"error\":\"").append(errorCodes.get(i).name()).append('"');
+			json.append(",\"errorCode\":").append(errorCodes.get(i).getErrorCode());
+			json.append(",\"message\":").append(Util.toJsonString(messages.get(i)));
+			json.append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * A <code>HuffmanCodeWalker</code> walks through the codes of a Huffman
+	 * encoded data segment and counts the codes which were complete without
+	 * decoding them. All transitions of a whole byte of codes are looked up in a
+	 * table.
+	 */
+	private static final class HuffmanCodeWalker {
+
+		/**
+		 * The children of the inner nodes: the left one at <code>2 * node</code>, the
+		 * right one at <code>2 * node + 1</code>. A leaf is stored as
+		 * <code>-1</code>.
+		 */
+		private final int[] children;
+
+		/**
+		 * The inner node reached by walking through the bits of a byte starting at an
+		 * inner node, at <code>256 * node + byte</code>.
+		 */
+		private final int[] nextNodes;
+
+		/**
+		 * The number of codes completed by walking through the bits of a byte starting
+		 * at an inner node, at <code>256 * node + byte</code>.
+		 */
+		private final byte[] codeCounts;
+
+		private int node;
+
+		HuffmanCodeWalker(HuffmanElement root) {
+			List<HuffmanElement> innerNodes = new ArrayList<HuffmanElement>();
+			innerNodes.add(root);
+			for (int i = 0; i < innerNodes.size(); i++) {
+				HuffmanElement innerNode = innerNodes.get(i);
+				for (HuffmanElement child : new HuffmanElement[] { innerNode.getLeftChild(),
+						innerNode.getRightChild() }) {
+					if (child.getType() == NodeType.INNER_NODE) {
+						innerNodes.add(child);
+					}
+				}
+			}
+			children = new int[innerNodes.size() * 2];
+			for (int i = 0; i < innerNodes.size(); i++) {
+				HuffmanElement left = innerNodes.get(i).getLeftChild();
+				HuffmanElement right = innerNodes.get(i).getRightChild();
+				children[2 * i] = left.getType() == NodeType.INNER_NODE ? innerNodes.indexOf(left) : -1;
+				children[2 * i + 1] = right.getType() == NodeType.INNER_NODE ? innerNodes.indexOf(right) : -1;
+			}
+
+			nextNodes = new int[innerNodes.size() * 256];
+			codeCounts = new byte[innerNodes.size() * 256];
+			for (int start = 0; start < innerNodes.size(); start++) {
+				for (int codeBits = 0; codeBits < 256; codeBits++) {
+					node = start;
+					int count = 0;
+					for (int bit = 7; bit >= 0; bit--) {
+						count += walkBit((codeBits >> bit) & 1);
+					}
+					nextNodes[256 * start + codeBits] = node;
+					codeCounts[256 * start + codeBits] = (byte) count;
+				}
+			}
+			node = 0;
+		}
+
+		/**
+		 * To get the number of codes which would be completed by walking through the
+		 * bits of the given byte.
+		 */
+		int getCodeCount(int codeBits) {
+			return codeCounts[256 * node + codeBits];
+		}
+
+		/**
+		 * Walks through the bits of a byte, the most significant bit first.
+		 *
+		 * @return the number of codes completed.
+		 */
+		int walk(int codeBits) {
+			int count = codeCounts[256 * node + codeBits];
+			node = nextNodes[256 * node + codeBits];
+			return count;
+		}
+
+		/**
+		 * Walks through one bit. A set bit leads to the right child.
+		 *
+		 * @return <code>1</code> if a code was completed, <code>0</code> otherwise.
+		 */
+		int walkBit(int bit) {
+			int child = children[2 * node + bit];
+			if (child == -1) {
+				node = 0;
+				return 1;
+			}
+			node = child;
+			return 0;
+		}
+	}
+}
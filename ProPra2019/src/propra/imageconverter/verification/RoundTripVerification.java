@@ -0,0 +1,315 @@
+package propra.imageconverter.verification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import propra.imageconverter.codecs.PixelSwapKernel;
+import propra.imageconverter.codecs.TranscodingKernel;
+import propra.imageconverter.codecs.huffman.HuffmanDecoder;
+import propra.imageconverter.codecs.rle.RLEDecodingKernel;
+import propra.imageconverter.error.ImageConverterErrorCode;
+import propra.imageconverter.error.ImageHandlingException;
+import propra.imageconverter.util.BufferPool;
+import propra.imageconverter.util.DataListener;
+import propra.imageconverter.util.FileHandler;
+import propra.imageconverter.util.arguments.CompressionFormat;
+import propra.imageconverter.util.arguments.Format;
+
+/**
+ * A <code>RoundTripVerification</code> proves that the output images of a
+ * conversion decode back to the pixels of the input image. The data segment of
+ * each output image is decoded while it is being written and the data segment
+ * of the input image is decoded independently of the conversion. Each of them
+ * is decoded in its own thread so that the verification overlaps with the
+ * conversion instead of following it.
+ * <p>
+ * The decoded pixels are not kept but their CRC-32C is calculated in the byte
+ * order of the input image. After the conversion the check sums and the
+ * numbers of decoded bytes of all output images must be the same as those of
+ * the input image.
+ *
+ * @author Oliver Eckstein
+ *
+ */
+public class RoundTripVerification {
+
+	/**
+	 * The number of written chunks which may wait to be decoded. It limits the
+	 * memory in use when the decoding is slower than the conversion.
+	 */
+	private static final int MAX_CHUNKS_IN_FLIGHT = 16;
+
+	/**
+	 * The largest chunk which gets queued at once. Larger writes are split so that
+	 * at most <code>MAX_CHUNKS_IN_FLIGHT</code> times this size is held in memory.
+	 */
+	private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+	private final int width;
+	private final int height;
+	private final long pixelBytes;
+	private final Format pixelFormat;
+	private PixelDecoder source;
+	private final List<PixelDecoder> outputs = new ArrayList<PixelDecoder>();
+
+	/**
+	 * To create a new <code>RoundTripVerification</code>.
+	 *
+	 * @param width       the width of the image.
+	 * @param height      the height of the image.
+	 * @param inputFormat the format of the input image. The pixels of all images
+	 *                    are compared in its byte order.
+	 */
+	public RoundTripVerification(int width, int height, Format inputFormat) {
+		this.width = width;
+		this.height = height;
+		pixelBytes = (long) width * height * 3;
+		pixelFormat = inputFormat;
+	}
+
+	/**
+	 * Starts decoding the data segment of the input image which gets read from its
+	 * file by its own thread.
+	 *
+	 * @param inputPath         the path of the input image.
+	 * @param headerLength      the length of the header of the input image.
+	 * @param compressionFormat the compression of the input image.
+	 */
+	public void verifyInputFile(String inputPath, int headerLength, CompressionFormat compressionFormat) {
+		source = new PixelDecoder("input", pixelFormat, compressionFormat);
+		source.executor.execute(() -> {
+			BufferPool bufferPool = BufferPool.getDefault();
+			byte[] buffer = bufferPool.lease();
+			FileHandler fileHandler = null;
+			try {
+				fileHandler = new FileHandler(inputPath);
+				fileHandler.createFile();
+				fileHandler.openInputStream();
+				fileHandler.skipNBytes(headerLength);
+				int bytesRead;
+				while (source.error == null && (bytesRead = fileHandler.readData(buffer)) != -1) {
+					source.decode(buffer, bytesRead);
+				}
+			} catch (ImageHandlingException e) {
+				source.error = e;
+			} catch (RuntimeException e) {
+				source.fail(e);
+			} finally {
+				bufferPool.release(buffer);
+				if (fileHandler != null) {
+					try {
+						fileHandler.closeFile();
+					} catch (ImageHandlingException e) {
+						// The data was read completely
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * To get a listener which decodes the data segment of the input image which
+	 * gets passed to it.
+	 *
+	 * @param compressionFormat the compression of the input image.
+	 * @return the listener.
+	 */
+	public DataListener verifyInput(CompressionFormat compressionFormat) {
+		source = new PixelDecoder("input", pixelFormat, compressionFormat);
+		return source;
+	}
+
+	/**
+	 * To get a listener which decodes the data segment of an output image while it
+	 * is being written. Only the data segment may be passed to it.
+	 *
+	 * @param name              the name of the output image used in error
+	 *                          messages.
+	 * @param format            the format of the output image.
+	 * @param compressionFormat the compression of the output image.
+	 * @return the listener.
+	 */
+	public DataListener verifyOutput(String name, Format format, CompressionFormat compressionFormat) {
+		PixelDecoder output = new PixelDecoder(name, format, compressionFormat);
+		outputs.add(output);
+		return output;
+	}
+
+	/**
+	 * Discards the data passed to a listener of an output image so far, i.e. when
+	 * the data segment of the output image gets written once more.
+	 *
+	 * @param listener the listener returned by <code>verifyOutput()</code>.
+	 */
+	public void restartOutput(DataListener listener) {
+		PixelDecoder output = (PixelDecoder) listener;
+		output.executor.execute(output::reset);
+	}
+
+	/**
+	 * Waits until all data was decoded and compares the output images with the
+	 * input image. All data segments must have been passed completely.
+	 *
+	 * @throws ImageHandlingException when an output image does not decode back to
+	 *                                the pixels of the input image.
+	 */
+	public void finish() throws ImageHandlingException {
+		source.await();
+		for (PixelDecoder output : outputs) {
+			output.await();
+		}
+		if (source.error != null) {
+			throw new ImageHandlingException("Round-trip verification failed. Input image could not be decoded: "
+					+ source.error.getMessage(), ImageConverterErrorCode.COMPRESSION_ERROR);
+		}
+		for (PixelDecoder output : outputs) {
+			if (output.error != null) {
+				throw new ImageHandlingException("Round-trip verification failed. Output image " + output.name
+						+ " could not be decoded: " + output.error.getMessage(),
+						ImageConverterErrorCode.COMPRESSION_ERROR);
+			}
+			if (output.decodedBytes != source.decodedBytes) {
+				throw new ImageHandlingException("Round-trip verification failed. Output image " + output.name
+						+ " decodes to " + output.decodedBytes + " of " + source.decodedBytes + " bytes.",
+						ImageConverterErrorCode.COMPRESSION_ERROR);
+			}
+			if (output.checksum.getValue() != source.checksum.getValue()) {
+				throw new ImageHandlingException("Round-trip verification failed. Pixels of output image "
+						+ output.name + " differ from the input image.", ImageConverterErrorCode.COMPRESSION_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * Stops decoding without comparing the images, i.e. when the conversion
+	 * failed.
+	 */
+	public void abort() {
+		if (source != null) {
+			source.executor.shutdownNow();
+		}
+		for (PixelDecoder output : outputs) {
+			output.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Decodes one data segment in its own thread and calculates the check sum of
+	 * its pixels.
+	 */
+	private class PixelDecoder implements DataListener {
+		private final String name;
+		private final boolean swapPixelBytes;
+		private final CompressionFormat compressionFormat;
+		private final ExecutorService executor;
+		private final Semaphore chunksInFlight;
+		private final CRC32C checksum = new CRC32C();
+
+		private TranscodingKernel kernel;
+		private HuffmanDecoder huffmanDecoder;
+		private long decodedBytes;
+
+		/**
+		 * The error which occurred while decoding. Only accessed by the thread of
+		 * this <code>PixelDecoder</code> before <code>await()</code>.
+		 */
+		private ImageHandlingException error;
+
+		PixelDecoder(String name, Format format, CompressionFormat compressionFormat) {
+			this.name = name;
+			swapPixelBytes = format != pixelFormat;
+			this.compressionFormat = compressionFormat;
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "round-trip-" + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+			chunksInFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+			reset();
+		}
+
+		private void reset() {
+			kernel = null;
+			huffmanDecoder = null;
+			if (compressionFormat == CompressionFormat.RLE) {
+				kernel = new RLEDecodingKernel(width, height, swapPixelBytes);
+			} else {
+				if (compressionFormat == CompressionFormat.HUFFMAN) {
+					huffmanDecoder = new HuffmanDecoder(pixelBytes);
+				}
+				if (swapPixelBytes) {
+					kernel = new PixelSwapKernel(width, height);
+				}
+			}
+			checksum.reset();
+			decodedBytes = 0;
+			error = null;
+		}
+
+		@Override
+		public void dataWritten(byte[] data, int offset, int length) {
+			for (int end = offset + length; offset < end; offset += MAX_CHUNK_SIZE) {
+				byte[] chunk = Arrays.copyOfRange(data, offset, Math.min(end, offset + MAX_CHUNK_SIZE));
+				chunksInFlight.acquireUninterruptibly();
+				executor.execute(() -> {
+					try {
+						if (error == null) {
+							decode(chunk, chunk.length);
+						}
+					} catch (ImageHandlingException e) {
+						error = e;
+					} catch (RuntimeException e) {
+						fail(e);
+					} finally {
+						chunksInFlight.release();
+					}
+				});
+			}
+		}
+
+		/**
+		 * Decodes the next part of the data segment. Data following after the last
+		 * pixel is ignored.
+		 */
+		private void decode(byte[] data, int length) throws ImageHandlingException {
+			if (huffmanDecoder != null) {
+				data = huffmanDecoder.decode(Arrays.copyOf(data, length));
+				if (data == null) {
+					return;
+				}
+				length = data.length;
+			}
+			if (kernel != null) {
+				kernel.transcode(data, length);
+				data = kernel.getOutputBuffer();
+				length = kernel.getOutputLength();
+			}
+			length = (int) Math.min(length, pixelBytes - decodedBytes);
+			checksum.update(data, 0, length);
+			decodedBytes += length;
+		}
+
+		private void fail(RuntimeException e) {
+			error = new ImageHandlingException("Unexpected error in thread " + Thread.currentThread().getName()
+					+ ": " + e, ImageConverterErrorCode.UNEXPECTED_ERROR);
+		}
+
+		/**
+		 * Waits until all data passed so far was decoded.
+		 */
+		void await() {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}